@@ -0,0 +1,106 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.work;
+
+import org.gradle.internal.concurrent.DefaultParallelismConfiguration;
+import org.gradle.internal.metrics.MetricsRegistry;
+import org.gradle.internal.resources.DefaultResourceLockCoordinationService;
+import org.gradle.internal.resources.ResourceLock;
+import org.gradle.util.Path;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Measures the throughput of acquiring and releasing worker leases and project locks from many threads at once.
+ */
+@Fork(1)
+@Threads(16)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@State(Scope.Benchmark)
+public class ResourceLockCoordinationBenchmark {
+
+    @Param({"4", "16"})
+    int maxWorkerCount;
+
+    @Param({"1", "8", "64"})
+    int projectCount;
+
+    @Param({"100"})
+    long workTokens;
+
+    DefaultWorkerLeaseService workerLeaseService;
+    List<ResourceLock> projectLocks;
+
+    private final Runnable work = new Runnable() {
+        @Override
+        public void run() {
+            Blackhole.consumeCPU(workTokens);
+        }
+    };
+
+    @Setup(Level.Trial)
+    public void setup() {
+        workerLeaseService = new DefaultWorkerLeaseService(new DefaultResourceLockCoordinationService(), new DefaultParallelismConfiguration(true, maxWorkerCount), new MetricsRegistry());
+        projectLocks = new ArrayList<ResourceLock>(projectCount);
+        for (int i = 0; i < projectCount; i++) {
+            projectLocks.add(workerLeaseService.getProjectLock(Path.ROOT, Path.path(":project" + i)));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        workerLeaseService.stop();
+    }
+
+    @Benchmark
+    public void workerLease() {
+        WorkerLeaseRegistry.WorkerLease workerLease = workerLeaseService.getWorkerLease();
+        workerLeaseService.withLocks(Collections.singletonList(workerLease), work);
+    }
+
+    @Benchmark
+    public void projectLock() {
+        workerLeaseService.withLocks(Collections.singletonList(randomProjectLock()), work);
+    }
+
+    @Benchmark
+    public void workerLeaseAndProjectLock() {
+        WorkerLeaseRegistry.WorkerLease workerLease = workerLeaseService.getWorkerLease();
+        workerLeaseService.withLocks(Arrays.asList(workerLease, randomProjectLock()), work);
+    }
+
+    private ResourceLock randomProjectLock() {
+        return projectLocks.get(ThreadLocalRandom.current().nextInt(projectCount));
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.concurrent;
+
+import org.gradle.internal.UncheckedException;
+
+import javax.annotation.Nullable;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Creates executors which run each task in a new virtual thread. Virtual threads are available from Java 21 on,
+ * and are looked up reflectively, as Gradle itself targets older Java versions.
+ */
+public abstract class VirtualThreads {
+    @Nullable
+    private static final Method OF_VIRTUAL = findOfVirtual();
+
+    private VirtualThreads() {
+    }
+
+    /**
+     * Returns whether the current JVM supports virtual threads.
+     */
+    public static boolean isSupported() {
+        return OF_VIRTUAL != null;
+    }
+
+    /**
+     * Creates an executor which starts a new virtual thread for every task.
+     *
+     * @throws IllegalStateException when the current JVM does not support virtual threads.
+     */
+    public static ManagedExecutor createExecutor(String displayName) {
+        if (OF_VIRTUAL == null) {
+            throw new IllegalStateException("Virtual threads are not supported by Java " + System.getProperty("java.version") + ".");
+        }
+        try {
+            Object builder = OF_VIRTUAL.invoke(null);
+            Class<?> builderType = Class.forName("java.lang.Thread$Builder");
+            builder = builderType.getMethod("name", String.class, long.class).invoke(builder, displayName + " Virtual Thread ", 1L);
+            final ThreadFactory virtualThreadFactory = (ThreadFactory) builderType.getMethod("factory").invoke(builder);
+            ThreadFactory threadFactory = new ThreadFactory() {
+                @Override
+                public Thread newThread(final Runnable runnable) {
+                    return virtualThreadFactory.newThread(new Runnable() {
+                        @Override
+                        public void run() {
+                            GradleThread.setManaged();
+                            runnable.run();
+                        }
+                    });
+                }
+            };
+            ExecutorService executor = (ExecutorService) Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class).invoke(null, threadFactory);
+            return new ManagedExecutorImpl(executor, new ExecutorPolicy.CatchAndRecordFailures());
+        } catch (InvocationTargetException e) {
+            throw UncheckedException.throwAsUncheckedException(e.getCause());
+        } catch (Exception e) {
+            throw UncheckedException.throwAsUncheckedException(e);
+        }
+    }
+
+    @Nullable
+    private static Method findOfVirtual() {
+        try {
+            Method ofVirtual = Thread.class.getMethod("ofVirtual");
+            // Virtual threads are a preview feature in Java 19 and 20, which fails unless preview features are enabled
+            ofVirtual.invoke(null);
+            return ofVirtual;
+        } catch (NoSuchMethodException e) {
+            return null;
+        } catch (IllegalAccessException e) {
+            return null;
+        } catch (InvocationTargetException e) {
+            return null;
+        }
+    }
+}
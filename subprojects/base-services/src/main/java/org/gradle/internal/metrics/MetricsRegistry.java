@@ -0,0 +1,254 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.gradle.internal.metrics;
+
+import com.google.common.base.Supplier;
+import com.google.common.collect.ImmutableList;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Holds the counters, gauges and histograms of the process, and writes them in the OpenMetrics text format.
+ *
+ * <p>Looking up a metric allocates, so callers should look up their metrics once and keep them.
+ * Recording to a metric does not allocate.</p>
+ *
+ * <p>The values are cumulative over the lifetime of the registry.</p>
+ */
+public class MetricsRegistry {
+    private final ConcurrentMap<String, Family<?>> families = new ConcurrentHashMap<String, Family<?>>();
+
+    /**
+     * Returns the counter with the given name and labels, creating it if required.
+     *
+     * @param name the name of the metric, without the {@code _total} suffix.
+     * @param labels label names and values, alternating.
+     */
+    public Counter counter(String name, String help, String... labels) {
+        Supplier<Long> counter = this.<Supplier<Long>>family(name, help, Type.COUNTER, 1).get(labels, new Supplier<Supplier<Long>>() {
+            @Override
+            public Supplier<Long> get() {
+                return new Counter();
+            }
+        });
+        if (!(counter instanceof Counter)) {
+            throw new IllegalArgumentException(String.format("Counter '%s' with labels %s is computed by a function.", name, Arrays.toString(labels)));
+        }
+        return (Counter) counter;
+    }
+
+    /**
+     * Registers a counter with the given name and labels whose value is computed by the given function, for values which are already counted elsewhere.
+     * Replaces the function previously registered with the same name and labels.
+     *
+     * @param name the name of the metric, without the {@code _total} suffix.
+     * @param value returns the current value of the counter. Called when the metrics are written, so it should be cheap and must not block for long.
+     * @param labels label names and values, alternating.
+     */
+    public void counter(String name, String help, Supplier<Long> value, String... labels) {
+        this.<Supplier<Long>>family(name, help, Type.COUNTER, 1).set(labels, value);
+    }
+
+    /**
+     * Registers a gauge, a value which can go up and down, with the given name and labels whose value is computed by the given function.
+     * Replaces the function previously registered with the same name and labels.
+     *
+     * @param value returns the current value of the gauge. Called when the metrics are written, so it should be cheap and must not block for long.
+     * @param labels label names and values, alternating.
+     */
+    public void gauge(String name, String help, Supplier<Long> value, String... labels) {
+        this.<Supplier<Long>>family(name, help, Type.GAUGE, 1).set(labels, value);
+    }
+
+    /**
+     * Returns the histogram with the given name and labels, creating it if required.
+     *
+     * @param name the name of the metric, including the unit, like {@code _seconds}.
+     * @param unitScale the factor to convert recorded values to the unit of the metric, for example {@code 1e-9} when recording nanoseconds to a metric in seconds.
+     * @param labels label names and values, alternating.
+     */
+    public Histogram histogram(String name, String help, double unitScale, String... labels) {
+        return this.<Histogram>family(name, help, Type.HISTOGRAM, unitScale).get(labels, new Supplier<Histogram>() {
+            @Override
+            public Histogram get() {
+                return new Histogram();
+            }
+        });
+    }
+
+    private <T> Family<T> family(String name, String help, Type type, double unitScale) {
+        Family<?> family = families.get(name);
+        if (family == null) {
+            Family<?> created = new Family<Object>(name, help, type, unitScale);
+            family = families.putIfAbsent(name, created);
+            if (family == null) {
+                family = created;
+            }
+        }
+        if (family.type != type) {
+            throw new IllegalArgumentException(String.format("Metric '%s' is a %s, not a %s.", name, family.type.name, type.name));
+        }
+        @SuppressWarnings("unchecked")
+        Family<T> result = (Family<T>) family;
+        return result;
+    }
+
+    /**
+     * Writes all metrics in the OpenMetrics text format, ordered by name and labels.
+     */
+    public void writeOpenMetrics(Writer writer) throws IOException {
+        for (Family<?> family : new TreeMap<String, Family<?>>(families).values()) {
+            family.write(writer);
+        }
+        writer.write("# EOF\n");
+    }
+
+    private enum Type {
+        COUNTER("counter"), GAUGE("gauge"), HISTOGRAM("histogram");
+
+        private final String name;
+
+        Type(String name) {
+            this.name = name;
+        }
+    }
+
+    private static class Family<T> {
+        private final String name;
+        private final String help;
+        private final Type type;
+        private final double unitScale;
+        private final ConcurrentMap<List<String>, T> metrics = new ConcurrentHashMap<List<String>, T>();
+
+        Family(String name, String help, Type type, double unitScale) {
+            this.name = name;
+            this.help = help;
+            this.type = type;
+            this.unitScale = unitScale;
+        }
+
+        T get(String[] labels, Supplier<T> factory) {
+            List<String> key = key(labels);
+            T metric = metrics.get(key);
+            if (metric == null) {
+                T created = factory.get();
+                metric = metrics.putIfAbsent(key, created);
+                if (metric == null) {
+                    metric = created;
+                }
+            }
+            return metric;
+        }
+
+        void set(String[] labels, T metric) {
+            metrics.put(key(labels), metric);
+        }
+
+        private List<String> key(String[] labels) {
+            if (labels.length % 2 != 0) {
+                throw new IllegalArgumentException(String.format("Labels of metric '%s' have to be name and value pairs.", name));
+            }
+            return ImmutableList.copyOf(labels);
+        }
+
+        void write(Writer writer) throws IOException {
+            writer.write("# TYPE " + name + " " + type.name + "\n");
+            writer.write("# HELP " + name + " " + escape(help) + "\n");
+            Map<String, T> sorted = new TreeMap<String, T>();
+            for (Map.Entry<List<String>, T> entry : metrics.entrySet()) {
+                sorted.put(labels(entry.getKey()), entry.getValue());
+            }
+            for (Map.Entry<String, T> entry : sorted.entrySet()) {
+                String labels = entry.getKey();
+                if (type == Type.COUNTER) {
+                    writeSample(writer, "_total", labels, null, Long.toString(value(entry.getValue())));
+                } else if (type == Type.GAUGE) {
+                    writeSample(writer, "", labels, null, Long.toString(value(entry.getValue())));
+                } else {
+                    writeHistogram(writer, labels, (Histogram) entry.getValue());
+                }
+            }
+        }
+
+        private static long value(Object supplier) {
+            @SuppressWarnings("unchecked")
+            Long value = ((Supplier<Long>) supplier).get();
+            return value;
+        }
+
+        private void writeHistogram(Writer writer, String labels, Histogram histogram) throws IOException {
+            // Only the buckets which have values are written, the cumulative counts of the others can be derived from them
+            long count = 0;
+            for (int i = 0; i < Histogram.BUCKET_COUNT; i++) {
+                long bucketCount = histogram.getBucketCount(i);
+                if (bucketCount != 0) {
+                    count += bucketCount;
+                    writeSample(writer, "_bucket", labels, "le=\"" + format(Histogram.bucketUpperBound(i) * unitScale) + "\"", Long.toString(count));
+                }
+            }
+            writeSample(writer, "_bucket", labels, "le=\"+Inf\"", Long.toString(count));
+            writeSample(writer, "_count", labels, null, Long.toString(count));
+            writeSample(writer, "_sum", labels, null, format(histogram.getSum() * unitScale));
+        }
+
+        private void writeSample(Writer writer, String suffix, String labels, String extraLabel, String value) throws IOException {
+            writer.write(name);
+            writer.write(suffix);
+            if (!labels.isEmpty() || extraLabel != null) {
+                writer.write('{');
+                writer.write(labels);
+                if (extraLabel != null) {
+                    if (!labels.isEmpty()) {
+                        writer.write(',');
+                    }
+                    writer.write(extraLabel);
+                }
+                writer.write('}');
+            }
+            writer.write(' ');
+            writer.write(value);
+            writer.write('\n');
+        }
+
+        private static String labels(List<String> labels) {
+            StringBuilder builder = new StringBuilder();
+            for (int i = 0; i < labels.size(); i += 2) {
+                if (i > 0) {
+                    builder.append(',');
+                }
+                builder.append(labels.get(i)).append("=\"").append(escape(labels.get(i + 1))).append('"');
+            }
+            return builder.toString();
+        }
+
+        private static String format(double value) {
+            return Double.toString(value);
+        }
+
+        private static String escape(String value) {
+            return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+        }
+    }
+}
@@ -0,0 +1,33 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.operations;
+
+/**
+ * The limits that apply to the execution of a build operation added to a {@link BuildOperationQueue}.
+ */
+public enum BuildOperationConstraint {
+    /**
+     * The operation holds a worker lease while it runs, so that at most max-workers operations run at the same time.
+     */
+    MAX_WORKERS,
+
+    /**
+     * The operation spends most of its time blocked on I/O, such as a download, and does not need a worker lease.
+     * It may run concurrently with any number of other operations, when the build operation executor supports it.
+     */
+    UNCONSTRAINED
+}
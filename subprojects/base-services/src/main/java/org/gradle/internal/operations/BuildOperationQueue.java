@@ -35,6 +35,14 @@
      */
     void add(T operation);
 
+    /**
+     * Adds an operation to be executed with the given constraint, potentially executing it instantly.
+     *
+     * @param operation operation to execute
+     * @param constraint the limits that apply to the execution of the operation
+     */
+    void add(T operation, BuildOperationConstraint constraint);
+
     /**
      * Cancels all queued operations in this queue.  Any operations that have started will be allowed to complete.
      */
@@ -20,4 +20,9 @@
 
 public interface BuildOperationQueueFactory {
     <T extends BuildOperation> BuildOperationQueue<T> create(ManagedExecutor executor, BuildOperationQueue.QueueWorker<T> worker);
+
+    /**
+     * Creates a queue which runs {@link BuildOperationConstraint#UNCONSTRAINED} operations using the given unconstrained executor, without a worker lease.
+     */
+    <T extends BuildOperation> BuildOperationQueue<T> create(ManagedExecutor executor, ManagedExecutor unconstrainedExecutor, BuildOperationQueue.QueueWorker<T> worker);
 }
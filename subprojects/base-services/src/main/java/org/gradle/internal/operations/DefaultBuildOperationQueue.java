@@ -21,6 +21,7 @@
 import org.gradle.internal.work.WorkerLeaseRegistry;
 import org.gradle.internal.work.WorkerLeaseService;
 
+import javax.annotation.Nullable;
 import java.util.Collections;
 import java.util.Deque;
 import java.util.LinkedList;
@@ -36,6 +37,8 @@ private enum QueueState {
     private final WorkerLeaseService workerLeases;
     private final WorkerLeaseRegistry.WorkerLease parentWorkerLease;
     private final Executor executor;
+    @Nullable
+    private final Executor unconstrainedExecutor;
     private final QueueWorker<T> queueWorker;
     private String logLocation;
 
@@ -50,9 +53,14 @@ private enum QueueState {
     private final LinkedList<Throwable> failures = new LinkedList<Throwable>();
 
     DefaultBuildOperationQueue(WorkerLeaseService workerLeases, Executor executor, QueueWorker<T> queueWorker) {
+        this(workerLeases, executor, null, queueWorker);
+    }
+
+    DefaultBuildOperationQueue(WorkerLeaseService workerLeases, Executor executor, @Nullable Executor unconstrainedExecutor, QueueWorker<T> queueWorker) {
         this.workerLeases = workerLeases;
         this.parentWorkerLease = workerLeases.getWorkerLease();
         this.executor = executor;
+        this.unconstrainedExecutor = unconstrainedExecutor;
         this.queueWorker = queueWorker;
     }
 
@@ -79,6 +87,28 @@ public void add(final T operation) {
         }
     }
 
+    @Override
+    public void add(T operation, BuildOperationConstraint constraint) {
+        if (constraint == BuildOperationConstraint.MAX_WORKERS || unconstrainedExecutor == null) {
+            add(operation);
+            return;
+        }
+        lock.lock();
+        try {
+            if (queueState == QueueState.Done) {
+                throw new IllegalStateException("BuildOperationQueue cannot be reused once it has completed.");
+            }
+            if (queueState == QueueState.Cancelled) {
+                return;
+            }
+            pendingOperations++;
+            // Each operation gets its own thread, and does not take a worker lease while it waits for I/O
+            unconstrainedExecutor.execute(new UnconstrainedRunnable(operation));
+        } finally {
+            lock.unlock();
+        }
+    }
+
     @Override
     public void cancel() {
         lock.lock();
@@ -162,6 +192,42 @@ public void setLogLocation(String logLocation) {
         this.logLocation = logLocation;
     }
 
+    private void runOperation(T operation) {
+        try {
+            queueWorker.execute(operation);
+        } catch (Throwable t) {
+            addFailure(t);
+        }
+    }
+
+    private class UnconstrainedRunnable implements Runnable {
+        private final T operation;
+
+        UnconstrainedRunnable(T operation) {
+            this.operation = operation;
+        }
+
+        @Override
+        public void run() {
+            try {
+                if (!isCancelled()) {
+                    runOperation(operation);
+                }
+            } finally {
+                completeOperations(1);
+            }
+        }
+
+        private boolean isCancelled() {
+            lock.lock();
+            try {
+                return queueState == QueueState.Cancelled;
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
     private class WorkerRunnable implements Runnable {
         @Override
         public void run() {
@@ -218,14 +284,6 @@ private T getNextOperation() {
             }
         }
 
-        private void runOperation(T operation) {
-            try {
-                queueWorker.execute(operation);
-            } catch (Throwable t) {
-                addFailure(t);
-            }
-        }
-
         private void shutDown() {
             lock.lock();
             try {
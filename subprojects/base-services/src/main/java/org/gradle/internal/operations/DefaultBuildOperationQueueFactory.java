@@ -28,6 +28,11 @@ public DefaultBuildOperationQueueFactory(WorkerLeaseService workerLeaseService)
 
     @Override
     public <T extends BuildOperation> BuildOperationQueue<T> create(ManagedExecutor executor, BuildOperationQueue.QueueWorker<T> worker) {
-        return new DefaultBuildOperationQueue<T>(workerLeaseService, executor, worker);
+        return new DefaultBuildOperationQueue<T>(workerLeaseService, executor, null, worker);
+    }
+
+    @Override
+    public <T extends BuildOperation> BuildOperationQueue<T> create(ManagedExecutor executor, ManagedExecutor unconstrainedExecutor, BuildOperationQueue.QueueWorker<T> worker) {
+        return new DefaultBuildOperationQueue<T>(workerLeaseService, executor, unconstrainedExecutor, worker);
     }
 }
@@ -16,17 +16,35 @@
 
 package org.gradle.internal.resources;
 
+import com.google.common.collect.LinkedHashMultimap;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Multimap;
 import com.google.common.collect.Sets;
 import org.gradle.api.Transformer;
 import org.gradle.internal.UncheckedException;
 
+import javax.annotation.Nullable;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
 
+/**
+ * Coordinates changes to resource locks.
+ *
+ * <p>Threads that have to retry a transform do not wait for just any change to happen. When a transform created by {@link #lock(Iterable)} fails
+ * to acquire an {@link ExclusiveAccessResourceLock}, the thread waits until that particular lock is released, or until {@link #notifyStateChange()}
+ * is called. Threads retrying any other transform wait until some lock is released. This way, releasing a project lock only wakes up the threads
+ * which wait for that project, instead of every thread waiting for a project or a worker lease.</p>
+ */
 public class DefaultResourceLockCoordinationService implements ResourceLockCoordinationService {
-    private final Object lock = new Object();
+    private final ReentrantLock lock = new ReentrantLock();
+    // The following are guarded by lock
+    private final Multimap<ResourceLock, Waiter> waitingForResourceLock = LinkedHashMultimap.create();
+    private final Set<Waiter> waitingForAnyChange = Sets.newLinkedHashSet();
+
     private final ThreadLocal<List<ResourceLockState>> currentState = new ThreadLocal<List<ResourceLockState>>() {
         @Override
         protected List<ResourceLockState> initialValue() {
@@ -39,7 +57,8 @@ public boolean withStateLock(Transformer<ResourceLockState.Disposition, Resource
         while (true) {
             DefaultResourceLockState resourceLockState = new DefaultResourceLockState();
             ResourceLockState.Disposition disposition;
-            synchronized (lock) {
+            lock.lock();
+            try {
                 try {
                     currentState.get().add(resourceLockState);
                     disposition = stateLockAction.transform(resourceLockState);
@@ -47,17 +66,15 @@ public boolean withStateLock(Transformer<ResourceLockState.Disposition, Resource
                     switch (disposition) {
                         case RETRY:
                             resourceLockState.releaseLocks();
-                            try {
-                                lock.wait();
-                            } catch (InterruptedException e) {
-                                throw UncheckedException.throwAsUncheckedException(e);
-                            }
+                            maybeNotifyStateChange(resourceLockState);
+                            waitForStateChange(resourceLockState.getBlockedBy());
                             break;
                         case FINISHED:
                             maybeNotifyStateChange(resourceLockState);
                             return true;
                         case FAILED:
                             resourceLockState.releaseLocks();
+                            maybeNotifyStateChange(resourceLockState);
                             return false;
                         default:
                             throw new IllegalArgumentException("Unhandled disposition type: " + disposition.name());
@@ -68,6 +85,32 @@ public boolean withStateLock(Transformer<ResourceLockState.Disposition, Resource
                 } finally {
                     currentState.get().remove(resourceLockState);
                 }
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private void waitForStateChange(@Nullable ResourceLock blockedBy) {
+        Waiter waiter = new Waiter(lock.newCondition());
+        if (blockedBy != null) {
+            waitingForResourceLock.put(blockedBy, waiter);
+        } else {
+            waitingForAnyChange.add(waiter);
+        }
+        try {
+            while (!waiter.signalled) {
+                waiter.condition.await();
+            }
+        } catch (InterruptedException e) {
+            throw UncheckedException.throwAsUncheckedException(e);
+        } finally {
+            if (!waiter.signalled) {
+                if (blockedBy != null) {
+                    waitingForResourceLock.remove(blockedBy, waiter);
+                } else {
+                    waitingForAnyChange.remove(waiter);
+                }
             }
         }
     }
@@ -85,20 +128,47 @@ public ResourceLockState getCurrent() {
 
     private void maybeNotifyStateChange(DefaultResourceLockState resourceLockState) {
         if (resourceLockState.hasUnlockedResources()) {
-            notifyStateChange();
+            for (ResourceLock resourceLock : resourceLockState.unlockedResources) {
+                signalAll(waitingForResourceLock.removeAll(resourceLock));
+            }
+            signalAll(waitingForAnyChange);
+            waitingForAnyChange.clear();
         }
     }
 
     @Override
     public void notifyStateChange() {
-        synchronized (lock) {
-            lock.notifyAll();
+        lock.lock();
+        try {
+            signalAll(waitingForResourceLock.values());
+            waitingForResourceLock.clear();
+            signalAll(waitingForAnyChange);
+            waitingForAnyChange.clear();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static void signalAll(Collection<Waiter> waiters) {
+        for (Waiter waiter : waiters) {
+            waiter.signalled = true;
+            waiter.condition.signal();
+        }
+    }
+
+    private static class Waiter {
+        final Condition condition;
+        boolean signalled;
+
+        Waiter(Condition condition) {
+            this.condition = condition;
         }
     }
 
     private static class DefaultResourceLockState implements ResourceLockState {
         private Set<ResourceLock> lockedResources;
         private Set<ResourceLock> unlockedResources;
+        private ResourceLock blockedBy;
         boolean rollback;
 
         @Override
@@ -121,6 +191,18 @@ public void registerUnlocked(ResourceLock resourceLock) {
             }
         }
 
+        /**
+         * Records that the transform could not acquire the given lock, and cannot make progress until the lock is released.
+         */
+        void registerBlockedBy(ResourceLock resourceLock) {
+            blockedBy = resourceLock;
+        }
+
+        @Nullable
+        ResourceLock getBlockedBy() {
+            return blockedBy;
+        }
+
         boolean hasUnlockedResources() {
             return unlockedResources != null && !unlockedResources.isEmpty();
         }
@@ -196,6 +278,10 @@ private static class AcquireLocks implements Transformer<ResourceLockState.Dispo
         public ResourceLockState.Disposition transform(ResourceLockState resourceLockState) {
             for (ResourceLock resourceLock : resourceLocks) {
                 if (!resourceLock.tryLock()) {
+                    if (blocking && resourceLock instanceof ExclusiveAccessResourceLock && resourceLockState instanceof DefaultResourceLockState) {
+                        // An exclusive lock only becomes available when its owner releases it
+                        ((DefaultResourceLockState) resourceLockState).registerBlockedBy(resourceLock);
+                    }
                     return blocking ? ResourceLockState.Disposition.RETRY : ResourceLockState.Disposition.FAILED;
                 }
             }
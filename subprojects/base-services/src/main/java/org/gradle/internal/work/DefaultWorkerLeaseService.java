@@ -28,6 +28,8 @@
 import org.gradle.internal.Factory;
 import org.gradle.internal.MutableBoolean;
 import org.gradle.internal.concurrent.Stoppable;
+import org.gradle.internal.metrics.Histogram;
+import org.gradle.internal.metrics.MetricsRegistry;
 import org.gradle.internal.resources.AbstractResourceLockRegistry;
 import org.gradle.internal.resources.AbstractTrackedResourceLock;
 import org.gradle.internal.resources.DefaultResourceLockCoordinationService;
@@ -66,12 +68,14 @@ public class DefaultWorkerLeaseService implements WorkerLeaseService, Stoppable
     private final ProjectLockRegistry projectLockRegistry;
     private final WorkerLeaseLockRegistry workerLeaseLockRegistry;
     private final ProjectLockStatisticsImpl projectLockStatistics = new ProjectLockStatisticsImpl();
+    private final Histogram workerLeaseWaitTime;
 
-    public DefaultWorkerLeaseService(ResourceLockCoordinationService coordinationService, ParallelismConfiguration parallelismConfiguration) {
+    public DefaultWorkerLeaseService(ResourceLockCoordinationService coordinationService, ParallelismConfiguration parallelismConfiguration, MetricsRegistry metricsRegistry) {
         this.maxWorkerCount = parallelismConfiguration.getMaxWorkerCount();
         this.coordinationService = coordinationService;
         this.projectLockRegistry = new ProjectLockRegistry(coordinationService, parallelismConfiguration.isParallelProjectExecutionEnabled());
         this.workerLeaseLockRegistry = new WorkerLeaseLockRegistry(coordinationService);
+        this.workerLeaseWaitTime = metricsRegistry.histogram("gradle_worker_lease_wait_seconds", "Time spent waiting for a worker lease to start work.", 1e-9);
         LOGGER.info("Using {} worker leases.", maxWorkerCount);
     }
 
@@ -424,7 +428,9 @@ public void releaseLease() {
         }
 
         WorkerLeaseCompletion start() {
+            long startTime = System.nanoTime();
             coordinationService.withStateLock(lock(this));
+            workerLeaseWaitTime.record(System.nanoTime() - startTime);
             return this;
         }
 
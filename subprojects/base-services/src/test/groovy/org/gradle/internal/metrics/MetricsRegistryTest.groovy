@@ -0,0 +1,108 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.gradle.internal.metrics
+
+import com.google.common.base.Supplier
+import spock.lang.Specification
+
+class MetricsRegistryTest extends Specification {
+    def registry = new MetricsRegistry()
+
+    def "returns the same metric for the same name and labels"() {
+        expect:
+        registry.counter("files", "Files.", "kind", "a").is(registry.counter("files", "Files.", "kind", "a"))
+        !registry.counter("files", "Files.", "kind", "a").is(registry.counter("files", "Files.", "kind", "b"))
+    }
+
+    def "cannot use the same name for different types of metrics"() {
+        registry.counter("files", "Files.")
+
+        when:
+        registry.histogram("files", "Files.", 1)
+
+        then:
+        def e = thrown(IllegalArgumentException)
+        e.message == "Metric 'files' is a counter, not a histogram."
+    }
+
+    def "function registered for a counter replaces the previous one"() {
+        registry.counter("entries", "Entries.", { 1L } as Supplier, "cache", "a")
+        registry.counter("entries", "Entries.", { 2L } as Supplier, "cache", "a")
+
+        when:
+        def writer = new StringWriter()
+        registry.writeOpenMetrics(writer)
+
+        then:
+        writer.toString().contains('entries_total{cache="a"} 2\n')
+
+        when:
+        registry.counter("entries", "Entries.", "cache", "a")
+
+        then:
+        def e = thrown(IllegalArgumentException)
+        e.message == "Counter 'entries' with labels [cache, a] is computed by a function."
+    }
+
+    def "each value is counted in a bucket which contains it"() {
+        expect:
+        def index = Histogram.bucketIndex(value)
+        Histogram.bucketUpperBound(index) >= value
+        index == 0 || Histogram.bucketUpperBound(index - 1) < value
+
+        where:
+        value << [0, 1, 3, 4, 7, 8, 9, 15, 16, 100, 1000, 123456789, Long.MAX_VALUE]
+    }
+
+    def "writes metrics in OpenMetrics text format"() {
+        registry.counter("gradle_files", "Number of \"files\".").add(3)
+        def histogram = registry.histogram("gradle_duration_seconds", "Duration.", 1e-3, "type", "a")
+        histogram.record(1)
+        histogram.record(2)
+        histogram.record(105)
+        histogram.record(-5)
+        registry.gauge("gradle_cache_bytes", "Bytes held.", { 12L } as Supplier, "cache", "b")
+        registry.counter("gradle_cache_hits", "Hits.", { 7L } as Supplier, "cache", "b")
+
+        when:
+        def writer = new StringWriter()
+        registry.writeOpenMetrics(writer)
+
+        then:
+        writer.toString() == """# TYPE gradle_cache_bytes gauge
+# HELP gradle_cache_bytes Bytes held.
+gradle_cache_bytes{cache="b"} 12
+# TYPE gradle_cache_hits counter
+# HELP gradle_cache_hits Hits.
+gradle_cache_hits_total{cache="b"} 7
+# TYPE gradle_duration_seconds histogram
+# HELP gradle_duration_seconds Duration.
+gradle_duration_seconds_bucket{type="a",le="0.0"} 1
+gradle_duration_seconds_bucket{type="a",le="0.001"} 2
+gradle_duration_seconds_bucket{type="a",le="0.002"} 3
+gradle_duration_seconds_bucket{type="a",le="0.111"} 4
+gradle_duration_seconds_bucket{type="a",le="+Inf"} 4
+gradle_duration_seconds_count{type="a"} 4
+gradle_duration_seconds_sum{type="a"} 0.108
+# TYPE gradle_files counter
+# HELP gradle_files Number of \\"files\\".
+gradle_files_total 3
+# EOF
+"""
+    }
+}
@@ -317,6 +317,52 @@ class DefaultResourceLockCoordinationServiceTest extends ConcurrentSpec {
         false       | false       | FINISHED
     }
 
+    def "thread waiting for an exclusive lock is only woken up when that lock is released"() {
+        def lock1 = new ExclusiveAccessResourceLock("lock1", coordinationService, Mock(Action), Mock(Action))
+        def lock2 = new ExclusiveAccessResourceLock("lock2", coordinationService, Mock(Action), Mock(Action))
+        def count = 0
+
+        when:
+        async {
+            start {
+                coordinationService.withStateLock(lock(lock1, lock2))
+                instant.locked
+                thread.blockUntil.releaseLock2
+                coordinationService.withStateLock(unlock(lock2))
+                instant.lock2Released
+                thread.blockUntil.releaseLock1
+                coordinationService.withStateLock(unlock(lock1))
+            }
+            start {
+                thread.blockUntil.locked
+                coordinationService.withStateLock(new Transformer<ResourceLockState.Disposition, ResourceLockState>() {
+                    @Override
+                    ResourceLockState.Disposition transform(ResourceLockState resourceLockState) {
+                        try {
+                            return lock(lock1).transform(resourceLockState)
+                        } finally {
+                            count++
+                            instant."executed${count}"
+                        }
+                    }
+                })
+                instant.acquired
+                coordinationService.withStateLock(unlock(lock1))
+            }
+
+            thread.blockUntil.executed1
+            instant.releaseLock2
+            thread.blockUntil.lock2Released
+            coordinationService.withStateLock(tryLock(lock2))
+            coordinationService.withStateLock(unlock(lock2))
+            instant.releaseLock1
+            thread.blockUntil.acquired
+        }
+
+        then:
+        count == 2
+    }
+
     TestTrackedResourceLock resourceLock(String displayName, boolean locked, boolean hasLock=false) {
         return new TestTrackedResourceLock(displayName, coordinationService, Mock(Action), Mock(Action), locked, hasLock)
     }
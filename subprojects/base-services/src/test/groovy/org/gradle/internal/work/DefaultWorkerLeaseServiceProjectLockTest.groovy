@@ -20,6 +20,7 @@ import org.gradle.api.Transformer
 import org.gradle.concurrent.ParallelismConfiguration
 import org.gradle.internal.MutableBoolean
 import org.gradle.internal.concurrent.DefaultParallelismConfiguration
+import org.gradle.internal.metrics.MetricsRegistry
 import org.gradle.internal.resources.DefaultResourceLockCoordinationService
 import org.gradle.internal.resources.ResourceLock
 import org.gradle.internal.resources.ResourceLockState
@@ -39,7 +40,7 @@ class DefaultWorkerLeaseServiceProjectLockTest extends ConcurrentSpec {
     @Rule
     SetSystemProperties properties = new SetSystemProperties()
     def coordinationService = new DefaultResourceLockCoordinationService()
-    def workerLeaseService = new DefaultWorkerLeaseService(coordinationService, parallel())
+    def workerLeaseService = new DefaultWorkerLeaseService(coordinationService, parallel(), new MetricsRegistry())
 
     def "can cleanly lock and unlock a project"() {
         def projectLock = workerLeaseService.getProjectLock(path("root"), path(":project"))
@@ -139,7 +140,7 @@ class DefaultWorkerLeaseServiceProjectLockTest extends ConcurrentSpec {
     }
 
     def "multiple threads can coordinate on locking of entire build when not in parallel"() {
-        def projectLockService = new DefaultWorkerLeaseService(coordinationService, notParallel())
+        def projectLockService = new DefaultWorkerLeaseService(coordinationService, notParallel(), new MetricsRegistry())
         def testLock = new ReentrantLock()
         def threadCount = 10
         def started = new CountDownLatch(threadCount)
@@ -170,7 +171,7 @@ class DefaultWorkerLeaseServiceProjectLockTest extends ConcurrentSpec {
     }
 
     def "multiple threads can coordinate on locking of multiple builds when not in parallel"() {
-        def projectLockService = new DefaultWorkerLeaseService(coordinationService, notParallel())
+        def projectLockService = new DefaultWorkerLeaseService(coordinationService, notParallel(), new MetricsRegistry())
         def threadCount = 20
         def buildCount = 4
         def testLock = []
@@ -17,6 +17,7 @@
 package org.gradle.internal.work
 
 import org.gradle.internal.concurrent.DefaultParallelismConfiguration
+import org.gradle.internal.metrics.MetricsRegistry
 import org.gradle.internal.resources.DefaultResourceLockCoordinationService
 import org.gradle.internal.resources.ResourceLockCoordinationService
 import org.gradle.test.fixtures.concurrent.ConcurrentSpec
@@ -359,6 +360,6 @@ class DefaultWorkerLeaseServiceWorkerLeaseTest extends ConcurrentSpec {
     }
 
     WorkerLeaseService workerLeaseService(int maxWorkers) {
-        return new DefaultWorkerLeaseService(coordinationService, new DefaultParallelismConfiguration(true, maxWorkers))
+        return new DefaultWorkerLeaseService(coordinationService, new DefaultParallelismConfiguration(true, maxWorkers), new MetricsRegistry())
     }
 }
@@ -0,0 +1,252 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.internal.packaging.impl;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Writes the data in gzip format, compressing blocks of the data in parallel.
+ *
+ * <p>Like pigz, every block is compressed by its own {@link Deflater}, which uses the last 32 KB of the previous block as its dictionary.
+ * Each block but the last one ends with a sync flush, so the compressed blocks can simply be concatenated. The result is a single
+ * gzip member which can be read by {@link java.util.zip.GZIPInputStream}, and is only slightly larger than when compressing the data
+ * as a whole.</p>
+ *
+ * <p>The number of blocks which are compressed at the same time is bounded, so writing to the stream blocks when the compression
+ * cannot keep up. Data which fits into a single block is compressed on the calling thread.</p>
+ */
+public class ParallelGZipOutputStream extends OutputStream {
+    public static final int DEFAULT_BLOCK_SIZE = 128 * 1024;
+    private static final int DICTIONARY_SIZE = 32 * 1024;
+    private static final byte[] HEADER = {0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, 0};
+
+    private final OutputStream output;
+    private final Executor executor;
+    private final int maxPendingBlocks;
+    private final int blockSize;
+    private final Deque<Future<byte[]>> pendingBlocks = new ArrayDeque<>();
+    private final Queue<Deflater> deflaters = new ConcurrentLinkedQueue<>();
+    private final CRC32 crc = new CRC32();
+    private long uncompressedLength;
+    private byte[] block;
+    private int blockLength;
+    private byte[] previousBlock;
+    private boolean closed;
+
+    public ParallelGZipOutputStream(OutputStream output, Executor executor, int parallelism) throws IOException {
+        this(output, executor, parallelism, DEFAULT_BLOCK_SIZE);
+    }
+
+    public ParallelGZipOutputStream(OutputStream output, Executor executor, int parallelism, int blockSize) throws IOException {
+        if (blockSize < DICTIONARY_SIZE) {
+            throw new IllegalArgumentException("Block size must be at least " + DICTIONARY_SIZE + " bytes");
+        }
+        this.output = output;
+        this.executor = executor;
+        this.maxPendingBlocks = 2 * Math.max(1, parallelism);
+        this.blockSize = blockSize;
+        this.block = new byte[blockSize];
+        output.write(HEADER);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        write(new byte[]{(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] bytes, int offset, int length) throws IOException {
+        ensureOpen();
+        while (length > 0) {
+            int count = Math.min(length, blockSize - blockLength);
+            System.arraycopy(bytes, offset, block, blockLength, count);
+            blockLength += count;
+            offset += count;
+            length -= count;
+            if (blockLength == blockSize) {
+                submitBlock();
+            }
+        }
+    }
+
+    /**
+     * Writes the blocks which have been compressed so far, and flushes the underlying stream.
+     * Does not compress the data of the current block.
+     */
+    @Override
+    public void flush() throws IOException {
+        ensureOpen();
+        writeCompletedBlocks();
+        output.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            finish();
+        } catch (IOException | RuntimeException | Error e) {
+            awaitPendingBlocks();
+            throw e;
+        } finally {
+            try {
+                for (Deflater deflater : deflaters) {
+                    deflater.end();
+                }
+            } finally {
+                output.close();
+            }
+        }
+    }
+
+    private void finish() throws IOException {
+        crc.update(block, 0, blockLength);
+        uncompressedLength += blockLength;
+        byte[] lastBlock = pendingBlocks.isEmpty() && previousBlock == null
+            // Everything fits into a single block, so there is nothing to gain from handing it to another thread
+            ? compress(block, blockLength, null, true)
+            : null;
+        if (lastBlock == null) {
+            pendingBlocks.add(compressAsync(block, blockLength, previousBlock, true));
+        }
+        while (!pendingBlocks.isEmpty()) {
+            writeNextBlock();
+        }
+        if (lastBlock != null) {
+            output.write(lastBlock);
+        }
+        writeIntLittleEndian((int) crc.getValue());
+        writeIntLittleEndian((int) uncompressedLength);
+        block = null;
+        previousBlock = null;
+    }
+
+    private void submitBlock() throws IOException {
+        crc.update(block, 0, blockLength);
+        uncompressedLength += blockLength;
+        pendingBlocks.add(compressAsync(block, blockLength, previousBlock, false));
+        previousBlock = block;
+        block = new byte[blockSize];
+        blockLength = 0;
+        while (pendingBlocks.size() > maxPendingBlocks) {
+            writeNextBlock();
+        }
+        writeCompletedBlocks();
+    }
+
+    private Future<byte[]> compressAsync(byte[] data, int length, @Nullable byte[] dictionarySource, boolean last) {
+        FutureTask<byte[]> task = new FutureTask<>(() -> compress(data, length, dictionarySource, last));
+        executor.execute(task);
+        return task;
+    }
+
+    private byte[] compress(byte[] data, int length, @Nullable byte[] dictionarySource, boolean last) {
+        Deflater deflater = deflaters.poll();
+        if (deflater == null) {
+            deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        }
+        try {
+            if (dictionarySource != null) {
+                deflater.setDictionary(dictionarySource, dictionarySource.length - DICTIONARY_SIZE, DICTIONARY_SIZE);
+            }
+            deflater.setInput(data, 0, length);
+            if (last) {
+                deflater.finish();
+            }
+            byte[] compressed = new byte[length / 2 + 64];
+            int compressedLength = 0;
+            while (true) {
+                if (compressedLength == compressed.length) {
+                    compressed = Arrays.copyOf(compressed, compressed.length * 2);
+                }
+                int available = compressed.length - compressedLength;
+                int count = deflater.deflate(compressed, compressedLength, available, last ? Deflater.NO_FLUSH : Deflater.SYNC_FLUSH);
+                compressedLength += count;
+                if (last ? deflater.finished() : count < available) {
+                    break;
+                }
+            }
+            return compressedLength == compressed.length ? compressed : Arrays.copyOf(compressed, compressedLength);
+        } finally {
+            deflater.reset();
+            deflaters.add(deflater);
+        }
+    }
+
+    private void writeCompletedBlocks() throws IOException {
+        while (!pendingBlocks.isEmpty() && pendingBlocks.peekFirst().isDone()) {
+            writeNextBlock();
+        }
+    }
+
+    private void writeNextBlock() throws IOException {
+        Future<byte[]> next = pendingBlocks.removeFirst();
+        try {
+            output.write(next.get());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while compressing");
+        } catch (ExecutionException e) {
+            throw new IOException("Could not compress block", e.getCause());
+        }
+    }
+
+    private void awaitPendingBlocks() {
+        // Deflaters are only released once the blocks using them have been compressed
+        for (Future<byte[]> pendingBlock : pendingBlocks) {
+            try {
+                pendingBlock.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (ExecutionException e) {
+                // Already failed
+            }
+        }
+        pendingBlocks.clear();
+    }
+
+    private void writeIntLittleEndian(int value) throws IOException {
+        output.write(value & 0xff);
+        output.write((value >>> 8) & 0xff);
+        output.write((value >>> 16) & 0xff);
+        output.write((value >>> 24) & 0xff);
+    }
+
+    private void ensureOpen() throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed");
+        }
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.internal.packaging.impl
+
+import spock.lang.AutoCleanup
+import spock.lang.Specification
+import spock.lang.Unroll
+
+import java.util.concurrent.Executor
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+import java.util.zip.GZIPInputStream
+import java.util.zip.GZIPOutputStream
+
+class ParallelGZipOutputStreamTest extends Specification {
+    private static final int BLOCK_SIZE = 32 * 1024
+
+    @AutoCleanup("shutdownNow")
+    ExecutorService executor = Executors.newFixedThreadPool(4)
+
+    @Unroll
+    def "can read back #size bytes of #description data with parallelism #parallelism"() {
+        def content = description == "random" ? randomContent(size) : compressibleContent(size)
+
+        when:
+        def compressed = compress(content, executor, parallelism)
+
+        then:
+        decompress(compressed) == content
+
+        where:
+        [size, description, parallelism] << [
+            [0, 1, 100, BLOCK_SIZE - 1, BLOCK_SIZE, BLOCK_SIZE + 1, 10 * BLOCK_SIZE, 10 * BLOCK_SIZE + 17],
+            ["random", "compressible"],
+            [1, 4]
+        ].combinations()
+    }
+
+    def "compresses about as well as a single gzip stream"() {
+        def content = compressibleContent(20 * BLOCK_SIZE)
+
+        when:
+        def compressed = compress(content, executor, 4)
+        def sequentiallyCompressed = new ByteArrayOutputStream()
+        new GZIPOutputStream(sequentiallyCompressed).withCloseable { it.write(content) }
+
+        then:
+        compressed.length < sequentiallyCompressed.size() * 1.05
+    }
+
+    def "does not use the executor when the data fits into a single block"() {
+        def executor = Mock(Executor)
+
+        when:
+        def compressed = compress(randomContent(100), executor, 4)
+
+        then:
+        decompress(compressed).length == 100
+        0 * executor._
+    }
+
+    def "reports failure to compress a block"() {
+        def failingExecutor = { Runnable task -> throw new IllegalStateException("rejected") } as Executor
+
+        when:
+        compress(randomContent(2 * BLOCK_SIZE), failingExecutor, 4)
+
+        then:
+        def e = thrown(IllegalStateException)
+        e.message == "rejected"
+    }
+
+    private static byte[] compress(byte[] content, Executor executor, int parallelism) {
+        def output = new ByteArrayOutputStream()
+        new ParallelGZipOutputStream(output, executor, parallelism, BLOCK_SIZE).withCloseable { gzipOutput ->
+            // Write in uneven chunks, so the writes do not line up with the blocks
+            int offset = 0
+            while (offset < content.length) {
+                int count = Math.min(content.length - offset, 1000)
+                gzipOutput.write(content, offset, count)
+                offset += count
+            }
+        }
+        return output.toByteArray()
+    }
+
+    private static byte[] decompress(byte[] compressed) {
+        return new GZIPInputStream(new ByteArrayInputStream(compressed)).withCloseable { it.bytes }
+    }
+
+    private static byte[] randomContent(int size) {
+        def content = new byte[size]
+        new Random(1234).nextBytes(content)
+        return content
+    }
+
+    private static byte[] compressibleContent(int size) {
+        def builder = new StringBuilder()
+        int line = 0
+        while (builder.length() < size) {
+            builder.append("line ").append(line++ % 1000).append(" of some text which compresses well\n")
+        }
+        return builder.substring(0, size).getBytes("UTF-8")
+    }
+}
@@ -33,9 +33,11 @@ dependencies {
     implementation(libs.slf4jApi)
     implementation(libs.guava)
     implementation(libs.commonsIo)
+    implementation(libs.commonsCompress)
     implementation(libs.inject)
 
     jmhImplementation(platform(project(":distributions-dependencies")))
+    jmhImplementation(project(":build-cache-packaging"))
     jmhImplementation(libs.ant)
     jmhImplementation(libs.commonsCompress)
     jmhImplementation(libs.aircompressor)
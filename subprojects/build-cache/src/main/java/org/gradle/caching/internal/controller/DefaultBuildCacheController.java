@@ -50,9 +50,13 @@
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.function.LongSupplier;
 
 public class DefaultBuildCacheController implements BuildCacheController {
+    private static final int IN_MEMORY_STORE_THRESHOLD = 4 * 1024 * 1024;
 
     @VisibleForTesting
     final BuildCacheServiceHandle remote;
@@ -173,19 +177,25 @@ public void store(BuildCacheStoreCommand command) {
         Pack pack = new Pack(command);
 
         tmp.withTempFile(command.getKey(), file -> {
-            pack.execute(file);
+            if (!local.canStore()) {
+                // Only stored remotely, so small entries do not need to be written to the temporary file
+                SpillingOutputStream output = new SpillingOutputStream(IN_MEMORY_STORE_THRESHOLD, file);
+                pack.execute(() -> output, output::size);
+                remote.store(key, new StoreTarget(output.getContent()));
+                return;
+            }
+
+            pack.execute(() -> new FileOutputStream(file), file::length);
 
             if (remote.canStore()) {
                 remote.store(key, new StoreTarget(file));
             }
 
-            if (local.canStore()) {
-                local.store(key, file);
-            }
+            local.store(key, file);
         });
     }
 
-    private class Pack implements Action<File> {
+    private class Pack {
 
         private final BuildCacheStoreCommand command;
 
@@ -193,16 +203,15 @@ private Pack(BuildCacheStoreCommand command) {
             this.command = command;
         }
 
-        @Override
-        public void execute(final File file) {
+        public void execute(Callable<? extends OutputStream> output, LongSupplier packedSize) {
             buildOperationExecutor.run(new RunnableBuildOperation() {
                 @Override
-                public void run(BuildOperationContext context) throws IOException {
-                    try (FileOutputStream fileOutputStream = new FileOutputStream(file)) {
-                        BuildCacheStoreCommand.Result result = command.store(fileOutputStream);
+                public void run(BuildOperationContext context) throws Exception {
+                    try (OutputStream outputStream = output.call()) {
+                        BuildCacheStoreCommand.Result result = command.store(outputStream);
                         context.setResult(new PackOperationResult(
                             result.getArtifactEntryCount(),
-                            file.length()
+                            packedSize.getAsLong()
                         ));
                     }
                 }
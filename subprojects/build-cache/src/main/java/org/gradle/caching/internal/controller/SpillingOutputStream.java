@@ -0,0 +1,95 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.internal.controller;
+
+import com.google.common.io.ByteSource;
+import com.google.common.io.Files;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * Keeps the written data in memory, until it grows beyond a threshold. From then on, the data is written to the given file instead.
+ */
+class SpillingOutputStream extends OutputStream {
+    private final int threshold;
+    private final File spillFile;
+    private byte[] buffer = new byte[8192];
+    private int count;
+    private OutputStream fileOutput;
+    private long fileLength;
+
+    SpillingOutputStream(int threshold, File spillFile) {
+        this.threshold = threshold;
+        this.spillFile = spillFile;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        write(new byte[]{(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] bytes, int offset, int length) throws IOException {
+        if (fileOutput == null && count + length > threshold) {
+            fileOutput = new FileOutputStream(spillFile);
+            fileOutput.write(buffer, 0, count);
+            fileLength = count;
+            buffer = null;
+        }
+        if (fileOutput != null) {
+            fileOutput.write(bytes, offset, length);
+            fileLength += length;
+            return;
+        }
+        if (count + length > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.min(threshold, Math.max(buffer.length * 2, count + length)));
+        }
+        System.arraycopy(bytes, offset, buffer, count, length);
+        count += length;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        if (fileOutput != null) {
+            fileOutput.flush();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (fileOutput != null) {
+            fileOutput.close();
+        }
+    }
+
+    public long size() {
+        return fileOutput != null ? fileLength : count;
+    }
+
+    /**
+     * The written data. Only valid after the stream has been closed.
+     */
+    public ByteSource getContent() {
+        return fileOutput != null
+            ? Files.asByteSource(spillFile)
+            : ByteSource.wrap(buffer).slice(0, count);
+    }
+}
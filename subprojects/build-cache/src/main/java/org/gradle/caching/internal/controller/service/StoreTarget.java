@@ -16,8 +16,10 @@
 
 package org.gradle.caching.internal.controller.service;
 
+import com.google.common.io.ByteSource;
 import com.google.common.io.Closer;
 import com.google.common.io.Files;
+import org.gradle.api.UncheckedIOException;
 import org.gradle.caching.BuildCacheEntryWriter;
 
 import java.io.File;
@@ -26,11 +28,15 @@
 
 public class StoreTarget implements BuildCacheEntryWriter {
 
-    private final File file;
+    private final ByteSource content;
     private boolean stored;
 
     public StoreTarget(File file) {
-        this.file = file;
+        this(Files.asByteSource(file));
+    }
+
+    public StoreTarget(ByteSource content) {
+        this.content = content;
     }
 
     @Override
@@ -42,7 +48,7 @@ public void writeTo(OutputStream output) throws IOException {
                 throw new IllegalStateException("Build cache entry has already been stored");
             }
             stored = true;
-            Files.asByteSource(file).copyTo(output);
+            content.copyTo(output);
         } catch (Exception e) {
             throw closer.rethrow(e);
         } finally {
@@ -54,8 +60,15 @@ public boolean isStored() {
         return stored;
     }
 
+    /**
+     * The size of the content, counting its bytes when the source cannot tell it up front.
+     */
     @Override
     public long getSize() {
-        return file.length();
+        try {
+            return content.size();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
     }
 }
@@ -0,0 +1,173 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.local.internal;
+
+import org.gradle.api.Action;
+import org.gradle.api.UncheckedIOException;
+import org.gradle.cache.PersistentCache;
+import org.gradle.caching.BuildCacheEntryReader;
+import org.gradle.caching.BuildCacheEntryWriter;
+import org.gradle.caching.BuildCacheException;
+import org.gradle.caching.BuildCacheKey;
+import org.gradle.caching.BuildCacheService;
+import org.gradle.internal.UncheckedException;
+import org.gradle.internal.file.FileAccessTracker;
+import org.gradle.internal.resource.local.LocallyAvailableResource;
+import org.gradle.internal.resource.local.PathKeyFileStore;
+import org.gradle.util.GFileUtils;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * A local build cache which deduplicates the files of its entries, using a {@link ContentAddressedEntryStore}.
+ *
+ * The file store holds the manifests of the entries, so access tracking and cleanup of entries work the same as for the {@link DirectoryBuildCacheService}.
+ */
+public class ContentAddressedBuildCacheService implements LocalBuildCacheService, BuildCacheService {
+
+    private final PathKeyFileStore manifestStore;
+    private final ContentAddressedEntryStore entryStore;
+    private final PersistentCache persistentCache;
+    private final BuildCacheTempFileStore tempFileStore;
+    private final FileAccessTracker fileAccessTracker;
+    private final String failedFileSuffix;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    public ContentAddressedBuildCacheService(PathKeyFileStore manifestStore, File baseDir, PersistentCache persistentCache, BuildCacheTempFileStore tempFileStore, FileAccessTracker fileAccessTracker, String failedFileSuffix) {
+        this.manifestStore = manifestStore;
+        this.entryStore = new ContentAddressedEntryStore(baseDir);
+        this.persistentCache = persistentCache;
+        this.tempFileStore = tempFileStore;
+        this.fileAccessTracker = fileAccessTracker;
+        this.failedFileSuffix = failedFileSuffix;
+    }
+
+    @Override
+    public boolean load(BuildCacheKey key, BuildCacheEntryReader reader) throws BuildCacheException {
+        boolean[] loaded = new boolean[1];
+        loadLocally(key, file -> {
+            try (InputStream input = new FileInputStream(file)) {
+                reader.readFrom(input);
+                loaded[0] = true;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        return loaded[0];
+    }
+
+    @Override
+    public void loadLocally(BuildCacheKey key, Action<? super File> reader) {
+        // We need to lock other processes out here because garbage collection can be under way in another process
+        persistentCache.withFileLock(() -> {
+            lock.readLock().lock();
+            try {
+                loadInsideLock(key, reader);
+            } finally {
+                lock.readLock().unlock();
+            }
+        });
+    }
+
+    private void loadInsideLock(BuildCacheKey key, Action<? super File> reader) {
+        LocallyAvailableResource resource = manifestStore.get(key.getHashCode());
+        if (resource == null) {
+            return;
+        }
+
+        File manifest = resource.getFile();
+        fileAccessTracker.markAccessed(manifest);
+
+        tempFileStore.withTempFile(key, packedEntry -> {
+            try {
+                try (OutputStream output = new FileOutputStream(packedEntry)) {
+                    entryStore.assemble(manifest, output);
+                }
+                reader.execute(packedEntry);
+            } catch (Exception e) {
+                // Try to move the manifest out of the way in case its permanently corrupt
+                // Don't delete, so that it can be potentially used for debugging
+                File failedFile = new File(manifest.getAbsolutePath() + failedFileSuffix);
+                GFileUtils.deleteQuietly(failedFile);
+                //noinspection ResultOfMethodCallIgnored
+                manifest.renameTo(failedFile);
+
+                throw UncheckedException.throwAsUncheckedException(e);
+            }
+        });
+    }
+
+    @Override
+    public void store(BuildCacheKey key, BuildCacheEntryWriter result) throws BuildCacheException {
+        tempFileStore.withTempFile(key, file -> {
+            try (OutputStream output = new FileOutputStream(file)) {
+                result.writeTo(output);
+            } catch (IOException e) {
+                throw UncheckedException.throwAsUncheckedException(e);
+            }
+
+            storeLocally(key, file);
+        });
+    }
+
+    @Override
+    public void storeLocally(BuildCacheKey key, File file) {
+        tempFileStore.withTempFile(key, manifest -> {
+            // Hashing and writing the blobs happens outside the lock, only moving them into place needs to be guarded
+            try (ContentAddressedEntryStore.PendingEntry entry = entryStore.split(file, manifest)) {
+                // Blobs are only referenced once the manifest has been stored, so cleanup must not run in between
+                persistentCache.withFileLock(() -> {
+                    lock.writeLock().lock();
+                    try {
+                        storeInsideLock(key, entry, manifest);
+                    } finally {
+                        lock.writeLock().unlock();
+                    }
+                });
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    private void storeInsideLock(BuildCacheKey key, ContentAddressedEntryStore.PendingEntry entry, File manifest) {
+        try {
+            entry.commit();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        LocallyAvailableResource resource = manifestStore.move(key.getHashCode(), manifest);
+        fileAccessTracker.markAccessed(resource.getFile());
+    }
+
+    @Override
+    public void withTempFile(BuildCacheKey key, Action<? super File> action) {
+        persistentCache.withFileLock(() -> tempFileStore.withTempFile(key, action));
+    }
+
+    @Override
+    public void close() {
+        persistentCache.close();
+    }
+}
@@ -0,0 +1,303 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.local.internal;
+
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+import org.apache.commons.io.IOUtils;
+import org.gradle.internal.hash.HashCode;
+import org.gradle.internal.hash.HashFunction;
+import org.gradle.internal.hash.Hashing;
+import org.gradle.internal.hash.PrimitiveHasher;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardCopyOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Stores packed build cache entries split into a manifest per entry and blobs addressed by the SHA-256 hash of their content.
+ *
+ * <p>When an entry is stored, the content of every larger file in the tar archive of the entry is moved to a blob,
+ * unless a blob with the same content exists already. The manifest lists the tar entries of the archive,
+ * with either the hash of the blob holding the content, or the content itself for small files. This way the
+ * files shared between cache entries, like libraries or generated sources, are only stored once.</p>
+ *
+ * <p>Splitting an entry only writes temporary files, so it does not need to hold the cache lock. The blobs are moved
+ * into place when the entry is committed, which should happen while holding the lock, so cleanup does not delete them
+ * before the manifest referencing them has been stored.</p>
+ *
+ * <p>When an entry is loaded, the tar archive is assembled again from the manifest and the blobs. The archive
+ * is wrapped in a gzip stream without compression, so it can be unpacked like any other entry.</p>
+ */
+class ContentAddressedEntryStore {
+    static final String BLOBS_DIR = "blobs";
+
+    private static final int MANIFEST_MAGIC = 0x47434d46;
+    private static final int MANIFEST_VERSION = 1;
+    private static final byte END = 0;
+    private static final byte INLINE = 1;
+    private static final byte BLOB = 2;
+    private static final int INLINE_SIZE_LIMIT = 1024;
+    private static final String ENCODING = StandardCharsets.UTF_8.name();
+    private static final HashFunction BLOB_HASH_FUNCTION = Hashing.sha256();
+
+    private final File baseDir;
+    private final File blobsDir;
+
+    ContentAddressedEntryStore(File baseDir) {
+        this.baseDir = baseDir;
+        this.blobsDir = new File(baseDir, BLOBS_DIR);
+    }
+
+    /**
+     * Writes the content of the given packed entry to temporary blobs, and the manifest for it to the given file.
+     *
+     * The blobs only become visible once the returned entry has been committed.
+     */
+    PendingEntry split(File packedEntry, File manifest) throws IOException {
+        PendingEntry pendingEntry = new PendingEntry();
+        try (
+            TarArchiveInputStream tarInput = new TarArchiveInputStream(new GZIPInputStream(new BufferedInputStream(Files.newInputStream(packedEntry.toPath()))), ENCODING);
+            DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(manifest.toPath())))
+        ) {
+            output.writeInt(MANIFEST_MAGIC);
+            output.writeInt(MANIFEST_VERSION);
+            TarArchiveEntry entry;
+            while ((entry = tarInput.getNextTarEntry()) != null) {
+                long size = entry.getSize();
+                if (size <= INLINE_SIZE_LIMIT) {
+                    output.writeByte(INLINE);
+                    writeEntryHeader(output, entry);
+                    IOUtils.copy(tarInput, output);
+                } else {
+                    HashCode hash = pendingEntry.writeBlob(tarInput);
+                    output.writeByte(BLOB);
+                    writeEntryHeader(output, entry);
+                    output.write(hash.toByteArray());
+                }
+            }
+            output.writeByte(END);
+        } catch (IOException | RuntimeException e) {
+            pendingEntry.close();
+            throw e;
+        }
+        return pendingEntry;
+    }
+
+    /**
+     * Assembles the packed entry described by the given manifest, and writes it to the given output.
+     */
+    void assemble(File manifest, OutputStream output) throws IOException {
+        try (
+            DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(manifest.toPath())));
+            TarArchiveOutputStream tarOutput = new TarArchiveOutputStream(new UncompressedGZIPOutputStream(output), ENCODING)
+        ) {
+            readHeader(input, manifest);
+            tarOutput.setLongFileMode(TarArchiveOutputStream.LONGFILE_POSIX);
+            tarOutput.setBigNumberMode(TarArchiveOutputStream.BIGNUMBER_POSIX);
+            byte kind;
+            while ((kind = input.readByte()) != END) {
+                TarArchiveEntry entry = readEntryHeader(input);
+                tarOutput.putArchiveEntry(entry);
+                if (kind == INLINE) {
+                    IOUtils.copyLarge(input, tarOutput, 0, entry.getSize());
+                } else if (kind == BLOB) {
+                    File blob = blobFile(readHash(input));
+                    try (InputStream blobInput = Files.newInputStream(blob.toPath())) {
+                        IOUtils.copyLarge(blobInput, tarOutput, 0, entry.getSize());
+                    } catch (NoSuchFileException e) {
+                        throw new IOException(String.format("Blob %s of build cache entry %s is missing", blob.getName(), manifest.getName()), e);
+                    }
+                } else {
+                    throw new IOException(String.format("Unexpected entry kind %d in build cache manifest %s", kind, manifest));
+                }
+                tarOutput.closeArchiveEntry();
+            }
+        }
+    }
+
+    /**
+     * Adds the hashes of the blobs referenced by the given manifest to the given set.
+     */
+    void collectReferencedBlobs(File manifest, Set<String> blobs) throws IOException {
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(manifest.toPath())))) {
+            readHeader(input, manifest);
+            byte kind;
+            while ((kind = input.readByte()) != END) {
+                TarArchiveEntry entry = readEntryHeader(input);
+                if (kind == INLINE) {
+                    IOUtils.skipFully(input, entry.getSize());
+                } else {
+                    blobs.add(readHash(input).toString());
+                }
+            }
+        }
+    }
+
+    File getBlobsDir() {
+        return blobsDir;
+    }
+
+    /**
+     * Manifests are named after the cache key, while temporary and failed files have a suffix.
+     */
+    static boolean isManifest(File file) {
+        return file.isFile() && file.getName().indexOf('.') < 0;
+    }
+
+    private File blobFile(HashCode hash) {
+        String hex = hash.toString();
+        return new File(new File(blobsDir, hex.substring(0, 2)), hex);
+    }
+
+    private static void readHeader(DataInputStream input, File manifest) throws IOException {
+        if (input.readInt() != MANIFEST_MAGIC || input.readInt() != MANIFEST_VERSION) {
+            throw new IOException(String.format("%s is not a build cache manifest", manifest));
+        }
+    }
+
+    private static void writeEntryHeader(DataOutputStream output, TarArchiveEntry entry) throws IOException {
+        byte[] name = entry.getName().getBytes(StandardCharsets.UTF_8);
+        output.writeInt(name.length);
+        output.write(name);
+        output.writeInt(entry.getMode());
+        output.writeLong(entry.getSize());
+    }
+
+    private static TarArchiveEntry readEntryHeader(DataInputStream input) throws IOException {
+        byte[] name = new byte[input.readInt()];
+        input.readFully(name);
+        TarArchiveEntry entry = new TarArchiveEntry(new String(name, StandardCharsets.UTF_8), true);
+        entry.setMode(input.readInt());
+        entry.setSize(input.readLong());
+        return entry;
+    }
+
+    private static HashCode readHash(DataInputStream input) throws IOException {
+        byte[] hash = new byte[BLOB_HASH_FUNCTION.getHexDigits() / 2];
+        input.readFully(hash);
+        return HashCode.fromBytes(hash);
+    }
+
+    /**
+     * Moves the given file into place, falling back to a plain move where the file system cannot move atomically.
+     */
+    private static void moveIntoPlace(File source, File target) throws IOException {
+        try {
+            try {
+                Files.move(source.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(source.toPath(), target.toPath());
+            }
+        } catch (FileAlreadyExistsException e) {
+            // Stored concurrently, with the same content
+        }
+    }
+
+    /**
+     * The blobs of an entry which has been split, but not stored yet.
+     */
+    class PendingEntry implements Closeable {
+        private final Map<HashCode, File> tempBlobs = new LinkedHashMap<>();
+
+        private PendingEntry() {
+        }
+
+        /**
+         * Temporary blobs are written next to the manifests rather than to the blobs directory, where cleanup would delete them as partially written blobs.
+         * They are still on the same file system, so they can be moved into place.
+         */
+        private HashCode writeBlob(InputStream content) throws IOException {
+            File tempFile = File.createTempFile("blob-", BuildCacheTempFileStore.PARTIAL_FILE_SUFFIX, baseDir);
+            boolean keep = false;
+            try {
+                PrimitiveHasher hasher = BLOB_HASH_FUNCTION.newPrimitiveHasher();
+                try (OutputStream output = Files.newOutputStream(tempFile.toPath())) {
+                    byte[] buffer = new byte[65536];
+                    int count;
+                    while ((count = content.read(buffer)) >= 0) {
+                        hasher.putBytes(buffer, 0, count);
+                        output.write(buffer, 0, count);
+                    }
+                }
+                HashCode hash = hasher.hash();
+                if (!tempBlobs.containsKey(hash)) {
+                    tempBlobs.put(hash, tempFile);
+                    keep = true;
+                }
+                return hash;
+            } finally {
+                if (!keep) {
+                    Files.deleteIfExists(tempFile.toPath());
+                }
+            }
+        }
+
+        /**
+         * Moves the blobs of the entry into place, unless a blob with the same content exists already.
+         */
+        void commit() throws IOException {
+            for (Map.Entry<HashCode, File> tempBlob : tempBlobs.entrySet()) {
+                File blob = blobFile(tempBlob.getKey());
+                if (!blob.isFile()) {
+                    Files.createDirectories(blob.getParentFile().toPath());
+                    moveIntoPlace(tempBlob.getValue(), blob);
+                }
+            }
+        }
+
+        /**
+         * Deletes the temporary blobs which have not been moved into place.
+         */
+        @Override
+        public void close() throws IOException {
+            for (File tempFile : tempBlobs.values()) {
+                Files.deleteIfExists(tempFile.toPath());
+            }
+            tempBlobs.clear();
+        }
+    }
+
+    /**
+     * The assembled archive is read back right away, so compressing it would only cost time.
+     */
+    private static class UncompressedGZIPOutputStream extends GZIPOutputStream {
+        UncompressedGZIPOutputStream(OutputStream output) throws IOException {
+            super(output, 65536);
+            def.setLevel(Deflater.NO_COMPRESSION);
+        }
+    }
+}
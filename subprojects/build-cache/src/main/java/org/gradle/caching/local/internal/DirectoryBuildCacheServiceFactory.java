@@ -19,9 +19,12 @@
 import org.gradle.api.UncheckedIOException;
 import org.gradle.cache.CacheBuilder;
 import org.gradle.cache.CacheRepository;
+import org.gradle.cache.CleanupAction;
 import org.gradle.cache.PersistentCache;
 import org.gradle.cache.internal.CacheScopeMapping;
 import org.gradle.cache.internal.CleanupActionFactory;
+import org.gradle.cache.internal.CompositeCleanupAction;
+import org.gradle.cache.internal.FilesFinder;
 import org.gradle.cache.internal.LeastRecentlyUsedCacheCleanup;
 import org.gradle.cache.internal.SingleDepthFilesFinder;
 import org.gradle.cache.internal.VersionStrategy;
@@ -43,6 +46,14 @@
 public class DirectoryBuildCacheServiceFactory implements BuildCacheServiceFactory<DirectoryBuildCache> {
     public static final String FAILED_READ_SUFFIX = ".failed";
 
+    /**
+     * The layout of the local build cache: {@value #DIRECTORY_LAYOUT} (the default) stores each entry as a single file,
+     * {@value #CONTENT_ADDRESSED_LAYOUT} stores the files of the entries deduplicated by their content.
+     */
+    public static final String LAYOUT_PROPERTY = "org.gradle.internal.caching.local.layout";
+    public static final String DIRECTORY_LAYOUT = "directory";
+    public static final String CONTENT_ADDRESSED_LAYOUT = "content-addressed";
+
     private static final String BUILD_CACHE_VERSION = "1";
     private static final String BUILD_CACHE_KEY = "build-cache-" + BUILD_CACHE_VERSION;
     private static final String DIRECTORY_BUILD_CACHE_TYPE = "directory";
@@ -82,18 +93,62 @@ public BuildCacheService createBuildCacheService(DirectoryBuildCache configurati
             config("location", target.getAbsolutePath()).
             config("removeUnusedEntriesAfter", String.valueOf(removeUnusedEntriesAfterDays) + " days");
 
+        String layout = System.getProperty(LAYOUT_PROPERTY, DIRECTORY_LAYOUT);
+        switch (layout) {
+            case DIRECTORY_LAYOUT:
+                return createDirectoryService(target, removeUnusedEntriesAfterDays);
+            case CONTENT_ADDRESSED_LAYOUT:
+                describer.config("layout", layout);
+                return createContentAddressedService(target, removeUnusedEntriesAfterDays);
+            default:
+                throw new IllegalArgumentException(String.format("Unknown local build cache layout '%s'", layout));
+        }
+    }
+
+    private BuildCacheService createDirectoryService(File target, int removeUnusedEntriesAfterDays) {
         PathKeyFileStore fileStore = fileStoreFactory.createFileStore(target);
-        PersistentCache persistentCache = cacheRepository
+        PersistentCache persistentCache = openCache(target, new LeastRecentlyUsedCacheCleanup(new SingleDepthFilesFinder(FILE_TREE_DEPTH_TO_TRACK_AND_CLEANUP), fileAccessTimeJournal, removeUnusedEntriesAfterDays));
+        BuildCacheTempFileStore tempFileStore = new DefaultBuildCacheTempFileStore(target);
+        FileAccessTracker fileAccessTracker = new SingleDepthFileAccessTracker(fileAccessTimeJournal, target, FILE_TREE_DEPTH_TO_TRACK_AND_CLEANUP);
+
+        return new DirectoryBuildCacheService(fileStore, persistentCache, tempFileStore, fileAccessTracker, FAILED_READ_SUFFIX);
+    }
+
+    /**
+     * The content addressed layout lives in a subdirectory of the cache directory, so entries are never read with the wrong layout.
+     * Entries stored with the directory layout are cleaned up as usual, until the layout is switched back.
+     */
+    private BuildCacheService createContentAddressedService(File target, int removeUnusedEntriesAfterDays) {
+        File baseDir = new File(target, CONTENT_ADDRESSED_LAYOUT);
+        checkDirectory(baseDir);
+        File blobsDir = new File(baseDir, ContentAddressedEntryStore.BLOBS_DIR);
+
+        SingleDepthFilesFinder entriesFinder = new SingleDepthFilesFinder(FILE_TREE_DEPTH_TO_TRACK_AND_CLEANUP);
+        FilesFinder directoryLayoutEntries = (dir, filter) -> entriesFinder.find(dir, file -> !file.equals(baseDir) && filter.accept(file));
+        FilesFinder manifests = (dir, filter) -> entriesFinder.find(dir, file -> !file.equals(blobsDir) && filter.accept(file));
+        CleanupAction cleanup = CompositeCleanupAction.builder()
+            .add(new LeastRecentlyUsedCacheCleanup(directoryLayoutEntries, fileAccessTimeJournal, removeUnusedEntriesAfterDays))
+            .add(baseDir,
+                new LeastRecentlyUsedCacheCleanup(manifests, fileAccessTimeJournal, removeUnusedEntriesAfterDays),
+                new UnreferencedBlobsCleanup())
+            .build();
+
+        PathKeyFileStore manifestStore = fileStoreFactory.createFileStore(baseDir);
+        PersistentCache persistentCache = openCache(target, cleanup);
+        BuildCacheTempFileStore tempFileStore = new DefaultBuildCacheTempFileStore(baseDir);
+        FileAccessTracker fileAccessTracker = new SingleDepthFileAccessTracker(fileAccessTimeJournal, baseDir, FILE_TREE_DEPTH_TO_TRACK_AND_CLEANUP);
+
+        return new ContentAddressedBuildCacheService(manifestStore, baseDir, persistentCache, tempFileStore, fileAccessTracker, FAILED_READ_SUFFIX);
+    }
+
+    private PersistentCache openCache(File target, CleanupAction cleanup) {
+        return cacheRepository
             .cache(target)
-            .withCleanup(cleanupActionFactory.create(new LeastRecentlyUsedCacheCleanup(new SingleDepthFilesFinder(FILE_TREE_DEPTH_TO_TRACK_AND_CLEANUP), fileAccessTimeJournal, removeUnusedEntriesAfterDays)))
+            .withCleanup(cleanupActionFactory.create(cleanup))
             .withDisplayName("Build cache")
             .withLockOptions(mode(OnDemand))
             .withCrossVersionCache(CacheBuilder.LockTarget.DefaultTarget)
             .open();
-        BuildCacheTempFileStore tempFileStore = new DefaultBuildCacheTempFileStore(target);
-        FileAccessTracker fileAccessTracker = new SingleDepthFileAccessTracker(fileAccessTimeJournal, target, FILE_TREE_DEPTH_TO_TRACK_AND_CLEANUP);
-
-        return new DirectoryBuildCacheService(fileStore, persistentCache, tempFileStore, fileAccessTracker, FAILED_READ_SUFFIX);
     }
 
     private static void checkDirectory(File directory) {
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.local.internal;
+
+import org.gradle.cache.CleanableStore;
+import org.gradle.cache.CleanupAction;
+import org.gradle.cache.CleanupProgressMonitor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Deletes the blobs of a {@link ContentAddressedEntryStore} which are not referenced by any manifest any more.
+ *
+ * Has to run after the manifests of unused entries have been removed.
+ */
+class UnreferencedBlobsCleanup implements CleanupAction {
+    private static final Logger LOGGER = LoggerFactory.getLogger(UnreferencedBlobsCleanup.class);
+
+    @Override
+    public void clean(CleanableStore cleanableStore, CleanupProgressMonitor progressMonitor) {
+        ContentAddressedEntryStore entryStore = new ContentAddressedEntryStore(cleanableStore.getBaseDir());
+        File[] manifests = cleanableStore.getBaseDir().listFiles(ContentAddressedEntryStore::isManifest);
+        if (manifests == null) {
+            return;
+        }
+        Set<String> referencedBlobs = new HashSet<>();
+        for (File manifest : manifests) {
+            try {
+                entryStore.collectReferencedBlobs(manifest, referencedBlobs);
+            } catch (IOException e) {
+                // A manifest which cannot be read cannot be loaded either, so its blobs don't need to be kept
+                LOGGER.debug("Could not read build cache manifest {}", manifest, e);
+            }
+        }
+
+        int blobsDeleted = 0;
+        File[] blobDirs = entryStore.getBlobsDir().listFiles();
+        if (blobDirs == null) {
+            return;
+        }
+        for (File blobDir : blobDirs) {
+            File[] blobs = blobDir.listFiles();
+            if (blobs == null) {
+                // Partially written blob left behind by a process which has been killed
+                if (blobDir.delete()) {
+                    progressMonitor.incrementDeleted();
+                }
+                continue;
+            }
+            for (File blob : blobs) {
+                if (referencedBlobs.contains(blob.getName())) {
+                    progressMonitor.incrementSkipped();
+                } else if (blob.delete()) {
+                    progressMonitor.incrementDeleted();
+                    blobsDeleted++;
+                }
+            }
+            String[] remaining = blobDir.list();
+            if (remaining != null && remaining.length == 0) {
+                //noinspection ResultOfMethodCallIgnored
+                blobDir.delete();
+            }
+        }
+        LOGGER.debug("{} cleanup deleted {} unreferenced blobs.", cleanableStore.getDisplayName(), blobsDeleted);
+    }
+}
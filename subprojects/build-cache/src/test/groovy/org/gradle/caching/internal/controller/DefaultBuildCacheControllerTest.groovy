@@ -147,6 +147,37 @@ class DefaultBuildCacheControllerTest extends Specification {
         0 * local.store(key, _)
     }
 
+    def "stores entry packed #description to remote when there is no local"() {
+        given:
+        local = null
+        def content = new byte[size]
+        new Random(1234).nextBytes(content)
+        def command = Stub(BuildCacheStoreCommand) {
+            getKey() >> key
+            store(_ as OutputStream) >> { OutputStream output ->
+                output.write(content)
+                output.close()
+                Stub(BuildCacheStoreCommand.Result)
+            }
+        }
+        def stored = new ByteArrayOutputStream()
+
+        when:
+        controller.store(command)
+
+        then:
+        1 * remote.store(key, _) >> { BuildCacheKey key, BuildCacheEntryWriter writer ->
+            assert writer.size == size
+            writer.writeTo(stored)
+        }
+        stored.toByteArray() == content
+
+        where:
+        description        | size
+        "in memory"        | 1024
+        "to temporary file" | 5 * 1024 * 1024
+    }
+
     def "local load does not stores to local"() {
         given:
         1 * local.loadLocally(key, _) >> { BuildCacheKey key, Action<File> action ->
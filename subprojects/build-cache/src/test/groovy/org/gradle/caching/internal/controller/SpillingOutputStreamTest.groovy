@@ -0,0 +1,55 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.internal.controller
+
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.junit.Rule
+import spock.lang.Specification
+
+class SpillingOutputStreamTest extends Specification {
+    @Rule
+    final TestNameTestDirectoryProvider temporaryFolder = new TestNameTestDirectoryProvider(getClass())
+
+    def spillFile = temporaryFolder.file("spill")
+    def output = new SpillingOutputStream(100, spillFile)
+
+    def "keeps data up to the threshold in memory"() {
+        when:
+        output.write([1, 2, 3] as byte[])
+        output.write(new byte[97])
+        output.close()
+
+        then:
+        !spillFile.exists()
+        output.size() == 100
+        output.content.read() == ([1, 2, 3] as byte[]) + new byte[97]
+    }
+
+    def "writes data to file once it grows beyond the threshold"() {
+        when:
+        output.write([1, 2, 3] as byte[])
+        output.write(new byte[97])
+        output.write(4)
+        output.write([5, 6] as byte[])
+        output.close()
+
+        then:
+        spillFile.bytes == ([1, 2, 3] as byte[]) + new byte[97] + ([4, 5, 6] as byte[])
+        output.size() == 103
+        output.content.read() == spillFile.bytes
+    }
+}
@@ -16,6 +16,8 @@
 
 package org.gradle.caching.internal.controller.service
 
+import com.google.common.io.ByteSource
+import org.gradle.api.UncheckedIOException
 import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
 import spock.lang.Specification
 import org.junit.Rule
@@ -81,4 +83,39 @@ class StoreTargetTest extends Specification {
         output.closed
     }
 
+    def "reports size of file"() {
+        expect:
+        target.size == 4
+    }
+
+    def "reports size of content which does not know its size up front"() {
+        given:
+        def content = new ByteSource() {
+            @Override
+            InputStream openStream() throws IOException {
+                new ByteArrayInputStream(new byte[12345])
+            }
+        }
+
+        expect:
+        !content.sizeIfKnown().present
+        new StoreTarget(content).size == 12345
+    }
+
+    def "fails when size of content cannot be determined"() {
+        given:
+        def content = new ByteSource() {
+            @Override
+            InputStream openStream() throws IOException {
+                throw new IOException("bang!")
+            }
+        }
+
+        when:
+        new StoreTarget(content).size
+
+        then:
+        def e = thrown UncheckedIOException
+        e.cause.message == "bang!"
+    }
 }
@@ -0,0 +1,213 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.local.internal
+
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry
+import org.apache.commons.compress.archivers.tar.TarArchiveInputStream
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream
+import org.gradle.api.UncheckedIOException
+import org.gradle.cache.CleanableStore
+import org.gradle.cache.CleanupProgressMonitor
+import org.gradle.cache.PersistentCache
+import org.gradle.caching.BuildCacheKey
+import org.gradle.internal.file.FileAccessTracker
+import org.gradle.internal.resource.local.DefaultPathKeyFileStore
+import org.gradle.test.fixtures.file.CleanupTestDirectory
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.gradle.util.TestUtil
+import org.gradle.util.UsesNativeServices
+import org.junit.Rule
+import spock.lang.Specification
+
+import java.util.zip.GZIPInputStream
+import java.util.zip.GZIPOutputStream
+
+@UsesNativeServices
+@CleanupTestDirectory
+class ContentAddressedBuildCacheServiceTest extends Specification {
+    @Rule TestNameTestDirectoryProvider temporaryFolder = new TestNameTestDirectoryProvider(getClass())
+    def cacheDir = temporaryFolder.createDir("cache")
+    def fileStore = new DefaultPathKeyFileStore(TestUtil.checksumService, cacheDir)
+    def persistentCache = Mock(PersistentCache) {
+        getBaseDir() >> cacheDir
+        withFileLock(_) >> { Runnable r -> r.run() }
+    }
+    def tempFileStore = new DefaultBuildCacheTempFileStore(cacheDir)
+    def fileAccessTracker = Mock(FileAccessTracker)
+    def service = new ContentAddressedBuildCacheService(fileStore, cacheDir, persistentCache, tempFileStore, fileAccessTracker, ".failed")
+    def blobsDir = new File(cacheDir, ContentAddressedEntryStore.BLOBS_DIR)
+    def largeContent = (0..<5000).collect { it as byte } as byte[]
+
+    def "loads entry stored locally"() {
+        def entry = packEntry("entry", [
+            "METADATA": "origin".bytes,
+            "tree-output/": null,
+            "tree-output/large.bin": largeContent,
+            "tree-output/small.txt": "small".bytes
+        ])
+
+        when:
+        service.storeLocally(key("1234abcd"), entry)
+        def loaded = null
+        service.loadLocally(key("1234abcd")) { File file -> loaded = unpack(file) }
+
+        then:
+        loaded.keySet() == ["METADATA", "tree-output/", "tree-output/large.bin", "tree-output/small.txt"] as Set
+        loaded["METADATA"] == "origin".bytes
+        loaded["tree-output/large.bin"] == largeContent
+        loaded["tree-output/small.txt"] == "small".bytes
+        loaded["tree-output/"] == null
+    }
+
+    def "stores files shared between entries only once"() {
+        when:
+        service.storeLocally(key("1234abcd"), packEntry("first", ["METADATA": "first".bytes, "tree-output/large.bin": largeContent]))
+        service.storeLocally(key("5678abcd"), packEntry("second", ["METADATA": "second".bytes, "tree-output/copy.bin": largeContent]))
+
+        then:
+        blobs().size() == 1
+
+        when:
+        def loaded = null
+        service.loadLocally(key("5678abcd")) { File file -> loaded = unpack(file) }
+
+        then:
+        loaded["tree-output/copy.bin"] == largeContent
+    }
+
+    def "writes blobs before acquiring the lock and moves them into place while holding it"() {
+        List<File> tempBlobsWhenLocked = null
+        def lockingCache = Mock(PersistentCache) {
+            withFileLock(_) >> { Runnable r ->
+                tempBlobsWhenLocked = tempBlobs()
+                r.run()
+            }
+        }
+        def service = new ContentAddressedBuildCacheService(fileStore, cacheDir, lockingCache, tempFileStore, fileAccessTracker, ".failed")
+
+        when:
+        service.storeLocally(key("1234abcd"), packEntry("entry", ["tree-output/large.bin": largeContent, "tree-output/copy.bin": largeContent]))
+
+        then:
+        tempBlobsWhenLocked.size() == 1
+        tempBlobs().empty
+        blobs().size() == 1
+    }
+
+    def "does not load entry with missing blob and moves manifest out of the way"() {
+        service.storeLocally(key("1234abcd"), packEntry("entry", ["tree-output/large.bin": largeContent]))
+        blobs()*.delete()
+
+        when:
+        service.loadLocally(key("1234abcd")) { File file -> throw new AssertionError("Should not load") }
+
+        then:
+        thrown(UncheckedIOException)
+        !new File(cacheDir, "1234abcd").exists()
+        new File(cacheDir, "1234abcd.failed").exists()
+    }
+
+    def "marks manifest accessed when storing and loading locally"() {
+        File manifest = null
+
+        when:
+        service.storeLocally(key("1234abcd"), packEntry("entry", ["METADATA": "origin".bytes]))
+
+        then:
+        1 * fileAccessTracker.markAccessed(_) >> { File file -> manifest = file }
+        manifest == new File(cacheDir, "1234abcd")
+
+        when:
+        service.loadLocally(key("1234abcd")) {}
+
+        then:
+        1 * fileAccessTracker.markAccessed(manifest)
+    }
+
+    def "cleanup deletes blobs not referenced by any manifest"() {
+        def otherContent = largeContent.reverse() as byte[]
+        service.storeLocally(key("1234abcd"), packEntry("first", ["tree-output/large.bin": largeContent]))
+        service.storeLocally(key("5678abcd"), packEntry("second", ["tree-output/large.bin": largeContent, "tree-output/other.bin": otherContent]))
+        assert blobs().size() == 2
+
+        when:
+        new File(cacheDir, "5678abcd").delete()
+        new UnreferencedBlobsCleanup().clean(cleanableStore(), Stub(CleanupProgressMonitor))
+
+        then:
+        blobs().size() == 1
+
+        when:
+        def loaded = null
+        service.loadLocally(key("1234abcd")) { File file -> loaded = unpack(file) }
+
+        then:
+        loaded["tree-output/large.bin"] == largeContent
+    }
+
+    private BuildCacheKey key(String hashCode) {
+        Stub(BuildCacheKey) {
+            getHashCode() >> hashCode
+        }
+    }
+
+    private List<File> blobs() {
+        blobsDir.listFiles().collectMany { it.listFiles() as List }
+    }
+
+    private List<File> tempBlobs() {
+        cacheDir.listFiles().findAll { it.name.startsWith("blob-") } as List
+    }
+
+    private CleanableStore cleanableStore() {
+        Stub(CleanableStore) {
+            getBaseDir() >> cacheDir
+            getReservedCacheFiles() >> []
+        }
+    }
+
+    private File packEntry(String name, Map<String, byte[]> entries) {
+        def file = temporaryFolder.file("${name}.tar.gz")
+        file.withOutputStream { output ->
+            def tarOutput = new TarArchiveOutputStream(new GZIPOutputStream(output), "UTF-8")
+            entries.each { path, content ->
+                def entry = new TarArchiveEntry(path, true)
+                entry.size = content == null ? 0 : content.length
+                entry.mode = content == null ? 040755 : 0100644
+                tarOutput.putArchiveEntry(entry)
+                if (content != null) {
+                    tarOutput.write(content)
+                }
+                tarOutput.closeArchiveEntry()
+            }
+            tarOutput.close()
+        }
+        file
+    }
+
+    private static Map<String, byte[]> unpack(File file) {
+        def entries = [:]
+        file.withInputStream { input ->
+            def tarInput = new TarArchiveInputStream(new GZIPInputStream(input), "UTF-8")
+            TarArchiveEntry entry
+            while ((entry = tarInput.nextTarEntry) != null) {
+                entries[entry.name] = entry.directory ? null : tarInput.bytes
+            }
+        }
+        entries
+    }
+}
@@ -45,6 +45,29 @@ class MultiRequestWorkerProcessIntegrationTest extends AbstractWorkerProcessInte
         worker?.stop()
     }
 
+    def "matches results to requests run from several threads at once"() {
+        when:
+        def builder = workerFactory.multiRequestWorker(StatefulTestWorker.class)
+        def worker = builder.build()
+        worker.start()
+        def results = [:].asSynchronized()
+        def threads = (1..4).collect { thread ->
+            Thread.start {
+                results[thread] = (1..25).collect { worker.run("thread${thread}") }
+            }
+        }
+        threads*.join()
+        worker.stop()
+
+        then:
+        results.size() == 4
+        results.every { thread, values -> values.every { it.startsWith("thread${thread}:") } }
+        results.values().flatten().collect { it.split(":")[1] as int }.sort() == (1..100).toList()
+
+        cleanup:
+        worker?.stop()
+    }
+
     def "receives memory status from worker process"() {
         when:
         def builder = workerFactory.multiRequestWorker(StatefulTestWorker.class)
@@ -33,6 +33,11 @@
 import java.io.File;
 
 public class CachingFileHasher implements FileHasher {
+    /**
+     * Serves reads of the file hash caches from memory-mapped regions of the cache files when set to {@code true}.
+     */
+    public static final String MEMORY_MAPPED_STORAGE_PROPERTY = "org.gradle.internal.file-hash-cache.memory-mapped";
+
     private final PersistentIndexedCache<String, FileInfo> cache;
     private final FileHasher delegate;
     private final FileSystem fileSystem;
@@ -53,7 +58,8 @@ public CachingFileHasher(
         this.delegate = delegate;
         this.fileSystem = fileSystem;
         this.cache = store.createCache(
-            PersistentIndexedCacheParameters.of(cacheName, new InterningStringSerializer(stringInterner), new FileInfoSerializer()),
+            PersistentIndexedCacheParameters.of(cacheName, new InterningStringSerializer(stringInterner), new FileInfoSerializer())
+                .withStorage(Boolean.getBoolean(MEMORY_MAPPED_STORAGE_PROPERTY) ? PersistentIndexedCacheParameters.Storage.MEMORY_MAPPED_FILE : PersistentIndexedCacheParameters.Storage.FILE),
             inMemorySize,
             true);
         this.stringInterner = stringInterner;
@@ -23,29 +23,54 @@
 import org.gradle.cache.PersistentIndexedCache;
 import org.gradle.cache.PersistentIndexedCacheParameters;
 import org.gradle.cache.internal.InMemoryCacheDecoratorFactory;
+import org.gradle.internal.hash.HashFunction;
+import org.gradle.internal.hash.Hashing;
 
 import javax.annotation.Nullable;
 import java.io.Closeable;
 import java.io.File;
+import java.util.Collections;
 
 import static org.gradle.cache.internal.filelock.LockOptionsBuilder.mode;
 
 public class CrossBuildFileHashCache implements Closeable {
+    /**
+     * Stores the entries of the caches created here in append-only logs when set to {@code true}, taking precedence over any other storage requested.
+     * The logs live in different files than the default storage, so switching between the two starts from empty caches.
+     */
+    public static final String LOG_STRUCTURED_STORAGE_PROPERTY = "org.gradle.internal.file-hash-cache.log-structured";
+
+    /**
+     * Selects the hash function used to look up the keys of the caches created here, for example {@code MURMUR3-128}. Defaults to MD5.
+     * These hashes never leave this machine, unlike the hashes of file content, which are part of build cache keys and always use MD5.
+     */
+    public static final String KEY_HASH_ALGORITHM_PROPERTY = "org.gradle.internal.file-hash-cache.key-hash.algorithm";
+
+    private static final String KEY_HASH_ALGORITHM = "keyHashAlgorithm";
 
     private final PersistentCache cache;
     private final InMemoryCacheDecoratorFactory inMemoryCacheDecoratorFactory;
+    private final HashFunction keyHashFunction;
 
     public CrossBuildFileHashCache(@Nullable File cacheDir, CacheRepository repository, InMemoryCacheDecoratorFactory inMemoryCacheDecoratorFactory, Kind cacheKind) {
         this.inMemoryCacheDecoratorFactory = inMemoryCacheDecoratorFactory;
+        String keyHashAlgorithm = System.getProperty(KEY_HASH_ALGORITHM_PROPERTY);
+        this.keyHashFunction = keyHashAlgorithm == null ? Hashing.md5() : Hashing.forAlgorithm(keyHashAlgorithm);
         CacheBuilder cacheBuilder = cacheDir != null ? repository.cache(cacheDir) : repository.cache(cacheKind.cacheId);
         cache = cacheBuilder
             .withDisplayName(cacheKind.description)
+            // The index of a cache written using another function cannot be read
+            .withProperties(Collections.singletonMap(KEY_HASH_ALGORITHM, keyHashFunction.getAlgorithm()))
             .withLockOptions(mode(FileLockManager.LockMode.OnDemand)) // Lock on demand
             .open();
     }
 
     public <K, V> PersistentIndexedCache<K, V> createCache(PersistentIndexedCacheParameters<K, V> parameters, int maxEntriesToKeepInMemory, boolean cacheInMemoryForShortLivedProcesses) {
-        return cache.createCache(parameters
+        PersistentIndexedCacheParameters<K, V> storedParameters = Boolean.getBoolean(LOG_STRUCTURED_STORAGE_PROPERTY)
+            ? parameters.withStorage(PersistentIndexedCacheParameters.Storage.LOG_STRUCTURED)
+            : parameters;
+        return cache.createCache(storedParameters
+            .withKeyHashFunction(keyHashFunction)
             .withCacheDecorator(inMemoryCacheDecoratorFactory.decorator(maxEntriesToKeepInMemory, cacheInMemoryForShortLivedProcesses))
         );
     }
@@ -0,0 +1,66 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.changedetection.state;
+
+import org.gradle.internal.snapshot.impl.DirectorySnapshotter;
+
+import javax.annotation.Nullable;
+import java.io.Closeable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+
+/**
+ * Owns the pool of workers used by {@link DirectorySnapshotter} to walk the subdirectories of a directory tree in parallel.
+ * There is no pool unless parallel walking has been enabled.
+ */
+public class DirectoryWalkerPool implements Closeable {
+    /**
+     * Walks the subdirectories of unfiltered directory trees in parallel when set to {@code true}.
+     */
+    public static final String PARALLEL_WALK_PROPERTY = "org.gradle.internal.vfs.parallel-directory-walk";
+
+    private final ForkJoinPool pool;
+
+    public DirectoryWalkerPool() {
+        this(Boolean.getBoolean(PARALLEL_WALK_PROPERTY) ? Runtime.getRuntime().availableProcessors() : 1);
+    }
+
+    public DirectoryWalkerPool(int maxWorkers) {
+        this.pool = maxWorkers > 1 ? createPool(maxWorkers) : null;
+    }
+
+    private static ForkJoinPool createPool(int maxWorkers) {
+        return new ForkJoinPool(maxWorkers, forkJoinPool -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(forkJoinPool);
+            thread.setName("Directory walker Thread " + thread.getPoolIndex());
+            thread.setDaemon(true);
+            return thread;
+        }, null, false);
+    }
+
+    @Nullable
+    public ForkJoinPool getPool() {
+        return pool;
+    }
+
+    @Override
+    public void close() {
+        if (pool != null) {
+            pool.shutdownNow();
+        }
+    }
+}
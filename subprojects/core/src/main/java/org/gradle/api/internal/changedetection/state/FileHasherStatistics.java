@@ -16,6 +16,9 @@
 
 package org.gradle.api.internal.changedetection.state;
 
+import org.gradle.internal.metrics.Counter;
+import org.gradle.internal.metrics.MetricsRegistry;
+
 import java.text.MessageFormat;
 import java.util.concurrent.atomic.AtomicLong;
 
@@ -33,10 +36,19 @@ public interface FileHasherStatistics {
     class Collector {
         private final AtomicLong hashedFileCount = new AtomicLong();
         private final AtomicLong hashedContentLength = new AtomicLong();
+        private final Counter totalHashedFileCount;
+        private final Counter totalHashedContentLength;
+
+        public Collector(MetricsRegistry metricsRegistry) {
+            this.totalHashedFileCount = metricsRegistry.counter("gradle_file_hashing_files", "Number of files hashed.");
+            this.totalHashedContentLength = metricsRegistry.counter("gradle_file_hashing_bytes", "Amount of bytes hashed.");
+        }
 
         public void reportFileHashed(long length) {
             hashedFileCount.incrementAndGet();
             hashedContentLength.addAndGet(length);
+            totalHashedFileCount.increment();
+            totalHashedContentLength.add(length);
         }
 
         public FileHasherStatistics collect() {
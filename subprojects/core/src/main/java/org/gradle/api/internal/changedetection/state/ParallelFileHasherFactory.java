@@ -0,0 +1,62 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.changedetection.state;
+
+import org.gradle.internal.concurrent.ExecutorFactory;
+import org.gradle.internal.concurrent.ManagedExecutor;
+import org.gradle.internal.hash.FileHasher;
+import org.gradle.internal.hash.ParallelFileHasher;
+
+import javax.annotation.Nullable;
+import java.io.Closeable;
+
+/**
+ * Owns the pool of workers used to hash batches of files, shared by all {@link ParallelFileHasher} instances it creates.
+ * There is no pool unless parallel hashing has been enabled, and files are then hashed by the given hasher on the calling thread.
+ */
+public class ParallelFileHasherFactory implements Closeable {
+    /**
+     * Hashes the files of a directory in parallel when set to {@code true}.
+     */
+    public static final String PARALLEL_HASHING_PROPERTY = "org.gradle.internal.vfs.parallel-file-hashing";
+
+    @Nullable
+    private final ManagedExecutor executor;
+    private final int maxWorkers;
+
+    public ParallelFileHasherFactory(ExecutorFactory executorFactory) {
+        this(executorFactory, Boolean.getBoolean(PARALLEL_HASHING_PROPERTY) ? Runtime.getRuntime().availableProcessors() : 1);
+    }
+
+    public ParallelFileHasherFactory(ExecutorFactory executorFactory, int maxWorkers) {
+        this.maxWorkers = maxWorkers;
+        this.executor = maxWorkers > 1 ? executorFactory.create("File hashing", maxWorkers - 1) : null;
+    }
+
+    public FileHasher create(FileHasher delegate) {
+        if (executor == null) {
+            return delegate;
+        }
+        return new ParallelFileHasher(delegate, executor, maxWorkers);
+    }
+
+    @Override
+    public void close() {
+        if (executor != null) {
+            executor.stop();
+        }
+    }
+}
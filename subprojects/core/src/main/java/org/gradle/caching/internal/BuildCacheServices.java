@@ -33,6 +33,7 @@
 import org.gradle.caching.internal.packaging.impl.DefaultTarPackerFileSystemSupport;
 import org.gradle.caching.internal.packaging.impl.FilePermissionAccess;
 import org.gradle.caching.internal.packaging.impl.GZipBuildCacheEntryPacker;
+import org.gradle.caching.internal.packaging.impl.ParallelGZipBuildCacheEntryPacker;
 import org.gradle.caching.internal.packaging.impl.TarBuildCacheEntryPacker;
 import org.gradle.caching.internal.packaging.impl.TarPackerFileSystemSupport;
 import org.gradle.caching.internal.services.BuildCacheControllerFactory;
@@ -40,6 +41,7 @@
 import org.gradle.caching.local.internal.DirectoryBuildCacheFileStoreFactory;
 import org.gradle.caching.local.internal.DirectoryBuildCacheServiceFactory;
 import org.gradle.internal.SystemProperties;
+import org.gradle.internal.concurrent.ExecutorFactory;
 import org.gradle.internal.file.Deleter;
 import org.gradle.internal.file.FileException;
 import org.gradle.internal.hash.ChecksumService;
@@ -68,6 +70,14 @@
  */
 public final class BuildCacheServices extends AbstractPluginServiceRegistry {
 
+    /**
+     * The format used to compress build cache entries: {@value #GZIP_PACKING_FORMAT} (the default) or {@value #PARALLEL_GZIP_PACKING_FORMAT}.
+     * Both formats produce gzip streams, so entries can be loaded regardless of the format they were stored with.
+     */
+    public static final String PACKING_FORMAT_PROPERTY = "org.gradle.internal.caching.packing.format";
+    public static final String GZIP_PACKING_FORMAT = "gzip";
+    public static final String PARALLEL_GZIP_PACKING_FORMAT = "parallel-gzip";
+
     @Override
     public void registerBuildTreeServices(ServiceRegistration registration) {
         registration.addProvider(new Object() {
@@ -118,10 +128,20 @@ BuildCacheEntryPacker createResultPacker(
                 TarPackerFileSystemSupport fileSystemSupport,
                 FileSystem fileSystem,
                 StreamHasher fileHasher,
-                StringInterner stringInterner
+                StringInterner stringInterner,
+                ExecutorFactory executorFactory
             ) {
-                return new GZipBuildCacheEntryPacker(
-                    new TarBuildCacheEntryPacker(fileSystemSupport, new FilePermissionsAccessAdapter(fileSystem), fileHasher, stringInterner));
+                TarBuildCacheEntryPacker tarPacker = new TarBuildCacheEntryPacker(fileSystemSupport, new FilePermissionsAccessAdapter(fileSystem), fileHasher, stringInterner);
+                String format = System.getProperty(PACKING_FORMAT_PROPERTY, GZIP_PACKING_FORMAT);
+                switch (format) {
+                    case GZIP_PACKING_FORMAT:
+                        return new GZipBuildCacheEntryPacker(tarPacker);
+                    case PARALLEL_GZIP_PACKING_FORMAT:
+                        int parallelism = Runtime.getRuntime().availableProcessors();
+                        return new ParallelGZipBuildCacheEntryPacker(tarPacker, executorFactory.create("Build cache entry compression", parallelism), parallelism);
+                    default:
+                        throw new IllegalArgumentException(String.format("Unknown build cache packing format '%s' set by %s.", format, PACKING_FORMAT_PROPERTY));
+                }
             }
 
             OriginMetadataFactory createOriginMetadataFactory(
@@ -0,0 +1,110 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.execution.plan;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+import javax.annotation.Nullable;
+import java.util.List;
+import java.util.Map;
+import java.util.function.ToLongFunction;
+
+/**
+ * The remaining execution time of the nodes in an execution plan, and the longest chain of nodes which have to run one after another.
+ *
+ * <p>The remaining time of a node is its own execution time plus the longest remaining time of the nodes which have to run after it.
+ * Preferring the ready nodes with the longest remaining time starts the work on the critical path as early as possible.</p>
+ */
+public class CriticalPath {
+    private final Map<Node, Long> remainingTimes;
+    private final Map<Node, Node> nextNodes;
+    private final List<Node> nodes;
+
+    private CriticalPath(Map<Node, Long> remainingTimes, Map<Node, Node> nextNodes, List<Node> nodes) {
+        this.remainingTimes = remainingTimes;
+        this.nextNodes = nextNodes;
+        this.nodes = nodes;
+    }
+
+    /**
+     * Calculates the critical path of the given nodes, which have to be in execution order: every node comes after the nodes it has to run after.
+     */
+    public static CriticalPath calculate(Iterable<Node> nodesInExecutionOrder, ToLongFunction<? super Node> executionTime) {
+        List<Node> nodes = Lists.newArrayList(nodesInExecutionOrder);
+        Map<Node, Long> remainingTimes = Maps.newIdentityHashMap();
+        Map<Node, Long> remainingTimesAfter = Maps.newIdentityHashMap();
+        Map<Node, Node> nextNodes = Maps.newIdentityHashMap();
+        for (Node node : nodes) {
+            remainingTimesAfter.put(node, 0L);
+        }
+
+        Node first = null;
+        for (Node node : Lists.reverse(nodes)) {
+            long remainingTime = Math.max(0, executionTime.applyAsLong(node)) + remainingTimesAfter.get(node);
+            remainingTimes.put(node, remainingTime);
+            if (first == null || remainingTime >= remainingTimes.get(first)) {
+                first = node;
+            }
+            // All nodes this node has to run after come earlier in the plan, so they have not been visited yet
+            for (Node successor : node.getAllSuccessors()) {
+                Long remainingTimeAfterSuccessor = remainingTimesAfter.get(successor);
+                if (remainingTimeAfterSuccessor != null && !remainingTimes.containsKey(successor) && remainingTime > remainingTimeAfterSuccessor) {
+                    remainingTimesAfter.put(successor, remainingTime);
+                    nextNodes.put(successor, node);
+                }
+            }
+        }
+
+        ImmutableList.Builder<Node> path = ImmutableList.builder();
+        for (Node node = first; node != null; node = nextNodes.get(node)) {
+            path.add(node);
+        }
+        return new CriticalPath(remainingTimes, nextNodes, path.build());
+    }
+
+    /**
+     * Returns the execution time of the given node plus the longest remaining time of the nodes which have to run after it, in milliseconds.
+     */
+    public long getRemainingTime(Node node) {
+        Long remainingTime = remainingTimes.get(node);
+        return remainingTime == null ? 0 : remainingTime;
+    }
+
+    /**
+     * Returns the node on the longest chain of nodes after the given node, if any.
+     */
+    @Nullable
+    public Node getNext(Node node) {
+        return nextNodes.get(node);
+    }
+
+    /**
+     * Returns the nodes on the critical path, in execution order.
+     */
+    public List<Node> getNodes() {
+        return nodes;
+    }
+
+    /**
+     * Returns the time it takes to execute the nodes on the critical path, in milliseconds.
+     */
+    public long getTime() {
+        return nodes.isEmpty() ? 0 : getRemainingTime(nodes.get(0));
+    }
+}
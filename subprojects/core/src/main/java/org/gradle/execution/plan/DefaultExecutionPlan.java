@@ -38,6 +38,8 @@
 import org.gradle.internal.logging.text.StyledTextOutput;
 import org.gradle.internal.resources.ResourceLock;
 import org.gradle.internal.resources.ResourceLockState;
+import org.gradle.internal.time.Time;
+import org.gradle.internal.time.Timer;
 import org.gradle.internal.work.WorkerLeaseRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -50,13 +52,18 @@
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.Deque;
 import java.util.Iterator;
 import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NavigableSet;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
 
 /**
  * A reusable implementation of ExecutionPlan. The {@link #addEntryTasks(java.util.Collection)} and {@link #clear()} methods are NOT threadsafe, and callers must synchronize access to these methods.
@@ -65,31 +72,56 @@
 public class DefaultExecutionPlan implements ExecutionPlan {
     private static final Logger LOGGER = LoggerFactory.getLogger(DefaultExecutionPlan.class);
 
+    /**
+     * How the plan chooses between nodes which are ready to execute: {@value #PLAN_ORDER_SCHEDULING} (the default) picks them in plan order,
+     * {@value #CRITICAL_PATH_SCHEDULING} picks the nodes with the longest remaining {@link CriticalPath} first, using the execution times of previous builds.
+     */
+    public static final String SCHEDULING_PROPERTY = "org.gradle.internal.execution.scheduling";
+    public static final String PLAN_ORDER_SCHEDULING = "plan-order";
+    public static final String CRITICAL_PATH_SCHEDULING = "critical-path";
+
     private final Set<Node> entryNodes = new LinkedHashSet<>();
     private final NodeMapping nodeMapping = new NodeMapping();
-    private final List<Node> executionQueue = Lists.newLinkedList();
+    private final Set<Node> executionQueue = Sets.newLinkedHashSet();
+    private final Map<Node, Integer> selectionOrder = Maps.newIdentityHashMap();
+    // Nodes from the execution queue whose dependencies are all complete, in the order they should be selected in
+    private final NavigableSet<Node> readyNodes = new TreeSet<>(Comparator.comparingInt(selectionOrder::get));
     private final Set<ResourceLock> projectLocks = Sets.newHashSet();
     private final FailureCollector failureCollector = new FailureCollector();
     private final TaskNodeFactory taskNodeFactory;
     private final TaskDependencyResolver dependencyResolver;
+    @Nullable
+    private final NodeExecutionTimeHistory executionTimeHistory;
     private Spec<? super Task> filter = Specs.satisfyAll();
 
     private boolean continueOnFailure;
 
     private final Set<Node> runningNodes = Sets.newIdentityHashSet();
+    private final MutationPathIndex runningMutations = new MutationPathIndex();
     private final Set<Node> filteredNodes = Sets.newIdentityHashSet();
     private final Set<Node> producedButNotYetConsumed = Sets.newIdentityHashSet();
     private final Map<Pair<Node, Node>, Boolean> reachableCache = Maps.newHashMap();
     private final List<Node> dependenciesWhichRequireMonitoring = Lists.newArrayList();
-    private boolean maybeNodesReady;
+    private final Map<Node, Timer> executionTimers = Maps.newIdentityHashMap();
+    private final Map<Node, Long> executionTimes = Maps.newIdentityHashMap();
+    @Nullable
+    private CriticalPath predictedCriticalPath;
     private final GradleInternal gradle;
 
     private boolean buildCancelled;
 
     public DefaultExecutionPlan(GradleInternal gradle, TaskNodeFactory taskNodeFactory, TaskDependencyResolver dependencyResolver) {
+        this(gradle, taskNodeFactory, dependencyResolver, null);
+    }
+
+    /**
+     * Creates a plan which schedules by critical path when given an execution time history.
+     */
+    public DefaultExecutionPlan(GradleInternal gradle, TaskNodeFactory taskNodeFactory, TaskDependencyResolver dependencyResolver, @Nullable NodeExecutionTimeHistory executionTimeHistory) {
         this.gradle = gradle;
         this.taskNodeFactory = taskNodeFactory;
         this.dependencyResolver = dependencyResolver;
+        this.executionTimeHistory = executionTimeHistory;
     }
 
     @Override
@@ -331,10 +363,24 @@ public NodeInVisitingSegment apply(Node node) {
             }
         }
         executionQueue.clear();
+        selectionOrder.clear();
+        readyNodes.clear();
         dependencyResolver.clear();
         Iterables.addAll(executionQueue, nodeMapping);
+        List<Node> nodesInSelectionOrder = new ArrayList<>(executionQueue);
+        if (executionTimeHistory != null) {
+            CriticalPath criticalPath = CriticalPath.calculate(executionQueue, executionTimeHistory::getExecutionTime);
+            // The sort is stable, so nodes with the same remaining time stay in plan order
+            nodesInSelectionOrder.sort(Comparator.<Node>comparingLong(criticalPath::getRemainingTime).reversed());
+            predictedCriticalPath = criticalPath;
+            LOGGER.debug("Predicted critical path takes {} ms: {}", criticalPath.getTime(), criticalPath.getNodes());
+        }
+        for (Node node : nodesInSelectionOrder) {
+            selectionOrder.put(node, selectionOrder.size());
+        }
         for (Node node : executionQueue) {
-            maybeNodesReady |= node.updateAllDependenciesComplete() && node.isReady();
+            node.updateAllDependenciesComplete();
+            maybeNodeReady(node);
         }
         this.dependenciesWhichRequireMonitoring.addAll(dependenciesWhichRequireMonitoring);
     }
@@ -474,12 +520,18 @@ public void clear() {
         entryNodes.clear();
         nodeMapping.clear();
         executionQueue.clear();
+        selectionOrder.clear();
+        readyNodes.clear();
         projectLocks.clear();
         failureCollector.clearFailures();
         producedButNotYetConsumed.clear();
         reachableCache.clear();
         dependenciesWhichRequireMonitoring.clear();
         runningNodes.clear();
+        runningMutations.clear();
+        executionTimers.clear();
+        executionTimes.clear();
+        predictedCriticalPath = null;
     }
 
     @Override
@@ -502,6 +554,30 @@ public List<Node> getScheduledNodesPlusDependencies() {
         return builder.addAll(nodes).build();
     }
 
+    /**
+     * Returns the critical path predicted from the execution times of previous builds, or null when not scheduling by critical path.
+     */
+    @Nullable
+    public CriticalPath getPredictedCriticalPath() {
+        return predictedCriticalPath;
+    }
+
+    /**
+     * Calculates the critical path from the times the nodes took to execute in this build.
+     */
+    public CriticalPath calculateActualCriticalPath() {
+        return CriticalPath.calculate(nodeMapping, node -> executionTimes.getOrDefault(node, 0L));
+    }
+
+    /**
+     * Records the times the nodes took to execute in this build, so the next build can schedule by them.
+     */
+    public void recordExecutionTimes() {
+        if (executionTimeHistory != null) {
+            executionTimes.forEach(executionTimeHistory::recordExecutionTime);
+        }
+    }
+
     @Override
     public Set<Task> getFilteredTasks() {
         ImmutableSet.Builder<Task> builder = ImmutableSet.builder();
@@ -537,36 +613,43 @@ public Node selectNext(WorkerLeaseRegistry.WorkerLease workerLease, ResourceLock
                 iterator.remove();
             }
         }
-        if (!maybeNodesReady) {
-            return null;
-        }
-        Iterator<Node> iterator = executionQueue.iterator();
-        boolean foundReadyNode = false;
+        Iterator<Node> iterator = readyNodes.iterator();
         while (iterator.hasNext()) {
             Node node = iterator.next();
-            if (node.isReady() && node.allDependenciesComplete()) {
-                foundReadyNode = true;
-                MutationInfo mutations = getResolvedMutationInfo(node);
+            if (!node.isReady() || !node.allDependenciesComplete()) {
+                // The node has been skipped, or one of its dependencies has to run again.
+                // It is added again by maybeNodeReady() when it becomes ready.
+                iterator.remove();
+                continue;
+            }
 
-                if (!tryAcquireLocksForNode(node, workerLease, mutations)) {
-                    resourceLockState.releaseLocks();
-                    continue;
-                }
+            MutationInfo mutations = getResolvedMutationInfo(node);
 
-                if (node.allDependenciesSuccessful()) {
-                    node.startExecution(this::recordNodeExecutionStarted);
-                } else {
-                    node.skipExecution(this::recordNodeCompleted);
-                }
-                iterator.remove();
-                return node;
+            if (!tryAcquireLocksForNode(node, workerLease, mutations)) {
+                resourceLockState.releaseLocks();
+                continue;
             }
+
+            // Remove the node before changing its state, since completing it can make other nodes ready
+            iterator.remove();
+            executionQueue.remove(node);
+            if (node.allDependenciesSuccessful()) {
+                node.startExecution(this::recordNodeExecutionStarted);
+            } else {
+                node.skipExecution(this::recordNodeCompleted);
+            }
+            return node;
         }
-        LOGGER.debug("No node could be selected, nodes ready: {}", foundReadyNode);
-        maybeNodesReady = foundReadyNode;
+        LOGGER.debug("No node could be selected, nodes ready: {}", !readyNodes.isEmpty());
         return null;
     }
 
+    private void maybeNodeReady(Node node) {
+        if (node.allDependenciesComplete() && node.isReady() && executionQueue.contains(node)) {
+            readyNodes.add(node);
+        }
+    }
+
     private boolean tryAcquireLocksForNode(Node node, WorkerLeaseRegistry.WorkerLease workerLease, MutationInfo mutations) {
         if (!tryLockProjectFor(node)) {
             LOGGER.debug("Cannot acquire project lock for node {}", node);
@@ -587,7 +670,9 @@ private boolean tryAcquireLocksForNode(Node node, WorkerLeaseRegistry.WorkerLeas
 
     private void updateAllDependenciesCompleteForPredecessors(Node node) {
         for (Node predecessor : node.getAllPredecessors()) {
-            maybeNodesReady |= predecessor.updateAllDependenciesComplete() && predecessor.isReady();
+            if (predecessor.updateAllDependenciesComplete()) {
+                maybeNodeReady(predecessor);
+            }
         }
     }
 
@@ -638,7 +723,7 @@ private boolean canRunWithCurrentlyExecutedNodes(Node node, MutationInfo mutatio
         if (!runningNodes.isEmpty()) {
             Set<String> candidateNodeOutputs = mutations.outputPaths;
             Set<String> candidateMutations = !candidateNodeOutputs.isEmpty() ? candidateNodeOutputs : candidateNodeDestroyables;
-            if (hasNodeWithOverlappingMutations(candidateMutations)) {
+            if (runningMutations.overlapsAny(candidateMutations)) {
                 return false;
             }
         }
@@ -646,19 +731,6 @@ private boolean canRunWithCurrentlyExecutedNodes(Node node, MutationInfo mutatio
         return !doesDestroyNotYetConsumedOutputOfAnotherNode(node, candidateNodeDestroyables);
     }
 
-    private boolean hasNodeWithOverlappingMutations(Set<String> candidateMutationPaths) {
-        if (!candidateMutationPaths.isEmpty()) {
-            for (Node runningNode : runningNodes) {
-                MutationInfo runningMutations = runningNode.getMutationInfo();
-                Iterable<String> runningMutationPaths = Iterables.concat(runningMutations.outputPaths, runningMutations.destroyablePaths);
-                if (hasOverlap(candidateMutationPaths, runningMutationPaths)) {
-                    return true;
-                }
-            }
-        }
-        return false;
-    }
-
     private boolean doesDestroyNotYetConsumedOutputOfAnotherNode(Node destroyer, Set<String> destroyablePaths) {
         if (!destroyablePaths.isEmpty()) {
             for (Node producingNode : producedButNotYetConsumed) {
@@ -746,6 +818,10 @@ private static String getOverLappedPath(String firstPath, String secondPath) {
 
     private void recordNodeExecutionStarted(Node node) {
         runningNodes.add(node);
+        runningMutations.add(node.getMutationInfo());
+        if (executionTimeHistory != null) {
+            executionTimers.put(node, Time.startTimer());
+        }
     }
 
     private void recordNodeCompleted(Node node) {
@@ -770,7 +846,6 @@ public void finishedExecuting(Node node) {
         try {
             if (!node.isComplete()) {
                 enforceFinalizers(node);
-                maybeNodesReady = true;
                 if (node.isFailed()) {
                     LOGGER.debug("Node {} failed", node);
                     handleFailure(node);
@@ -778,7 +853,13 @@ public void finishedExecuting(Node node) {
                     LOGGER.debug("Node {} finished executing", node);
                 }
 
-                runningNodes.remove(node);
+                if (runningNodes.remove(node)) {
+                    runningMutations.remove(node.getMutationInfo());
+                }
+                Timer executionTimer = executionTimers.remove(node);
+                if (executionTimer != null) {
+                    executionTimes.put(node, executionTimer.getElapsedMillis());
+                }
                 node.finishExecution(this::recordNodeCompleted);
             } else {
                 LOGGER.debug("Already completed node {} reported as finished executing", node);
@@ -789,7 +870,7 @@ public void finishedExecuting(Node node) {
         }
     }
 
-    private static void enforceFinalizers(Node node) {
+    private void enforceFinalizers(Node node) {
         for (Node finalizerNode : node.getFinalizers()) {
             if (finalizerNode.isRequired() || finalizerNode.isMustNotRun()) {
                 Set<Node> enforcedNodes = Sets.newHashSet();
@@ -798,7 +879,7 @@ private static void enforceFinalizers(Node node) {
         }
     }
 
-    private static void enforceWithDependencies(Node nodeInfo, Set<Node> enforcedNodes) {
+    private void enforceWithDependencies(Node nodeInfo, Set<Node> enforcedNodes) {
         Deque<Node> candidateNodes = new ArrayDeque<>();
         candidateNodes.add(nodeInfo);
 
@@ -811,9 +892,11 @@ private static void enforceWithDependencies(Node nodeInfo, Set<Node> enforcedNod
 
                 if (node.isMustNotRun() || node.isRequired()) {
                     node.enforceRun();
+                    maybeNodeReady(node);
                     // Completed changed from true to false - inform all nodes depending on this one.
                     for (Node predecessor : node.getAllPredecessors()) {
                         predecessor.forceAllDependenciesCompleteUpdate();
+                        maybeNodeReady(predecessor);
                     }
                 }
             }
@@ -910,6 +993,56 @@ public int size() {
         return nodeMapping.getNumberOfPublicNodes();
     }
 
+    /**
+     * The output and destroyable paths of the running nodes. The paths are kept sorted, so a path can be checked for overlaps
+     * by looking up its ancestors and the range of its descendants, instead of comparing it against the paths of every running node.
+     */
+    private static class MutationPathIndex {
+        private final NavigableMap<String, Integer> pathCounts = new TreeMap<>();
+
+        void add(MutationInfo mutations) {
+            for (String path : Iterables.concat(mutations.outputPaths, mutations.destroyablePaths)) {
+                pathCounts.merge(path, 1, Integer::sum);
+            }
+        }
+
+        void remove(MutationInfo mutations) {
+            for (String path : Iterables.concat(mutations.outputPaths, mutations.destroyablePaths)) {
+                pathCounts.computeIfPresent(path, (key, count) -> count == 1 ? null : count - 1);
+            }
+        }
+
+        void clear() {
+            pathCounts.clear();
+        }
+
+        boolean overlapsAny(Set<String> paths) {
+            if (pathCounts.isEmpty()) {
+                return false;
+            }
+            for (String path : paths) {
+                if (overlaps(path)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private boolean overlaps(String path) {
+            if (pathCounts.containsKey(path)) {
+                return true;
+            }
+            for (int separator = path.indexOf(File.separatorChar); separator >= 0; separator = path.indexOf(File.separatorChar, separator + 1)) {
+                if (pathCounts.containsKey(path.substring(0, separator))) {
+                    return true;
+                }
+            }
+            String descendantPrefix = path + File.separatorChar;
+            String firstDescendant = pathCounts.ceilingKey(descendantPrefix);
+            return firstDescendant != null && firstDescendant.startsWith(descendantPrefix);
+        }
+    }
+
     private static class GraphEdge {
         private final Node from;
         private final Node to;
@@ -0,0 +1,65 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.execution.plan;
+
+import org.gradle.api.internal.TaskInternal;
+import org.gradle.api.internal.tasks.TaskExecutionOutcome;
+import org.gradle.cache.PersistentIndexedCache;
+import org.gradle.cache.PersistentIndexedCacheParameters;
+import org.gradle.cache.internal.InMemoryCacheDecoratorFactory;
+import org.gradle.internal.execution.history.ExecutionHistoryCacheAccess;
+
+/**
+ * Stores the execution times of tasks next to their execution history.
+ *
+ * Only the times of tasks which actually executed their actions are recorded. An up-to-date task finishes quickly in any case,
+ * while the time the task takes when it has to do its work is what matters for the critical path.
+ */
+public class DefaultNodeExecutionTimeHistory implements NodeExecutionTimeHistory {
+    private final PersistentIndexedCache<String, Long> executionTimes;
+
+    public DefaultNodeExecutionTimeHistory(ExecutionHistoryCacheAccess executionHistoryCacheAccess, InMemoryCacheDecoratorFactory inMemoryCacheDecoratorFactory) {
+        this.executionTimes = executionHistoryCacheAccess.get().createCache(
+            PersistentIndexedCacheParameters.of("nodeExecutionTimes", String.class, Long.class)
+                .withCacheDecorator(inMemoryCacheDecoratorFactory.decorator(10000, false))
+        );
+    }
+
+    @Override
+    public long getExecutionTime(Node node) {
+        if (!(node instanceof LocalTaskNode)) {
+            return 0;
+        }
+        Long executionTime = executionTimes.get(keyFor(((LocalTaskNode) node).getTask()));
+        return executionTime == null ? 0 : executionTime;
+    }
+
+    @Override
+    public void recordExecutionTime(Node node, long executionTime) {
+        if (!(node instanceof LocalTaskNode)) {
+            return;
+        }
+        TaskInternal task = ((LocalTaskNode) node).getTask();
+        if (task.getState().getOutcome() == TaskExecutionOutcome.EXECUTED && task.getState().getFailure() == null) {
+            executionTimes.put(keyFor(task), executionTime);
+        }
+    }
+
+    private static String keyFor(TaskInternal task) {
+        return task.getIdentityPath().getPath();
+    }
+}
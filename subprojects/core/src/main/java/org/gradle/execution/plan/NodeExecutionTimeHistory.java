@@ -0,0 +1,32 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.execution.plan;
+
+/**
+ * Remembers how long nodes took to execute in previous builds, so the execution plan can prefer the nodes on its critical path.
+ */
+public interface NodeExecutionTimeHistory {
+    /**
+     * Returns how long the given node took the last time it did its work, in milliseconds, or 0 when that is not known.
+     */
+    long getExecutionTime(Node node);
+
+    /**
+     * Records how long the given node took to execute in this build, in milliseconds.
+     */
+    void recordExecutionTime(Node node, long executionTime);
+}
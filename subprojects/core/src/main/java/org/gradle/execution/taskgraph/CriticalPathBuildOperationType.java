@@ -0,0 +1,116 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.execution.taskgraph;
+
+import org.gradle.internal.operations.BuildOperationType;
+import org.gradle.util.Path;
+
+import java.util.List;
+
+/**
+ * Reports the critical path of a build's task graph predicted from previous builds, and the one observed while executing it.
+ *
+ * Only fired when scheduling by critical path.
+ *
+ * @since 6.8
+ */
+public class CriticalPathBuildOperationType implements BuildOperationType<CriticalPathBuildOperationType.Details, CriticalPathBuildOperationType.Result> {
+
+    public interface Details {
+
+        String getBuildPath();
+
+    }
+
+    public interface Result {
+
+        /**
+         * The nodes on the critical path predicted from the execution times of previous builds, in execution order.
+         */
+        List<String> getPredictedPath();
+
+        /**
+         * The predicted execution time of the predicted critical path, in milliseconds.
+         */
+        long getPredictedTime();
+
+        /**
+         * The nodes on the critical path given the execution times of this build, in execution order.
+         */
+        List<String> getActualPath();
+
+        /**
+         * The execution time of the actual critical path, in milliseconds.
+         */
+        long getActualTime();
+
+    }
+
+    static class DetailsImpl implements CriticalPathBuildOperationType.Details {
+
+        private final Path buildPath;
+
+        DetailsImpl(Path buildPath) {
+            this.buildPath = buildPath;
+        }
+
+        @Override
+        public String getBuildPath() {
+            return buildPath.getPath();
+        }
+
+    }
+
+    static class ResultImpl implements CriticalPathBuildOperationType.Result {
+
+        private final List<String> predictedPath;
+        private final long predictedTime;
+        private final List<String> actualPath;
+        private final long actualTime;
+
+        ResultImpl(List<String> predictedPath, long predictedTime, List<String> actualPath, long actualTime) {
+            this.predictedPath = predictedPath;
+            this.predictedTime = predictedTime;
+            this.actualPath = actualPath;
+            this.actualTime = actualTime;
+        }
+
+        @Override
+        public List<String> getPredictedPath() {
+            return predictedPath;
+        }
+
+        @Override
+        public long getPredictedTime() {
+            return predictedTime;
+        }
+
+        @Override
+        public List<String> getActualPath() {
+            return actualPath;
+        }
+
+        @Override
+        public long getActualTime() {
+            return actualTime;
+        }
+
+    }
+
+    private CriticalPathBuildOperationType() {
+    }
+}
@@ -36,8 +36,10 @@
 import org.gradle.api.tasks.TaskState;
 import org.gradle.configuration.internal.ListenerBuildOperationDecorator;
 import org.gradle.execution.ProjectExecutionServiceRegistry;
+import org.gradle.execution.plan.CriticalPath;
 import org.gradle.execution.plan.DefaultExecutionPlan;
 import org.gradle.execution.plan.Node;
+import org.gradle.execution.plan.NodeExecutionTimeHistory;
 import org.gradle.execution.plan.NodeExecutor;
 import org.gradle.execution.plan.PlanExecutor;
 import org.gradle.execution.plan.TaskDependencyResolver;
@@ -60,10 +62,12 @@
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.annotation.Nullable;
 import java.util.Collection;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.stream.Collectors;
 
 @NonNullApi
 public class DefaultTaskExecutionGraph implements TaskExecutionGraphInternal {
@@ -104,7 +108,8 @@ public DefaultTaskExecutionGraph(
         ListenerBroadcast<TaskExecutionListener> taskListeners,
         BuildScopeListenerRegistrationListener buildScopeListenerRegistrationListener,
         ProjectStateRegistry projectStateRegistry,
-        ServiceRegistry globalServices
+        ServiceRegistry globalServices,
+        @Nullable NodeExecutionTimeHistory executionTimeHistory
     ) {
         this.planExecutor = planExecutor;
         this.nodeExecutors = nodeExecutors;
@@ -117,7 +122,7 @@ public DefaultTaskExecutionGraph(
         this.buildScopeListenerRegistrationListener = buildScopeListenerRegistrationListener;
         this.projectStateRegistry = projectStateRegistry;
         this.globalServices = globalServices;
-        this.executionPlan = new DefaultExecutionPlan(gradleInternal, taskNodeFactory, dependencyResolver);
+        this.executionPlan = new DefaultExecutionPlan(gradleInternal, taskNodeFactory, dependencyResolver, executionTimeHistory);
     }
 
     @Override
@@ -188,11 +193,20 @@ private void executeWithServices(ProjectExecutionServiceRegistry projectExecutio
                 )
             );
             LOGGER.debug("Timing: Executing the DAG took " + clock.getElapsed());
+            CriticalPath predictedCriticalPath = executionPlan.getPredictedCriticalPath();
+            if (predictedCriticalPath != null) {
+                buildOperationExecutor.run(new ReportCriticalPath(predictedCriticalPath, executionPlan.calculateActualCriticalPath(), gradleInternal));
+            }
         } finally {
-            coordinationService.withStateLock(resourceLockState -> {
-                executionPlan.clear();
-                return ResourceLockState.Disposition.FINISHED;
-            });
+            try {
+                // Also record the times of the nodes which did execute when the build fails
+                executionPlan.recordExecutionTimes();
+            } finally {
+                coordinationService.withStateLock(resourceLockState -> {
+                    executionPlan.clear();
+                    return ResourceLockState.Disposition.FINISHED;
+                });
+            }
         }
     }
 
@@ -400,6 +414,44 @@ public Set<Task> getFilteredTasks() {
         return executionPlan.getFilteredTasks();
     }
 
+    private static class ReportCriticalPath implements RunnableBuildOperation {
+
+        private final CriticalPath predictedCriticalPath;
+        private final CriticalPath actualCriticalPath;
+        private final GradleInternal gradleInternal;
+
+        private ReportCriticalPath(CriticalPath predictedCriticalPath, CriticalPath actualCriticalPath, GradleInternal gradleInternal) {
+            this.predictedCriticalPath = predictedCriticalPath;
+            this.actualCriticalPath = actualCriticalPath;
+            this.gradleInternal = gradleInternal;
+        }
+
+        @Override
+        public void run(BuildOperationContext context) {
+            LOGGER.info("Critical path of {} took {} ms, predicted {} ms.", gradleInternal.getIdentityPath(), actualCriticalPath.getTime(), predictedCriticalPath.getTime());
+            context.setResult(new CriticalPathBuildOperationType.ResultImpl(
+                toPath(predictedCriticalPath),
+                predictedCriticalPath.getTime(),
+                toPath(actualCriticalPath),
+                actualCriticalPath.getTime()
+            ));
+        }
+
+        private static List<String> toPath(CriticalPath criticalPath) {
+            return criticalPath.getNodes().stream()
+                .map(Node::toString)
+                .collect(Collectors.toList());
+        }
+
+        @Override
+        public BuildOperationDescriptor.Builder description() {
+            return BuildOperationDescriptor.displayName(gradleInternal.contextualize("Report critical path"))
+                .details(new CriticalPathBuildOperationType.DetailsImpl(
+                    gradleInternal.getIdentityPath()
+                ));
+        }
+    }
+
     private static class NotifyTaskGraphWhenReady implements RunnableBuildOperation {
 
         private final TaskExecutionGraph taskExecutionGraph;
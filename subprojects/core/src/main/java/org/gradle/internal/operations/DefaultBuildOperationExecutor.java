@@ -21,24 +21,36 @@
 import org.gradle.api.GradleException;
 import org.gradle.concurrent.ParallelismConfiguration;
 import org.gradle.internal.SystemProperties;
+import org.gradle.internal.concurrent.CompositeStoppable;
 import org.gradle.internal.concurrent.ExecutorFactory;
 import org.gradle.internal.concurrent.ManagedExecutor;
 import org.gradle.internal.concurrent.Stoppable;
+import org.gradle.internal.concurrent.VirtualThreads;
 import org.gradle.internal.exceptions.DefaultMultiCauseException;
 import org.gradle.internal.logging.progress.ProgressLogger;
 import org.gradle.internal.logging.progress.ProgressLoggerFactory;
 import org.gradle.internal.time.Clock;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import javax.annotation.Nullable;
 import java.util.List;
 import java.util.stream.Collectors;
 
 public class DefaultBuildOperationExecutor implements BuildOperationExecutor, Stoppable {
+    /**
+     * When set to {@code true}, {@link BuildOperationConstraint#UNCONSTRAINED} operations run on virtual threads, when the JVM supports them.
+     */
+    public static final String VIRTUAL_THREADS_PROPERTY = "org.gradle.internal.operations.virtual-threads";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DefaultBuildOperationExecutor.class);
     private static final String LINE_SEPARATOR = SystemProperties.getInstance().getLineSeparator();
 
     private final BuildOperationRunner runner;
     private final BuildOperationQueueFactory buildOperationQueueFactory;
     private final ManagedExecutor fixedSizePool;
+    @Nullable
+    private final ManagedExecutor virtualThreadPool;
     private final CurrentBuildOperationRef currentBuildOperationRef = CurrentBuildOperationRef.instance();
     private final UnmanagedBuildOperationWrapper wrapper;
 
@@ -64,6 +76,19 @@ public DefaultBuildOperationExecutor(
         );
         this.buildOperationQueueFactory = buildOperationQueueFactory;
         this.fixedSizePool = executorFactory.create("Build operations", parallelismConfiguration.getMaxWorkerCount());
+        this.virtualThreadPool = createVirtualThreadPool();
+    }
+
+    @Nullable
+    private static ManagedExecutor createVirtualThreadPool() {
+        if (!Boolean.getBoolean(VIRTUAL_THREADS_PROPERTY)) {
+            return null;
+        }
+        if (!VirtualThreads.isSupported()) {
+            LOGGER.info("Virtual threads are not supported by this JVM, running blocking build operations using worker threads.");
+            return null;
+        }
+        return VirtualThreads.createExecutor("Build operations");
     }
 
     @Override
@@ -111,7 +136,9 @@ private BuildOperationState getCurrentBuildOperation() {
     }
 
     private <O extends BuildOperation> void executeInParallel(BuildOperationQueue.QueueWorker<O> worker, Action<BuildOperationQueue<O>> queueAction) {
-        BuildOperationQueue<O> queue = buildOperationQueueFactory.create(fixedSizePool, worker);
+        BuildOperationQueue<O> queue = virtualThreadPool == null
+            ? buildOperationQueueFactory.create(fixedSizePool, worker)
+            : buildOperationQueueFactory.create(fixedSizePool, virtualThreadPool, worker);
 
         List<GradleException> failures = Lists.newArrayList();
         try {
@@ -142,7 +169,7 @@ private static String formatMultipleFailureMessage(List<GradleException> failure
 
     @Override
     public void stop() {
-        fixedSizePool.stop();
+        CompositeStoppable.stoppable(fixedSizePool, virtualThreadPool).stop();
     }
 
     private static class ListenerAdapter implements DefaultBuildOperationRunner.BuildOperationExecutionListener {
@@ -0,0 +1,160 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.gradle.internal.operations.metrics;
+
+import org.gradle.StartParameter;
+import org.gradle.api.internal.tasks.execution.ExecuteTaskBuildOperationType;
+import org.gradle.caching.internal.operations.BuildCacheRemoteLoadBuildOperationType;
+import org.gradle.internal.UncheckedException;
+import org.gradle.internal.concurrent.Stoppable;
+import org.gradle.internal.metrics.Counter;
+import org.gradle.internal.metrics.Histogram;
+import org.gradle.internal.metrics.MetricsRegistry;
+import org.gradle.internal.operations.BuildOperationDescriptor;
+import org.gradle.internal.operations.BuildOperationListener;
+import org.gradle.internal.operations.BuildOperationListenerManager;
+import org.gradle.internal.operations.OperationFinishEvent;
+import org.gradle.internal.operations.OperationIdentifier;
+import org.gradle.internal.operations.OperationProgressEvent;
+import org.gradle.internal.operations.OperationStartEvent;
+import org.gradle.util.GFileUtils;
+
+import javax.annotation.Nullable;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Records metrics about build operations: the duration of each type of operation, and the outcome of build cache lookups.
+ *
+ * Metrics are always recorded. When `-Dorg.gradle.internal.operations.metrics=«path»` is used, all metrics of the
+ * {@link MetricsRegistry} are written to the given file in the OpenMetrics text format when the build session ends.
+ * As the registry lives as long as the process, the values are cumulative over all builds run by a daemon.
+ */
+public class BuildOperationMetrics implements Stoppable {
+
+    public static final String SYSPROP = "org.gradle.internal.operations.metrics";
+
+    private static final String DURATION_METRIC = "gradle_build_operation_duration_seconds";
+    private static final String DURATION_HELP = "Duration of build operations, by the type of their details.";
+    private static final String NO_DETAILS = "none";
+    private static final String FROM_CACHE = "FROM-CACHE";
+
+    private final MetricsRegistry metricsRegistry;
+    private final BuildOperationListenerManager buildOperationListenerManager;
+    @Nullable
+    private final File outputFile;
+    private final ConcurrentMap<Class<?>, Histogram> durationsByDetailsType = new ConcurrentHashMap<>();
+    private final Histogram durationsWithoutDetails;
+    private final Counter taskCacheHits;
+    private final Counter taskCacheMisses;
+    private final Counter remoteCacheHits;
+    private final Counter remoteCacheMisses;
+    private final BuildOperationListener listener = new MetricsListener();
+
+    public BuildOperationMetrics(StartParameter startParameter, MetricsRegistry metricsRegistry, BuildOperationListenerManager buildOperationListenerManager) {
+        this.metricsRegistry = metricsRegistry;
+        this.buildOperationListenerManager = buildOperationListenerManager;
+        this.outputFile = outputFile(startParameter.getSystemPropertiesArgs());
+        this.durationsWithoutDetails = durationHistogram(NO_DETAILS);
+        this.taskCacheHits = metricsRegistry.counter("gradle_task_build_cache_lookups", "Build cache lookups of cacheable tasks, by result.", "result", "hit");
+        this.taskCacheMisses = metricsRegistry.counter("gradle_task_build_cache_lookups", "Build cache lookups of cacheable tasks, by result.", "result", "miss");
+        this.remoteCacheHits = metricsRegistry.counter("gradle_remote_build_cache_loads", "Loads from the remote build cache, by result.", "result", "hit");
+        this.remoteCacheMisses = metricsRegistry.counter("gradle_remote_build_cache_loads", "Loads from the remote build cache, by result.", "result", "miss");
+        buildOperationListenerManager.addListener(listener);
+    }
+
+    @Nullable
+    private static File outputFile(Map<String, String> sysProps) {
+        String path = sysProps.get(SYSPROP);
+        if (path == null) {
+            path = System.getProperty(SYSPROP);
+        }
+        if (path == null || path.isEmpty() || path.equals(Boolean.FALSE.toString())) {
+            return null;
+        }
+        return new File(path).getAbsoluteFile();
+    }
+
+    @Override
+    public void stop() {
+        buildOperationListenerManager.removeListener(listener);
+        if (outputFile != null) {
+            GFileUtils.mkdirs(outputFile.getParentFile());
+            try (Writer writer = Files.newBufferedWriter(outputFile.toPath(), StandardCharsets.UTF_8)) {
+                metricsRegistry.writeOpenMetrics(writer);
+            } catch (IOException e) {
+                throw UncheckedException.throwAsUncheckedException(e);
+            }
+        }
+    }
+
+    private Histogram durationHistogram(String type) {
+        // Durations are reported in milliseconds
+        return metricsRegistry.histogram(DURATION_METRIC, DURATION_HELP, 1e-3, "type", type);
+    }
+
+    private Histogram durationsFor(Object details) {
+        if (details == null) {
+            return durationsWithoutDetails;
+        }
+        Histogram histogram = durationsByDetailsType.get(details.getClass());
+        if (histogram == null) {
+            histogram = durationsByDetailsType.computeIfAbsent(details.getClass(), type -> durationHistogram(type.getName()));
+        }
+        return histogram;
+    }
+
+    private void recordResult(Object result) {
+        if (result instanceof ExecuteTaskBuildOperationType.Result) {
+            ExecuteTaskBuildOperationType.Result taskResult = (ExecuteTaskBuildOperationType.Result) result;
+            if (FROM_CACHE.equals(taskResult.getSkipMessage())) {
+                taskCacheHits.increment();
+            } else if (taskResult.getSkipMessage() == null && taskResult.getCachingDisabledReasonCategory() == null) {
+                taskCacheMisses.increment();
+            }
+        } else if (result instanceof BuildCacheRemoteLoadBuildOperationType.Result) {
+            if (((BuildCacheRemoteLoadBuildOperationType.Result) result).isHit()) {
+                remoteCacheHits.increment();
+            } else {
+                remoteCacheMisses.increment();
+            }
+        }
+    }
+
+    private class MetricsListener implements BuildOperationListener {
+        @Override
+        public void started(BuildOperationDescriptor buildOperation, OperationStartEvent startEvent) {
+        }
+
+        @Override
+        public void progress(OperationIdentifier operationIdentifier, OperationProgressEvent progressEvent) {
+        }
+
+        @Override
+        public void finished(BuildOperationDescriptor buildOperation, OperationFinishEvent finishEvent) {
+            durationsFor(buildOperation.getDetails()).record(finishEvent.getEndTime() - finishEvent.getStartTime());
+            recordResult(finishEvent.getResult());
+        }
+    }
+}
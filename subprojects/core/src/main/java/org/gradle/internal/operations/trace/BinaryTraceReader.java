@@ -0,0 +1,157 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.operations.trace;
+
+import groovy.json.JsonSlurper;
+
+import javax.annotation.Nullable;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.gradle.internal.operations.trace.BinaryTraceWriter.FINISH;
+import static org.gradle.internal.operations.trace.BinaryTraceWriter.INLINE_STRING;
+import static org.gradle.internal.operations.trace.BinaryTraceWriter.MAGIC;
+import static org.gradle.internal.operations.trace.BinaryTraceWriter.NULL_STRING;
+import static org.gradle.internal.operations.trace.BinaryTraceWriter.PROGRESS;
+import static org.gradle.internal.operations.trace.BinaryTraceWriter.START;
+import static org.gradle.internal.operations.trace.BinaryTraceWriter.STRING;
+import static org.gradle.internal.operations.trace.BinaryTraceWriter.VERSION;
+
+/**
+ * Reads a log written by {@link BinaryTraceWriter}, passing each event to a {@link BuildOperationTreeBuilder} as soon as it has been read.
+ *
+ * A log whose last record is incomplete, for example because the build was killed while writing it, is read up to that record.
+ */
+class BinaryTraceReader {
+
+    private final JsonSlurper slurper = new JsonSlurper();
+    private final List<String> strings = new ArrayList<>();
+    private final DataInputStream input;
+    private DataInputStream record;
+
+    private BinaryTraceReader(DataInputStream input) {
+        this.input = input;
+    }
+
+    static void read(File logFile, BuildOperationTreeBuilder builder) throws IOException {
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(logFile), 64 * 1024))) {
+            if (input.readInt() != MAGIC || input.readInt() != VERSION) {
+                throw new IOException(String.format("%s is not a build operation trace log.", logFile));
+            }
+            new BinaryTraceReader(input).readRecords(builder);
+        }
+    }
+
+    private void readRecords(BuildOperationTreeBuilder builder) throws IOException {
+        while (true) {
+            int kind = input.read();
+            if (kind < 0) {
+                return;
+            }
+            byte[] payload;
+            try {
+                payload = new byte[input.readInt()];
+                input.readFully(payload);
+            } catch (EOFException e) {
+                return;
+            }
+            record = new DataInputStream(new ByteArrayInputStream(payload));
+            switch (kind) {
+                case STRING:
+                    int index = record.readInt();
+                    assert index == strings.size();
+                    strings.add(readText());
+                    break;
+                case START:
+                    builder.started(readStart());
+                    break;
+                case PROGRESS:
+                    builder.progress(readProgress());
+                    break;
+                case FINISH:
+                    builder.finished(readFinish());
+                    break;
+                default:
+                    // Written by a newer version, skip it
+            }
+        }
+    }
+
+    private SerializedOperationStart readStart() throws IOException {
+        long id = record.readLong();
+        Long parentId = record.readBoolean() ? record.readLong() : null;
+        String displayName = readString();
+        long startTime = record.readLong();
+        String detailsClassName = readString();
+        Object details = readJson();
+        return new SerializedOperationStart(id, parentId, displayName, startTime, details, detailsClassName);
+    }
+
+    private SerializedOperationProgress readProgress() throws IOException {
+        long id = record.readLong();
+        long time = record.readLong();
+        String detailsClassName = readString();
+        Object details = readJson();
+        return new SerializedOperationProgress(id, time, details, detailsClassName);
+    }
+
+    private SerializedOperationFinish readFinish() throws IOException {
+        long id = record.readLong();
+        long endTime = record.readLong();
+        String resultClassName = readString();
+        Object result = readJson();
+        String failureMsg = readText();
+        return new SerializedOperationFinish(id, endTime, result, resultClassName, failureMsg);
+    }
+
+    @Nullable
+    private String readString() throws IOException {
+        int index = record.readInt();
+        if (index == NULL_STRING) {
+            return null;
+        }
+        if (index == INLINE_STRING) {
+            return readText();
+        }
+        return strings.get(index);
+    }
+
+    @Nullable
+    private Object readJson() throws IOException {
+        String json = readText();
+        return json == null ? null : slurper.parseText(json);
+    }
+
+    @Nullable
+    private String readText() throws IOException {
+        int length = record.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        record.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
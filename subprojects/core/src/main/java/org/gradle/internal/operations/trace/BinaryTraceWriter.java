@@ -0,0 +1,236 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.operations.trace;
+
+import groovy.json.JsonOutput;
+import org.gradle.internal.UncheckedException;
+import org.gradle.internal.concurrent.ExecutorFactory;
+import org.gradle.internal.concurrent.ManagedExecutor;
+import org.gradle.internal.operations.BuildOperationDescriptor;
+import org.gradle.internal.operations.OperationFinishEvent;
+import org.gradle.internal.operations.OperationIdentifier;
+import org.gradle.internal.operations.OperationProgressEvent;
+import org.gradle.internal.operations.OperationStartEvent;
+
+import javax.annotation.Nullable;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Writes build operation events to a log in a compact binary format.
+ *
+ * <p>The log starts with a header, followed by records. Each record consists of its kind, the length of its payload and the payload,
+ * so that a reader can skip records it does not know. Display names and class names are written once, in a string record,
+ * and then referred to by their index.</p>
+ *
+ * <p>The details and the result of an operation are converted to JSON by the thread notifying about the event, as they may still change afterwards.
+ * Everything else is encoded and written by a background thread, so the notifying thread does not wait for the file.
+ * When the writer thread falls behind, notifying threads are blocked until it has caught up, to bound the memory used by pending events.</p>
+ */
+class BinaryTraceWriter implements Closeable {
+
+    static final int MAGIC = 0x474f5054;
+    static final int VERSION = 1;
+
+    static final byte STRING = 0;
+    static final byte START = 1;
+    static final byte PROGRESS = 2;
+    static final byte FINISH = 3;
+
+    static final int NULL_STRING = -1;
+    static final int INLINE_STRING = -2;
+
+    // Bounds the memory used for interning, as display names are often unique
+    private static final int MAX_INTERNED_STRINGS = 1 << 16;
+
+    private static final int MAX_PENDING_EVENTS = 10000;
+
+    private final ManagedExecutor executor;
+    private final Semaphore pendingEvents = new Semaphore(MAX_PENDING_EVENTS);
+
+    // The following are only used by the writer thread
+    private final DataOutputStream output;
+    private final ByteArrayOutputStream recordBuffer = new ByteArrayOutputStream();
+    private final DataOutputStream record = new DataOutputStream(recordBuffer);
+    private final Map<String, Integer> strings = new HashMap<>();
+    private IOException failure;
+
+    BinaryTraceWriter(File logFile, ExecutorFactory executorFactory) throws IOException {
+        this.output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(logFile), 64 * 1024));
+        output.writeInt(MAGIC);
+        output.writeInt(VERSION);
+        this.executor = executorFactory.create("Build operation trace writer", 1);
+    }
+
+    void started(BuildOperationDescriptor descriptor, OperationStartEvent startEvent) {
+        SerializedOperationStart start = new SerializedOperationStart(descriptor, startEvent);
+        long id = start.id;
+        Long parentId = start.parentId;
+        String displayName = start.displayName;
+        long startTime = start.startTime;
+        String detailsClassName = start.detailsClassName;
+        String detailsJson = toJson(start.details);
+        submit(() -> writeRecord(START, () -> {
+            record.writeLong(id);
+            record.writeBoolean(parentId != null);
+            if (parentId != null) {
+                record.writeLong(parentId);
+            }
+            writeString(displayName);
+            record.writeLong(startTime);
+            writeString(detailsClassName);
+            writeText(detailsJson);
+        }));
+    }
+
+    void progress(OperationIdentifier operationId, OperationProgressEvent progressEvent) {
+        SerializedOperationProgress progress = new SerializedOperationProgress(operationId, progressEvent);
+        long id = progress.id;
+        long time = progress.time;
+        String detailsClassName = progress.detailsClassName;
+        String detailsJson = toJson(progress.details);
+        submit(() -> writeRecord(PROGRESS, () -> {
+            record.writeLong(id);
+            record.writeLong(time);
+            writeString(detailsClassName);
+            writeText(detailsJson);
+        }));
+    }
+
+    void finished(BuildOperationDescriptor descriptor, OperationFinishEvent finishEvent) {
+        SerializedOperationFinish finish = new SerializedOperationFinish(descriptor, finishEvent);
+        long id = finish.id;
+        long endTime = finish.endTime;
+        String resultClassName = finish.resultClassName;
+        String resultJson = toJson(finish.result);
+        String failureMsg = finish.failureMsg;
+        submit(() -> writeRecord(FINISH, () -> {
+            record.writeLong(id);
+            record.writeLong(endTime);
+            writeString(resultClassName);
+            writeText(resultJson);
+            writeText(failureMsg);
+        }));
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            executor.stop();
+        } finally {
+            output.close();
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private void submit(Runnable event) {
+        try {
+            pendingEvents.acquire();
+        } catch (InterruptedException e) {
+            throw UncheckedException.throwAsUncheckedException(e);
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    event.run();
+                } finally {
+                    pendingEvents.release();
+                }
+            });
+        } catch (RuntimeException e) {
+            pendingEvents.release();
+            throw e;
+        }
+    }
+
+    @Nullable
+    private static String toJson(@Nullable Object value) {
+        return value == null ? null : JsonOutput.toJson(value);
+    }
+
+    private void writeRecord(byte kind, RecordWriter recordWriter) {
+        if (failure != null) {
+            return;
+        }
+        try {
+            recordBuffer.reset();
+            recordWriter.write();
+            output.writeByte(kind);
+            output.writeInt(recordBuffer.size());
+            recordBuffer.writeTo(output);
+        } catch (IOException e) {
+            failure = e;
+        }
+    }
+
+    /**
+     * Writes a reference to the given string, preceded by a string record when the string has not been written before.
+     */
+    private void writeString(@Nullable String value) throws IOException {
+        if (value == null) {
+            record.writeInt(NULL_STRING);
+            return;
+        }
+        Integer index = strings.get(value);
+        if (index == null) {
+            if (strings.size() >= MAX_INTERNED_STRINGS) {
+                record.writeInt(INLINE_STRING);
+                writeText(record, value);
+                return;
+            }
+            index = strings.size();
+            strings.put(value, index);
+            // Written straight to the log, so it comes before the record being assembled
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            output.writeByte(STRING);
+            output.writeInt(4 + 4 + bytes.length);
+            output.writeInt(index);
+            output.writeInt(bytes.length);
+            output.write(bytes);
+        }
+        record.writeInt(index);
+    }
+
+    private void writeText(@Nullable String value) throws IOException {
+        writeText(record, value);
+    }
+
+    private static void writeText(DataOutputStream output, @Nullable String value) throws IOException {
+        if (value == null) {
+            output.writeInt(-1);
+        } else {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            output.writeInt(bytes.length);
+            output.write(bytes);
+        }
+    }
+
+    private interface RecordWriter {
+        void write() throws IOException;
+    }
+}
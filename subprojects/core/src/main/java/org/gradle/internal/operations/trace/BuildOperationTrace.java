@@ -24,6 +24,7 @@
 import groovy.json.JsonSlurper;
 import org.gradle.StartParameter;
 import org.gradle.internal.UncheckedException;
+import org.gradle.internal.concurrent.ExecutorFactory;
 import org.gradle.internal.concurrent.Stoppable;
 import org.gradle.internal.operations.BuildOperationDescriptor;
 import org.gradle.internal.operations.BuildOperationListener;
@@ -35,6 +36,7 @@
 import org.gradle.util.GFileUtils;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
@@ -42,17 +44,13 @@
 import java.io.OutputStream;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayDeque;
-import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Deque;
-import java.util.HashMap;
 import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Queue;
 
-import static org.gradle.internal.Cast.uncheckedCast;
 import static org.gradle.internal.Cast.uncheckedNonnullCast;
 
 /**
@@ -65,15 +63,22 @@
  * Three files are created:
  *
  * - «path-base»-log.txt: a chronological log of events, each line is a JSON object
+ *   (or «path-base»-log.bin, a compact binary log, when `-Dorg.gradle.internal.operations.trace.format=binary` is used)
  * - «path-base»-tree.json: a JSON tree of the event structure
  * - «path-base»-tree.txt: A simplified tree representation showing basic information
  *
+ * Writing the trees requires the whole log to be read back when the build finishes,
+ * which can be skipped with `-Dorg.gradle.internal.operations.trace.tree=false`.
+ *
  * Generally, the simplified tree view is best for browsing.
  * The JSON tree view can be used for more detailed analysis — open in a JSON tree viewer, like Chrome.
  *
  * The «path-base» param is optional.
  * If invoked as `-Dorg.gradle.internal.operations.trace`, a base value of "operations" will be used.
  *
+ * The binary log is written by a background thread, and is much smaller and faster to write than the JSON log,
+ * so it is better suited to large builds or to leaving the trace enabled.
+ *
  * The “trace” produced here is different to the trace produced by Gradle Profiler.
  * There, the focus is analyzing the performance profile.
  * Here, the focus is debugging/developing the information structure of build operations.
@@ -83,56 +88,85 @@
 public class BuildOperationTrace implements Stoppable {
 
     public static final String SYSPROP = "org.gradle.internal.operations.trace";
+    public static final String FORMAT_SYSPROP = "org.gradle.internal.operations.trace.format";
+    public static final String JSON_FORMAT = "json";
+    public static final String BINARY_FORMAT = "binary";
+    public static final String TREE_SYSPROP = "org.gradle.internal.operations.trace.tree";
 
     private static final byte[] NEWLINE = "\n".getBytes();
 
     private final String basePath;
+    private final boolean writeTrees;
     private final OutputStream logOutputStream;
+    @Nullable
+    private final BinaryTraceWriter binaryTraceWriter;
 
     private final BuildOperationListenerManager buildOperationListenerManager;
 
     private final BuildOperationListener listener = new BuildOperationListener() {
         @Override
         public void started(BuildOperationDescriptor buildOperation, OperationStartEvent startEvent) {
-            write(new SerializedOperationStart(buildOperation, startEvent));
+            if (binaryTraceWriter != null) {
+                binaryTraceWriter.started(buildOperation, startEvent);
+            } else {
+                write(new SerializedOperationStart(buildOperation, startEvent));
+            }
         }
 
         @Override
         public void progress(OperationIdentifier buildOperationId, OperationProgressEvent progressEvent) {
-            write(new SerializedOperationProgress(buildOperationId, progressEvent));
+            if (binaryTraceWriter != null) {
+                binaryTraceWriter.progress(buildOperationId, progressEvent);
+            } else {
+                write(new SerializedOperationProgress(buildOperationId, progressEvent));
+            }
         }
 
         @Override
         public void finished(BuildOperationDescriptor buildOperation, OperationFinishEvent finishEvent) {
-            write(new SerializedOperationFinish(buildOperation, finishEvent));
+            if (binaryTraceWriter != null) {
+                binaryTraceWriter.finished(buildOperation, finishEvent);
+            } else {
+                write(new SerializedOperationFinish(buildOperation, finishEvent));
+            }
         }
     };
 
-    public BuildOperationTrace(StartParameter startParameter, BuildOperationListenerManager buildOperationListenerManager) {
+    public BuildOperationTrace(StartParameter startParameter, BuildOperationListenerManager buildOperationListenerManager, ExecutorFactory executorFactory) {
         this.buildOperationListenerManager = buildOperationListenerManager;
 
         Map<String, String> sysProps = startParameter.getSystemPropertiesArgs();
-        String basePath = sysProps.get(SYSPROP);
-        if (basePath == null) {
-            basePath = System.getProperty(SYSPROP);
-        }
+        String basePath = getProperty(sysProps, SYSPROP);
 
         this.basePath = basePath;
+        this.writeTrees = !Boolean.FALSE.toString().equals(getProperty(sysProps, TREE_SYSPROP));
         if (this.basePath == null || basePath.equals(Boolean.FALSE.toString())) {
             this.logOutputStream = null;
+            this.binaryTraceWriter = null;
             return;
         }
 
+        boolean binary = isBinaryFormat(getProperty(sysProps, FORMAT_SYSPROP));
         try {
-            File logFile = logFile(basePath);
+            File logFile = binary ? binaryLogFile(basePath) : logFile(basePath);
             GFileUtils.mkdirs(logFile.getParentFile());
-            if (logFile.isFile()) {
-                GFileUtils.forceDelete(logFile);
+            // Delete the logs of both formats, so that the log of a previous build is not read instead
+            for (File file : new File[]{logFile(basePath), binaryLogFile(basePath)}) {
+                if (file.isFile()) {
+                    GFileUtils.forceDelete(file);
+                }
             }
-            //noinspection ResultOfMethodCallIgnored
-            logFile.createNewFile();
 
-            this.logOutputStream = new BufferedOutputStream(new FileOutputStream(logFile));
+            if (binary) {
+                this.logOutputStream = null;
+                this.binaryTraceWriter = new BinaryTraceWriter(logFile, executorFactory);
+            } else {
+                //noinspection ResultOfMethodCallIgnored
+                logFile.createNewFile();
+
+                this.logOutputStream = new BufferedOutputStream(new FileOutputStream(logFile));
+                this.binaryTraceWriter = null;
+            }
         } catch (IOException e) {
             throw UncheckedException.throwAsUncheckedException(e);
         }
@@ -140,18 +174,41 @@ public BuildOperationTrace(StartParameter startParameter, BuildOperationListener
         buildOperationListenerManager.addListener(listener);
     }
 
+    private static String getProperty(Map<String, String> sysProps, String name) {
+        String value = sysProps.get(name);
+        if (value == null) {
+            value = System.getProperty(name);
+        }
+        return value;
+    }
+
+    private static boolean isBinaryFormat(String format) {
+        if (format == null || format.equals(JSON_FORMAT)) {
+            return false;
+        } else if (format.equals(BINARY_FORMAT)) {
+            return true;
+        } else {
+            throw new IllegalArgumentException(String.format("Unknown build operation trace format '%s', use '%s' or '%s'.", format, JSON_FORMAT, BINARY_FORMAT));
+        }
+    }
+
     @Override
     public void stop() {
         buildOperationListenerManager.removeListener(listener);
-        if (logOutputStream != null) {
+        if (logOutputStream != null || binaryTraceWriter != null) {
             try {
-                synchronized (logOutputStream) {
-                    logOutputStream.close();
+                if (binaryTraceWriter != null) {
+                    binaryTraceWriter.close();
+                } else {
+                    synchronized (logOutputStream) {
+                        logOutputStream.close();
+                    }
+                }
+                if (writeTrees) {
+                    List<BuildOperationRecord> roots = binaryTraceWriter != null ? readBinaryLogToTreeRoots(binaryLogFile(basePath)) : readLogToTreeRoots(logFile(basePath));
+                    writeDetailTree(roots);
+                    writeSummaryTree(roots);
                 }
-
-                final List<BuildOperationRecord> roots = readLogToTreeRoots(logFile(basePath));
-                writeDetailTree(roots);
-                writeSummaryTree(roots);
             } catch (IOException e) {
                 throw UncheckedException.throwAsUncheckedException(e);
             }
@@ -266,78 +323,36 @@ public void remove() {
     }
 
     public static BuildOperationTree read(String basePath) {
-        File logFile = logFile(basePath);
-        List<BuildOperationRecord> roots = readLogToTreeRoots(logFile);
+        File binaryLogFile = binaryLogFile(basePath);
+        List<BuildOperationRecord> roots = binaryLogFile.isFile() ? readBinaryLogToTreeRoots(binaryLogFile) : readLogToTreeRoots(logFile(basePath));
         return new BuildOperationTree(roots);
     }
 
+    private static List<BuildOperationRecord> readBinaryLogToTreeRoots(File logFile) {
+        try {
+            BuildOperationTreeBuilder builder = new BuildOperationTreeBuilder();
+            BinaryTraceReader.read(logFile, builder);
+            return builder.getRoots();
+        } catch (IOException e) {
+            throw UncheckedException.throwAsUncheckedException(e);
+        }
+    }
+
     private static List<BuildOperationRecord> readLogToTreeRoots(final File logFile) {
         try {
             final JsonSlurper slurper = new JsonSlurper();
-
-            final List<BuildOperationRecord> roots = new ArrayList<>();
-            final Map<Object, PendingOperation> pendings = new HashMap<>();
-            final Map<Object, List<BuildOperationRecord>> childrens = new HashMap<>();
+            final BuildOperationTreeBuilder builder = new BuildOperationTreeBuilder();
 
             Files.asCharSource(logFile, Charsets.UTF_8).readLines(new LineProcessor<Void>() {
                 @Override
                 public boolean processLine(@SuppressWarnings("NullableProblems") String line) {
                     Map<String, ?> map = uncheckedNonnullCast(slurper.parseText(line));
                     if (map.containsKey("startTime")) {
-                        SerializedOperationStart serialized = new SerializedOperationStart(map);
-                        pendings.put(serialized.id, new PendingOperation(serialized));
-                        childrens.put(serialized.id, new LinkedList<>());
+                        builder.started(new SerializedOperationStart(map));
                     } else if (map.containsKey("time")) {
-                        SerializedOperationProgress serialized = new SerializedOperationProgress(map);
-                        PendingOperation pending = pendings.get(serialized.id);
-                        assert pending != null : "did not find owner of progress event with ID " + serialized.id;
-                        pending.progress.add(serialized);
+                        builder.progress(new SerializedOperationProgress(map));
                     } else {
-                        SerializedOperationFinish finish = new SerializedOperationFinish(map);
-
-                        PendingOperation pending = pendings.remove(finish.id);
-                        assert pending != null;
-
-                        List<BuildOperationRecord> children = childrens.remove(finish.id);
-                        assert children != null;
-
-                        SerializedOperationStart start = pending.start;
-
-                        Map<String, ?> detailsMap = uncheckedCast(start.details);
-                        Map<String, ?> resultMap = uncheckedCast(finish.result);
-
-                        List<BuildOperationRecord.Progress> progresses = new ArrayList<>();
-                        for (SerializedOperationProgress progress : pending.progress) {
-                            Map<String, ?> progressDetailsMap = uncheckedCast(progress.details);
-                            progresses.add(new BuildOperationRecord.Progress(
-                                progress.time,
-                                progressDetailsMap,
-                                progress.detailsClassName
-                            ));
-                        }
-
-                        BuildOperationRecord record = new BuildOperationRecord(
-                            start.id,
-                            start.parentId,
-                            start.displayName,
-                            start.startTime,
-                            finish.endTime,
-                            detailsMap == null ? null : Collections.unmodifiableMap(detailsMap),
-                            start.detailsClassName,
-                            resultMap == null ? null : Collections.unmodifiableMap(resultMap),
-                            finish.resultClassName,
-                            finish.failureMsg,
-                            progresses,
-                            BuildOperationRecord.ORDERING.immutableSortedCopy(children)
-                        );
-
-                        if (start.parentId == null) {
-                            roots.add(record);
-                        } else {
-                            List<BuildOperationRecord> parentChildren = childrens.get(start.parentId);
-                            assert parentChildren != null : "parentChildren != null '" + line + "' from " + logFile;
-                            parentChildren.add(record);
-                        }
+                        builder.finished(new SerializedOperationFinish(map));
                     }
 
                     return true;
@@ -349,9 +364,7 @@ public Void getResult() {
                 }
             });
 
-            assert pendings.isEmpty();
-
-            return roots;
+            return builder.getRoots();
         } catch (Exception e) {
             throw UncheckedException.throwAsUncheckedException(e);
         }
@@ -362,20 +375,12 @@ private static File logFile(String basePath) {
         return file(basePath, "-log.txt");
     }
 
-    private static File file(String base, String suffix) {
-        return new File((base == null || base.trim().isEmpty() ? "operations" : base) + suffix).getAbsoluteFile();
+    private static File binaryLogFile(String basePath) {
+        return file(basePath, "-log.bin");
     }
 
-    static class PendingOperation {
-
-        final SerializedOperationStart start;
-
-        final List<SerializedOperationProgress> progress = new ArrayList<>();
-
-        PendingOperation(SerializedOperationStart start) {
-            this.start = start;
-        }
-
+    private static File file(String base, String suffix) {
+        return new File((base == null || base.trim().isEmpty() ? "operations" : base) + suffix).getAbsoluteFile();
     }
 
     public static Object toSerializableModel(Object object) {
@@ -0,0 +1,112 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.operations.trace;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+import static org.gradle.internal.Cast.uncheckedCast;
+
+/**
+ * Rebuilds the tree of build operations from the events of a trace log, one event at a time.
+ *
+ * Only the operations which have not finished yet are pending, so the log can be streamed.
+ */
+class BuildOperationTreeBuilder {
+
+    private final List<BuildOperationRecord> roots = new ArrayList<>();
+    private final Map<Long, PendingOperation> pendings = new HashMap<>();
+    private final Map<Long, List<BuildOperationRecord>> childrens = new HashMap<>();
+
+    void started(SerializedOperationStart start) {
+        pendings.put(start.id, new PendingOperation(start));
+        childrens.put(start.id, new LinkedList<>());
+    }
+
+    void progress(SerializedOperationProgress progress) {
+        PendingOperation pending = pendings.get(progress.id);
+        assert pending != null : "did not find owner of progress event with ID " + progress.id;
+        pending.progress.add(progress);
+    }
+
+    void finished(SerializedOperationFinish finish) {
+        PendingOperation pending = pendings.remove(finish.id);
+        assert pending != null;
+
+        List<BuildOperationRecord> children = childrens.remove(finish.id);
+        assert children != null;
+
+        SerializedOperationStart start = pending.start;
+
+        Map<String, ?> detailsMap = uncheckedCast(start.details);
+        Map<String, ?> resultMap = uncheckedCast(finish.result);
+
+        List<BuildOperationRecord.Progress> progresses = new ArrayList<>();
+        for (SerializedOperationProgress progress : pending.progress) {
+            Map<String, ?> progressDetailsMap = uncheckedCast(progress.details);
+            progresses.add(new BuildOperationRecord.Progress(
+                progress.time,
+                progressDetailsMap,
+                progress.detailsClassName
+            ));
+        }
+
+        BuildOperationRecord record = new BuildOperationRecord(
+            start.id,
+            start.parentId,
+            start.displayName,
+            start.startTime,
+            finish.endTime,
+            detailsMap == null ? null : Collections.unmodifiableMap(detailsMap),
+            start.detailsClassName,
+            resultMap == null ? null : Collections.unmodifiableMap(resultMap),
+            finish.resultClassName,
+            finish.failureMsg,
+            progresses,
+            BuildOperationRecord.ORDERING.immutableSortedCopy(children)
+        );
+
+        if (start.parentId == null) {
+            roots.add(record);
+        } else {
+            List<BuildOperationRecord> parentChildren = childrens.get(start.parentId);
+            assert parentChildren != null : "did not find parent " + start.parentId + " of operation with ID " + start.id;
+            parentChildren.add(record);
+        }
+    }
+
+    List<BuildOperationRecord> getRoots() {
+        assert pendings.isEmpty();
+        return roots;
+    }
+
+    private static class PendingOperation {
+
+        final SerializedOperationStart start;
+
+        final List<SerializedOperationProgress> progress = new ArrayList<>();
+
+        PendingOperation(SerializedOperationStart start) {
+            this.start = start;
+        }
+
+    }
+}
@@ -43,6 +43,14 @@ class SerializedOperationFinish implements SerializedOperation {
         this.failureMsg = finishEvent.getFailure() == null ? null : finishEvent.getFailure().toString();
     }
 
+    SerializedOperationFinish(long id, long endTime, Object result, String resultClassName, String failureMsg) {
+        this.id = id;
+        this.endTime = endTime;
+        this.result = result;
+        this.resultClassName = resultClassName;
+        this.failureMsg = failureMsg;
+    }
+
     SerializedOperationFinish(Map<String, ?> map) {
         this.id = ((Integer) map.get("id")).longValue();
         this.endTime = (Long) map.get("endTime");
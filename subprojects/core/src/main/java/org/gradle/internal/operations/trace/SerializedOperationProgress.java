@@ -38,6 +38,13 @@ class SerializedOperationProgress implements SerializedOperation {
         this.detailsClassName = details == null ? null : progressEvent.getDetails().getClass().getName();
     }
 
+    SerializedOperationProgress(long id, long time, Object details, String detailsClassName) {
+        this.id = id;
+        this.time = time;
+        this.details = details;
+        this.detailsClassName = detailsClassName;
+    }
+
     SerializedOperationProgress(Map<String, ?> map) {
         this.id = ((Integer) map.get("id")).longValue();
         this.time = (Long) map.get("time");
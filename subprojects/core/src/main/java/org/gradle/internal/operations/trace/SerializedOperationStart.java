@@ -44,6 +44,15 @@ class SerializedOperationStart implements SerializedOperation {
         this.detailsClassName = details == null ? null : descriptor.getDetails().getClass().getName();
     }
 
+    SerializedOperationStart(long id, Long parentId, String displayName, long startTime, Object details, String detailsClassName) {
+        this.id = id;
+        this.parentId = parentId;
+        this.displayName = displayName;
+        this.startTime = startTime;
+        this.details = details;
+        this.detailsClassName = detailsClassName;
+    }
+
     SerializedOperationStart(Map<String, ?> map) {
         this.id = ((Integer) map.get("id")).longValue();
         Integer parentId = (Integer) map.get("parentId");
@@ -26,7 +26,9 @@
 import org.gradle.caching.internal.controller.BuildCacheCommandFactory;
 import org.gradle.caching.internal.controller.BuildCacheController;
 import org.gradle.concurrent.ParallelismConfiguration;
+import org.gradle.execution.plan.DefaultNodeExecutionTimeHistory;
 import org.gradle.execution.plan.DefaultPlanExecutor;
+import org.gradle.execution.plan.NodeExecutionTimeHistory;
 import org.gradle.execution.plan.PlanExecutor;
 import org.gradle.initialization.BuildCancellationToken;
 import org.gradle.internal.concurrent.ExecutorFactory;
@@ -98,6 +100,13 @@ ExecutionHistoryStore createExecutionHistoryStore(
         );
     }
 
+    NodeExecutionTimeHistory createNodeExecutionTimeHistory(
+        ExecutionHistoryCacheAccess executionHistoryCacheAccess,
+        InMemoryCacheDecoratorFactory inMemoryCacheDecoratorFactory
+    ) {
+        return new DefaultNodeExecutionTimeHistory(executionHistoryCacheAccess, inMemoryCacheDecoratorFactory);
+    }
+
     OutputFilesRepository createOutputFilesRepository(CacheRepository cacheRepository, Gradle gradle, InMemoryCacheDecoratorFactory inMemoryCacheDecoratorFactory) {
         PersistentCache cacheAccess = cacheRepository
             .cache(gradle, "buildOutputCleanup")
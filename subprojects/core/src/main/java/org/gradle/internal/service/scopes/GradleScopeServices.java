@@ -63,8 +63,10 @@
 import org.gradle.execution.TaskSelector;
 import org.gradle.execution.commandline.CommandLineTaskConfigurer;
 import org.gradle.execution.commandline.CommandLineTaskParser;
+import org.gradle.execution.plan.DefaultExecutionPlan;
 import org.gradle.execution.plan.DependencyResolver;
 import org.gradle.execution.plan.LocalTaskNodeExecutor;
+import org.gradle.execution.plan.NodeExecutionTimeHistory;
 import org.gradle.execution.plan.NodeExecutor;
 import org.gradle.execution.plan.PlanExecutor;
 import org.gradle.execution.plan.TaskDependencyResolver;
@@ -230,6 +232,19 @@ TaskExecutionGraphInternal createTaskExecutionGraph(
         ProjectStateRegistry projectStateRegistry,
         ServiceRegistry gradleScopedServices
     ) {
+        NodeExecutionTimeHistory executionTimeHistory;
+        String scheduling = System.getProperty(DefaultExecutionPlan.SCHEDULING_PROPERTY, DefaultExecutionPlan.PLAN_ORDER_SCHEDULING);
+        switch (scheduling) {
+            case DefaultExecutionPlan.PLAN_ORDER_SCHEDULING:
+                executionTimeHistory = null;
+                break;
+            case DefaultExecutionPlan.CRITICAL_PATH_SCHEDULING:
+                executionTimeHistory = gradleScopedServices.get(NodeExecutionTimeHistory.class);
+                break;
+            default:
+                throw new IllegalArgumentException(String.format("Unknown scheduling '%s' set by %s, use '%s' or '%s'.",
+                    scheduling, DefaultExecutionPlan.SCHEDULING_PROPERTY, DefaultExecutionPlan.PLAN_ORDER_SCHEDULING, DefaultExecutionPlan.CRITICAL_PATH_SCHEDULING));
+        }
         return new DefaultTaskExecutionGraph(
             planExecutor,
             nodeExecutors,
@@ -243,7 +258,8 @@ TaskExecutionGraphInternal createTaskExecutionGraph(
             taskListeners,
             listenerManager.getBroadcaster(BuildScopeListenerRegistrationListener.class),
             projectStateRegistry,
-            gradleScopedServices
+            gradleScopedServices,
+            executionTimeHistory
         );
     }
 
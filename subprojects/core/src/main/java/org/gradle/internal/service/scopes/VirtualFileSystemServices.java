@@ -17,6 +17,7 @@
 package org.gradle.internal.service.scopes;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableList;
 import net.rubygrapefruit.platform.NativeIntegrationUnavailableException;
 import org.apache.tools.ant.DirectoryScanner;
 import org.gradle.BuildAdapter;
@@ -29,8 +30,10 @@
 import org.gradle.api.internal.changedetection.state.CachingFileHasher;
 import org.gradle.api.internal.changedetection.state.CrossBuildFileHashCache;
 import org.gradle.api.internal.changedetection.state.DefaultResourceSnapshotterCacheService;
+import org.gradle.api.internal.changedetection.state.DirectoryWalkerPool;
 import org.gradle.api.internal.changedetection.state.FileHasherStatistics;
 import org.gradle.api.internal.changedetection.state.GradleUserHomeScopeFileTimeStampInspector;
+import org.gradle.api.internal.changedetection.state.ParallelFileHasherFactory;
 import org.gradle.api.internal.changedetection.state.ResourceEntryFilter;
 import org.gradle.api.internal.changedetection.state.ResourceFilter;
 import org.gradle.api.internal.changedetection.state.ResourceSnapshotterCacheService;
@@ -50,6 +53,7 @@
 import org.gradle.initialization.layout.ProjectCacheDir;
 import org.gradle.internal.build.BuildAddedListener;
 import org.gradle.internal.classloader.ClasspathHasher;
+import org.gradle.internal.concurrent.ExecutorFactory;
 import org.gradle.internal.deprecation.DeprecationLogger;
 import org.gradle.internal.event.ListenerManager;
 import org.gradle.internal.execution.DefaultOutputSnapshotter;
@@ -76,6 +80,7 @@
 import org.gradle.internal.hash.FileHasher;
 import org.gradle.internal.hash.HashCode;
 import org.gradle.internal.hash.StreamHasher;
+import org.gradle.internal.metrics.MetricsRegistry;
 import org.gradle.internal.nativeintegration.NativeCapabilities;
 import org.gradle.internal.nativeintegration.filesystem.FileSystem;
 import org.gradle.internal.os.OperatingSystem;
@@ -94,6 +99,7 @@
 import org.gradle.internal.watch.registry.impl.WindowsFileWatcherRegistryFactory;
 import org.gradle.internal.watch.vfs.BuildLifecycleAwareVirtualFileSystem;
 import org.gradle.internal.watch.vfs.impl.LocationsWrittenByCurrentBuild;
+import org.gradle.internal.watch.vfs.impl.VirtualFileSystemStateFile;
 import org.gradle.internal.watch.vfs.impl.WatchingNotSupportedVirtualFileSystem;
 import org.gradle.internal.watch.vfs.impl.WatchingVirtualFileSystem;
 import org.slf4j.Logger;
@@ -192,13 +198,21 @@ public void registerBuildSessionServices(ServiceRegistration registration) {
     }
 
     private static class GlobalScopeServices {
-        FileHasherStatistics.Collector createCachingFileHasherStatisticsCollector() {
-            return new FileHasherStatistics.Collector();
+        FileHasherStatistics.Collector createCachingFileHasherStatisticsCollector(MetricsRegistry metricsRegistry) {
+            return new FileHasherStatistics.Collector(metricsRegistry);
         }
 
         DirectorySnapshotterStatistics.Collector createDirectorySnapshotterStatisticsCollector() {
             return new DirectorySnapshotterStatistics.Collector();
         }
+
+        ParallelFileHasherFactory createParallelFileHasherFactory(ExecutorFactory executorFactory) {
+            return new ParallelFileHasherFactory(executorFactory);
+        }
+
+        DirectoryWalkerPool createDirectoryWalkerPool() {
+            return new DirectoryWalkerPool();
+        }
     }
 
     @VisibleForTesting
@@ -243,20 +257,30 @@ BuildLifecycleAwareVirtualFileSystem createVirtualFileSystem(
             NativeCapabilities nativeCapabilities,
             ListenerManager listenerManager,
             FileSystem fileSystem,
-            GlobalCacheLocations globalCacheLocations
+            GlobalCacheLocations globalCacheLocations,
+            CacheScopeMapping cacheScopeMapping,
+            StreamHasher streamHasher,
+            ExecutorFactory executorFactory
         ) {
             CaseSensitivity caseSensitivity = fileSystem.isCaseSensitive() ? CASE_SENSITIVE : CASE_INSENSITIVE;
             VfsRootReference rootReference = new VfsRootReference(DefaultSnapshotHierarchy.empty(caseSensitivity));
             // All the changes in global caches should be done by Gradle itself, so in order
             // to minimize the number of watches we don't watch anything within the global caches.
             Predicate<String> watchFilter = path -> !globalCacheLocations.isInsideGlobalCache(path);
+            VirtualFileSystemStateFile stateFile = new VirtualFileSystemStateFile(
+                new File(cacheScopeMapping.getBaseDirectory(null, "vfs", VersionStrategy.CachePerVersion), "vfs.bin"),
+                streamHasher.getHashFunction().getAlgorithm(),
+                () -> ImmutableList.copyOf(DirectoryScanner.getDefaultExcludes())
+            );
 
             BuildLifecycleAwareVirtualFileSystem virtualFileSystem = determineWatcherRegistryFactory(OperatingSystem.current(), nativeCapabilities, watchFilter)
                 .<BuildLifecycleAwareVirtualFileSystem>map(watcherRegistryFactory -> new WatchingVirtualFileSystem(
                     watcherRegistryFactory,
                     rootReference,
                     sectionId -> documentationRegistry.getDocumentationFor("gradle_daemon", sectionId),
-                    locationsWrittenByCurrentBuild
+                    locationsWrittenByCurrentBuild,
+                    stateFile,
+                    executorFactory.create("Virtual file system state writer", 1)
                 ))
                 .orElse(new WatchingNotSupportedVirtualFileSystem(rootReference));
             listenerManager.addListener((BuildAddedListener) buildState ->
@@ -267,6 +291,8 @@ BuildLifecycleAwareVirtualFileSystem createVirtualFileSystem(
 
         FileSystemAccess createFileSystemAccess(
             FileHasher hasher,
+            ParallelFileHasherFactory parallelFileHasherFactory,
+            DirectoryWalkerPool directoryWalkerPool,
             VirtualFileSystem virtualFileSystem,
             Stat stat,
             StringInterner stringInterner,
@@ -276,12 +302,13 @@ FileSystemAccess createFileSystemAccess(
             DirectorySnapshotterStatistics.Collector statisticsCollector
         ) {
             DefaultFileSystemAccess fileSystemAccess = new DefaultFileSystemAccess(
-                hasher,
+                parallelFileHasherFactory.create(hasher),
                 stringInterner,
                 stat,
                 virtualFileSystem,
                 writeListener,
                 statisticsCollector,
+                directoryWalkerPool.getPool(),
                 DirectoryScanner.getDefaultExcludes()
             );
             listenerManager.addListener(new DefaultExcludesBuildListener(fileSystemAccess) {
@@ -375,6 +402,8 @@ FileHasher createFileHasher(
 
         FileSystemAccess createFileSystemAccess(
             FileHasher hasher,
+            ParallelFileHasherFactory parallelFileHasherFactory,
+            DirectoryWalkerPool directoryWalkerPool,
             ListenerManager listenerManager,
             Stat stat,
             StringInterner stringInterner,
@@ -383,12 +412,13 @@ FileSystemAccess createFileSystemAccess(
             DirectorySnapshotterStatistics.Collector statisticsCollector
         ) {
             DefaultFileSystemAccess buildSessionsScopedVirtualFileSystem = new DefaultFileSystemAccess(
-                hasher,
+                parallelFileHasherFactory.create(hasher),
                 stringInterner,
                 stat,
                 root,
                 writeListener,
                 statisticsCollector,
+                directoryWalkerPool.getPool(),
                 DirectoryScanner.getDefaultExcludes()
             );
 
@@ -31,6 +31,7 @@
 import org.gradle.internal.concurrent.ExecutorFactory;
 import org.gradle.internal.event.ListenerManager;
 import org.gradle.internal.logging.progress.ProgressLoggerFactory;
+import org.gradle.internal.metrics.MetricsRegistry;
 import org.gradle.internal.logging.sink.OutputEventListenerManager;
 import org.gradle.internal.operations.BuildOperationExecutor;
 import org.gradle.internal.operations.BuildOperationIdFactory;
@@ -39,6 +40,7 @@
 import org.gradle.internal.operations.DefaultBuildOperationExecutor;
 import org.gradle.internal.operations.DefaultBuildOperationQueueFactory;
 import org.gradle.internal.operations.logging.LoggingBuildOperationProgressBroadcaster;
+import org.gradle.internal.operations.metrics.BuildOperationMetrics;
 import org.gradle.internal.operations.notify.BuildOperationNotificationBridge;
 import org.gradle.internal.operations.notify.BuildOperationNotificationValve;
 import org.gradle.internal.operations.trace.BuildOperationTrace;
@@ -71,8 +73,9 @@ public CrossBuildSessionState(ServiceRegistry parent, StartParameter startParame
             .parent(parent)
             .provider(new Services(startParameter))
             .build();
-        // Trigger listener to wire itself in
+        // Trigger listeners to wire themselves in
         services.get(BuildOperationTrace.class);
+        services.get(BuildOperationMetrics.class);
     }
 
     public ServiceRegistry getServices() {
@@ -103,8 +106,8 @@ GradleLauncherFactory createGradleLauncherFactory(GradleUserHomeScopeServiceRegi
             );
         }
 
-        WorkerLeaseService createWorkerLeaseService(ResourceLockCoordinationService resourceLockCoordinationService, ParallelismConfiguration parallelismConfiguration) {
-            return new DefaultWorkerLeaseService(resourceLockCoordinationService, parallelismConfiguration);
+        WorkerLeaseService createWorkerLeaseService(ResourceLockCoordinationService resourceLockCoordinationService, ParallelismConfiguration parallelismConfiguration, MetricsRegistry metricsRegistry) {
+            return new DefaultWorkerLeaseService(resourceLockCoordinationService, parallelismConfiguration, metricsRegistry);
         }
 
         BuildOperationExecutor createBuildOperationExecutor(
@@ -143,8 +146,12 @@ LoggingBuildOperationProgressBroadcaster createLoggingBuildOperationProgressBroa
             return new LoggingBuildOperationProgressBroadcaster(outputEventListenerManager, buildOperationProgressEventEmitter);
         }
 
-        BuildOperationTrace createBuildOperationTrace(BuildOperationListenerManager buildOperationListenerManager) {
-            return new BuildOperationTrace(startParameter, buildOperationListenerManager);
+        BuildOperationTrace createBuildOperationTrace(BuildOperationListenerManager buildOperationListenerManager, ExecutorFactory executorFactory) {
+            return new BuildOperationTrace(startParameter, buildOperationListenerManager, executorFactory);
+        }
+
+        BuildOperationMetrics createBuildOperationMetrics(MetricsRegistry metricsRegistry, BuildOperationListenerManager buildOperationListenerManager) {
+            return new BuildOperationMetrics(startParameter, metricsRegistry, buildOperationListenerManager);
         }
 
         BuildOperationNotificationBridge createBuildOperationNotificationBridge(BuildOperationListenerManager buildOperationListenerManager, ListenerManager generalListenerManager) {
@@ -20,6 +20,7 @@
 import org.gradle.api.logging.LogLevel;
 import org.gradle.internal.Actions;
 import org.gradle.internal.Cast;
+import org.gradle.internal.UncheckedException;
 import org.gradle.internal.classloader.ClasspathUtil;
 import org.gradle.internal.classpath.ClassPath;
 import org.gradle.internal.logging.events.OutputEventListener;
@@ -146,7 +147,13 @@ public MultiRequestClient<IN, OUT> build() {
 
         return new MultiRequestClient<IN, OUT>() {
             private Receiver receiver = new Receiver(getBaseName(), outputEventListener);
+            // Guards sending requests. Several requests can be in flight, the worker executes them in the order they are sent
+            private final Object sendLock = new Object();
+            // Guards receiving results, which arrive in the order the requests have been sent
+            private final Object receiveLock = new Object();
             private RequestProtocol requestProtocol;
+            private long requestsSent;
+            private long resultsReceived;
 
             @Override
             public WorkerProcess start() {
@@ -166,24 +173,55 @@ public WorkerProcess start() {
 
             @Override
             public ExecResult stop() {
-                if (requestProtocol != null) {
-                    requestProtocol.stop();
+                synchronized (sendLock) {
+                    if (requestProtocol != null) {
+                        requestProtocol.stop();
+                    }
                 }
                 try {
                     return workerProcess.waitForStop();
                 } finally {
-                    requestProtocol = null;
+                    synchronized (sendLock) {
+                        requestProtocol = null;
+                    }
                 }
             }
 
             @Override
             public OUT run(IN request) {
-                requestProtocol.run(new Request(request, CurrentBuildOperationRef.instance().get()));
+                long sequenceNumber;
+                synchronized (sendLock) {
+                    if (requestProtocol == null) {
+                        throw WorkerProcessException.runFailed(getBaseName(), new IllegalStateException(String.format("%s has finished.", getBaseName())));
+                    }
+                    sequenceNumber = requestsSent++;
+                    requestProtocol.run(new Request(request, CurrentBuildOperationRef.instance().get()));
+                }
+                synchronized (receiveLock) {
+                    try {
+                        while (resultsReceived != sequenceNumber) {
+                            receiveLock.wait();
+                        }
+                    } catch (InterruptedException e) {
+                        throw UncheckedException.throwAsUncheckedException(e);
+                    }
+                    try {
+                        return receiveResult();
+                    } finally {
+                        resultsReceived++;
+                        receiveLock.notifyAll();
+                    }
+                }
+            }
+
+            private OUT receiveResult() {
                 boolean hasResult = receiver.awaitNextResult();
                 if (!hasResult) {
                     try {
                         // Reached the end of input, worker has crashed or exited
-                        requestProtocol = null;
+                        synchronized (sendLock) {
+                            requestProtocol = null;
+                        }
                         failureHandler.execute(workerProcess);
                         workerProcess.waitForStop();
                         // Worker didn't crash
@@ -16,5 +16,10 @@
 
 package org.gradle.process.internal.worker;
 
+/**
+ * A client for a worker process which executes many requests.
+ *
+ * <p>Requests can be run from several threads at once. The worker process executes them one at a time, in the order they were sent.</p>
+ */
 public interface MultiRequestClient<IN, OUT> extends RequestHandler<IN, OUT>, WorkerControl {
 }
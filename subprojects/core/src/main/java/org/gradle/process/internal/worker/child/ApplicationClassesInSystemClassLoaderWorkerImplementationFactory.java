@@ -150,7 +150,10 @@ public void prepareJavaCommand(long workerId, String displayName, WorkerProcessB
             encoder.writeSmallInt(logLevel.ordinal());
             encoder.writeBoolean(publishProcessInfo);
             encoder.writeString(gradleUserHomeDir.getAbsolutePath());
-            new MultiChoiceAddressSerializer().write(encoder, (MultiChoiceAddress) serverAddress);
+            MultiChoiceAddress multiChoiceAddress = (MultiChoiceAddress) serverAddress;
+            new MultiChoiceAddressSerializer().write(encoder, multiChoiceAddress);
+            File unixSocketFile = multiChoiceAddress.getUnixSocketFile();
+            encoder.writeNullableString(unixSocketFile == null ? null : unixSocketFile.getAbsolutePath());
             encoder.writeSmallLong(workerId);
             encoder.writeString(displayName);
 
@@ -43,12 +43,14 @@ class DefaultExecutionPlanParallelTest extends AbstractExecutionPlanSpec {
     FileSystem fs = NativeServicesTestFixture.instance.get(FileSystem)
 
     DefaultExecutionPlan executionPlan
+    TaskNodeFactory taskNodeFactory
+    TaskDependencyResolver dependencyResolver
     def lease = Stub(WorkerLeaseRegistry.WorkerLease)
 
     def setup() {
         _ * lease.tryLock() >> true
-        def taskNodeFactory = new TaskNodeFactory(project.gradle, Stub(IncludedBuildTaskGraph))
-        def dependencyResolver = new TaskDependencyResolver([new TaskNodeDependencyResolver(taskNodeFactory)])
+        taskNodeFactory = new TaskNodeFactory(project.gradle, Stub(IncludedBuildTaskGraph))
+        dependencyResolver = new TaskDependencyResolver([new TaskNodeDependencyResolver(taskNodeFactory)])
         executionPlan = new DefaultExecutionPlan(thisBuild, taskNodeFactory, dependencyResolver)
     }
 
@@ -76,6 +78,39 @@ class DefaultExecutionPlanParallelTest extends AbstractExecutionPlanSpec {
         executedTasks == [bar, baz, foo] as Set
     }
 
+    def "selects ready nodes with the longest remaining path first when scheduling by critical path"() {
+        given:
+        def executionTimes = [a: 10, b: 100, c: 10, d: 50]
+        def executionTimeHistory = Stub(NodeExecutionTimeHistory) {
+            getExecutionTime(_) >> { Node node -> executionTimes[node.task.name] }
+        }
+        executionPlan = new DefaultExecutionPlan(thisBuild, taskNodeFactory, dependencyResolver, executionTimeHistory)
+        def a = task("a", type: Async)
+        def b = task("b", type: Async)
+        def c = task("c", type: Async)
+        def d = task("d", type: Async, dependsOn: [b])
+
+        when:
+        addToGraphAndPopulate(a, c, d)
+
+        then:
+        executionPlan.predictedCriticalPath.nodes*.task == [b, d]
+        executionPlan.predictedCriticalPath.time == 150
+
+        when:
+        def bNode = selectNextTaskNode()
+        def executedTasks = [bNode.task, selectNextTask(), selectNextTask(), selectNextTask()]
+
+        then:
+        executedTasks == [b, a, c, null]
+
+        when:
+        executionPlan.finishedExecuting(bNode)
+
+        then:
+        selectNextTask() == d
+    }
+
     def "one non-async task per project is allowed"() {
         given:
         //2 projects, 2 non parallelizable tasks each
@@ -263,6 +298,23 @@ class DefaultExecutionPlanParallelTest extends AbstractExecutionPlanSpec {
         tasksAreNotExecutedInParallel(a, b)
     }
 
+    def "tasks that write into sibling directories with a common name prefix are executed in parallel"() {
+        given:
+        Task a = task("a", type: AsyncWithOutputDirectory)
+        _ * a.outputDirectory >> file("outputDir")
+        Task b = task("b", type: AsyncWithOutputDirectory)
+        _ * b.outputDirectory >> file("outputDir2")
+        Task c = task("c", type: AsyncWithOutputDirectory)
+        _ * c.outputDirectory >> file("output")
+
+        when:
+        addToGraphAndPopulate(a, b, c)
+        def executedTasks = [selectNextTask(), selectNextTask(), selectNextTask()] as Set
+
+        then:
+        executedTasks == [a, b, c] as Set
+    }
+
     @Requires(TestPrecondition.SYMLINKS)
     def "a task that writes into a symlink that overlaps with output of currently running task is not started"() {
         given:
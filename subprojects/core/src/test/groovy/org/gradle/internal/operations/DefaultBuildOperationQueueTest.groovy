@@ -18,6 +18,7 @@ package org.gradle.internal.operations
 
 import org.gradle.api.GradleException
 import org.gradle.internal.concurrent.DefaultParallelismConfiguration
+import org.gradle.internal.metrics.MetricsRegistry
 import org.gradle.internal.resources.DefaultResourceLockCoordinationService
 import org.gradle.internal.work.DefaultWorkerLeaseService
 import org.gradle.internal.work.WorkerLeaseService
@@ -62,7 +63,7 @@ class DefaultBuildOperationQueueTest extends Specification {
     WorkerLeaseService workerRegistry
 
     void setupQueue(int threads) {
-        workerRegistry = new DefaultWorkerLeaseService(new DefaultResourceLockCoordinationService(), new DefaultParallelismConfiguration(true, threads)) {}
+        workerRegistry = new DefaultWorkerLeaseService(new DefaultResourceLockCoordinationService(), new DefaultParallelismConfiguration(true, threads), new MetricsRegistry()) {}
         operationQueue = new DefaultBuildOperationQueue(workerRegistry, Executors.newFixedThreadPool(threads), new SimpleWorker())
     }
 
@@ -195,6 +196,47 @@ class DefaultBuildOperationQueueTest extends Specification {
         5    | 10
     }
 
+    def "runs unconstrained operations using the unconstrained executor without a worker lease"() {
+        given:
+        workerRegistry = new DefaultWorkerLeaseService(new DefaultResourceLockCoordinationService(), new DefaultParallelismConfiguration(true, 1), new MetricsRegistry()) {}
+        def unconstrainedExecutor = Executors.newCachedThreadPool()
+        operationQueue = new DefaultBuildOperationQueue(workerRegistry, Executors.newFixedThreadPool(1), unconstrainedExecutor, new SimpleWorker())
+        def runs = 4
+        CountDownLatch startedLatch = new CountDownLatch(runs)
+        CountDownLatch releaseLatch = new CountDownLatch(1)
+        def operationAction = Mock(Runnable)
+
+        when:
+        runs.times { operationQueue.add(new SynchronizedBuildOperation(operationAction, startedLatch, releaseLatch), BuildOperationConstraint.UNCONSTRAINED) }
+        // all operations run at the same time, even though there is a single worker lease
+        startedLatch.await()
+
+        and:
+        releaseLatch.countDown()
+        operationQueue.waitForCompletion()
+
+        then:
+        runs * operationAction.run()
+
+        cleanup:
+        unconstrainedExecutor.shutdownNow()
+    }
+
+    def "runs unconstrained operations like any other operation when there is no unconstrained executor"() {
+        given:
+        setupQueue(1)
+        def success = Mock(TestBuildOperation)
+
+        when:
+        3.times { operationQueue.add(success, BuildOperationConstraint.UNCONSTRAINED) }
+
+        and:
+        operationQueue.waitForCompletion()
+
+        then:
+        3 * success.run(_)
+    }
+
     static class SynchronizedBuildOperation extends TestBuildOperation {
         final Runnable operationAction
         final CountDownLatch startedLatch
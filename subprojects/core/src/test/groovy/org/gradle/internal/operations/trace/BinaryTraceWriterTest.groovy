@@ -0,0 +1,140 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.operations.trace
+
+import org.gradle.internal.concurrent.DefaultExecutorFactory
+import org.gradle.internal.operations.BuildOperationDescriptor
+import org.gradle.internal.operations.OperationFinishEvent
+import org.gradle.internal.operations.OperationIdentifier
+import org.gradle.internal.operations.OperationProgressEvent
+import org.gradle.internal.operations.OperationStartEvent
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.junit.Rule
+import spock.lang.Specification
+
+class BinaryTraceWriterTest extends Specification {
+    @Rule
+    final TestNameTestDirectoryProvider tmpDir = new TestNameTestDirectoryProvider(getClass())
+
+    def executorFactory = new DefaultExecutorFactory()
+    def logFile = tmpDir.file("operations-log.bin")
+
+    def root = descriptor(1, null, "root", [path: ":"])
+    def first = descriptor(2, 1, "child", null)
+    def second = descriptor(3, 1, "child", [path: ":second"])
+
+    def cleanup() {
+        executorFactory.stop()
+    }
+
+    def "reads back the tree of operations written to the log"() {
+        when:
+        writeLog()
+        def builder = new BuildOperationTreeBuilder()
+        BinaryTraceReader.read(logFile, builder)
+        def roots = builder.roots
+
+        then:
+        roots.size() == 1
+        with(roots[0]) {
+            id == 1
+            parentId == null
+            displayName == "root"
+            startTime == 10
+            endTime == 20
+            details == [path: ":"]
+            result == [outcome: "done"]
+            failure == null
+            children*.id == [2, 3]
+        }
+        with(roots[0].children[0]) {
+            parentId == 1
+            displayName == "child"
+            details == null
+            progress.size() == 1
+            progress[0].time == 12
+            progress[0].details == [message: "working"]
+            failure == "java.lang.RuntimeException: broken"
+            children.empty
+        }
+        with(roots[0].children[1]) {
+            displayName == "child"
+            details == [path: ":second"]
+            startTime == 14
+            endTime == 15
+            progress.empty
+        }
+    }
+
+    def "reads a log up to a record which was not completely written"() {
+        def builder = Mock(BuildOperationTreeBuilder)
+
+        given:
+        writeLog()
+        truncate(logFile, 3)
+
+        when:
+        BinaryTraceReader.read(logFile, builder)
+
+        then:
+        1 * builder.started({ it.id == 1 })
+        1 * builder.started({ it.id == 2 })
+        1 * builder.progress({ it.id == 2 })
+        1 * builder.finished({ it.id == 2 })
+        1 * builder.started({ it.id == 3 })
+        1 * builder.finished({ it.id == 3 })
+        0 * builder._
+    }
+
+    def "does not read a file which is not a build operation trace log"() {
+        logFile.text = "not a trace"
+
+        when:
+        BinaryTraceReader.read(logFile, new BuildOperationTreeBuilder())
+
+        then:
+        def e = thrown(IOException)
+        e.message == "${logFile} is not a build operation trace log."
+    }
+
+    private void writeLog() {
+        def writer = new BinaryTraceWriter(logFile, executorFactory)
+        writer.started(root, new OperationStartEvent(10))
+        writer.started(first, new OperationStartEvent(11))
+        writer.progress(first.id, new OperationProgressEvent(12, [message: "working"]))
+        writer.finished(first, new OperationFinishEvent(11, 13, new RuntimeException("broken"), null))
+        writer.started(second, new OperationStartEvent(14))
+        writer.finished(second, new OperationFinishEvent(14, 15, null, null))
+        writer.finished(root, new OperationFinishEvent(10, 20, null, [outcome: "done"]))
+        writer.close()
+    }
+
+    private static BuildOperationDescriptor descriptor(long id, Long parentId, String displayName, Object details) {
+        return BuildOperationDescriptor.displayName(displayName)
+            .details(details)
+            .build(new OperationIdentifier(id), parentId == null ? null : new OperationIdentifier(parentId))
+    }
+
+    private static void truncate(File file, int bytes) {
+        def raf = new RandomAccessFile(file, "rw")
+        try {
+            raf.setLength(raf.length() - bytes)
+        } finally {
+            raf.close()
+        }
+    }
+}
@@ -18,6 +18,7 @@ package org.gradle.internal.work
 
 import org.gradle.internal.concurrent.DefaultParallelismConfiguration
 import org.gradle.internal.exceptions.DefaultMultiCauseException
+import org.gradle.internal.metrics.MetricsRegistry
 import org.gradle.internal.operations.BuildOperationRef
 import org.gradle.internal.resources.DefaultResourceLockCoordinationService
 import org.gradle.internal.resources.ProjectLeaseRegistry
@@ -30,7 +31,7 @@ import static org.gradle.internal.work.AsyncWorkTracker.ProjectLockRetention.RET
 
 class DefaultAsyncWorkTrackerTest extends ConcurrentSpec {
     ResourceLockCoordinationService coordinationService = new DefaultResourceLockCoordinationService()
-    WorkerLeaseService workerLeaseService = new DefaultWorkerLeaseService(coordinationService, new DefaultParallelismConfiguration(true, 1))
+    WorkerLeaseService workerLeaseService = new DefaultWorkerLeaseService(coordinationService, new DefaultParallelismConfiguration(true, 1), new MetricsRegistry())
     AsyncWorkTracker asyncWorkTracker = new DefaultAsyncWorkTracker(workerLeaseService)
 
     def "can wait for async work to complete"() {
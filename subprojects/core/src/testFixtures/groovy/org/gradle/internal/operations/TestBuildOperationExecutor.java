@@ -128,6 +128,11 @@ public void add(O operation) {
             log.run(operation);
         }
 
+        @Override
+        public void add(O operation, BuildOperationConstraint constraint) {
+            add(operation);
+        }
+
         @Override
         public void cancel() {
             throw new UnsupportedOperationException();
@@ -18,6 +18,7 @@ import gradlebuild.cleanup.WhenNotEmpty
 
 plugins {
     id("gradlebuild.distribution.implementation-java")
+    id("gradlebuild.jmh")
 }
 
 dependencies {
@@ -54,6 +55,9 @@ dependencies {
     implementation(libs.ivy)
     implementation(libs.maven3)
 
+    jmhImplementation(platform(project(":distributions-dependencies")))
+    jmhImplementation(testFixtures(project(":core")))
+
     testImplementation(project(":process-services"))
     testImplementation(project(":diagnostics"))
     testImplementation(project(":build-cache-packaging"))
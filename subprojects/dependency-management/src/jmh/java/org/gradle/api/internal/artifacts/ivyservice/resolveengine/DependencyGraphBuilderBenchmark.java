@@ -0,0 +1,240 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.gradle.api.internal.artifacts.ivyservice.resolveengine;
+
+import com.google.common.collect.ImmutableSet;
+import org.gradle.api.artifacts.ModuleIdentifier;
+import org.gradle.api.artifacts.ModuleVersionIdentifier;
+import org.gradle.api.artifacts.ModuleVersionSelector;
+import org.gradle.api.artifacts.component.ComponentIdentifier;
+import org.gradle.api.artifacts.component.ComponentSelector;
+import org.gradle.api.artifacts.component.ModuleComponentSelector;
+import org.gradle.api.attributes.AttributeContainer;
+import org.gradle.api.internal.FeaturePreviews;
+import org.gradle.api.internal.artifacts.ComponentSelectorConverter;
+import org.gradle.api.internal.artifacts.DefaultModuleIdentifier;
+import org.gradle.api.internal.artifacts.DefaultModuleVersionIdentifier;
+import org.gradle.api.internal.artifacts.DefaultModuleVersionSelector;
+import org.gradle.api.internal.artifacts.ResolveContext;
+import org.gradle.api.internal.artifacts.configurations.ConflictResolution;
+import org.gradle.api.internal.artifacts.configurations.ResolutionStrategyInternal;
+import org.gradle.api.internal.artifacts.dependencies.DefaultMutableVersionConstraint;
+import org.gradle.api.internal.artifacts.dsl.ModuleReplacementsData;
+import org.gradle.api.internal.artifacts.ivyservice.dependencysubstitution.DependencySubstitutionApplicator;
+import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.strategy.DefaultVersionComparator;
+import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.strategy.DefaultVersionSelectorScheme;
+import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.strategy.VersionParser;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.excludes.ModuleExclusions;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.DependencyGraphVisitor;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.builder.DependencyGraphBuilder;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.conflicts.DefaultCapabilitiesConflictHandler;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.conflicts.DefaultConflictHandler;
+import org.gradle.api.internal.attributes.EmptySchema;
+import org.gradle.api.internal.attributes.ImmutableAttributes;
+import org.gradle.api.internal.attributes.ImmutableAttributesFactory;
+import org.gradle.api.specs.Specs;
+import org.gradle.internal.component.external.model.DefaultModuleComponentIdentifier;
+import org.gradle.internal.component.external.model.DefaultModuleComponentSelector;
+import org.gradle.internal.component.external.model.ImmutableCapabilities;
+import org.gradle.internal.component.local.model.BuildableLocalConfigurationMetadata;
+import org.gradle.internal.component.local.model.DefaultLocalComponentMetadata;
+import org.gradle.internal.component.local.model.RootLocalComponentMetadata;
+import org.gradle.internal.component.model.ComponentOverrideMetadata;
+import org.gradle.internal.component.model.ComponentResolveMetadata;
+import org.gradle.internal.component.model.LocalComponentDependencyMetadata;
+import org.gradle.internal.locking.NoOpDependencyLockingProvider;
+import org.gradle.internal.operations.TestBuildOperationExecutor;
+import org.gradle.internal.resolve.resolver.ComponentMetaDataResolver;
+import org.gradle.internal.resolve.resolver.DependencyToComponentIdResolver;
+import org.gradle.internal.resolve.resolver.ResolveContextToComponentResolver;
+import org.gradle.internal.resolve.result.BuildableComponentResolveResult;
+import org.gradle.util.AttributeTestUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.reflect.Proxy;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Measures the resolution of a large, layered dependency graph by the {@link DependencyGraphBuilder}, with all metadata available in memory.
+ *
+ * <p>Each operation is one resolved edge. Run with {@code -prof gc} to get the allocation per resolved edge, reported as {@code gc.alloc.rate.norm}.</p>
+ */
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@State(Scope.Benchmark)
+@OperationsPerInvocation(DependencyGraphBuilderBenchmark.EDGE_COUNT)
+public class DependencyGraphBuilderBenchmark {
+    static final int LAYERS = 10;
+    static final int MODULES_PER_LAYER = 100;
+    static final int DEPENDENCIES_PER_MODULE = 10;
+    static final int EDGE_COUNT = MODULES_PER_LAYER + (LAYERS - 1) * MODULES_PER_LAYER * DEPENDENCIES_PER_MODULE;
+
+    private final DefaultVersionComparator versionComparator = new DefaultVersionComparator();
+    private final VersionParser versionParser = new VersionParser();
+    private final ImmutableAttributesFactory attributesFactory = AttributeTestUtil.attributesFactory();
+    private final Map<ComponentIdentifier, ComponentResolveMetadata> components = new HashMap<>();
+    private RootLocalComponentMetadata root;
+    private ResolveContext resolveContext;
+
+    @Setup
+    public void setup() {
+        root = new RootLocalComponentMetadata(DefaultModuleVersionIdentifier.newId("org.benchmark", "root", "1.0"), DefaultModuleComponentIdentifier.newId(DefaultModuleIdentifier.newId("org.benchmark", "root"), "1.0"), "release", EmptySchema.INSTANCE, NoOpDependencyLockingProvider.getInstance());
+        BuildableLocalConfigurationMetadata rootConfiguration = addDefaultConfiguration(root);
+        for (int module = 0; module < MODULES_PER_LAYER; module++) {
+            addDependency(root, rootConfiguration, 0, module);
+        }
+        for (int layer = 0; layer < LAYERS; layer++) {
+            for (int module = 0; module < MODULES_PER_LAYER; module++) {
+                ModuleVersionIdentifier id = moduleId(layer, module);
+                DefaultLocalComponentMetadata component = new DefaultLocalComponentMetadata(id, DefaultModuleComponentIdentifier.newId(id), "release", EmptySchema.INSTANCE);
+                BuildableLocalConfigurationMetadata configuration = addDefaultConfiguration(component);
+                if (layer < LAYERS - 1) {
+                    for (int dependency = 0; dependency < DEPENDENCIES_PER_MODULE; dependency++) {
+                        addDependency(component, configuration, layer + 1, (module + dependency * 7) % MODULES_PER_LAYER);
+                    }
+                }
+                components.put(component.getId(), component);
+            }
+        }
+        resolveContext = resolveContext();
+    }
+
+    @Benchmark
+    public void resolve() {
+        DependencyGraphBuilder builder = new DependencyGraphBuilder(
+            idResolver(),
+            metaDataResolver(),
+            rootResolver(),
+            new DefaultConflictHandler(new ConflictResolverFactory(versionComparator, versionParser, new FeaturePreviews()).createConflictResolver(ConflictResolution.latest), ModuleReplacementsData.NO_OP),
+            new DefaultCapabilitiesConflictHandler(),
+            Specs.satisfyAll(),
+            EmptySchema.INSTANCE,
+            new ModuleExclusions(),
+            new TestBuildOperationExecutor(),
+            DependencySubstitutionApplicator.NO_OP,
+            new SimpleComponentSelectorConverter(),
+            attributesFactory,
+            new DefaultVersionSelectorScheme(versionComparator, versionParser),
+            versionComparator.asVersionComparator(),
+            versionParser);
+        builder.resolve(resolveContext, DependencyGraphVisitor.NO_OP);
+    }
+
+    private static ModuleVersionIdentifier moduleId(int layer, int module) {
+        return DefaultModuleVersionIdentifier.newId("org.benchmark", "module-" + layer + "-" + module, "1.0");
+    }
+
+    private static BuildableLocalConfigurationMetadata addDefaultConfiguration(DefaultLocalComponentMetadata component) {
+        return component.addConfiguration("default", "default", Collections.emptySet(), ImmutableSet.of("default"), true, true, ImmutableAttributes.EMPTY, true, null, true, ImmutableCapabilities.EMPTY);
+    }
+
+    private static void addDependency(DefaultLocalComponentMetadata from, BuildableLocalConfigurationMetadata configuration, int layer, int module) {
+        ModuleVersionIdentifier to = moduleId(layer, module);
+        ComponentSelector selector = DefaultModuleComponentSelector.newSelector(to.getModule(), new DefaultMutableVersionConstraint(to.getVersion()));
+        configuration.addDependency(new LocalComponentDependencyMetadata(from.getId(), selector, "default", null, ImmutableAttributes.EMPTY, "default",
+            Collections.emptyList(), Collections.emptyList(), false, false, true, false, false, null));
+    }
+
+    private static DependencyToComponentIdResolver idResolver() {
+        return (dependency, acceptor, rejector, result) -> {
+            ModuleComponentSelector selector = (ModuleComponentSelector) dependency.getSelector();
+            ModuleVersionIdentifier id = DefaultModuleVersionIdentifier.newId(selector.getModuleIdentifier(), selector.getVersion());
+            result.resolved(DefaultModuleComponentIdentifier.newId(id), id);
+        };
+    }
+
+    private ComponentMetaDataResolver metaDataResolver() {
+        return new ComponentMetaDataResolver() {
+            @Override
+            public void resolve(ComponentIdentifier identifier, ComponentOverrideMetadata componentOverrideMetadata, BuildableComponentResolveResult result) {
+                result.resolved(components.get(identifier));
+            }
+
+            @Override
+            public boolean isFetchingMetadataCheap(ComponentIdentifier identifier) {
+                return true;
+            }
+        };
+    }
+
+    private ResolveContextToComponentResolver rootResolver() {
+        return (context, result) -> result.resolved(root);
+    }
+
+    private static ResolveContext resolveContext() {
+        // Only the conflict resolution and the failure flags of the resolution strategy are used by the graph builder
+        ResolutionStrategyInternal resolutionStrategy = (ResolutionStrategyInternal) Proxy.newProxyInstance(ResolutionStrategyInternal.class.getClassLoader(), new Class<?>[]{ResolutionStrategyInternal.class}, (proxy, method, args) -> {
+            if (method.getReturnType() == ConflictResolution.class) {
+                return ConflictResolution.latest;
+            }
+            if (method.getReturnType() == boolean.class) {
+                return false;
+            }
+            return null;
+        });
+        return new ResolveContext() {
+            @Override
+            public String getName() {
+                return "default";
+            }
+
+            @Override
+            public String getDisplayName() {
+                return "benchmark";
+            }
+
+            @Override
+            public ResolutionStrategyInternal getResolutionStrategy() {
+                return resolutionStrategy;
+            }
+
+            @Override
+            public ComponentResolveMetadata toRootComponentMetaData() {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public AttributeContainer getAttributes() {
+                return ImmutableAttributes.EMPTY;
+            }
+        };
+    }
+
+    private static class SimpleComponentSelectorConverter implements ComponentSelectorConverter {
+        @Override
+        public ModuleIdentifier getModule(ComponentSelector selector) {
+            return ((ModuleComponentSelector) selector).getModuleIdentifier();
+        }
+
+        @Override
+        public ModuleVersionSelector getSelector(ComponentSelector selector) {
+            ModuleComponentSelector moduleSelector = (ModuleComponentSelector) selector;
+            return DefaultModuleVersionSelector.newSelector(moduleSelector.getModuleIdentifier(), moduleSelector.getVersion());
+        }
+    }
+}
@@ -48,6 +48,7 @@
 import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.strategy.VersionComparator;
 import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.strategy.VersionParser;
 import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.strategy.VersionSelectorScheme;
+import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.verification.CrossBuildArtifactVerificationCache;
 import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.verification.DependencyVerificationOverride;
 import org.gradle.api.internal.artifacts.ivyservice.modulecache.AbstractModuleMetadataCache;
 import org.gradle.api.internal.artifacts.ivyservice.modulecache.FileStoreAndIndexProvider;
@@ -89,6 +90,7 @@
 import org.gradle.api.internal.artifacts.ivyservice.projectmodule.ProjectPublicationRegistry;
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.DefaultArtifactDependencyResolver;
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.excludes.ModuleExclusions;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.builder.ResolvedGraphCache;
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.result.AttributeContainerSerializer;
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.result.CachingComponentSelectionDescriptorFactory;
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.result.ComponentSelectionDescriptorFactory;
@@ -140,6 +142,7 @@
 import org.gradle.initialization.ProjectAccessListener;
 import org.gradle.initialization.layout.BuildLayout;
 import org.gradle.initialization.layout.ProjectCacheDir;
+import org.gradle.internal.Factory;
 import org.gradle.internal.build.BuildState;
 import org.gradle.internal.build.BuildStateRegistry;
 import org.gradle.internal.classpath.ClasspathBuilder;
@@ -505,8 +508,14 @@ DependencyVerificationOverride createDependencyVerificationOverride(StartParamet
                                                                         DocumentationRegistry documentationRegistry,
                                                                         ListenerManager listenerManager,
                                                                         BuildCommencedTimeProvider timeProvider,
+                                                                        FileHasher fileHasher,
+                                                                        CacheScopeMapping scopeCacheMapping,
+                                                                        ProjectCacheDir projectCacheDir,
+                                                                        CacheRepository cacheRepository,
+                                                                        InMemoryCacheDecoratorFactory decoratorFactory,
                                                                         ServiceRegistry serviceRegistry) {
-        DependencyVerificationOverride override = startParameterResolutionOverride.dependencyVerificationOverride(buildOperationExecutor, checksumService, signatureVerificationServiceFactory, documentationRegistry, timeProvider, () -> serviceRegistry.get(GradleProperties.class));
+        Factory<CrossBuildArtifactVerificationCache> verificationCacheFactory = () -> new CrossBuildArtifactVerificationCache(fileHasher, scopeCacheMapping, projectCacheDir, cacheRepository, decoratorFactory);
+        DependencyVerificationOverride override = startParameterResolutionOverride.dependencyVerificationOverride(buildOperationExecutor, checksumService, signatureVerificationServiceFactory, verificationCacheFactory, documentationRegistry, timeProvider, () -> serviceRegistry.get(GradleProperties.class));
         registerBuildFinishedHooks(listenerManager, override);
         return override;
     }
@@ -551,7 +560,8 @@ ArtifactDependencyResolver createArtifactDependencyResolver(ResolveIvyFactory re
                                                                 ComponentMetadataSupplierRuleExecutor componentMetadataSupplierRuleExecutor,
                                                                 InstantiatorFactory instantiatorFactory,
                                                                 ComponentSelectionDescriptorFactory componentSelectionDescriptorFactory,
-                                                                FeaturePreviews featurePreviews) {
+                                                                FeaturePreviews featurePreviews,
+                                                                ResolvedGraphCache resolvedGraphCache) {
         return new DefaultArtifactDependencyResolver(
             buildOperationExecutor,
             resolverFactories,
@@ -567,7 +577,19 @@ ArtifactDependencyResolver createArtifactDependencyResolver(ResolveIvyFactory re
             componentMetadataSupplierRuleExecutor,
             instantiatorFactory,
             componentSelectionDescriptorFactory,
-            featurePreviews);
+            featurePreviews,
+            resolvedGraphCache);
+    }
+
+    ResolvedGraphCache createResolvedGraphCache(StartParameter startParameter,
+                                                BuildLayout buildLayout,
+                                                CacheRepository cacheRepository,
+                                                InMemoryCacheDecoratorFactory cacheDecoratorFactory,
+                                                ImmutableModuleIdentifierFactory moduleIdentifierFactory,
+                                                AttributeContainerSerializer attributeContainerSerializer,
+                                                ComponentSelectionDescriptorFactory componentSelectionDescriptorFactory) {
+        boolean enabled = Boolean.getBoolean(ResolvedGraphCache.ENABLED_PROPERTY) && !startParameter.isRefreshDependencies();
+        return new ResolvedGraphCache(enabled, buildLayout.getRootDirectory(), cacheRepository, cacheDecoratorFactory, moduleIdentifierFactory, attributeContainerSerializer, componentSelectionDescriptorFactory);
     }
 
     ProjectPublicationRegistry createProjectPublicationRegistry() {
@@ -24,6 +24,7 @@
 import org.gradle.api.internal.artifacts.configurations.ResolutionStrategyInternal;
 import org.gradle.api.internal.artifacts.configurations.dynamicversion.CachePolicy;
 import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.verification.ChecksumAndSignatureVerificationOverride;
+import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.verification.CrossBuildArtifactVerificationCache;
 import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.verification.DependencyVerificationOverride;
 import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.verification.writer.WriteDependencyVerificationFile;
 import org.gradle.api.internal.artifacts.ivyservice.resolutionstrategy.ExternalResourceCachePolicy;
@@ -94,6 +95,7 @@ public ModuleComponentRepository overrideModuleVersionRepository(ModuleComponent
     public DependencyVerificationOverride dependencyVerificationOverride(BuildOperationExecutor buildOperationExecutor,
                                                                          ChecksumService checksumService,
                                                                          SignatureVerificationServiceFactory signatureVerificationServiceFactory,
+                                                                         Factory<CrossBuildArtifactVerificationCache> verificationCacheFactory,
                                                                          DocumentationRegistry documentationRegistry,
                                                                          BuildCommencedTimeProvider timeProvider,
                                                                          Factory<GradleProperties> gradlePropertiesFactory) {
@@ -114,7 +116,7 @@ public DependencyVerificationOverride dependencyVerificationOverride(BuildOperat
                 try {
                     File sessionReportDir = computeReportDirectory(timeProvider);
                     return DisablingVerificationOverride.of(
-                        new ChecksumAndSignatureVerificationOverride(buildOperationExecutor, startParameter.getGradleUserHomeDir(), verificationsFile, keyringsFile, checksumService, signatureVerificationServiceFactory, startParameter.getDependencyVerificationMode(), documentationRegistry, sessionReportDir, gradlePropertiesFactory)
+                        new ChecksumAndSignatureVerificationOverride(buildOperationExecutor, startParameter.getGradleUserHomeDir(), verificationsFile, keyringsFile, checksumService, signatureVerificationServiceFactory, verificationCacheFactory, startParameter.getDependencyVerificationMode(), documentationRegistry, sessionReportDir, gradlePropertiesFactory, startParameter.isRefreshKeys())
                     );
                 } catch (Exception e) {
                     return new FailureVerificationOverride(e);
@@ -43,12 +43,16 @@
 import org.gradle.internal.component.external.model.ModuleComponentArtifactIdentifier;
 import org.gradle.internal.concurrent.Stoppable;
 import org.gradle.internal.hash.ChecksumService;
+import org.gradle.internal.hash.HashCode;
+import org.gradle.internal.hash.Hasher;
+import org.gradle.internal.hash.Hashing;
 import org.gradle.internal.logging.ConsoleRenderer;
 import org.gradle.internal.operations.BuildOperationContext;
 import org.gradle.internal.operations.BuildOperationDescriptor;
 import org.gradle.internal.operations.BuildOperationExecutor;
 import org.gradle.internal.operations.RunnableBuildOperation;
 
+import javax.annotation.Nullable;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
@@ -67,6 +71,9 @@ public class ChecksumAndSignatureVerificationOverride implements DependencyVerif
     private final BuildOperationExecutor buildOperationExecutor;
     private final ChecksumService checksumService;
     private final SignatureVerificationService signatureVerificationService;
+    private final CrossBuildArtifactVerificationCache verificationCache;
+    private final boolean refreshKeys;
+    private final HashCode keySourcesHash;
     private final DependencyVerificationMode verificationMode;
     private final Set<VerificationQuery> verificationQueries = Sets.newConcurrentHashSet();
     private final Deque<VerificationEvent> verificationEvents = Queues.newArrayDeque();
@@ -80,10 +87,12 @@ public ChecksumAndSignatureVerificationOverride(BuildOperationExecutor buildOper
                                                     File keyRingsFile,
                                                     ChecksumService checksumService,
                                                     SignatureVerificationServiceFactory signatureVerificationServiceFactory,
+                                                    Factory<CrossBuildArtifactVerificationCache> verificationCacheFactory,
                                                     DependencyVerificationMode verificationMode,
                                                     DocumentationRegistry documentationRegistry,
                                                     File reportsDirectory,
-                                                    Factory<GradleProperties> gradlePropertiesFactory) {
+                                                    Factory<GradleProperties> gradlePropertiesFactory,
+                                                    boolean refreshKeys) {
         this.buildOperationExecutor = buildOperationExecutor;
         this.checksumService = checksumService;
         this.verificationMode = verificationMode;
@@ -98,6 +107,25 @@ public ChecksumAndSignatureVerificationOverride(BuildOperationExecutor buildOper
             throw new InvalidUserDataException("Unable to read dependency verification metadata from " + verificationsFile, e.getCause());
         }
         this.signatureVerificationService = signatureVerificationServiceFactory.create(keyRingsFile, keyServers());
+        this.verificationCache = verificationCacheFactory.create();
+        this.refreshKeys = refreshKeys;
+        this.keySourcesHash = hashKeySources(keyRingsFile);
+    }
+
+    /**
+     * Hashes where the keys used to verify signatures come from, so that artifacts are verified again when the keyring or the key servers change.
+     */
+    private HashCode hashKeySources(File keyRingsFile) {
+        Hasher hasher = Hashing.newHasher();
+        if (keyRingsFile.exists()) {
+            hasher.putHash(checksumService.sha256(keyRingsFile));
+        } else {
+            hasher.putNull();
+        }
+        for (URI keyServer : keyServers()) {
+            hasher.putString(keyServer.toString());
+        }
+        return hasher.hash();
     }
 
     private List<URI> keyServers() {
@@ -133,7 +161,14 @@ private void verifyConcurrently() {
                     queue.add(new RunnableBuildOperation() {
                         @Override
                         public void run(BuildOperationContext context) {
+                            HashCode cacheKey = verificationCacheKey(ve);
+                            // When keys are refreshed, a previous result may rely on a key which has since been revoked
+                            if (cacheKey != null && !refreshKeys && verificationCache.isVerified(cacheKey)) {
+                                return;
+                            }
+                            AtomicBoolean failed = new AtomicBoolean();
                             verifier.verify(checksumService, signatureVerificationService, ve.kind, ve.artifact, ve.mainFile, ve.signatureFile.create(), f -> {
+                                failed.set(true);
                                 synchronized (failures) {
                                     failures.put(ve.artifact, new RepositoryAwareVerificationFailure(f, ve.repositoryName));
                                 }
@@ -141,6 +176,9 @@ public void run(BuildOperationContext context) {
                                     hasFatalFailure.set(true);
                                 }
                             });
+                            if (cacheKey != null && !failed.get()) {
+                                verificationCache.markVerified(cacheKey);
+                            }
                         }
 
                         @Override
@@ -155,6 +193,18 @@ public BuildOperationDescriptor.Builder description() {
 
     }
 
+    @Nullable
+    private HashCode verificationCacheKey(VerificationEvent event) {
+        HashCode verificationKey = verifier.getVerificationKey(event.kind, event.artifact);
+        if (verificationKey == null || !event.mainFile.exists()) {
+            return null;
+        }
+        Hasher hasher = Hashing.newHasher();
+        hasher.putHash(verificationKey);
+        hasher.putHash(keySourcesHash);
+        return verificationCache.keyOf(hasher.hash(), event.mainFile);
+    }
+
     @Override
     public ModuleComponentRepository overrideDependencyVerification(ModuleComponentRepository original, String resolveContextName, ResolutionStrategyInternal resolutionStrategy) {
         return new DependencyVerifyingModuleComponentRepository(original, this, verifier.getConfiguration().isVerifySignatures());
@@ -221,6 +271,7 @@ public Class<? extends Artifact> getType() {
     public void stop() {
         closed.set(true);
         signatureVerificationService.stop();
+        verificationCache.stop();
     }
 
     private static class VerificationQuery {
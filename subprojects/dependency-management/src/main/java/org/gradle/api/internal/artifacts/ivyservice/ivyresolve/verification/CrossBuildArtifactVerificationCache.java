@@ -0,0 +1,92 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.gradle.api.internal.artifacts.ivyservice.ivyresolve.verification;
+
+import org.gradle.cache.CacheRepository;
+import org.gradle.cache.FileLockManager;
+import org.gradle.cache.PersistentCache;
+import org.gradle.cache.PersistentIndexedCache;
+import org.gradle.cache.PersistentIndexedCacheParameters;
+import org.gradle.cache.internal.CacheScopeMapping;
+import org.gradle.cache.internal.InMemoryCacheDecoratorFactory;
+import org.gradle.cache.internal.VersionStrategy;
+import org.gradle.initialization.layout.ProjectCacheDir;
+import org.gradle.internal.concurrent.Stoppable;
+import org.gradle.internal.hash.FileHasher;
+import org.gradle.internal.hash.HashCode;
+import org.gradle.internal.hash.Hasher;
+import org.gradle.internal.hash.Hashing;
+import org.gradle.internal.serialize.BaseSerializerFactory;
+
+import java.io.File;
+
+import static org.gradle.cache.internal.filelock.LockOptionsBuilder.mode;
+
+/**
+ * Remembers, across builds, the artifacts which passed verification without any failure.
+ *
+ * <p>Entries are keyed by the content of the artifact and by everything in the verification metadata which applies to it,
+ * so changing either verifies the artifact again. Failures are never recorded, so they are reported on every build.</p>
+ */
+public class CrossBuildArtifactVerificationCache implements Stoppable {
+    private final FileHasher fileHasher;
+    private final PersistentCache store;
+    private final PersistentIndexedCache<HashCode, Boolean> cache;
+
+    public CrossBuildArtifactVerificationCache(FileHasher fileHasher,
+                                               CacheScopeMapping cacheScopeMapping,
+                                               ProjectCacheDir projectCacheDir,
+                                               CacheRepository repository,
+                                               InMemoryCacheDecoratorFactory inMemoryCacheDecoratorFactory) {
+        this.fileHasher = fileHasher;
+        File cacheDir = cacheScopeMapping.getBaseDirectory(projectCacheDir.getDir(), "dependency-verification", VersionStrategy.CachePerVersion);
+        store = repository.cache(cacheDir)
+            .withDisplayName("Dependency verification cache")
+            .withLockOptions(mode(FileLockManager.LockMode.OnDemand)) // Lock on demand
+            .open();
+        cache = store.createCache(
+            PersistentIndexedCacheParameters.of(
+                "verified-artifacts",
+                BaseSerializerFactory.HASHCODE_SERIALIZER,
+                BaseSerializerFactory.BOOLEAN_SERIALIZER
+            ).withCacheDecorator(inMemoryCacheDecoratorFactory.decorator(500, true)));
+    }
+
+    /**
+     * Combines the verification key of an artifact with the hash of its content.
+     */
+    public HashCode keyOf(HashCode verificationKey, File artifactFile) {
+        Hasher hasher = Hashing.newHasher();
+        hasher.putHash(verificationKey);
+        hasher.putHash(fileHasher.hash(artifactFile));
+        return hasher.hash();
+    }
+
+    public boolean isVerified(HashCode key) {
+        return cache.get(key) != null;
+    }
+
+    public void markVerified(HashCode key) {
+        cache.put(key, Boolean.TRUE);
+    }
+
+    @Override
+    public void stop() {
+        store.close();
+    }
+}
@@ -28,6 +28,7 @@
 import org.gradle.api.internal.tasks.TaskDependencyResolveContext;
 import org.gradle.internal.DisplayName;
 import org.gradle.internal.component.model.VariantResolveMetadata;
+import org.gradle.internal.operations.BuildOperationConstraint;
 import org.gradle.internal.operations.BuildOperationContext;
 import org.gradle.internal.operations.BuildOperationDescriptor;
 import org.gradle.internal.operations.BuildOperationQueue;
@@ -113,7 +114,7 @@ public ResolvedArtifactSet.Completion startVisit(BuildOperationQueue<RunnableBui
                     new DownloadArtifactFile(artifact, this, listener).run(null);
                 } else {
                     // Resolve it later
-                    actions.add(new DownloadArtifactFile(artifact, this, listener));
+                    actions.add(new DownloadArtifactFile(artifact, this, listener), BuildOperationConstraint.UNCONSTRAINED);
                 }
             }
             return this;
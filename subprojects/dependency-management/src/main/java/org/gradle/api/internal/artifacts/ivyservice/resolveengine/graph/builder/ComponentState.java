@@ -54,7 +54,7 @@ public class ComponentState implements ComponentResolutionState, DependencyGraph
     private final ComponentIdentifier componentIdentifier;
     private final ModuleVersionIdentifier id;
     private final ComponentMetaDataResolver resolver;
-    private final List<NodeState> nodes = Lists.newLinkedList();
+    private final List<NodeState> nodes = Lists.newArrayListWithCapacity(1);
     private final Long resultId;
     private final ModuleResolveState module;
     private final List<ComponentSelectionDescriptorInternal> selectionCauses = Lists.newArrayList();
@@ -62,6 +62,7 @@ public class ComponentState implements ComponentResolutionState, DependencyGraph
     private final int hashCode;
 
     private volatile ComponentResolveMetadata metadata;
+    private ComponentOverrideMetadata overrideMetadata;
 
     private ComponentSelectionState state = ComponentSelectionState.Selectable;
     private ModuleVersionResolveException metadataResolveFailure;
@@ -176,6 +177,14 @@ public boolean alreadyResolved() {
         return metadata != null || metadataResolveFailure != null;
     }
 
+    /**
+     * Returns the overrides used to resolve the metadata of this component, or null when the metadata was not resolved by this component.
+     */
+    @Nullable
+    ComponentOverrideMetadata getOverrideMetadata() {
+        return overrideMetadata;
+    }
+
     public void resolve() {
         if (alreadyResolved()) {
             return;
@@ -194,6 +203,7 @@ public void resolve() {
         if (tryResolveVirtualPlatform()) {
             return;
         }
+        overrideMetadata = componentOverrideMetadata;
         resolver.resolve(componentIdentifier, componentOverrideMetadata, result);
 
         if (result.getFailure() != null) {
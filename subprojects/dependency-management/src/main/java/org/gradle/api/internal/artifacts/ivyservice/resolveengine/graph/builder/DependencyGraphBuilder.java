@@ -26,6 +26,7 @@
 import org.gradle.api.artifacts.ModuleVersionIdentifier;
 import org.gradle.api.artifacts.component.ComponentIdentifier;
 import org.gradle.api.artifacts.component.ComponentSelector;
+import org.gradle.api.artifacts.component.ModuleComponentIdentifier;
 import org.gradle.api.artifacts.component.ModuleComponentSelector;
 import org.gradle.api.attributes.Attribute;
 import org.gradle.api.capabilities.Capability;
@@ -38,6 +39,7 @@
 import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.strategy.VersionParser;
 import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.strategy.VersionSelectorScheme;
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.excludes.ModuleExclusions;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.CompositeDependencyGraphVisitor;
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.DependencyGraphSelector;
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.DependencyGraphVisitor;
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.conflicts.CapabilitiesConflictHandler;
@@ -79,6 +81,10 @@
 
 public class DependencyGraphBuilder {
     private static final Logger LOGGER = LoggerFactory.getLogger(DependencyGraphBuilder.class);
+    /**
+     * Enables prefetching the metadata of each breadth-wise wave of the traversal in parallel, see {@link #prefetchMetadataOfWave(Collection, Set)}.
+     */
+    public static final String PREFETCH_METADATA_PROPERTY = "org.gradle.internal.dependency.metadata.prefetch";
     private final ModuleConflictHandler moduleConflictHandler;
     private final Spec<? super DependencyMetadata> edgeFilter;
     private final ResolveContextToComponentResolver moduleResolver;
@@ -94,6 +100,8 @@ public class DependencyGraphBuilder {
     private final VersionSelectorScheme versionSelectorScheme;
     private final Comparator<Version> versionComparator;
     private final VersionParser versionParser;
+    private final ResolvedGraphCache.CachedGraph cachedGraph;
+    private final boolean prefetchMetadata;
 
     final static Spec<EdgeState> ENDORSE_STRICT_VERSIONS_DEPENDENCY_SPEC = dependencyState -> dependencyState.getDependencyState().getDependency().isEndorsingStrictVersions();
     final static Spec<EdgeState> NOT_ENDORSE_STRICT_VERSIONS_DEPENDENCY_SPEC = dependencyState -> !dependencyState.getDependencyState().getDependency().isEndorsingStrictVersions();
@@ -113,6 +121,25 @@ public DependencyGraphBuilder(DependencyToComponentIdResolver componentIdResolve
                                   VersionSelectorScheme versionSelectorScheme,
                                   Comparator<Version> versionComparator,
                                   VersionParser versionParser) {
+        this(componentIdResolver, componentMetaDataResolver, resolveContextToComponentResolver, moduleConflictHandler, capabilitiesConflictHandler, edgeFilter, attributesSchema, moduleExclusions, buildOperationExecutor, dependencySubstitutionApplicator, componentSelectorConverter, attributesFactory, versionSelectorScheme, versionComparator, versionParser, null);
+    }
+
+    public DependencyGraphBuilder(DependencyToComponentIdResolver componentIdResolver,
+                                  ComponentMetaDataResolver componentMetaDataResolver,
+                                  ResolveContextToComponentResolver resolveContextToComponentResolver,
+                                  ModuleConflictHandler moduleConflictHandler,
+                                  CapabilitiesConflictHandler capabilitiesConflictHandler,
+                                  Spec<? super DependencyMetadata> edgeFilter,
+                                  AttributesSchemaInternal attributesSchema,
+                                  ModuleExclusions moduleExclusions,
+                                  BuildOperationExecutor buildOperationExecutor,
+                                  DependencySubstitutionApplicator dependencySubstitutionApplicator,
+                                  ComponentSelectorConverter componentSelectorConverter,
+                                  ImmutableAttributesFactory attributesFactory,
+                                  VersionSelectorScheme versionSelectorScheme,
+                                  Comparator<Version> versionComparator,
+                                  VersionParser versionParser,
+                                  @Nullable ResolvedGraphCache.CachedGraph cachedGraph) {
         this.idResolver = componentIdResolver;
         this.metaDataResolver = componentMetaDataResolver;
         this.moduleResolver = resolveContextToComponentResolver;
@@ -128,6 +155,8 @@ public DependencyGraphBuilder(DependencyToComponentIdResolver componentIdResolve
         this.versionSelectorScheme = versionSelectorScheme;
         this.versionComparator = versionComparator;
         this.versionParser = versionParser;
+        this.cachedGraph = cachedGraph;
+        this.prefetchMetadata = Boolean.getBoolean(PREFETCH_METADATA_PROPERTY);
     }
 
     public void resolve(final ResolveContext resolveContext, final DependencyGraphVisitor modelVisitor) {
@@ -136,17 +165,26 @@ public void resolve(final ResolveContext resolveContext, final DependencyGraphVi
         DefaultBuildableComponentResolveResult rootModule = new DefaultBuildableComponentResolveResult();
         moduleResolver.resolve(resolveContext, rootModule);
 
+        if (cachedGraph != null && rootModule.getFailure() == null && new ResolvedGraphReplayer(cachedGraph, metaDataResolver, attributesSchema, attributesFactory, moduleExclusions).replay(rootModule.getMetadata(), modelVisitor)) {
+            LOGGER.debug("Replayed cached dependency graph of {}.", resolveContext);
+            return;
+        }
+
         int graphSize = estimateSize(resolveContext);
         ResolutionStrategyInternal resolutionStrategy = resolveContext.getResolutionStrategy();
 
         final ResolveState resolveState = new ResolveState(idGenerator, rootModule, resolveContext.getName(), idResolver, metaDataResolver, edgeFilter, attributesSchema, moduleExclusions, componentSelectorConverter, attributesFactory, dependencySubstitutionApplicator, versionSelectorScheme, versionComparator, versionParser, moduleConflictHandler.getResolver(), graphSize, resolveContext.getResolutionStrategy().getConflictResolution());
 
         Map<ModuleVersionIdentifier, ComponentIdentifier> componentIdentifierCache = Maps.newHashMapWithExpectedSize(graphSize / 2);
-        traverseGraph(resolveState, componentIdentifierCache);
+        boolean resolvedCapabilityConflicts = traverseGraph(resolveState, componentIdentifierCache);
 
         validateGraph(resolveState, resolutionStrategy.isFailingOnDynamicVersions(), resolutionStrategy.isFailingOnChangingVersions());
 
-        assembleResult(resolveState, modelVisitor);
+        if (cachedGraph != null) {
+            assembleResult(resolveState, new CompositeDependencyGraphVisitor(modelVisitor, new ResolvedGraphRecorder(cachedGraph, versionSelectorScheme, !resolvedCapabilityConflicts)));
+        } else {
+            assembleResult(resolveState, modelVisitor);
+        }
 
     }
 
@@ -165,13 +203,25 @@ private static int estimateSize(ResolveContext resolveContext) {
 
     /**
      * Traverses the dependency graph, resolving conflicts and building the paths from the root configuration.
+     *
+     * @return whether any conflicts between capabilities were resolved.
      */
-    private void traverseGraph(final ResolveState resolveState, final Map<ModuleVersionIdentifier, ComponentIdentifier> componentIdentifierCache) {
+    private boolean traverseGraph(final ResolveState resolveState, final Map<ModuleVersionIdentifier, ComponentIdentifier> componentIdentifierCache) {
         resolveState.onMoreSelected(resolveState.getRoot());
         final List<EdgeState> dependencies = Lists.newArrayList();
+        boolean resolvedCapabilityConflicts = false;
+        Set<ModuleComponentIdentifier> prefetched = prefetchMetadata ? Sets.newHashSet() : null;
+        int remainingInWave = 0;
 
         while (resolveState.peek() != null || moduleConflictHandler.hasConflicts() || capabilitiesConflictHandler.hasConflicts()) {
             if (resolveState.peek() != null) {
+                if (prefetched != null && remainingInWave-- == 0) {
+                    // The nodes queued at this point form the next breadth-wise wave of the traversal.
+                    // Nodes only leave the queue when popped, so the queue cannot run empty before all nodes of a wave have been visited.
+                    // Hence conflict resolution, which only runs on an empty queue, always finds the counter at 0, and the nodes it queues again start a new wave.
+                    // Nodes queued at the front during a wave are counted as part of it, which only ends the wave early, and are not prefetched.
+                    remainingInWave = prefetchMetadataOfWave(resolveState.getQueuedNodes(), prefetched) - 1;
+                }
                 final NodeState node = resolveState.pop();
                 LOGGER.debug("Visiting configuration {}.", node);
 
@@ -190,10 +240,56 @@ private void traverseGraph(final ResolveState resolveState, final Map<ModuleVers
                     moduleConflictHandler.resolveNextConflict(resolveState.getReplaceSelectionWithConflictResultAction());
                 } else {
                     capabilitiesConflictHandler.resolveNextConflict(resolveState.getReplaceSelectionWithConflictResultAction());
+                    resolvedCapabilityConflicts = true;
                 }
             }
 
         }
+        return resolvedCapabilityConflicts;
+    }
+
+    /**
+     * Speculatively resolves, in parallel, the metadata of the components that the dependencies of the given nodes are likely to select,
+     * so that the serial traversal of these nodes finds it in the repository caches.
+     * Only dependencies on a fixed version are considered, as these can be resolved without knowing the outcome of conflict resolution.
+     *
+     * @return the number of nodes in the wave.
+     */
+    private int prefetchMetadataOfWave(Collection<NodeState> wave, Set<ModuleComponentIdentifier> prefetched) {
+        List<ModuleComponentIdentifier> toPrefetch = Lists.newArrayList();
+        for (NodeState node : wave) {
+            if (!node.isSelected()) {
+                continue;
+            }
+            for (DependencyMetadata dependency : node.getMetadata().getDependencies()) {
+                if (dependency.isConstraint() || dependency.isChanging() || !dependency.getArtifacts().isEmpty() || !edgeFilter.isSatisfiedBy(dependency)) {
+                    continue;
+                }
+                ComponentSelector selector = dependency.getSelector();
+                if (!(selector instanceof ModuleComponentSelector)) {
+                    continue;
+                }
+                ModuleComponentSelector moduleSelector = (ModuleComponentSelector) selector;
+                String version = moduleSelector.getVersion();
+                if (version.isEmpty() || moduleSelector.getVersionConstraint().getBranch() != null || versionSelectorScheme.parseSelector(version).isDynamic()) {
+                    continue;
+                }
+                ModuleComponentIdentifier id = DefaultModuleComponentIdentifier.newId(moduleSelector.getModuleIdentifier(), version);
+                if (prefetched.add(id) && !metaDataResolver.isFetchingMetadataCheap(id)) {
+                    toPrefetch.add(id);
+                }
+            }
+        }
+        // Only worth it if there is more than 1 component to download
+        if (toPrefetch.size() > 1) {
+            LOGGER.debug("Prefetching {} metadata files in parallel for a wave of {} nodes", toPrefetch.size(), wave.size());
+            buildOperationExecutor.runAll(buildOperationQueue -> {
+                for (ModuleComponentIdentifier id : toPrefetch) {
+                    buildOperationQueue.add(new PrefetchMetadataOperation(metaDataResolver, id));
+                }
+            });
+        }
+        return wave.size();
     }
 
     private void registerCapabilities(final ResolveState resolveState, final NodeState node) {
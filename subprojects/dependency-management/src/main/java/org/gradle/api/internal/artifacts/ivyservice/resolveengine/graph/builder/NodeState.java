@@ -77,8 +77,9 @@ public class NodeState implements DependencyGraphNode {
     private static final Logger LOGGER = LoggerFactory.getLogger(NodeState.class);
     private final Long resultId;
     private final ComponentState component;
-    private final List<EdgeState> incomingEdges = Lists.newArrayList();
-    private final List<EdgeState> outgoingEdges = Lists.newArrayList();
+    // Most nodes have very few incoming edges, and large resolutions create many nodes, so these start small
+    private final List<EdgeState> incomingEdges = Lists.newArrayListWithCapacity(1);
+    private final ArrayList<EdgeState> outgoingEdges = new ArrayList<>(0);
     private final ResolvedConfigurationIdentifier id;
 
     private final ConfigurationMetadata metaData;
@@ -102,9 +103,9 @@ public class NodeState implements DependencyGraphNode {
     private Set<EdgeState> edgesToRecompute;
     private Multimap<ModuleIdentifier, DependencyState> potentiallyActivatedConstraints;
 
-    // caches
-    private final Map<DependencyMetadata, DependencyState> dependencyStateCache = Maps.newHashMap();
-    private final Map<DependencyState, EdgeState> edgesCache = Maps.newHashMap();
+    // caches, created lazily as many nodes have no dependencies
+    private Map<DependencyMetadata, DependencyState> dependencyStateCache;
+    private Map<DependencyState, EdgeState> edgesCache;
 
     // Caches the list of dependency states for dependencies
     private List<DependencyState> cachedDependencyStates;
@@ -416,7 +417,9 @@ private void visitDependencies(ExcludeSpec resolutionFilter, Collection<EdgeStat
         boolean shouldComputeOwnStrictVersions = ownStrictVersionConstraints == null;
         try {
             collectAncestorsStrictVersions(incomingEdges);
-            for (DependencyState dependencyState : dependencies(resolutionFilter)) {
+            List<DependencyState> dependencies = dependencies(resolutionFilter);
+            outgoingEdges.ensureCapacity(outgoingEdges.size() + dependencies.size());
+            for (DependencyState dependencyState : dependencies) {
                 dependencyState = maybeSubstitute(dependencyState, resolveState.getDependencySubstitutionApplicator());
                 PendingDependenciesVisitor.PendingState pendingState = pendingDepsVisitor.maybeAddAsPendingDependency(this, dependencyState);
                 if (dependencyState.getDependency().isConstraint()) {
@@ -497,6 +500,9 @@ private List<DependencyState> cacheDependencyStates(List<? extends DependencyMet
         if (dependencies.isEmpty()) {
             return Collections.emptyList();
         }
+        if (dependencyStateCache == null) {
+            dependencyStateCache = Maps.newHashMapWithExpectedSize(dependencies.size());
+        }
         List<DependencyState> tmp = Lists.newArrayListWithCapacity(dependencies.size());
         for (DependencyMetadata dependency : dependencies) {
             tmp.add(cachedDependencyStateFor(dependency));
@@ -509,6 +515,9 @@ private DependencyState cachedDependencyStateFor(DependencyMetadata md) {
     }
 
     private void createAndLinkEdgeState(DependencyState dependencyState, Collection<EdgeState> discoveredEdges, ExcludeSpec resolutionFilter, boolean deferSelection) {
+        if (edgesCache == null) {
+            edgesCache = Maps.newHashMapWithExpectedSize(cachedDependencyStates == null ? 4 : cachedDependencyStates.size());
+        }
         EdgeState dependencyEdge = edgesCache.computeIfAbsent(dependencyState, ds -> new EdgeState(this, ds, resolutionFilter, resolveState));
         dependencyEdge.computeSelector(); // the selector changes, if the 'versionProvidedByAncestors' state changes
         outgoingEdges.add(dependencyEdge);
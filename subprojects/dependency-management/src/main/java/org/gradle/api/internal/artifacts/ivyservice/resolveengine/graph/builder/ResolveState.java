@@ -52,6 +52,7 @@
 import javax.annotation.Nullable;
 import java.util.ArrayDeque;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.Deque;
 import java.util.LinkedHashMap;
@@ -193,6 +194,13 @@ public NodeState peek() {
         return queue.isEmpty() ? null : queue.getFirst();
     }
 
+    /**
+     * Returns the nodes currently queued for traversal, in traversal order.
+     */
+    Collection<NodeState> getQueuedNodes() {
+        return Collections.unmodifiableCollection(queue);
+    }
+
     public NodeState pop() {
         NodeState next = queue.removeFirst();
         return next.dequeue();
@@ -0,0 +1,318 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.builder;
+
+import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableList;
+import org.gradle.api.artifacts.DependencySubstitution;
+import org.gradle.api.artifacts.ModuleIdentifier;
+import org.gradle.api.artifacts.VersionConstraint;
+import org.gradle.api.artifacts.component.ComponentSelector;
+import org.gradle.api.artifacts.component.ModuleComponentSelector;
+import org.gradle.api.attributes.Attribute;
+import org.gradle.api.attributes.AttributeContainer;
+import org.gradle.api.capabilities.Capability;
+import org.gradle.api.internal.artifacts.ImmutableModuleIdentifierFactory;
+import org.gradle.api.internal.artifacts.ResolveContext;
+import org.gradle.api.internal.artifacts.configurations.ConflictResolution;
+import org.gradle.api.internal.artifacts.configurations.ResolutionStrategyInternal;
+import org.gradle.api.internal.artifacts.dsl.ModuleReplacementsData;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.result.AttributeContainerSerializer;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.result.ComponentIdentifierSerializer;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.result.ComponentResultSerializer;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.result.ComponentSelectionDescriptorFactory;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.result.ComponentSelectorSerializer;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.result.DependencyResultSerializer;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.result.ResolvedVariantResultSerializer;
+import org.gradle.api.internal.artifacts.repositories.ResolutionAwareRepository;
+import org.gradle.api.internal.artifacts.repositories.descriptor.RepositoryDescriptor;
+import org.gradle.api.internal.attributes.AttributesSchemaInternal;
+import org.gradle.cache.CacheRepository;
+import org.gradle.cache.FileLockManager;
+import org.gradle.cache.PersistentCache;
+import org.gradle.cache.PersistentIndexedCache;
+import org.gradle.cache.PersistentIndexedCacheParameters;
+import org.gradle.cache.internal.InMemoryCacheDecoratorFactory;
+import org.gradle.cache.internal.filelock.LockOptionsBuilder;
+import org.gradle.internal.Actions;
+import org.gradle.internal.component.local.model.LocalConfigurationMetadata;
+import org.gradle.internal.component.model.LocalOriginDependencyMetadata;
+import org.gradle.internal.component.model.ComponentResolveMetadata;
+import org.gradle.internal.component.model.ConfigurationMetadata;
+import org.gradle.internal.component.model.DependencyMetadata;
+import org.gradle.internal.component.model.ExcludeMetadata;
+import org.gradle.internal.component.model.ForcingDependencyMetadata;
+import org.gradle.internal.component.model.IvyArtifactName;
+import org.gradle.internal.hash.HashCode;
+import org.gradle.internal.hash.Hasher;
+import org.gradle.internal.hash.Hashing;
+import org.gradle.internal.serialize.BaseSerializerFactory;
+import org.gradle.internal.serialize.HashCodeSerializer;
+
+import javax.annotation.Nullable;
+import java.io.Closeable;
+import java.io.File;
+import java.util.List;
+
+/**
+ * A persistent cache of resolved dependency graphs, so that a graph can be replayed instead of traversed again when its inputs have not changed.
+ *
+ * <p>Only the shape of a graph is cached: the selected components and variants and the edges between them. The metadata of every component in the graph
+ * is still resolved when the graph is replayed, and the graph is discarded if the dependencies or variants of any of its nodes have changed. The variants
+ * of every dependency are also selected again, so changes to attribute compatibility and disambiguation rules or to the attribute schemas of producers
+ * are detected. Graphs which depend on inputs that cannot be checked this way, such as dynamic versions, dependency substitution rules or capability
+ * conflicts, are not cached.</p>
+ *
+ * <p>The cache is only used when the {@value #ENABLED_PROPERTY} system property is set to {@code true}.</p>
+ */
+public class ResolvedGraphCache implements Closeable {
+    public static final String ENABLED_PROPERTY = "org.gradle.internal.dependency.graph.cache";
+    private static final String CACHE_NAME = "dependency-graphs";
+    private static final int FORMAT_VERSION = 1;
+
+    private final File rootDirectory;
+    private final ImmutableModuleIdentifierFactory moduleIdentifierFactory;
+    private final AttributeContainerSerializer attributeContainerSerializer;
+    private final ComponentSelectionDescriptorFactory componentSelectionDescriptorFactory;
+    private final PersistentCache cache;
+    private final PersistentIndexedCache<HashCode, byte[]> graphs;
+
+    public ResolvedGraphCache(boolean enabled,
+                              File rootDirectory,
+                              CacheRepository cacheRepository,
+                              InMemoryCacheDecoratorFactory cacheDecoratorFactory,
+                              ImmutableModuleIdentifierFactory moduleIdentifierFactory,
+                              AttributeContainerSerializer attributeContainerSerializer,
+                              ComponentSelectionDescriptorFactory componentSelectionDescriptorFactory) {
+        this.rootDirectory = rootDirectory;
+        this.moduleIdentifierFactory = moduleIdentifierFactory;
+        this.attributeContainerSerializer = attributeContainerSerializer;
+        this.componentSelectionDescriptorFactory = componentSelectionDescriptorFactory;
+        if (enabled) {
+            this.cache = cacheRepository
+                .cache(CACHE_NAME)
+                .withLockOptions(LockOptionsBuilder.mode(FileLockManager.LockMode.OnDemand))
+                .open();
+            this.graphs = cache.createCache(
+                PersistentIndexedCacheParameters.of(CACHE_NAME, new HashCodeSerializer(), BaseSerializerFactory.BYTE_ARRAY_SERIALIZER)
+                    .withCacheDecorator(cacheDecoratorFactory.decorator(200, true))
+            );
+        } else {
+            this.cache = null;
+            this.graphs = null;
+        }
+    }
+
+    /**
+     * Returns the cached graph of the given resolve context, or null when the graph of the context cannot be cached.
+     */
+    @Nullable
+    public CachedGraph forContext(ResolveContext resolveContext, List<? extends ResolutionAwareRepository> repositories, AttributesSchemaInternal consumerSchema, ModuleReplacementsData moduleReplacements) {
+        if (graphs == null) {
+            return null;
+        }
+        ResolutionStrategyInternal resolutionStrategy = resolveContext.getResolutionStrategy();
+        if (resolutionStrategy.getDependencySubstitutionRule() != Actions.<DependencySubstitution>doNothing()
+            || resolutionStrategy.isDependencyLockingEnabled()
+            || resolutionStrategy.getConflictResolution() == ConflictResolution.strict
+            || !resolutionStrategy.getComponentSelection().getRules().isEmpty()) {
+            return null;
+        }
+
+        Hasher hasher = Hashing.newHasher();
+        hasher.putInt(FORMAT_VERSION);
+        hasher.putString(rootDirectory.getAbsolutePath());
+        hasher.putString(resolveContext.getDisplayName());
+        hasher.putString(resolutionStrategy.getConflictResolution().name());
+        for (ResolutionAwareRepository repository : repositories) {
+            RepositoryDescriptor descriptor = repository.getDescriptor();
+            hasher.putString(descriptor.getType().name());
+            hasher.putString(descriptor.name);
+            hasher.putString(descriptor.getProperties().toString());
+        }
+        for (Attribute<?> attribute : consumerSchema.getAttributes()) {
+            hasher.putString(attribute.getName());
+            hasher.putString(attribute.getType().getName());
+        }
+        return new CachedGraph(hasher.hash(), moduleReplacements);
+    }
+
+    @Override
+    public void close() {
+        if (cache != null) {
+            cache.close();
+        }
+    }
+
+    /**
+     * Calculates a fingerprint of the inputs that determine the outgoing edges of the given node and the variant it was selected as.
+     */
+    static HashCode fingerprint(ComponentResolveMetadata component, ConfigurationMetadata configuration) {
+        Hasher hasher = Hashing.newHasher();
+        hasher.putString(component.getId().getDisplayName());
+        hashAttributes(hasher, component.getAttributes());
+        Optional<ImmutableList<? extends ConfigurationMetadata>> variants = component.getVariantsForGraphTraversal();
+        if (variants.isPresent()) {
+            for (ConfigurationMetadata variant : variants.get()) {
+                hasher.putString(variant.getName());
+                hashAttributes(hasher, variant.getAttributes());
+                hashCapabilities(hasher, variant.getCapabilities().getCapabilities());
+            }
+        } else {
+            hasher.putNull();
+            for (String configurationName : component.getConfigurationNames()) {
+                hasher.putString(configurationName);
+            }
+        }
+
+        hasher.putString(configuration.getName());
+        hasher.putBoolean(configuration.isTransitive());
+        hashAttributes(hasher, configuration.getAttributes());
+        hashCapabilities(hasher, configuration.getCapabilities().getCapabilities());
+        hashExcludes(hasher, configuration.getExcludes());
+        List<? extends DependencyMetadata> dependencies = configuration.getDependencies();
+        hasher.putInt(dependencies.size());
+        for (DependencyMetadata dependency : dependencies) {
+            hashSelector(hasher, dependency.getSelector());
+            hasher.putBoolean(dependency.isTransitive());
+            hasher.putBoolean(dependency.isConstraint());
+            hasher.putBoolean(dependency.isChanging());
+            hasher.putBoolean(dependency.isEndorsingStrictVersions());
+            hasher.putBoolean(dependency instanceof ForcingDependencyMetadata && ((ForcingDependencyMetadata) dependency).isForce());
+            hashNullableString(hasher, dependency.getReason());
+            hashExcludes(hasher, dependency.getExcludes());
+            for (IvyArtifactName artifact : dependency.getArtifacts()) {
+                hasher.putString(artifact.toString());
+            }
+            if (dependency instanceof LocalOriginDependencyMetadata) {
+                LocalOriginDependencyMetadata localDependency = (LocalOriginDependencyMetadata) dependency;
+                hashNullableString(hasher, localDependency.getModuleConfiguration());
+                hashNullableString(hasher, localDependency.getDependencyConfiguration());
+            }
+        }
+        return hasher.hash();
+    }
+
+    /**
+     * File dependencies are not part of the graph, so nodes which declare them are never cached.
+     */
+    static boolean hasFileDependencies(ConfigurationMetadata configuration) {
+        return configuration instanceof LocalConfigurationMetadata && !((LocalConfigurationMetadata) configuration).getFiles().isEmpty();
+    }
+
+    private static void hashSelector(Hasher hasher, ComponentSelector selector) {
+        hasher.putString(selector.getClass().getName());
+        hasher.putString(selector.getDisplayName());
+        if (selector instanceof ModuleComponentSelector) {
+            VersionConstraint versionConstraint = ((ModuleComponentSelector) selector).getVersionConstraint();
+            hasher.putString(versionConstraint.getRequiredVersion());
+            hasher.putString(versionConstraint.getPreferredVersion());
+            hasher.putString(versionConstraint.getStrictVersion());
+            hashNullableString(hasher, versionConstraint.getBranch());
+            for (String rejectedVersion : versionConstraint.getRejectedVersions()) {
+                hasher.putString(rejectedVersion);
+            }
+        }
+        hashAttributes(hasher, selector.getAttributes());
+        hashCapabilities(hasher, selector.getRequestedCapabilities());
+    }
+
+    private static void hashAttributes(Hasher hasher, AttributeContainer attributes) {
+        for (Attribute<?> attribute : attributes.keySet()) {
+            hasher.putString(attribute.getName());
+            hasher.putString(String.valueOf(attributes.getAttribute(attribute)));
+        }
+        hasher.putNull();
+    }
+
+    private static void hashCapabilities(Hasher hasher, List<? extends Capability> capabilities) {
+        for (Capability capability : capabilities) {
+            hasher.putString(capability.getGroup());
+            hasher.putString(capability.getName());
+            hashNullableString(hasher, capability.getVersion());
+        }
+        hasher.putNull();
+    }
+
+    private static void hashExcludes(Hasher hasher, List<ExcludeMetadata> excludes) {
+        for (ExcludeMetadata exclude : excludes) {
+            ModuleIdentifier moduleId = exclude.getModuleId();
+            hasher.putString(moduleId.getGroup());
+            hasher.putString(moduleId.getName());
+            IvyArtifactName artifact = exclude.getArtifact();
+            hashNullableString(hasher, artifact == null ? null : artifact.toString());
+            hashNullableString(hasher, exclude.getMatcher());
+        }
+        hasher.putNull();
+    }
+
+    private static void hashNullableString(Hasher hasher, @Nullable String value) {
+        if (value == null) {
+            hasher.putNull();
+        } else {
+            hasher.putString(value);
+        }
+    }
+
+    /**
+     * The cache entry of a single resolve context.
+     */
+    public class CachedGraph {
+        private final HashCode key;
+        private final ModuleReplacementsData moduleReplacements;
+
+        private CachedGraph(HashCode key, ModuleReplacementsData moduleReplacements) {
+            this.key = key;
+            this.moduleReplacements = moduleReplacements;
+        }
+
+        ModuleReplacementsData getModuleReplacements() {
+            return moduleReplacements;
+        }
+
+        @Nullable
+        byte[] load() {
+            return graphs.get(key);
+        }
+
+        void store(byte[] graph) {
+            graphs.put(key, graph);
+        }
+
+        Serializers newSerializers() {
+            return new Serializers();
+        }
+    }
+
+    /**
+     * The serializers for a single cache entry. These are stateful, so each entry uses its own.
+     */
+    class Serializers {
+        final ComponentSelectorSerializer selectorSerializer;
+        final ComponentResultSerializer componentSerializer;
+        final DependencyResultSerializer dependencySerializer;
+
+        private Serializers() {
+            ComponentIdentifierSerializer componentIdentifierSerializer = new ComponentIdentifierSerializer();
+            ResolvedVariantResultSerializer resolvedVariantResultSerializer = new ResolvedVariantResultSerializer(componentIdentifierSerializer, attributeContainerSerializer);
+            this.selectorSerializer = new ComponentSelectorSerializer(attributeContainerSerializer);
+            this.componentSerializer = new ComponentResultSerializer(moduleIdentifierFactory, resolvedVariantResultSerializer, componentSelectionDescriptorFactory, componentIdentifierSerializer);
+            this.dependencySerializer = new DependencyResultSerializer(resolvedVariantResultSerializer, componentSelectionDescriptorFactory);
+        }
+    }
+}
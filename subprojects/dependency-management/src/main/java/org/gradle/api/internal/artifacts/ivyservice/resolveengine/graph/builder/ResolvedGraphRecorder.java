@@ -0,0 +1,266 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.builder;
+
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import org.gradle.api.artifacts.VersionConstraint;
+import org.gradle.api.artifacts.component.ComponentSelector;
+import org.gradle.api.artifacts.component.ModuleComponentSelector;
+import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.strategy.VersionSelectorScheme;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.excludes.specs.ExcludeSpec;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.DependencyGraphNode;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.DependencyGraphSelector;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.DependencyGraphVisitor;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.RootGraphNode;
+import org.gradle.api.internal.attributes.AttributeContainerInternal;
+import org.gradle.internal.component.model.ComponentOverrideMetadata;
+import org.gradle.internal.component.model.ComponentResolveMetadata;
+import org.gradle.internal.component.model.DependencyMetadata;
+import org.gradle.internal.component.model.IvyArtifactName;
+import org.gradle.internal.serialize.Encoder;
+import org.gradle.internal.serialize.kryo.KryoBackedEncoder;
+
+import javax.annotation.Nullable;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Records the result of a graph traversal, and stores it in the {@link ResolvedGraphCache} when it can be replayed by {@link ResolvedGraphReplayer}.
+ */
+class ResolvedGraphRecorder implements DependencyGraphVisitor {
+    private final ResolvedGraphCache.CachedGraph cachedGraph;
+    private final VersionSelectorScheme versionSelectorScheme;
+    private final List<DependencyGraphSelector> selectors = Lists.newArrayList();
+    private final List<NodeState> nodes = Lists.newArrayList();
+    private final List<NodeState> edgeVisitOrder = Lists.newArrayList();
+    private boolean cacheable;
+
+    ResolvedGraphRecorder(ResolvedGraphCache.CachedGraph cachedGraph, VersionSelectorScheme versionSelectorScheme, boolean cacheable) {
+        this.cachedGraph = cachedGraph;
+        this.versionSelectorScheme = versionSelectorScheme;
+        this.cacheable = cacheable;
+    }
+
+    @Override
+    public void start(RootGraphNode root) {
+        ResolveOptimizations resolveOptimizations = root.getResolveOptimizations();
+        if (resolveOptimizations.mayHaveVirtualPlatforms() || resolveOptimizations.mayHaveForcedPlatforms()) {
+            cacheable = false;
+        }
+    }
+
+    @Override
+    public void visitSelector(DependencyGraphSelector selector) {
+        selectors.add(selector);
+    }
+
+    @Override
+    public void visitNode(DependencyGraphNode node) {
+        nodes.add((NodeState) node);
+    }
+
+    @Override
+    public void visitEdges(DependencyGraphNode node) {
+        edgeVisitOrder.add((NodeState) node);
+    }
+
+    @Override
+    public void finish(DependencyGraphNode root) {
+        if (!cacheable) {
+            return;
+        }
+        try {
+            byte[] graph = encode((NodeState) root);
+            if (graph != null) {
+                cachedGraph.store(graph);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Encodes the recorded graph, or returns null when the graph cannot be replayed.
+     */
+    @Nullable
+    private byte[] encode(NodeState root) throws IOException {
+        Map<NodeState, Integer> nodeIndices = Maps.newIdentityHashMap();
+        for (NodeState node : nodes) {
+            nodeIndices.put(node, nodeIndices.size());
+        }
+        Integer rootIndex = nodeIndices.get(root);
+        if (rootIndex == null) {
+            return null;
+        }
+
+        Map<Long, ComponentState> components = Maps.newLinkedHashMap();
+        Map<EdgeState, Integer> edgeIndices = Maps.newIdentityHashMap();
+        List<EdgeState> edges = Lists.newArrayList();
+        for (NodeState node : nodes) {
+            ComponentState component = node.getOwner();
+            if (!components.containsKey(component.getResultId())) {
+                if (!isCacheable(component)) {
+                    return null;
+                }
+                components.put(component.getResultId(), component);
+            }
+            if (ResolvedGraphCache.hasFileDependencies(node.getMetadata()) || !component.getResolvedVariants().contains(node.getResolvedVariant())) {
+                return null;
+            }
+            for (EdgeState edge : Iterables.concat(node.getOutgoingEdges(), node.getIncomingEdges())) {
+                if (!edgeIndices.containsKey(edge)) {
+                    if (!nodeIndices.containsKey(edge.getFrom()) || !isCacheable(edge)) {
+                        return null;
+                    }
+                    edgeIndices.put(edge, edges.size());
+                    edges.add(edge);
+                }
+            }
+        }
+
+        ResolvedGraphCache.Serializers serializers = cachedGraph.newSerializers();
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        KryoBackedEncoder encoder = new KryoBackedEncoder(outputStream);
+
+        encoder.writeSmallInt(selectors.size());
+        for (DependencyGraphSelector selector : selectors) {
+            encoder.writeSmallLong(selector.getResultId());
+            serializers.selectorSerializer.write(encoder, selector.getRequested());
+        }
+
+        encoder.writeSmallInt(components.size());
+        for (ComponentState component : components.values()) {
+            serializers.componentSerializer.write(encoder, component);
+            writeOverrideArtifacts(encoder, component.getOverrideMetadata());
+        }
+
+        encoder.writeSmallInt(rootIndex);
+        encoder.writeSmallInt(nodes.size());
+        for (NodeState node : nodes) {
+            ComponentState component = node.getOwner();
+            encoder.writeSmallLong(node.getNodeId());
+            encoder.writeSmallLong(component.getResultId());
+            encoder.writeString(node.getMetadata().getName());
+            encoder.writeSmallInt(component.getResolvedVariants().indexOf(node.getResolvedVariant()));
+            encoder.writeBinary(ResolvedGraphCache.fingerprint(component.getMetadata(), node.getMetadata()).toByteArray());
+        }
+
+        encoder.writeSmallInt(edges.size());
+        for (EdgeState edge : edges) {
+            encoder.writeSmallInt(nodeIndices.get(edge.getFrom()));
+            encoder.writeSmallInt(indexOf(edge.getFrom().getMetadata().getDependencies(), edge.getDependencyMetadata()));
+            encoder.writeSmallLong(edge.getSelector().getResultId());
+            serializers.dependencySerializer.write(encoder, edge);
+        }
+        for (NodeState node : nodes) {
+            writeEdges(encoder, node.getOutgoingEdges(), edgeIndices);
+            writeEdges(encoder, node.getIncomingEdges(), edgeIndices);
+        }
+
+        encoder.writeSmallInt(edgeVisitOrder.size());
+        for (NodeState node : edgeVisitOrder) {
+            encoder.writeSmallInt(nodeIndices.get(node));
+        }
+        encoder.flush();
+        return outputStream.toByteArray();
+    }
+
+    private boolean isCacheable(ComponentState component) {
+        ComponentResolveMetadata metadata = component.getMetadata();
+        if (metadata == null || metadata.isChanging() || !metadata.getPlatformOwners().isEmpty()) {
+            return false;
+        }
+        if (component.getModule().isVirtualPlatform() || cachedGraph.getModuleReplacements().participatesInReplacements(component.getModule().getId())) {
+            return false;
+        }
+        ComponentOverrideMetadata overrideMetadata = component.getOverrideMetadata();
+        return overrideMetadata == null || (!overrideMetadata.isChanging() && overrideMetadata.getClientModule() == null);
+    }
+
+    private boolean isCacheable(EdgeState edge) {
+        if (edge.getFailure() != null || edge.isTargetVirtualPlatform()) {
+            return false;
+        }
+        DependencyMetadata dependency = edge.getDependencyMetadata();
+        if (dependency.isChanging() || isDynamic(dependency.getSelector())) {
+            return false;
+        }
+        if (indexOf(edge.getFrom().getMetadata().getDependencies(), dependency) < 0) {
+            return false;
+        }
+        if (edge.contributesArtifacts()) {
+            // The replayed edge uses the attributes of the dependency and does not exclude any artifacts
+            ExcludeSpec exclusions = edge.getExclusions();
+            if (exclusions != null && exclusions.mayExcludeArtifacts()) {
+                return false;
+            }
+            return edge.getAttributes().equals(((AttributeContainerInternal) dependency.getSelector().getAttributes()).asImmutable());
+        }
+        return true;
+    }
+
+    private boolean isDynamic(ComponentSelector selector) {
+        if (!(selector instanceof ModuleComponentSelector)) {
+            return false;
+        }
+        VersionConstraint versionConstraint = ((ModuleComponentSelector) selector).getVersionConstraint();
+        return versionConstraint.getBranch() != null
+            || isDynamic(versionConstraint.getRequiredVersion())
+            || isDynamic(versionConstraint.getPreferredVersion())
+            || isDynamic(versionConstraint.getStrictVersion());
+    }
+
+    private boolean isDynamic(String version) {
+        return !version.isEmpty() && versionSelectorScheme.parseSelector(version).isDynamic();
+    }
+
+    private static int indexOf(List<?> values, Object value) {
+        for (int i = 0; i < values.size(); i++) {
+            if (values.get(i) == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static void writeOverrideArtifacts(Encoder encoder, @Nullable ComponentOverrideMetadata overrideMetadata) throws IOException {
+        List<IvyArtifactName> artifacts = overrideMetadata == null ? null : overrideMetadata.getArtifacts();
+        if (artifacts == null || artifacts.isEmpty()) {
+            encoder.writeBoolean(false);
+            return;
+        }
+        IvyArtifactName artifact = artifacts.get(0);
+        encoder.writeBoolean(true);
+        encoder.writeString(artifact.getName());
+        encoder.writeString(artifact.getType());
+        encoder.writeNullableString(artifact.getExtension());
+        encoder.writeNullableString(artifact.getClassifier());
+    }
+
+    private static void writeEdges(Encoder encoder, List<EdgeState> edges, Map<EdgeState, Integer> edgeIndices) throws IOException {
+        encoder.writeSmallInt(edges.size());
+        for (EdgeState edge : edges) {
+            encoder.writeSmallInt(edgeIndices.get(edge));
+        }
+    }
+}
@@ -0,0 +1,630 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.builder;
+
+import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import org.gradle.api.artifacts.Dependency;
+import org.gradle.api.artifacts.ModuleVersionIdentifier;
+import org.gradle.api.artifacts.component.ComponentIdentifier;
+import org.gradle.api.artifacts.component.ComponentSelector;
+import org.gradle.api.artifacts.result.ComponentSelectionReason;
+import org.gradle.api.artifacts.result.ResolvedVariantResult;
+import org.gradle.api.internal.artifacts.ResolvedConfigurationIdentifier;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.ComponentResolutionState;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.excludes.ModuleExclusions;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.excludes.specs.ExcludeSpec;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.DependencyGraphComponent;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.DependencyGraphEdge;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.DependencyGraphNode;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.DependencyGraphSelector;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.DependencyGraphVisitor;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.ResolvedGraphComponent;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.ResolvedGraphDependency;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.RootGraphNode;
+import org.gradle.api.internal.attributes.AttributeContainerInternal;
+import org.gradle.api.internal.attributes.AttributesSchemaInternal;
+import org.gradle.api.internal.attributes.ImmutableAttributes;
+import org.gradle.api.internal.attributes.ImmutableAttributesFactory;
+import org.gradle.internal.component.local.model.DslOriginDependencyMetadata;
+import org.gradle.internal.component.local.model.LocalFileDependencyMetadata;
+import org.gradle.internal.component.local.model.RootConfigurationMetadata;
+import org.gradle.internal.component.model.ComponentArtifactMetadata;
+import org.gradle.internal.component.model.ComponentResolveMetadata;
+import org.gradle.internal.component.model.ConfigurationMetadata;
+import org.gradle.internal.component.model.DefaultComponentOverrideMetadata;
+import org.gradle.internal.component.model.DefaultIvyArtifactName;
+import org.gradle.internal.component.model.DependencyMetadata;
+import org.gradle.internal.component.model.IvyArtifactName;
+import org.gradle.internal.hash.HashCode;
+import org.gradle.internal.resolve.ModuleVersionResolveException;
+import org.gradle.internal.resolve.resolver.ComponentMetaDataResolver;
+import org.gradle.internal.resolve.result.DefaultBuildableComponentResolveResult;
+import org.gradle.internal.serialize.Decoder;
+import org.gradle.internal.serialize.kryo.KryoBackedDecoder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Replays a graph recorded by {@link ResolvedGraphRecorder}, once the metadata of all its components has been resolved and matches the recorded graph.
+ */
+class ResolvedGraphReplayer {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ResolvedGraphReplayer.class);
+
+    private final ResolvedGraphCache.CachedGraph cachedGraph;
+    private final ComponentMetaDataResolver metaDataResolver;
+    private final AttributesSchemaInternal consumerSchema;
+    private final ImmutableAttributesFactory attributesFactory;
+    private final ExcludeSpec nothing;
+
+    ResolvedGraphReplayer(ResolvedGraphCache.CachedGraph cachedGraph, ComponentMetaDataResolver metaDataResolver, AttributesSchemaInternal consumerSchema, ImmutableAttributesFactory attributesFactory, ModuleExclusions moduleExclusions) {
+        this.cachedGraph = cachedGraph;
+        this.metaDataResolver = metaDataResolver;
+        this.consumerSchema = consumerSchema;
+        this.attributesFactory = attributesFactory;
+        this.nothing = moduleExclusions.nothing();
+    }
+
+    /**
+     * Replays the cached graph to the given visitor. Returns false without visiting anything when there is no cached graph or it is out of date.
+     */
+    boolean replay(ComponentResolveMetadata rootMetadata, DependencyGraphVisitor visitor) {
+        byte[] graph = cachedGraph.load();
+        if (graph == null) {
+            return false;
+        }
+        ReplayedGraph replayedGraph;
+        try {
+            replayedGraph = decode(graph);
+        } catch (IOException | RuntimeException e) {
+            LOGGER.debug("Could not read cached dependency graph.", e);
+            return false;
+        }
+        if (!replayedGraph.attachMetadata(rootMetadata)) {
+            return false;
+        }
+        replayedGraph.visit(visitor);
+        return true;
+    }
+
+    private ReplayedGraph decode(byte[] graph) throws IOException {
+        ResolvedGraphCache.Serializers serializers = cachedGraph.newSerializers();
+        KryoBackedDecoder decoder = new KryoBackedDecoder(new ByteArrayInputStream(graph));
+
+        int selectorCount = decoder.readSmallInt();
+        Map<Long, ComponentSelector> requested = Maps.newHashMapWithExpectedSize(selectorCount);
+        Map<Long, ReplayedSelector> selectors = Maps.newLinkedHashMap();
+        for (int i = 0; i < selectorCount; i++) {
+            Long id = decoder.readSmallLong();
+            ComponentSelector selector = serializers.selectorSerializer.read(decoder);
+            requested.put(id, selector);
+            selectors.put(id, new ReplayedSelector(id, selector));
+        }
+
+        int componentCount = decoder.readSmallInt();
+        Map<Long, ReplayedComponent> components = Maps.newLinkedHashMap();
+        for (int i = 0; i < componentCount; i++) {
+            ResolvedGraphComponent component = serializers.componentSerializer.read(decoder);
+            components.put(component.getResultId(), new ReplayedComponent(component, readOverrideArtifact(decoder)));
+        }
+
+        int rootIndex = decoder.readSmallInt();
+        int nodeCount = decoder.readSmallInt();
+        List<ReplayedNode> nodes = Lists.newArrayListWithCapacity(nodeCount);
+        for (int i = 0; i < nodeCount; i++) {
+            Long nodeId = decoder.readSmallLong();
+            ReplayedComponent owner = components.get(decoder.readSmallLong());
+            String configurationName = decoder.readString();
+            int variantIndex = decoder.readSmallInt();
+            HashCode fingerprint = HashCode.fromBytes(decoder.readBinary());
+            ReplayedNode node = i == rootIndex
+                ? new ReplayedRootNode(nodeId, owner, configurationName, variantIndex, fingerprint)
+                : new ReplayedNode(nodeId, owner, configurationName, variantIndex, fingerprint);
+            owner.nodes.add(node);
+            nodes.add(node);
+        }
+
+        int edgeCount = decoder.readSmallInt();
+        List<ReplayedEdge> edges = Lists.newArrayListWithCapacity(edgeCount);
+        for (int i = 0; i < edgeCount; i++) {
+            ReplayedNode from = nodes.get(decoder.readSmallInt());
+            int dependencyIndex = decoder.readSmallInt();
+            ReplayedSelector selector = selectors.get(decoder.readSmallLong());
+            ResolvedGraphDependency dependency = serializers.dependencySerializer.read(decoder, requested, Collections.emptyMap());
+            edges.add(new ReplayedEdge(from, dependencyIndex, selector, dependency, nothing));
+        }
+        for (ReplayedNode node : nodes) {
+            readEdges(decoder, edges, node.outgoingEdges);
+            readEdges(decoder, edges, node.incomingEdges);
+            for (ReplayedEdge edge : node.incomingEdges) {
+                edge.targets.add(node);
+            }
+        }
+
+        int visitCount = decoder.readSmallInt();
+        List<ReplayedNode> edgeVisitOrder = Lists.newArrayListWithCapacity(visitCount);
+        for (int i = 0; i < visitCount; i++) {
+            edgeVisitOrder.add(nodes.get(decoder.readSmallInt()));
+        }
+        return new ReplayedGraph((ReplayedRootNode) nodes.get(rootIndex), selectors.values(), components.values(), nodes, edges, edgeVisitOrder);
+    }
+
+    @Nullable
+    private static IvyArtifactName readOverrideArtifact(Decoder decoder) throws IOException {
+        if (!decoder.readBoolean()) {
+            return null;
+        }
+        return new DefaultIvyArtifactName(decoder.readString(), decoder.readString(), decoder.readNullableString(), decoder.readNullableString());
+    }
+
+    private static void readEdges(Decoder decoder, List<ReplayedEdge> edges, List<ReplayedEdge> target) throws IOException {
+        int count = decoder.readSmallInt();
+        for (int i = 0; i < count; i++) {
+            target.add(edges.get(decoder.readSmallInt()));
+        }
+    }
+
+    private class ReplayedGraph {
+        private final ReplayedRootNode root;
+        private final Collection<ReplayedSelector> selectors;
+        private final Collection<ReplayedComponent> components;
+        private final List<ReplayedNode> nodes;
+        private final List<ReplayedEdge> edges;
+        private final List<ReplayedNode> edgeVisitOrder;
+
+        ReplayedGraph(ReplayedRootNode root, Collection<ReplayedSelector> selectors, Collection<ReplayedComponent> components, List<ReplayedNode> nodes, List<ReplayedEdge> edges, List<ReplayedNode> edgeVisitOrder) {
+            this.root = root;
+            this.selectors = selectors;
+            this.components = components;
+            this.nodes = nodes;
+            this.edges = edges;
+            this.edgeVisitOrder = edgeVisitOrder;
+        }
+
+        /**
+         * Resolves the metadata of every component and checks that it still leads to the recorded graph.
+         */
+        boolean attachMetadata(ComponentResolveMetadata rootMetadata) {
+            for (ReplayedComponent component : components) {
+                if (cachedGraph.getModuleReplacements().participatesInReplacements(component.getModuleVersion().getModule())) {
+                    return false;
+                }
+                ComponentResolveMetadata metadata;
+                if (component == root.component) {
+                    if (!rootMetadata.getId().equals(component.getComponentId())) {
+                        return false;
+                    }
+                    metadata = rootMetadata;
+                } else {
+                    DefaultBuildableComponentResolveResult result = new DefaultBuildableComponentResolveResult();
+                    metaDataResolver.resolve(component.getComponentId(), DefaultComponentOverrideMetadata.forDependency(false, component.overrideArtifact, null), result);
+                    if (result.getFailure() != null) {
+                        return false;
+                    }
+                    metadata = result.getMetadata();
+                }
+                if (metadata.isChanging() || !metadata.getPlatformOwners().isEmpty()) {
+                    return false;
+                }
+                component.metadata = metadata;
+            }
+            for (ReplayedNode node : nodes) {
+                ConfigurationMetadata configuration = node == root
+                    ? node.component.metadata.getConfiguration(node.configurationName)
+                    : findConfiguration(node.component.metadata, node.configurationName);
+                if (configuration == null
+                    || (node == root && !(configuration instanceof RootConfigurationMetadata))
+                    || ResolvedGraphCache.hasFileDependencies(configuration)
+                    || !ResolvedGraphCache.fingerprint(node.component.metadata, configuration).equals(node.fingerprint)) {
+                    return false;
+                }
+                node.metadata = configuration;
+            }
+            for (ReplayedEdge edge : edges) {
+                List<? extends DependencyMetadata> dependencies = edge.from.metadata.getDependencies();
+                if (edge.dependencyIndex >= dependencies.size()) {
+                    return false;
+                }
+                edge.dependencyMetadata = dependencies.get(edge.dependencyIndex);
+            }
+            return selectsSameVariants();
+        }
+
+        /**
+         * Selects the target variants of every dependency again, and checks that the recorded nodes are selected. The attribute compatibility and
+         * disambiguation rules of the consumer, and the attribute schemas of the producers, may have changed since the graph was recorded.
+         */
+        private boolean selectsSameVariants() {
+            ImmutableAttributes rootAttributes = root.metadata.getAttributes();
+            for (ReplayedEdge edge : edges) {
+                if (edge.isConstraint()) {
+                    continue;
+                }
+                if (edge.targets.isEmpty()) {
+                    return false;
+                }
+                List<? extends ConfigurationMetadata> selected;
+                try {
+                    ImmutableAttributes attributes = attributesFactory.concat(rootAttributes, edge.getAttributes());
+                    selected = edge.dependencyMetadata.selectConfigurations(attributes, edge.targets.get(0).component.metadata, consumerSchema, edge.dependencyMetadata.getSelector().getRequestedCapabilities());
+                } catch (RuntimeException e) {
+                    LOGGER.debug("Could not select the variants of cached dependency {}.", edge, e);
+                    return false;
+                }
+                if (selected.size() != edge.targets.size()) {
+                    return false;
+                }
+                for (ConfigurationMetadata configuration : selected) {
+                    if (!edge.targetsConfiguration(configuration.getName())) {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        }
+
+        void visit(DependencyGraphVisitor visitor) {
+            visitor.start(root);
+            for (ReplayedSelector selector : selectors) {
+                visitor.visitSelector(selector);
+            }
+            for (ReplayedNode node : nodes) {
+                visitor.visitNode(node);
+            }
+            for (ReplayedNode node : edgeVisitOrder) {
+                visitor.visitEdges(node);
+            }
+            visitor.finish(root);
+        }
+
+        @Nullable
+        private ConfigurationMetadata findConfiguration(ComponentResolveMetadata metadata, String name) {
+            Optional<ImmutableList<? extends ConfigurationMetadata>> variants = metadata.getVariantsForGraphTraversal();
+            if (variants.isPresent()) {
+                for (ConfigurationMetadata variant : variants.get()) {
+                    if (variant.getName().equals(name)) {
+                        return variant;
+                    }
+                }
+            }
+            return metadata.getConfiguration(name);
+        }
+    }
+
+    private static class ReplayedSelector implements DependencyGraphSelector {
+        private final Long resultId;
+        private final ComponentSelector requested;
+
+        ReplayedSelector(Long resultId, ComponentSelector requested) {
+            this.resultId = resultId;
+            this.requested = requested;
+        }
+
+        @Override
+        public Long getResultId() {
+            return resultId;
+        }
+
+        @Override
+        public ComponentSelector getRequested() {
+            return requested;
+        }
+    }
+
+    private static class ReplayedComponent implements DependencyGraphComponent {
+        private final ResolvedGraphComponent result;
+        private final IvyArtifactName overrideArtifact;
+        private final List<ReplayedNode> nodes = Lists.newArrayList();
+        private ComponentResolveMetadata metadata;
+
+        ReplayedComponent(ResolvedGraphComponent result, @Nullable IvyArtifactName overrideArtifact) {
+            this.result = result;
+            this.overrideArtifact = overrideArtifact;
+        }
+
+        @Override
+        public ComponentResolveMetadata getMetadata() {
+            return metadata;
+        }
+
+        @Override
+        public Collection<? extends DependencyGraphComponent> getDependents() {
+            Set<DependencyGraphComponent> dependents = Sets.newLinkedHashSet();
+            for (ReplayedNode node : nodes) {
+                for (ReplayedEdge edge : node.incomingEdges) {
+                    dependents.add(edge.from.component);
+                }
+            }
+            return dependents;
+        }
+
+        @Override
+        public Collection<? extends ModuleVersionIdentifier> getAllVersions() {
+            return Collections.singletonList(getModuleVersion());
+        }
+
+        @Override
+        public Long getResultId() {
+            return result.getResultId();
+        }
+
+        @Override
+        public ComponentIdentifier getComponentId() {
+            return result.getComponentId();
+        }
+
+        @Override
+        public ModuleVersionIdentifier getModuleVersion() {
+            return result.getModuleVersion();
+        }
+
+        @Override
+        public ComponentSelectionReason getSelectionReason() {
+            return result.getSelectionReason();
+        }
+
+        @Nullable
+        @Override
+        public String getRepositoryName() {
+            return result.getRepositoryName();
+        }
+
+        @Override
+        public List<ResolvedVariantResult> getResolvedVariants() {
+            return result.getResolvedVariants();
+        }
+
+        @Override
+        public String toString() {
+            return getModuleVersion().toString();
+        }
+    }
+
+    private static class ReplayedNode implements DependencyGraphNode {
+        private final Long nodeId;
+        final ReplayedComponent component;
+        private final String configurationName;
+        private final int variantIndex;
+        private final HashCode fingerprint;
+        private final List<ReplayedEdge> incomingEdges = Lists.newArrayList();
+        private final List<ReplayedEdge> outgoingEdges = Lists.newArrayList();
+        ConfigurationMetadata metadata;
+
+        ReplayedNode(Long nodeId, ReplayedComponent component, String configurationName, int variantIndex, HashCode fingerprint) {
+            this.nodeId = nodeId;
+            this.component = component;
+            this.configurationName = configurationName;
+            this.variantIndex = variantIndex;
+            this.fingerprint = fingerprint;
+        }
+
+        @Override
+        public Long getNodeId() {
+            return nodeId;
+        }
+
+        @Override
+        public boolean isRoot() {
+            return false;
+        }
+
+        @Override
+        public ResolvedConfigurationIdentifier getResolvedConfigurationId() {
+            return new ResolvedConfigurationIdentifier(component.getModuleVersion(), configurationName);
+        }
+
+        @Override
+        public ReplayedComponent getOwner() {
+            return component;
+        }
+
+        @Override
+        public Collection<ReplayedEdge> getIncomingEdges() {
+            return incomingEdges;
+        }
+
+        @Override
+        public Collection<ReplayedEdge> getOutgoingEdges() {
+            return outgoingEdges;
+        }
+
+        @Override
+        public Set<? extends LocalFileDependencyMetadata> getOutgoingFileEdges() {
+            return Collections.emptySet();
+        }
+
+        @Override
+        public ConfigurationMetadata getMetadata() {
+            return metadata;
+        }
+
+        @Override
+        public boolean isSelected() {
+            return true;
+        }
+
+        @Override
+        public ComponentResolutionState getComponent() {
+            throw new UnsupportedOperationException("A replayed node does not have resolution state.");
+        }
+
+        @Override
+        public ResolvedVariantResult getResolvedVariant() {
+            return component.getResolvedVariants().get(variantIndex);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s(%s)", component, configurationName);
+        }
+    }
+
+    private static class ReplayedRootNode extends ReplayedNode implements RootGraphNode {
+        private final ResolveOptimizations resolveOptimizations = new ResolveOptimizations();
+
+        ReplayedRootNode(Long nodeId, ReplayedComponent component, String configurationName, int variantIndex, HashCode fingerprint) {
+            super(nodeId, component, configurationName, variantIndex, fingerprint);
+        }
+
+        @Override
+        public boolean isRoot() {
+            return true;
+        }
+
+        @Override
+        public RootConfigurationMetadata getMetadata() {
+            return (RootConfigurationMetadata) super.getMetadata();
+        }
+
+        @Override
+        public ResolveOptimizations getResolveOptimizations() {
+            return resolveOptimizations;
+        }
+    }
+
+    private static class ReplayedEdge implements DependencyGraphEdge {
+        private final ReplayedNode from;
+        private final int dependencyIndex;
+        private final ReplayedSelector selector;
+        private final ResolvedGraphDependency result;
+        private final ExcludeSpec exclusions;
+        private final List<ReplayedNode> targets = Lists.newArrayList();
+        DependencyMetadata dependencyMetadata;
+
+        ReplayedEdge(ReplayedNode from, int dependencyIndex, ReplayedSelector selector, ResolvedGraphDependency result, ExcludeSpec exclusions) {
+            this.from = from;
+            this.dependencyIndex = dependencyIndex;
+            this.selector = selector;
+            this.result = result;
+            this.exclusions = exclusions;
+        }
+
+        @Override
+        public ReplayedNode getFrom() {
+            return from;
+        }
+
+        boolean targetsConfiguration(String configurationName) {
+            for (ReplayedNode target : targets) {
+                if (target.configurationName.equals(configurationName)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public DependencyGraphSelector getSelector() {
+            return selector;
+        }
+
+        @Override
+        public ExcludeSpec getExclusions() {
+            return exclusions;
+        }
+
+        @Override
+        public boolean contributesArtifacts() {
+            return !result.isConstraint();
+        }
+
+        @Override
+        public List<ComponentArtifactMetadata> getArtifacts(ConfigurationMetadata targetConfiguration) {
+            List<IvyArtifactName> artifacts = dependencyMetadata.getArtifacts();
+            if (artifacts.isEmpty()) {
+                return Collections.emptyList();
+            }
+            return artifacts.stream().map(targetConfiguration::artifact).collect(Collectors.toList());
+        }
+
+        @Override
+        public ImmutableAttributes getAttributes() {
+            return ((AttributeContainerInternal) dependencyMetadata.getSelector().getAttributes()).asImmutable();
+        }
+
+        @Nullable
+        @Override
+        public Dependency getOriginalDependency() {
+            if (dependencyMetadata instanceof DslOriginDependencyMetadata) {
+                return ((DslOriginDependencyMetadata) dependencyMetadata).getSource();
+            }
+            return null;
+        }
+
+        @Override
+        public boolean isTargetVirtualPlatform() {
+            return false;
+        }
+
+        @Override
+        public ComponentSelector getRequested() {
+            return result.getRequested();
+        }
+
+        @Nullable
+        @Override
+        public ModuleVersionResolveException getFailure() {
+            return null;
+        }
+
+        @Nullable
+        @Override
+        public Long getSelected() {
+            return result.getSelected();
+        }
+
+        @Nullable
+        @Override
+        public ComponentSelectionReason getReason() {
+            return null;
+        }
+
+        @Override
+        public boolean isConstraint() {
+            return result.isConstraint();
+        }
+
+        @Override
+        public ResolvedVariantResult getFromVariant() {
+            return result.getFromVariant();
+        }
+
+        @Override
+        public ResolvedVariantResult getSelectedVariant() {
+            return result.getSelectedVariant();
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s -> %s", from, result.getRequested());
+        }
+    }
+}
@@ -33,6 +33,8 @@
 import org.gradle.internal.component.external.model.ModuleComponentArtifactIdentifier;
 import org.gradle.internal.hash.ChecksumService;
 import org.gradle.internal.hash.HashCode;
+import org.gradle.internal.hash.Hasher;
+import org.gradle.internal.hash.Hashing;
 import org.gradle.security.internal.Fingerprint;
 import org.gradle.security.internal.PublicKeyService;
 
@@ -76,6 +78,58 @@ public void verify(ChecksumService checksumService,
             });
     }
 
+    /**
+     * Returns a hash of everything in the verification metadata which decides the outcome of verifying the given artifact,
+     * or {@code null} if the artifact isn't verified at all.
+     */
+    @Nullable
+    public HashCode getVerificationKey(ArtifactVerificationOperation.ArtifactKind kind, ModuleComponentArtifactIdentifier foundArtifact) {
+        if (shouldSkipVerification(kind)) {
+            return null;
+        }
+        Hasher hasher = Hashing.newHasher();
+        hasher.putString(kind.name());
+        hasher.putString(foundArtifact.getComponentIdentifier().getDisplayName());
+        hasher.putString(foundArtifact.getFileName());
+        hasher.putBoolean(config.isVerifySignatures());
+        hasher.putBoolean(isTrustedArtifact(foundArtifact));
+        ArtifactVerificationMetadata verification = findArtifactVerification(foundArtifact);
+        if (verification == null) {
+            hasher.putNull();
+            putSorted(hasher, allTrustedKeys(foundArtifact, Collections.emptySet()));
+            putSorted(hasher, allIgnoredKeys(Collections.emptySet()));
+        } else {
+            List<Checksum> checksums = verification.getChecksums();
+            hasher.putInt(checksums.size());
+            for (Checksum checksum : checksums) {
+                hasher.putString(checksum.getKind().name());
+                hasher.putString(checksum.getValue());
+                putSorted(hasher, checksum.getAlternatives() == null ? Collections.emptySet() : checksum.getAlternatives());
+            }
+            putSorted(hasher, allTrustedKeys(foundArtifact, verification.getTrustedPgpKeys()));
+            putSorted(hasher, allIgnoredKeys(verification.getIgnoredPgpKeys()));
+        }
+        return hasher.hash();
+    }
+
+    private static void putSorted(Hasher hasher, Set<String> values) {
+        hasher.putInt(values.size());
+        values.stream().sorted().forEach(hasher::putString);
+    }
+
+    @Nullable
+    private ArtifactVerificationMetadata findArtifactVerification(ModuleComponentArtifactIdentifier foundArtifact) {
+        ComponentVerificationMetadata componentVerification = verificationMetadata.get(foundArtifact.getComponentIdentifier());
+        if (componentVerification != null) {
+            for (ArtifactVerificationMetadata verification : componentVerification.getArtifactVerifications()) {
+                if (verification.getArtifactName().equals(foundArtifact.getFileName())) {
+                    return verification;
+                }
+            }
+        }
+        return null;
+    }
+
     private boolean shouldSkipVerification(ArtifactVerificationOperation.ArtifactKind kind) {
         return kind == ArtifactVerificationOperation.ArtifactKind.METADATA && !config.isVerifyMetadata();
     }
@@ -0,0 +1,166 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.artifacts.ivyservice.ivyresolve.verification
+
+import org.gradle.api.InvalidUserDataException
+import org.gradle.api.artifacts.verification.DependencyVerificationMode
+import org.gradle.api.internal.DocumentationRegistry
+import org.gradle.api.internal.artifacts.DefaultModuleIdentifier
+import org.gradle.api.internal.artifacts.verification.signatures.SignatureVerificationService
+import org.gradle.api.internal.artifacts.verification.signatures.SignatureVerificationServiceFactory
+import org.gradle.api.internal.properties.GradleProperties
+import org.gradle.internal.Factory
+import org.gradle.internal.component.external.model.DefaultModuleComponentArtifactIdentifier
+import org.gradle.internal.component.external.model.DefaultModuleComponentIdentifier
+import org.gradle.internal.hash.ChecksumService
+import org.gradle.internal.hash.HashCode
+import org.gradle.internal.operations.TestBuildOperationExecutor
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.junit.Rule
+import spock.lang.Specification
+
+import static org.gradle.api.internal.artifacts.ivyservice.ivyresolve.verification.ArtifactVerificationOperation.ArtifactKind.REGULAR
+
+class ChecksumAndSignatureVerificationOverrideTest extends Specification {
+    private static final HashCode EXPECTED_SHA256 = HashCode.fromString("0123456789abcdef")
+
+    @Rule
+    final TestNameTestDirectoryProvider tmpDir = new TestNameTestDirectoryProvider(getClass())
+
+    def checksumService = Mock(ChecksumService)
+    def verificationCache = Mock(CrossBuildArtifactVerificationCache)
+    def signatureVerificationServiceFactory = Stub(SignatureVerificationServiceFactory) {
+        create(_, _) >> Stub(SignatureVerificationService)
+    }
+    def artifact = new DefaultModuleComponentArtifactIdentifier(DefaultModuleComponentIdentifier.newId(DefaultModuleIdentifier.newId("org", "foo"), "1.0"), "foo", "jar", "jar")
+    def artifactFile = tmpDir.file("foo-1.0.jar").createFile()
+    def cacheKey = HashCode.fromString("abcdef")
+
+    def "does not verify an artifact which was verified by a previous build"() {
+        def override = createOverride()
+
+        when:
+        override.onArtifact(REGULAR, artifact, artifactFile, { null } as Factory<File>, "repo", "repoId")
+        override.artifactsAccessed("test")
+
+        then:
+        1 * verificationCache.keyOf(_, artifactFile) >> cacheKey
+        1 * verificationCache.isVerified(cacheKey) >> true
+        0 * checksumService._
+        0 * verificationCache.markVerified(_)
+    }
+
+    def "remembers an artifact which passed verification"() {
+        def override = createOverride()
+
+        when:
+        override.onArtifact(REGULAR, artifact, artifactFile, { null } as Factory<File>, "repo", "repoId")
+        override.artifactsAccessed("test")
+
+        then:
+        1 * verificationCache.keyOf(_, artifactFile) >> cacheKey
+        1 * verificationCache.isVerified(cacheKey) >> false
+        1 * checksumService.sha256(artifactFile) >> EXPECTED_SHA256
+        1 * verificationCache.markVerified(cacheKey)
+    }
+
+    def "does not remember an artifact which failed verification"() {
+        def override = createOverride()
+
+        when:
+        override.onArtifact(REGULAR, artifact, artifactFile, { null } as Factory<File>, "repo", "repoId")
+        override.artifactsAccessed("test")
+
+        then:
+        1 * verificationCache.keyOf(_, artifactFile) >> cacheKey
+        1 * verificationCache.isVerified(cacheKey) >> false
+        1 * checksumService.sha256(artifactFile) >> HashCode.fromString("fedcba9876543210")
+        0 * verificationCache.markVerified(_)
+        thrown(InvalidUserDataException)
+    }
+
+    def "verifies artifacts again when keys are refreshed"() {
+        def override = createOverride(true)
+
+        when:
+        override.onArtifact(REGULAR, artifact, artifactFile, { null } as Factory<File>, "repo", "repoId")
+        override.artifactsAccessed("test")
+
+        then:
+        1 * verificationCache.keyOf(_, artifactFile) >> cacheKey
+        0 * verificationCache.isVerified(_)
+        1 * checksumService.sha256(artifactFile) >> EXPECTED_SHA256
+        1 * verificationCache.markVerified(cacheKey)
+    }
+
+    def "does not reuse a verification made with a different keyring"() {
+        def keyring = tmpDir.file("gradle/verification-keyring.gpg") << "keys"
+        def keys = []
+
+        when:
+        def first = createOverride()
+        def second = createOverride()
+        [first, second].each {
+            it.onArtifact(REGULAR, artifact, artifactFile, { null } as Factory<File>, "repo", "repoId")
+            it.artifactsAccessed("test")
+        }
+
+        then:
+        2 * checksumService.sha256(keyring) >>> [HashCode.fromString("01"), HashCode.fromString("02")]
+        2 * verificationCache.keyOf(_, artifactFile) >> { HashCode key, File file ->
+            keys << key
+            cacheKey
+        }
+        2 * checksumService.sha256(artifactFile) >> EXPECTED_SHA256
+        keys[0] != keys[1]
+    }
+
+    private ChecksumAndSignatureVerificationOverride createOverride(boolean refreshKeys = false) {
+        def verificationsFile = tmpDir.file("gradle/verification-metadata.xml")
+        if (!verificationsFile.exists()) {
+            verificationsFile << """<?xml version="1.0" encoding="UTF-8"?>
+<verification-metadata>
+   <configuration>
+      <verify-metadata>true</verify-metadata>
+      <verify-signatures>false</verify-signatures>
+   </configuration>
+   <components>
+      <component group="org" name="foo" version="1.0">
+         <artifact name="foo-1.0.jar">
+            <sha256 value="${EXPECTED_SHA256}"/>
+         </artifact>
+      </component>
+   </components>
+</verification-metadata>
+"""
+        }
+        return new ChecksumAndSignatureVerificationOverride(
+            new TestBuildOperationExecutor(),
+            tmpDir.file("user-home"),
+            verificationsFile,
+            tmpDir.file("gradle/verification-keyring.gpg"),
+            checksumService,
+            signatureVerificationServiceFactory,
+            { verificationCache } as Factory<CrossBuildArtifactVerificationCache>,
+            DependencyVerificationMode.STRICT,
+            new DocumentationRegistry(),
+            tmpDir.file("reports"),
+            { Stub(GradleProperties) } as Factory<GradleProperties>,
+            refreshKeys
+        )
+    }
+}
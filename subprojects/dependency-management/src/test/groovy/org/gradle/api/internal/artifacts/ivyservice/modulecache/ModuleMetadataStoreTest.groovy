@@ -20,8 +20,11 @@ import org.gradle.api.internal.artifacts.DefaultModuleIdentifier
 import org.gradle.api.internal.artifacts.DependencyManagementTestUtil
 import org.gradle.api.internal.artifacts.ImmutableModuleIdentifierFactory
 import org.gradle.internal.component.external.model.DefaultModuleComponentIdentifier
+import org.gradle.internal.component.external.model.MutableModuleComponentResolveMetadata
 import org.gradle.internal.resource.local.LocallyAvailableResource
 import org.gradle.internal.resource.local.PathKeyFileStore
+import org.gradle.internal.serialize.Decoder
+import org.gradle.internal.serialize.kryo.KryoBackedEncoder
 import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
 import org.gradle.util.internal.SimpleMapInterner
 import org.junit.Rule
@@ -69,4 +72,35 @@ class ModuleMetadataStoreTest extends Specification {
         };
         1 * serializer.write(_, descriptor, _)
     }
+
+    def "getModuleDescriptor decodes descriptor of #description"() {
+        setup:
+        File descriptorFile = temporaryFolder.createFile("descriptor.bin")
+        def padding = new byte[size]
+        new KryoBackedEncoder(new FileOutputStream(descriptorFile)).withCloseable { encoder ->
+            encoder.writeString("header")
+            encoder.writeBinary(padding)
+            encoder.writeString("trailer")
+        }
+        def descriptor = Mock(MutableModuleComponentResolveMetadata)
+        pathKeyFileStore.get("org.test", "testArtifact", "1.0", "repositoryId", "descriptor.bin") >> fileStoreEntry
+        fileStoreEntry.getFile() >> descriptorFile
+
+        when:
+        def result = store.getModuleDescriptor(new ModuleComponentAtRepositoryKey(repository, moduleComponentIdentifier))
+
+        then:
+        1 * serializer.read(_, moduleIdentifierFactory, _) >> { Decoder decoder, factory, interned ->
+            assert decoder.readString() == "header"
+            assert decoder.readBinary() == padding
+            assert decoder.readString() == "trailer"
+            descriptor
+        }
+        result == descriptor
+
+        where:
+        description   | size
+        "small file"  | 16
+        "large file"  | 128 * 1024
+    }
 }
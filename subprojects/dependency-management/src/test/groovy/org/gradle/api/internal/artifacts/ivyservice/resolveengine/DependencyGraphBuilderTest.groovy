@@ -99,13 +99,16 @@ class DependencyGraphBuilderTest extends Specification {
         }
     }
     def moduleExclusions = new ModuleExclusions()
+    def operationBatches = []
     def buildOperationProcessor = Mock(BuildOperationExecutor) {
         def queue = Mock(BuildOperationQueue) {
             add(_) >> { args ->
+                operationBatches.last() << args[0].description().build().displayName
                 args[0].run()
             }
         }
         runAll(_) >> { args ->
+            operationBatches << []
             args[0].execute(queue)
         }
     }
@@ -132,6 +135,21 @@ class DependencyGraphBuilderTest extends Specification {
         builder = new DependencyGraphBuilder(idResolver, metaDataResolver, moduleResolver, moduleConflictHandler, capabilitiesConflictHandler, Specs.satisfyAll(), attributesSchema, moduleExclusions, buildOperationProcessor, dependencySubstitutionApplicator, componentSelectorConverter, AttributeTestUtil.attributesFactory(), versionSelectorScheme, versionComparator.asVersionComparator(), new VersionParser())
     }
 
+    private DependencyGraphBuilder prefetchingBuilder() {
+        System.setProperty(DependencyGraphBuilder.PREFETCH_METADATA_PROPERTY, "true")
+        try {
+            return new DependencyGraphBuilder(idResolver, metaDataResolver, moduleResolver, moduleConflictHandler, capabilitiesConflictHandler, Specs.satisfyAll(), attributesSchema, moduleExclusions, buildOperationProcessor, dependencySubstitutionApplicator, componentSelectorConverter, AttributeTestUtil.attributesFactory(), versionSelectorScheme, versionComparator.asVersionComparator(), new VersionParser())
+        } finally {
+            System.clearProperty(DependencyGraphBuilder.PREFETCH_METADATA_PROPERTY)
+        }
+    }
+
+    private List<List<String>> prefetchBatches() {
+        return operationBatches.collect { batch ->
+            batch.findAll { it.startsWith("Prefetch ") }.collect { it.substring("Prefetch ".length()) }
+        }.findAll { !it.empty }
+    }
+
     private TestGraphVisitor resolve(DependencyGraphBuilder builder = this.builder) {
         def graphVisitor = new TestGraphVisitor()
         builder.resolve(configuration, graphVisitor)
@@ -1023,6 +1041,82 @@ class DependencyGraphBuilderTest extends Specification {
         result.components == ids(root, forced, b)
     }
 
+    def "prefetches metadata of fixed version dependencies of each wave once"() {
+        given:
+        def a = revision("a")
+        def b = revision("b")
+        def c = revision("c")
+        def d = revision("d")
+        def e = revision("e")
+        traversesPrefetched root, a
+        traversesPrefetched root, b
+        traversesPrefetched root, c
+        traversesPrefetched a, d
+        traversesPrefetched b, e
+
+        when:
+        def result = resolve(prefetchingBuilder())
+        result.rethrowFailure()
+
+        then:
+        prefetchBatches() == [["group:a:1.0", "group:b:1.0", "group:c:1.0"], ["group:d:1.0", "group:e:1.0"]]
+        result.components == ids(root, a, b, c, d, e)
+    }
+
+    def "does not prefetch metadata for dynamic, changing or branch selectors"() {
+        given:
+        def a = revision("a")
+        def b = revision("b")
+        def c = revision("c")
+        def d = revision("d")
+        def e = revision("e")
+        traverses root, a, revision: 'latest.release'
+        traverses root, b, branch: 'feature'
+        traverses root, c, changing: true
+        traversesPrefetched root, d
+        traversesPrefetched root, e
+
+        when:
+        def result = resolve(prefetchingBuilder())
+        result.rethrowFailure()
+
+        then:
+        prefetchBatches() == [["group:d:1.0", "group:e:1.0"]]
+        result.components == ids(root, a, b, c, d, e)
+    }
+
+    def "starts a new prefetch wave with nodes queued again by conflict resolution"() {
+        given:
+        def selected = revision('a', '1.2')
+        def evicted = revision('a', '1.1')
+        def b = revision('b')
+        def c = revision('c')
+        def d = revision('d')
+        def e = revision('e')
+        traversesPrefetched root, b
+        traversesPrefetched root, c
+        traversesPrefetched b, evicted
+        traversesPrefetched c, selected
+        traversesPrefetched selected, d
+        traversesPrefetched selected, e
+
+        when:
+        def result = resolve(prefetchingBuilder())
+        result.rethrowFailure()
+
+        then:
+        1 * conflictResolver.select(_) >> { args ->
+            def details = args[0]
+            Collection<ComponentResolutionState> candidates = details.candidates
+            details.select(candidates.find { it.version == '1.2' })
+        }
+
+        and:
+        // The queue only runs empty once a wave has been fully visited, so the dependencies of the selected version form a wave of their own
+        prefetchBatches() == [["group:b:1.0", "group:c:1.0"], ["group:a:1.1", "group:a:1.2"], ["group:d:1.0", "group:e:1.0"]]
+        result.components == ids(root, b, c, selected, d, e)
+    }
+
     def revision(String name, String revision = '1.0') {
         // TODO Shouldn't really be using the local component implementation here
         def id = newId("group", name, revision)
@@ -1052,6 +1146,15 @@ class DependencyGraphBuilderTest extends Specification {
         }
     }
 
+    def traversesPrefetched(Map<String, ?> args = [:], def from, ComponentResolveMetadata to) {
+        def dependencyMetaData = dependsOn(args, from, to.moduleVersionId)
+        selectorResolvesTo(dependencyMetaData, to.id, to.moduleVersionId)
+        // Once when prefetched and once when traversed, as the resolver used here does not cache
+        2 * metaDataResolver.resolve(to.id, _, _) >> { ComponentIdentifier id, ComponentOverrideMetadata requestMetaData, BuildableComponentResolveResult result ->
+            result.resolved(to)
+        }
+    }
+
     def doesNotTraverse(Map<String, ?> args = [:], def from, ComponentResolveMetadata to) {
         def dependencyMetaData = dependsOn(args, from, to.moduleVersionId)
         selectorResolvesTo(dependencyMetaData, to.id, to.moduleVersionId)
@@ -1102,7 +1205,12 @@ class DependencyGraphBuilderTest extends Specification {
         boolean transitive = args.transitive == null || args.transitive
         boolean force = args.force
         boolean optional = args.optional ?: false
-        ComponentSelector componentSelector = newSelector(DefaultModuleIdentifier.newId(dependencyId.group, dependencyId.name), new DefaultMutableVersionConstraint(dependencyId.version))
+        boolean changing = args.changing ?: false
+        def versionConstraint = new DefaultMutableVersionConstraint(dependencyId.version)
+        if (args.branch) {
+            versionConstraint.branch = args.branch
+        }
+        ComponentSelector componentSelector = newSelector(DefaultModuleIdentifier.newId(dependencyId.group, dependencyId.name), versionConstraint)
         List<ExcludeMetadata> excludeRules = []
         if (args.exclude) {
             ComponentResolveMetadata excluded = args.exclude
@@ -1110,7 +1218,7 @@ class DependencyGraphBuilderTest extends Specification {
         }
         def dependencyMetaData = new LocalComponentDependencyMetadata(from.id, componentSelector,
                 "default", null, ImmutableAttributes.EMPTY, "default", [] as List<IvyArtifactName>,
-                excludeRules, force, false, transitive, false, false, null)
+                excludeRules, force, changing, transitive, false, false, null)
         dependencyMetaData = new DslOriginDependencyMetadataWrapper(dependencyMetaData, Stub(ModuleDependency) {
             getAttributes() >> ImmutableAttributes.EMPTY
         })
@@ -0,0 +1,129 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.builder
+
+import com.google.common.base.Optional
+import com.google.common.collect.ImmutableList
+import org.gradle.api.Action
+import org.gradle.api.artifacts.component.ComponentSelector
+import org.gradle.api.capabilities.CapabilitiesMetadata
+import org.gradle.api.internal.artifacts.ComponentSelectionRulesInternal
+import org.gradle.api.internal.artifacts.DefaultModuleIdentifier
+import org.gradle.api.internal.artifacts.ImmutableModuleIdentifierFactory
+import org.gradle.api.internal.artifacts.ResolveContext
+import org.gradle.api.internal.artifacts.configurations.ConflictResolution
+import org.gradle.api.internal.artifacts.configurations.ResolutionStrategyInternal
+import org.gradle.api.internal.artifacts.dsl.ModuleReplacementsData
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.result.AttributeContainerSerializer
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.result.ComponentSelectionDescriptorFactory
+import org.gradle.api.internal.attributes.AttributesSchemaInternal
+import org.gradle.api.internal.attributes.ImmutableAttributes
+import org.gradle.cache.CacheRepository
+import org.gradle.cache.internal.InMemoryCacheDecoratorFactory
+import org.gradle.internal.Actions
+import org.gradle.internal.component.external.model.DefaultModuleComponentIdentifier
+import org.gradle.internal.component.external.model.DefaultModuleComponentSelector
+import org.gradle.internal.component.model.ComponentResolveMetadata
+import org.gradle.internal.component.model.ConfigurationMetadata
+import org.gradle.internal.component.model.DependencyMetadata
+import org.gradle.internal.rules.SpecRuleAction
+import spock.lang.Specification
+
+class ResolvedGraphCacheTest extends Specification {
+    def schema = Stub(AttributesSchemaInternal) {
+        getAttributes() >> ([] as Set)
+    }
+
+    def "does not cache graphs when disabled"() {
+        expect:
+        cache(false).forContext(context(), [], schema, ModuleReplacementsData.NO_OP) == null
+    }
+
+    def "caches graphs of contexts without rules"() {
+        expect:
+        cache(true).forContext(context(), [], schema, ModuleReplacementsData.NO_OP) != null
+    }
+
+    def "does not cache graphs of contexts which cannot be replayed"() {
+        expect:
+        cache(true).forContext(context(substitutionRule: Stub(Action)), [], schema, ModuleReplacementsData.NO_OP) == null
+        cache(true).forContext(context(locking: true), [], schema, ModuleReplacementsData.NO_OP) == null
+        cache(true).forContext(context(conflictResolution: ConflictResolution.strict), [], schema, ModuleReplacementsData.NO_OP) == null
+        cache(true).forContext(context(selectionRules: [Stub(SpecRuleAction)]), [], schema, ModuleReplacementsData.NO_OP) == null
+    }
+
+    def "fingerprint of a node changes when its dependencies change"() {
+        def component = component()
+
+        expect:
+        ResolvedGraphCache.fingerprint(component, configuration(dependency("1.0"))) == ResolvedGraphCache.fingerprint(component, configuration(dependency("1.0")))
+        ResolvedGraphCache.fingerprint(component, configuration(dependency("1.0"))) != ResolvedGraphCache.fingerprint(component, configuration(dependency("2.0")))
+        ResolvedGraphCache.fingerprint(component, configuration(dependency("1.0"))) != ResolvedGraphCache.fingerprint(component, configuration(dependency("1.0"), dependency("1.0")))
+        ResolvedGraphCache.fingerprint(component, configuration(dependency("1.0"))) != ResolvedGraphCache.fingerprint(component, configuration(dependency("1.0", false)))
+    }
+
+    private ResolvedGraphCache cache(boolean enabled) {
+        new ResolvedGraphCache(enabled, new File("root"), Stub(CacheRepository), Stub(InMemoryCacheDecoratorFactory), Stub(ImmutableModuleIdentifierFactory), Stub(AttributeContainerSerializer), Stub(ComponentSelectionDescriptorFactory))
+    }
+
+    private ResolveContext context(Map<String, ?> options = [:]) {
+        def resolutionStrategy = Stub(ResolutionStrategyInternal) {
+            getDependencySubstitutionRule() >> (options.substitutionRule ?: Actions.doNothing())
+            isDependencyLockingEnabled() >> (options.locking ?: false)
+            getConflictResolution() >> (options.conflictResolution ?: ConflictResolution.latest)
+            getComponentSelection() >> Stub(ComponentSelectionRulesInternal) {
+                getRules() >> (options.selectionRules ?: [])
+            }
+        }
+        Stub(ResolveContext) {
+            getDisplayName() >> "configuration ':compileClasspath'"
+            getResolutionStrategy() >> resolutionStrategy
+        }
+    }
+
+    private ComponentResolveMetadata component() {
+        Stub(ComponentResolveMetadata) {
+            getId() >> DefaultModuleComponentIdentifier.newId(DefaultModuleIdentifier.newId("org", "test"), "1.0")
+            getAttributes() >> ImmutableAttributes.EMPTY
+            getVariantsForGraphTraversal() >> Optional.absent()
+            getConfigurationNames() >> (["default"] as Set)
+        }
+    }
+
+    private ConfigurationMetadata configuration(DependencyMetadata... dependencies) {
+        Stub(ConfigurationMetadata) {
+            getName() >> "default"
+            getAttributes() >> ImmutableAttributes.EMPTY
+            getCapabilities() >> Stub(CapabilitiesMetadata) {
+                getCapabilities() >> []
+            }
+            getExcludes() >> ImmutableList.of()
+            getDependencies() >> (dependencies as List)
+        }
+    }
+
+    private DependencyMetadata dependency(String version, boolean transitive = true) {
+        ComponentSelector selector = DefaultModuleComponentSelector.newSelector(DefaultModuleIdentifier.newId("org", "foo"), version)
+        Stub(DependencyMetadata) {
+            getSelector() >> selector
+            getExcludes() >> []
+            getArtifacts() >> []
+            isTransitive() >> transitive
+        }
+    }
+}
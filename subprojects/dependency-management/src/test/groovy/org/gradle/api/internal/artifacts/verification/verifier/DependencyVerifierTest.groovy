@@ -19,6 +19,7 @@ package org.gradle.api.internal.artifacts.verification.verifier
 import org.bouncycastle.openpgp.PGPPublicKey
 import org.gradle.api.internal.artifacts.DefaultModuleIdentifier
 import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.verification.ArtifactVerificationOperation
+import org.gradle.api.internal.artifacts.verification.model.ChecksumKind
 import org.gradle.api.internal.artifacts.verification.signatures.SignatureVerificationResultBuilder
 import org.gradle.api.internal.artifacts.verification.signatures.SignatureVerificationService
 import org.gradle.internal.component.external.model.DefaultModuleComponentIdentifier
@@ -66,6 +67,36 @@ class DependencyVerifierTest extends Specification {
         0 * _
     }
 
+    def "verification key changes with the verification metadata of the artifact"() {
+        artifact("org", "foo", "1.0")
+        kind = ArtifactVerificationOperation.ArtifactKind.REGULAR
+
+        when:
+        def key = keyWith { it.addChecksum(artifact, ChecksumKind.sha256, "abc", null) }
+
+        then:
+        key != null
+        keyWith { it.addChecksum(artifact, ChecksumKind.sha256, "abc", null) } == key
+        keyWith { it.addChecksum(artifact, ChecksumKind.sha256, "def", null) } != key
+        keyWith { it.addChecksum(artifact, ChecksumKind.sha256, "abc", null); it.addTrustedKey(artifact, "0123456789ABCDEF") } != key
+        keyWith { it.addChecksum(artifact, ChecksumKind.sha256, "abc", null); it.verifySignatures = true } != key
+    }
+
+    def "has no verification key for metadata when metadata isn't verified"() {
+        artifact("org", "foo", "1.0")
+        kind = ArtifactVerificationOperation.ArtifactKind.METADATA
+
+        expect:
+        keyWith { it.verifyMetadata = false } == null
+        keyWith { it.verifyMetadata = true } != null
+    }
+
+    private keyWith(Closure<?> configuration) {
+        def builder = new DependencyVerifierBuilder()
+        configuration(builder)
+        builder.build().getVerificationKey(kind, artifact)
+    }
+
     private void artifact(String group, String name, String version) {
         artifact = new ModuleComponentFileArtifactIdentifier(
             DefaultModuleComponentIdentifier.newId(DefaultModuleIdentifier.newId(group, name), version),
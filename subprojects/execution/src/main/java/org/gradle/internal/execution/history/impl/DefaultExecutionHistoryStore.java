@@ -29,6 +29,7 @@
 import org.gradle.internal.execution.history.ExecutionHistoryStore;
 import org.gradle.internal.fingerprint.CurrentFileCollectionFingerprint;
 import org.gradle.internal.fingerprint.FileCollectionFingerprint;
+import org.gradle.internal.serialize.BaseSerializerFactory;
 import org.gradle.internal.snapshot.ValueSnapshot;
 import org.gradle.internal.snapshot.impl.ImplementationSnapshot;
 
@@ -39,6 +40,17 @@
 import static com.google.common.collect.Maps.transformValues;
 
 public class DefaultExecutionHistoryStore implements ExecutionHistoryStore {
+    /**
+     * Stores the execution history in an append-only log when set to {@code true}. The log lives in a different file than the default storage,
+     * so switching between the two starts from an empty history.
+     */
+    public static final String LOG_STRUCTURED_STORAGE_PROPERTY = "org.gradle.internal.execution-history.log-structured";
+
+    /**
+     * Keeps the execution history in memory outside of the Java heap, using at most the given number of bytes, when set to a positive value.
+     * By default, up to 10000 entries are kept on the heap.
+     */
+    public static final String OFF_HEAP_CACHE_SIZE_PROPERTY = "org.gradle.internal.execution-history.off-heap-cache-size";
 
     private final PersistentIndexedCache<String, AfterPreviousExecutionState> store;
 
@@ -50,10 +62,14 @@ public DefaultExecutionHistoryStore(
         DefaultPreviousExecutionStateSerializer serializer = new DefaultPreviousExecutionStateSerializer(
             new FileCollectionFingerprintSerializer(stringInterner));
 
-        CacheDecorator inMemoryCacheDecorator = inMemoryCacheDecoratorFactory.decorator(10000, false);
+        long offHeapCacheSize = Long.getLong(OFF_HEAP_CACHE_SIZE_PROPERTY, 0);
+        CacheDecorator inMemoryCacheDecorator = offHeapCacheSize > 0
+            ? inMemoryCacheDecoratorFactory.offHeapDecorator(BaseSerializerFactory.STRING_SERIALIZER, serializer, offHeapCacheSize, false)
+            : inMemoryCacheDecoratorFactory.decorator(10000, false);
         this.store = cache.get().createCache(
-            PersistentIndexedCacheParameters.of("executionHistory", String.class, serializer)
+            PersistentIndexedCacheParameters.of("executionHistory", BaseSerializerFactory.STRING_SERIALIZER, serializer)
             .withCacheDecorator(inMemoryCacheDecorator)
+            .withStorage(Boolean.getBoolean(LOG_STRUCTURED_STORAGE_PROPERTY) ? PersistentIndexedCacheParameters.Storage.LOG_STRUCTURED : PersistentIndexedCacheParameters.Storage.FILE)
         );
     }
 
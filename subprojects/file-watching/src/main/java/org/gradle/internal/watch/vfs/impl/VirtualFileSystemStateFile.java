@@ -0,0 +1,296 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.watch.vfs.impl;
+
+import com.google.common.collect.ImmutableList;
+import org.gradle.internal.file.FileMetadata;
+import org.gradle.internal.file.FileMetadata.AccessType;
+import org.gradle.internal.file.impl.DefaultFileMetadata;
+import org.gradle.internal.hash.HashCode;
+import org.gradle.internal.snapshot.CompleteDirectorySnapshot;
+import org.gradle.internal.snapshot.CompleteFileSystemLocationSnapshot;
+import org.gradle.internal.snapshot.MissingFileSnapshot;
+import org.gradle.internal.snapshot.RegularFileSnapshot;
+import org.gradle.internal.snapshot.SnapshotHierarchy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Stores the contents of the virtual file system on disk, so that a new daemon can start with the snapshots retained by a previous daemon.
+ *
+ * <p>The file starts with a header, which identifies the content hash algorithm and the default excludes the snapshots were taken with,
+ * and the time the file was written. The header is followed by the snapshot roots of the virtual file system, where each directory
+ * also records the modification time it had when it was snapshotted.</p>
+ *
+ * <p>The snapshots are validated against the file system when they are read back: a regular file must still have the same length and
+ * modification time, a missing file must still be missing and a directory must still have the same modification time, so entries have
+ * not been added to or removed from it. Entries modified within the last second before the file was written are discarded, since a
+ * later change to them may not be visible in their modification time. When a directory is not valid any more, the valid parts of its
+ * contents are still restored.</p>
+ */
+public class VirtualFileSystemStateFile {
+    private static final Logger LOGGER = LoggerFactory.getLogger(VirtualFileSystemStateFile.class);
+
+    private static final int FORMAT_VERSION = 2;
+    private static final byte MISSING_FILE = 0;
+    private static final byte REGULAR_FILE = 1;
+    private static final byte DIRECTORY = 2;
+    // The granularity of file modification times we need to take into account
+    private static final long MODIFICATION_TIME_RESOLUTION = 1000;
+
+    private final File stateFile;
+    private final String contentHashAlgorithm;
+    private final Supplier<? extends List<String>> defaultExcludes;
+
+    public VirtualFileSystemStateFile(File stateFile, String contentHashAlgorithm, Supplier<? extends List<String>> defaultExcludes) {
+        this.stateFile = stateFile;
+        this.contentHashAlgorithm = contentHashAlgorithm;
+        this.defaultExcludes = defaultExcludes;
+    }
+
+    public File getFile() {
+        return stateFile;
+    }
+
+    /**
+     * Writes the snapshot roots of the given hierarchy to the state file, replacing its previous contents.
+     */
+    public void write(SnapshotHierarchy root) throws IOException {
+        List<CompleteFileSystemLocationSnapshot> snapshotRoots = new ArrayList<>();
+        root.visitSnapshotRoots(snapshotRoots::add);
+
+        File parentDir = stateFile.getParentFile();
+        Files.createDirectories(parentDir.toPath());
+        File tempFile = File.createTempFile(stateFile.getName(), ".tmp", parentDir);
+        try {
+            try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile.toPath())))) {
+                output.writeInt(FORMAT_VERSION);
+                output.writeUTF(contentHashAlgorithm);
+                List<String> excludes = defaultExcludes.get();
+                output.writeInt(excludes.size());
+                for (String exclude : excludes) {
+                    output.writeUTF(exclude);
+                }
+                output.writeLong(System.currentTimeMillis());
+                output.writeInt(snapshotRoots.size());
+                for (CompleteFileSystemLocationSnapshot snapshot : snapshotRoots) {
+                    writeSnapshot(output, snapshot, null);
+                }
+            }
+            // Replace the file atomically, so other daemons never read a partially written file
+            Files.move(tempFile.toPath(), stateFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tempFile.toPath());
+        }
+    }
+
+    private static void writeSnapshot(DataOutputStream output, CompleteFileSystemLocationSnapshot snapshot, @Nullable String parentPath) throws IOException {
+        switch (snapshot.getType()) {
+            case Missing:
+                output.writeByte(MISSING_FILE);
+                break;
+            case RegularFile:
+                output.writeByte(REGULAR_FILE);
+                break;
+            case Directory:
+                output.writeByte(DIRECTORY);
+                break;
+            default:
+                throw new AssertionError();
+        }
+        output.writeByte(snapshot.getAccessType().ordinal());
+        output.writeUTF(snapshot.getName());
+        // Only store the absolute path when it cannot be derived from the parent directory, e.g. for symlinks pointing to directories
+        String absolutePath = snapshot.getAbsolutePath();
+        boolean derivedPath = parentPath != null && absolutePath.equals(childPath(parentPath, snapshot.getName()));
+        output.writeBoolean(derivedPath);
+        if (!derivedPath) {
+            output.writeUTF(absolutePath);
+        }
+        if (snapshot instanceof RegularFileSnapshot) {
+            FileMetadata metadata = ((RegularFileSnapshot) snapshot).getMetadata();
+            writeHash(output, snapshot.getHash());
+            output.writeLong(metadata.getLength());
+            output.writeLong(metadata.getLastModified());
+        } else if (snapshot instanceof CompleteDirectorySnapshot) {
+            CompleteDirectorySnapshot directorySnapshot = (CompleteDirectorySnapshot) snapshot;
+            List<CompleteFileSystemLocationSnapshot> children = directorySnapshot.getChildren();
+            writeHash(output, snapshot.getHash());
+            output.writeLong(directorySnapshot.getLastModified());
+            output.writeInt(children.size());
+            for (CompleteFileSystemLocationSnapshot child : children) {
+                writeSnapshot(output, child, absolutePath);
+            }
+        }
+    }
+
+    /**
+     * Reads the snapshots from the state file which are still valid.
+     *
+     * Returns an empty list when there is no state file, or when it has been written by a daemon using a different content hash algorithm or different default excludes.
+     */
+    public List<CompleteFileSystemLocationSnapshot> read() throws IOException {
+        InputStream inputStream;
+        try {
+            inputStream = Files.newInputStream(stateFile.toPath());
+        } catch (NoSuchFileException e) {
+            return ImmutableList.of();
+        }
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(inputStream))) {
+            if (input.readInt() != FORMAT_VERSION || !input.readUTF().equals(contentHashAlgorithm)) {
+                LOGGER.info("Ignoring virtual file system state in {} written with a different format", stateFile);
+                return ImmutableList.of();
+            }
+            int excludeCount = input.readInt();
+            List<String> excludes = new ArrayList<>(excludeCount);
+            for (int i = 0; i < excludeCount; i++) {
+                excludes.add(input.readUTF());
+            }
+            if (!excludes.equals(defaultExcludes.get())) {
+                LOGGER.info("Ignoring virtual file system state in {} written with different default excludes", stateFile);
+                return ImmutableList.of();
+            }
+            long writtenAt = input.readLong();
+            SnapshotReader reader = new SnapshotReader(input, writtenAt - MODIFICATION_TIME_RESOLUTION);
+            int rootCount = input.readInt();
+            for (int i = 0; i < rootCount; i++) {
+                CompleteFileSystemLocationSnapshot snapshot = reader.read(null);
+                if (snapshot != null) {
+                    reader.validSnapshots.add(snapshot);
+                }
+            }
+            return reader.validSnapshots;
+        }
+    }
+
+    private static void writeHash(OutputStream output, HashCode hash) throws IOException {
+        byte[] bytes = hash.toByteArray();
+        output.write(bytes.length);
+        output.write(bytes);
+    }
+
+    private static String childPath(String parentPath, String name) {
+        return parentPath + File.separatorChar + name;
+    }
+
+    private static class SnapshotReader {
+        private final DataInputStream input;
+        private final long modifiedBefore;
+        private final List<CompleteFileSystemLocationSnapshot> validSnapshots = new ArrayList<>();
+
+        SnapshotReader(DataInputStream input, long modifiedBefore) {
+            this.input = input;
+            this.modifiedBefore = modifiedBefore;
+        }
+
+        /**
+         * Reads the next snapshot and returns it when it is still valid.
+         * Otherwise returns {@code null}, after adding the parts of the snapshot which are still valid to {@link #validSnapshots}.
+         */
+        @Nullable
+        CompleteFileSystemLocationSnapshot read(@Nullable String parentPath) throws IOException {
+            byte type = input.readByte();
+            AccessType accessType = AccessType.values()[input.readByte()];
+            String name = input.readUTF();
+            String absolutePath = input.readBoolean() ? childPath(parentPath, name) : input.readUTF();
+            Path path = Paths.get(absolutePath);
+            boolean sameAccessType = Files.isSymbolicLink(path) == (accessType == AccessType.VIA_SYMLINK);
+            BasicFileAttributes attributes = readAttributes(path);
+            switch (type) {
+                case MISSING_FILE:
+                    return sameAccessType && attributes == null
+                        ? new MissingFileSnapshot(absolutePath, name, accessType)
+                        : null;
+                case REGULAR_FILE:
+                    HashCode hash = readHash();
+                    long length = input.readLong();
+                    long lastModified = input.readLong();
+                    boolean validFile = sameAccessType
+                        && attributes != null
+                        && attributes.isRegularFile()
+                        && attributes.size() == length
+                        && attributes.lastModifiedTime().toMillis() == lastModified
+                        && lastModified < modifiedBefore;
+                    return validFile
+                        ? new RegularFileSnapshot(absolutePath, name, hash, DefaultFileMetadata.file(lastModified, length, accessType))
+                        : null;
+                case DIRECTORY:
+                    HashCode directoryHash = readHash();
+                    long directoryLastModified = input.readLong();
+                    int childCount = input.readInt();
+                    List<CompleteFileSystemLocationSnapshot> children = new ArrayList<>(childCount);
+                    for (int i = 0; i < childCount; i++) {
+                        CompleteFileSystemLocationSnapshot child = read(absolutePath);
+                        if (child != null) {
+                            children.add(child);
+                        }
+                    }
+                    boolean validDirectory = children.size() == childCount
+                        && directoryLastModified != CompleteDirectorySnapshot.UNKNOWN_LAST_MODIFIED
+                        && sameAccessType
+                        && attributes != null
+                        && attributes.isDirectory()
+                        && attributes.lastModifiedTime().toMillis() == directoryLastModified
+                        && directoryLastModified < modifiedBefore;
+                    if (validDirectory) {
+                        return new CompleteDirectorySnapshot(absolutePath, name, children, directoryHash, accessType, directoryLastModified);
+                    }
+                    validSnapshots.addAll(children);
+                    return null;
+                default:
+                    throw new IOException("Unexpected snapshot type " + type);
+            }
+        }
+
+        private HashCode readHash() throws IOException {
+            byte[] bytes = new byte[input.readUnsignedByte()];
+            input.readFully(bytes);
+            return HashCode.fromBytes(bytes);
+        }
+
+        /**
+         * Returns the attributes of the file at the given path, following symlinks, or {@code null} when it does not exist.
+         */
+        @Nullable
+        private static BasicFileAttributes readAttributes(Path path) {
+            try {
+                return Files.readAttributes(path, BasicFileAttributes.class);
+            } catch (IOException e) {
+                return null;
+            }
+        }
+    }
+}
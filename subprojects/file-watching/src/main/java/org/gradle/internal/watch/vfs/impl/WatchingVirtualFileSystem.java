@@ -22,6 +22,7 @@
 import org.gradle.internal.operations.BuildOperationDescriptor;
 import org.gradle.internal.operations.BuildOperationRunner;
 import org.gradle.internal.operations.CallableBuildOperation;
+import org.gradle.internal.snapshot.CompleteFileSystemLocationSnapshot;
 import org.gradle.internal.snapshot.FileSystemNode;
 import org.gradle.internal.snapshot.SnapshotHierarchy;
 import org.gradle.internal.vfs.impl.AbstractVirtualFileSystem;
@@ -38,12 +39,16 @@
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.annotation.Nullable;
 import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Path;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Supplier;
 
 public class WatchingVirtualFileSystem extends AbstractVirtualFileSystem implements BuildLifecycleAwareVirtualFileSystem, Closeable {
@@ -55,20 +60,43 @@ public class WatchingVirtualFileSystem extends AbstractVirtualFileSystem impleme
     private final DaemonDocumentationIndex daemonDocumentationIndex;
     private final LocationsWrittenByCurrentBuild locationsWrittenByCurrentBuild;
     private final Set<File> watchableHierarchies = new HashSet<>();
+    private final VirtualFileSystemStateFile stateFile;
+    private final Executor stateWriter;
+    // The hierarchy waiting to be written to the state file
+    private final AtomicReference<SnapshotHierarchy> pendingState = new AtomicReference<>();
 
     private FileWatcherRegistry watchRegistry;
     private Exception reasonForNotWatchingFiles;
+    private boolean stateRestored;
+    private SnapshotHierarchy lastWrittenRoot;
 
     public WatchingVirtualFileSystem(
         FileWatcherRegistryFactory watcherRegistryFactory,
         VfsRootReference rootReference,
         DaemonDocumentationIndex daemonDocumentationIndex,
         LocationsWrittenByCurrentBuild locationsWrittenByCurrentBuild
+    ) {
+        this(watcherRegistryFactory, rootReference, daemonDocumentationIndex, locationsWrittenByCurrentBuild, null, Runnable::run);
+    }
+
+    /**
+     * @param stateFile where to keep the contents of the virtual file system across daemons, if anywhere.
+     * @param stateWriter runs the writes to the state file, so that they don't hold up the end of the build.
+     */
+    public WatchingVirtualFileSystem(
+        FileWatcherRegistryFactory watcherRegistryFactory,
+        VfsRootReference rootReference,
+        DaemonDocumentationIndex daemonDocumentationIndex,
+        LocationsWrittenByCurrentBuild locationsWrittenByCurrentBuild,
+        @Nullable VirtualFileSystemStateFile stateFile,
+        Executor stateWriter
     ) {
         super(rootReference);
         this.watcherRegistryFactory = watcherRegistryFactory;
         this.daemonDocumentationIndex = daemonDocumentationIndex;
         this.locationsWrittenByCurrentBuild = locationsWrittenByCurrentBuild;
+        this.stateFile = stateFile;
+        this.stateWriter = stateWriter;
     }
 
     @Override
@@ -96,7 +124,7 @@ public SnapshotHierarchy call(BuildOperationContext context) {
                     if (watchRegistry == null) {
                         context.setStatus("Starting file system watching");
                         startWatching(currentRoot);
-                        newRoot = currentRoot.empty();
+                        newRoot = restoreState(currentRoot.empty());
                         statisticsSinceLastBuild = null;
                     } else {
                         FileWatcherRegistry.FileWatchingStatistics statistics = watchRegistry.getAndResetStatistics();
@@ -190,6 +218,9 @@ public SnapshotHierarchy call(BuildOperationContext context) {
                         } else {
                             newRoot = withWatcherChangeErrorHandling(currentRoot, () -> watchRegistry.buildFinished(currentRoot, maximumNumberOfWatchedHierarchies));
                         }
+                        if (watchRegistry != null) {
+                            writeState(newRoot);
+                        }
                         statisticsDuringBuild = new DefaultFileSystemWatchingStatistics(statistics, newRoot);
                         if (vfsLogging == VfsLogging.VERBOSE) {
                             LOGGER.warn("Received {} file system events during the current build while watching {} hierarchies",
@@ -269,6 +300,53 @@ public void handleLostState() {
         }
     }
 
+    /**
+     * Adds the snapshots retained by a previous daemon which are still valid to the hierarchy, so the watchers are notified about them.
+     * The state is only restored once, when the daemon starts watching for the first time.
+     */
+    private SnapshotHierarchy restoreState(SnapshotHierarchy root) {
+        if (stateFile == null || stateRestored || watchRegistry == null) {
+            return root;
+        }
+        stateRestored = true;
+        List<CompleteFileSystemLocationSnapshot> snapshots;
+        try {
+            snapshots = stateFile.read();
+        } catch (Exception e) {
+            LOGGER.info("Unable to read virtual file system state from {}", stateFile.getFile(), e);
+            return root;
+        }
+        SnapshotHierarchy newRoot = root;
+        for (CompleteFileSystemLocationSnapshot snapshot : snapshots) {
+            SnapshotHierarchy currentRoot = newRoot;
+            newRoot = updateNotifyingListeners(diffListener -> currentRoot.store(snapshot.getAbsolutePath(), snapshot, diffListener));
+        }
+        LOGGER.info("Restored {} snapshot roots of the virtual file system from {}", snapshots.size(), stateFile.getFile());
+        return newRoot;
+    }
+
+    private void writeState(SnapshotHierarchy root) {
+        // The hierarchy is immutable, so there is nothing to write if it did not change since it was written last,
+        // and it can be written after the build has finished
+        if (stateFile == null || root == lastWrittenRoot) {
+            return;
+        }
+        lastWrittenRoot = root;
+        // Only the latest hierarchy is written, so a write which has not started yet picks up this one instead
+        if (pendingState.getAndSet(root) == null) {
+            stateWriter.execute(this::writePendingState);
+        }
+    }
+
+    private void writePendingState() {
+        SnapshotHierarchy root = pendingState.getAndSet(null);
+        try {
+            stateFile.write(root);
+        } catch (Exception e) {
+            LOGGER.info("Unable to write virtual file system state to {}", stateFile.getFile(), e);
+        }
+    }
+
     private static class VfsChangeLoggingNodeDiffListener implements SnapshotHierarchy.NodeDiffListener {
         private final FileWatcherRegistry.Type type;
         private final Path path;
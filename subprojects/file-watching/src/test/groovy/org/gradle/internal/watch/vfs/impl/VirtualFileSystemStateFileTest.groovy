@@ -0,0 +1,143 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.watch.vfs.impl
+
+import org.gradle.api.internal.cache.StringInterner
+import org.gradle.api.internal.file.TestFiles
+import org.gradle.internal.file.FileMetadata.AccessType
+import org.gradle.internal.snapshot.CaseSensitivity
+import org.gradle.internal.snapshot.MissingFileSnapshot
+import org.gradle.internal.snapshot.SnapshotHierarchy
+import org.gradle.internal.snapshot.impl.DirectorySnapshotter
+import org.gradle.internal.snapshot.impl.DirectorySnapshotterStatistics
+import org.gradle.internal.vfs.impl.DefaultSnapshotHierarchy
+import org.gradle.test.fixtures.file.TestFile
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.junit.Rule
+import spock.lang.Specification
+
+import java.util.concurrent.atomic.AtomicBoolean
+
+class VirtualFileSystemStateFileTest extends Specification {
+    @Rule
+    TestNameTestDirectoryProvider tmpDir = new TestNameTestDirectoryProvider(getClass())
+
+    def directorySnapshotter = new DirectorySnapshotter(TestFiles.fileHasher(), new StringInterner(), [], Stub(DirectorySnapshotterStatistics.Collector))
+    def defaultExcludes = ["**/.git"]
+    def stateFile = new VirtualFileSystemStateFile(tmpDir.file("state/vfs.bin"), "MD5", { defaultExcludes })
+
+    def "restores unchanged snapshots"() {
+        def root = createTree()
+        def missingFile = tmpDir.file("missing")
+        def hierarchy = snapshot(root)
+            .store(missingFile.absolutePath, new MissingFileSnapshot(missingFile.absolutePath, AccessType.DIRECT), SnapshotHierarchy.NodeDiffListener.NOOP)
+
+        when:
+        stateFile.write(hierarchy)
+        def restored = stateFile.read()
+
+        then:
+        restored*.absolutePath as Set == [root.absolutePath, missingFile.absolutePath] as Set
+        restored.find { it.absolutePath == root.absolutePath }.hash == hierarchy.getSnapshot(root.absolutePath).get().hash
+    }
+
+    def "restores the parts of a directory which did not change"() {
+        def root = createTree()
+        stateFile.write(snapshot(root))
+
+        when:
+        root.file("a/x.txt").text = "changed"
+        root.file("b/new.txt").text = "new"
+        def restored = stateFile.read()
+
+        then:
+        restored*.absolutePath as Set == [root.file("a/y.txt"), root.file("b/c"), root.file("b/z.txt")]*.absolutePath as Set
+    }
+
+    def "discards directories which changed after they have been snapshotted"() {
+        def root = createTree()
+        def hierarchy = snapshot(root)
+        def directory = root.file("b")
+        def lastModified = directory.lastModified()
+
+        when:
+        directory.file("new.txt").text = "new"
+        directory.setLastModified(lastModified + 1000)
+        stateFile.write(hierarchy)
+        def restored = stateFile.read()
+
+        then:
+        restored*.absolutePath as Set == [root.file("a"), root.file("b/c"), root.file("b/z.txt")]*.absolutePath as Set
+    }
+
+    def "discards snapshots of a missing file which has been created"() {
+        def missingFile = tmpDir.file("missing")
+        def hierarchy = DefaultSnapshotHierarchy.empty(CaseSensitivity.CASE_SENSITIVE)
+            .store(missingFile.absolutePath, new MissingFileSnapshot(missingFile.absolutePath, AccessType.DIRECT), SnapshotHierarchy.NodeDiffListener.NOOP)
+        stateFile.write(hierarchy)
+
+        when:
+        missingFile.createFile()
+
+        then:
+        stateFile.read().empty
+    }
+
+    def "discards files modified shortly before the state has been written"() {
+        def root = tmpDir.createDir("root")
+        root.file("recent.txt").text = "recent"
+        stateFile.write(snapshot(root))
+
+        expect:
+        stateFile.read().empty
+    }
+
+    def "discards state written with a different #difference"() {
+        def root = createTree()
+        stateFile.write(snapshot(root))
+        def otherStateFile = new VirtualFileSystemStateFile(tmpDir.file("state/vfs.bin"), algorithm, { excludes })
+
+        expect:
+        otherStateFile.read().empty
+
+        where:
+        difference                | algorithm | excludes
+        "content hash function"   | "SHA-1"   | ["**/.git"]
+        "set of default excludes" | "MD5"     | []
+    }
+
+    def "reads nothing when there is no state"() {
+        expect:
+        stateFile.read().empty
+    }
+
+    private TestFile createTree() {
+        def root = tmpDir.createDir("root")
+        ["a/x.txt", "a/y.txt", "b/z.txt", "b/c/w.txt"].each { root.file(it).text = it }
+        // Make sure the files have not been modified recently, so they are not discarded when reading the state
+        def lastModified = System.currentTimeMillis() - 60_000
+        root.eachFileRecurse { it.setLastModified(lastModified) }
+        root.setLastModified(lastModified)
+        return root
+    }
+
+    private SnapshotHierarchy snapshot(File root) {
+        def snapshot = directorySnapshotter.snapshot(root.absolutePath, null, new AtomicBoolean())
+        return DefaultSnapshotHierarchy.empty(CaseSensitivity.CASE_SENSITIVE)
+            .store(root.absolutePath, snapshot, SnapshotHierarchy.NodeDiffListener.NOOP)
+    }
+}
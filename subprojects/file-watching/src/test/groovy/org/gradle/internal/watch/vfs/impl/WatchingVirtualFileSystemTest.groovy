@@ -16,8 +16,10 @@
 
 package org.gradle.internal.watch.vfs.impl
 
+import org.gradle.internal.file.FileMetadata.AccessType
 import org.gradle.internal.operations.TestBuildOperationExecutor
 import org.gradle.internal.snapshot.CaseSensitivity
+import org.gradle.internal.snapshot.MissingFileSnapshot
 import org.gradle.internal.snapshot.SnapshotHierarchy
 import org.gradle.internal.vfs.impl.DefaultSnapshotHierarchy
 import org.gradle.internal.vfs.impl.VfsRootReference
@@ -28,6 +30,8 @@ import org.gradle.internal.watch.vfs.BuildLifecycleAwareVirtualFileSystem.VfsLog
 import org.gradle.internal.watch.vfs.BuildLifecycleAwareVirtualFileSystem.WatchLogging
 import spock.lang.Specification
 
+import java.util.concurrent.Executor
+
 class WatchingVirtualFileSystemTest extends Specification {
     def watcherRegistryFactory = Mock(FileWatcherRegistryFactory)
     def watcherRegistry = Mock(FileWatcherRegistry)
@@ -150,4 +154,45 @@ class WatchingVirtualFileSystemTest extends Specification {
         then:
         1 * watcherRegistry.registerWatchableHierarchy(newWatchableHierarchy, _)
     }
+
+    def "restores the state of a previous daemon when starting to watch and keeps it up-to-date"() {
+        def stateFile = Mock(VirtualFileSystemStateFile)
+        def missingFile = new File("missing").absolutePath
+        def snapshot = new MissingFileSnapshot(missingFile, AccessType.DIRECT)
+        def pendingWrites = []
+        def persistentVirtualFileSystem = new WatchingVirtualFileSystem(
+            watcherRegistryFactory,
+            rootReference,
+            daemonDocumentationIndex,
+            locationsUpdatedByCurrentBuild,
+            stateFile,
+            { Runnable write -> pendingWrites << write } as Executor
+        )
+
+        when:
+        persistentVirtualFileSystem.afterBuildStarted(true, VfsLogging.NORMAL, WatchLogging.NORMAL, buildOperationRunner)
+        then:
+        1 * watcherRegistryFactory.createFileWatcherRegistry(_) >> watcherRegistry
+        1 * stateFile.read() >> [snapshot]
+        1 * watcherRegistry.virtualFileSystemContentsChanged(_, _, _)
+        1 * watcherRegistry.setDebugLoggingEnabled(false)
+        _ * stateFile.file
+        0 * _
+
+        rootReference.getRoot().getSnapshot(missingFile).get() == snapshot
+
+        when:
+        persistentVirtualFileSystem.beforeBuildFinished(true, VfsLogging.NORMAL, WatchLogging.NORMAL, buildOperationRunner, Integer.MAX_VALUE)
+        then:
+        1 * watcherRegistry.getAndResetStatistics() >> Stub(FileWatcherRegistry.FileWatchingStatistics)
+        1 * watcherRegistry.buildFinished(_, Integer.MAX_VALUE) >> { root, max -> root }
+        0 * _
+
+        when:
+        pendingWrites*.run()
+        then:
+        1 * stateFile.write({ it.getSnapshot(missingFile).present })
+        _ * stateFile.file
+        0 * _
+    }
 }
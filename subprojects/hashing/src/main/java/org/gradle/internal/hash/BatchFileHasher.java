@@ -0,0 +1,30 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.hash;
+
+import java.util.List;
+
+/**
+ * A {@link FileHasher} which can hash a batch of files at once, for example concurrently.
+ */
+public interface BatchFileHasher extends FileHasher {
+    /**
+     * Calculates the hash of each of the given files, as for {@link #hash(java.io.File, long, long)}. The result of each request is available from the request once this method returns.
+     * A failure to hash one file does not prevent the other files from being hashed.
+     */
+    void hashAll(List<FileHashRequest> requests);
+}
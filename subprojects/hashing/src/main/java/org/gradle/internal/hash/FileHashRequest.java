@@ -0,0 +1,77 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.internal.hash;
+
+import javax.annotation.Nullable;
+import java.io.File;
+
+/**
+ * A request to hash a regular file with known metadata, which is completed by {@link BatchFileHasher#hashAll(java.util.List)}.
+ */
+public class FileHashRequest {
+    private final File file;
+    private final long length;
+    private final long lastModified;
+    private HashCode hash;
+    private RuntimeException failure;
+
+    public FileHashRequest(File file, long length, long lastModified) {
+        this.file = file;
+        this.length = length;
+        this.lastModified = lastModified;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public long getLength() {
+        return length;
+    }
+
+    public long getLastModified() {
+        return lastModified;
+    }
+
+    /**
+     * Returns the hash of the file, or rethrows the failure to hash the file.
+     */
+    public HashCode getHash() {
+        if (failure != null) {
+            throw failure;
+        }
+        if (hash == null) {
+            throw new IllegalStateException(String.format("File '%s' has not been hashed yet.", file));
+        }
+        return hash;
+    }
+
+    @Nullable
+    public RuntimeException getFailure() {
+        return failure;
+    }
+
+    /**
+     * Hashes the file using the given hasher, and records the result.
+     */
+    public void complete(FileHasher hasher) {
+        try {
+            hash = hasher.hash(file, length, lastModified);
+        } catch (RuntimeException e) {
+            failure = e;
+        }
+    }
+}
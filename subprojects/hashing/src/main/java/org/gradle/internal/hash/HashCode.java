@@ -17,29 +17,57 @@
 package org.gradle.internal.hash;
 
 import com.google.common.primitives.Ints;
+import com.google.common.primitives.Longs;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
 import java.io.Serializable;
+import java.util.Arrays;
 
 /**
  * An immutable hash code. Must be 4-255 bytes long.
  * Inspired by the Google Guava project – https://github.com/google/guava.
+ *
+ * <p>Hash codes of 16 bytes, as produced by MD5 and the default content hash functions, are stored in two {@code long} fields
+ * instead of a byte array, since there can be millions of them retained by the virtual file system.
+ * Hash codes are serialized as their bytes, the same way as when they were always stored in a byte array.</p>
  */
 public class HashCode implements Serializable, Comparable<HashCode> {
+    private static final long serialVersionUID = -1533996756046993124L;
+    private static final ObjectStreamField[] serialPersistentFields = {
+        new ObjectStreamField("bytes", byte[].class),
+        new ObjectStreamField("hashCode", long.class)
+    };
+
     private static final int MIN_NUMBER_OF_BYTES = 4;
     private static final int MAX_NUMBER_OF_BYTES = 255;
+    private static final int NUMBER_OF_BYTES_128 = 16;
     private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
 
-    private final byte[] bytes;
+    // The bytes of a 16 byte hash code in big-endian order
+    private long bits0;
+    private long bits1;
+    // The bytes of a hash code of any other length, null for 16 byte hash codes
+    private byte[] bytes;
 
-    private long hashCode;
+    private HashCode(long bits0, long bits1) {
+        this.bits0 = bits0;
+        this.bits1 = bits1;
+    }
 
     private HashCode(byte[] bytes) {
         this.bytes = bytes;
     }
 
     static HashCode fromBytesNoCopy(byte[] bytes) {
+        if (bytes.length == NUMBER_OF_BYTES_128) {
+            return new HashCode(Longs.fromBytes(bytes[0], bytes[1], bytes[2], bytes[3], bytes[4], bytes[5], bytes[6], bytes[7]),
+                Longs.fromBytes(bytes[8], bytes[9], bytes[10], bytes[11], bytes[12], bytes[13], bytes[14], bytes[15]));
+        }
         return new HashCode(bytes);
     }
 
@@ -48,7 +76,7 @@ public static HashCode fromBytes(byte[] bytes) {
         if (bytes.length < MIN_NUMBER_OF_BYTES || bytes.length > MAX_NUMBER_OF_BYTES) {
             throw new IllegalArgumentException(String.format("Invalid hash code length: %d bytes", bytes.length));
         }
-        return fromBytesNoCopy(bytes.clone());
+        return fromBytesNoCopy(bytes.length == NUMBER_OF_BYTES_128 ? bytes : bytes.clone());
     }
 
     public static HashCode fromInt(int value) {
@@ -89,24 +117,50 @@ private static int decode(char ch) {
     }
 
     public int length() {
-        return bytes.length;
+        return bytes == null ? NUMBER_OF_BYTES_128 : bytes.length;
     }
 
     public byte[] toByteArray() {
-        return bytes.clone();
+        if (bytes != null) {
+            return bytes.clone();
+        }
+        byte[] result = new byte[NUMBER_OF_BYTES_128];
+        for (int i = 0; i < NUMBER_OF_BYTES_128; i++) {
+            result[i] = byteAt(i);
+        }
+        return result;
+    }
+
+    private byte byteAt(int index) {
+        if (bytes != null) {
+            return bytes[index];
+        }
+        long bits = index < 8 ? bits0 : bits1;
+        return (byte) (bits >>> (56 - 8 * (index & 7)));
+    }
+
+    /**
+     * Feeds the bytes of this hash code into the given hasher, without copying them to a new array.
+     */
+    void appendToHasher(PrimitiveHasher hasher) {
+        if (bytes != null) {
+            hasher.putBytes(bytes);
+        } else {
+            // Hashers feed longs in little-endian order, so reverse them to feed the same bytes as toByteArray()
+            hasher.putLong(Long.reverseBytes(bits0));
+            hasher.putLong(Long.reverseBytes(bits1));
+        }
     }
 
     @Override
     public int hashCode() {
-        if (hashCode == 0) {
-            hashCode = (bytes[0] & 0xFF)
-                | ((bytes[1] & 0xFF) << 8)
-                | ((bytes[2] & 0xFF) << 16)
-                | ((bytes[3] & 0xFF) << 24)
-                // Make sure it's always > 0 but without affecting the lower 32 bits
-                | (1L << 32);
+        if (bytes == null) {
+            return Integer.reverseBytes((int) (bits0 >>> 32));
         }
-        return (int) hashCode;
+        return (bytes[0] & 0xFF)
+            | ((bytes[1] & 0xFF) << 8)
+            | ((bytes[2] & 0xFF) << 16)
+            | ((bytes[3] & 0xFF) << 24);
     }
 
     @Override
@@ -119,32 +173,21 @@ public boolean equals(@Nullable Object obj) {
             return false;
         }
 
-        byte[] a = bytes;
-        byte[] b = ((HashCode) obj).bytes;
-        int length = a.length;
-
-        if (b.length != length) {
-            return false;
-        }
-
-        for (int i = 0; i < length; i++) {
-            if (a[i] != b[i]) {
-                return false;
-            }
+        HashCode other = (HashCode) obj;
+        if (bytes == null) {
+            return other.bytes == null && bits0 == other.bits0 && bits1 == other.bits1;
         }
-
-        return true;
+        return Arrays.equals(bytes, other.bytes);
     }
 
     @Override
     public int compareTo(@Nonnull HashCode o) {
-        byte[] bytes2 = o.bytes;
         int result;
-        int len1 = bytes.length;
-        int len2 = bytes2.length;
+        int len1 = length();
+        int len2 = o.length();
         int length = Math.min(len1, len2);
         for (int idx = 0; idx < length; idx++) {
-            result = bytes[idx] - bytes2[idx];
+            result = byteAt(idx) - o.byteAt(idx);
             if (result != 0) {
                 return result;
             }
@@ -154,15 +197,31 @@ public int compareTo(@Nonnull HashCode o) {
 
     @Override
     public String toString() {
-        StringBuilder sb = new StringBuilder(2 * bytes.length);
-        for (byte b : bytes) {
+        int length = length();
+        StringBuilder sb = new StringBuilder(2 * length);
+        for (int i = 0; i < length; i++) {
+            byte b = byteAt(i);
             sb.append(HEX_DIGITS[(b >> 4) & 0xf]).append(HEX_DIGITS[b & 0xf]);
         }
         return sb.toString();
     }
 
-    // Package private accessor used by MessageDigestHasher.putHash for performance reasons
-    byte[] getBytes() {
-        return bytes;
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        ObjectOutputStream.PutField fields = out.putFields();
+        fields.put("bytes", toByteArray());
+        // The cached hash code, which readers recalculate when it is 0
+        fields.put("hashCode", 0L);
+        out.writeFields();
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        byte[] serializedBytes = (byte[]) in.readFields().get("bytes", null);
+        if (serializedBytes.length == NUMBER_OF_BYTES_128) {
+            HashCode hashCode = fromBytesNoCopy(serializedBytes);
+            bits0 = hashCode.bits0;
+            bits1 = hashCode.bits1;
+        } else {
+            bytes = serializedBytes;
+        }
     }
 }
@@ -41,6 +41,11 @@ public interface HashFunction {
      */
     HashCode hashString(CharSequence string);
 
+    /**
+     * Returns the name of the algorithm implemented by the hash function.
+     */
+    String getAlgorithm();
+
     /**
      * Returns the number of hexadecimal digits needed to represent the hash.
      */
@@ -42,6 +42,8 @@ private Hashing() {}
 
     private static final HashFunction SHA512 = MessageDigestHashFunction.of("SHA-512");
 
+    private static final HashFunction MURMUR3 = new Murmur3HashFunction();
+
     private static final HashFunction DEFAULT = MD5;
 
     /**
@@ -138,10 +140,35 @@ public static HashFunction sha512() {
         return SHA512;
     }
 
+    /**
+     * 128-bit MurmurHash3 (x64 variant) hashing function.
+     * This is a fast, non-cryptographic hash function, to be used only for hashes that are not shared outside of the local machine.
+     */
+    public static HashFunction murmur3() {
+        return MURMUR3;
+    }
+
+    /**
+     * Returns the hashing function with the given algorithm name, as returned by {@link HashFunction#getAlgorithm()}. The name is case insensitive.
+     *
+     * @throws IllegalArgumentException when the algorithm is not supported.
+     */
+    public static HashFunction forAlgorithm(String algorithm) {
+        for (HashFunction function : new HashFunction[]{MD5, SHA1, SHA256, SHA512, MURMUR3}) {
+            if (function.getAlgorithm().equalsIgnoreCase(algorithm)) {
+                return function;
+            }
+        }
+        throw new IllegalArgumentException(String.format("Unsupported hash algorithm '%s'. Supported algorithms are: %s, %s, %s, %s and %s.",
+            algorithm, MD5.getAlgorithm(), SHA1.getAlgorithm(), SHA256.getAlgorithm(), SHA512.getAlgorithm(), MURMUR3.getAlgorithm()));
+    }
+
     private static abstract class MessageDigestHashFunction implements HashFunction {
+        private final String algorithm;
         private final int hexDigits;
 
-        public MessageDigestHashFunction(int hashBits) {
+        public MessageDigestHashFunction(String algorithm, int hashBits) {
+            this.algorithm = algorithm;
             this.hexDigits = hashBits / 4;
         }
 
@@ -155,7 +182,7 @@ public static MessageDigestHashFunction of(String algorithm) {
             int hashBits = prototype.getDigestLength() * 8;
             try {
                 prototype.clone();
-                return new CloningMessageDigestHashFunction(prototype, hashBits);
+                return new CloningMessageDigestHashFunction(algorithm, prototype, hashBits);
             } catch (CloneNotSupportedException e) {
                 return new RegularMessageDigestHashFunction(algorithm, hashBits);
             }
@@ -188,6 +215,11 @@ public HashCode hashString(CharSequence string) {
 
         protected abstract MessageDigest createDigest();
 
+        @Override
+        public String getAlgorithm() {
+            return algorithm;
+        }
+
         @Override
         public int getHexDigits() {
             return hexDigits;
@@ -197,8 +229,8 @@ public int getHexDigits() {
     private static class CloningMessageDigestHashFunction extends MessageDigestHashFunction {
         private final MessageDigest prototype;
 
-        public CloningMessageDigestHashFunction(MessageDigest prototype, int hashBits) {
-            super(hashBits);
+        public CloningMessageDigestHashFunction(String algorithm, MessageDigest prototype, int hashBits) {
+            super(algorithm, hashBits);
             this.prototype = prototype;
         }
 
@@ -213,17 +245,14 @@ protected MessageDigest createDigest() {
     }
 
     private static class RegularMessageDigestHashFunction extends MessageDigestHashFunction {
-        private final String algorithm;
-
         public RegularMessageDigestHashFunction(String algorithm, int hashBits) {
-            super(hashBits);
-            this.algorithm = algorithm;
+            super(algorithm, hashBits);
         }
 
         @Override
         protected MessageDigest createDigest() {
             try {
-                return MessageDigest.getInstance(algorithm);
+                return MessageDigest.getInstance(getAlgorithm());
             } catch (NoSuchAlgorithmException e) {
                 throw new AssertionError(e);
             }
@@ -260,6 +289,11 @@ public void putBytes(byte[] bytes, int off, int len) {
             getDigest().update(bytes, off, len);
         }
 
+        @Override
+        public void putBytes(ByteBuffer bytes) {
+            getDigest().update(bytes);
+        }
+
         private void update(int length) {
             getDigest().update(buffer.array(), 0, length);
             castBuffer(buffer).clear();
@@ -304,7 +338,7 @@ public void putString(CharSequence value) {
 
         @Override
         public void putHash(HashCode hashCode) {
-            putBytes(hashCode.getBytes());
+            hashCode.appendToHasher(this);
         }
 
         @Override
@@ -315,7 +349,7 @@ public HashCode hash() {
         }
     }
 
-    private static class DefaultHasher implements Hasher {
+    static class DefaultHasher implements Hasher {
         private final PrimitiveHasher hasher;
         private String invalidReason;
 
@@ -0,0 +1,243 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.internal.hash;
+
+import com.google.common.base.Charsets;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * The 128-bit x64 variant of MurmurHash3, with a seed of 0. Produces the same hashes as the reference implementation.
+ */
+class Murmur3HashFunction implements HashFunction {
+    private static final int CHUNK_SIZE = 16;
+    private static final long C1 = 0x87c37b91114253d5L;
+    private static final long C2 = 0x4cf5ad432745937fL;
+
+    @Override
+    public PrimitiveHasher newPrimitiveHasher() {
+        return new Murmur3Hasher();
+    }
+
+    @Override
+    public Hasher newHasher() {
+        return new Hashing.DefaultHasher(newPrimitiveHasher());
+    }
+
+    @Override
+    public HashCode hashBytes(byte[] bytes) {
+        PrimitiveHasher hasher = newPrimitiveHasher();
+        hasher.putBytes(bytes);
+        return hasher.hash();
+    }
+
+    @Override
+    public HashCode hashString(CharSequence string) {
+        PrimitiveHasher hasher = newPrimitiveHasher();
+        hasher.putString(string);
+        return hasher.hash();
+    }
+
+    @Override
+    public String getAlgorithm() {
+        return "MURMUR3-128";
+    }
+
+    @Override
+    public int getHexDigits() {
+        return 32;
+    }
+
+    @Override
+    public String toString() {
+        return getAlgorithm();
+    }
+
+    private static class Murmur3Hasher implements PrimitiveHasher {
+        // Collects bytes until a whole chunk is available
+        private final ByteBuffer chunk = ByteBuffer.allocate(CHUNK_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        private final ByteBuffer scratch = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+        private long h1;
+        private long h2;
+        private long length;
+        private boolean done;
+
+        @Override
+        public void putBytes(byte[] bytes) {
+            putBytes(bytes, 0, bytes.length);
+        }
+
+        @Override
+        public void putBytes(byte[] bytes, int off, int len) {
+            putBytes(ByteBuffer.wrap(bytes, off, len));
+        }
+
+        @Override
+        public void putBytes(ByteBuffer bytes) {
+            checkNotDone();
+            ByteOrder originalOrder = bytes.order();
+            bytes.order(ByteOrder.LITTLE_ENDIAN);
+            try {
+                length += bytes.remaining();
+                if (chunk.position() > 0) {
+                    while (chunk.hasRemaining() && bytes.hasRemaining()) {
+                        chunk.put(bytes.get());
+                    }
+                    if (chunk.hasRemaining()) {
+                        return;
+                    }
+                    castBuffer(chunk).flip();
+                    mix(chunk.getLong(), chunk.getLong());
+                    castBuffer(chunk).clear();
+                }
+                while (bytes.remaining() >= CHUNK_SIZE) {
+                    mix(bytes.getLong(), bytes.getLong());
+                }
+                chunk.put(bytes);
+            } finally {
+                bytes.order(originalOrder);
+            }
+        }
+
+        @Override
+        public void putByte(byte value) {
+            putBytes(new byte[]{value});
+        }
+
+        @Override
+        public void putInt(int value) {
+            scratch.putInt(value);
+            putScratch();
+        }
+
+        @Override
+        public void putLong(long value) {
+            scratch.putLong(value);
+            putScratch();
+        }
+
+        private void putScratch() {
+            castBuffer(scratch).flip();
+            putBytes(scratch);
+            castBuffer(scratch).clear();
+        }
+
+        @Override
+        public void putDouble(double value) {
+            putLong(Double.doubleToRawLongBits(value));
+        }
+
+        @Override
+        public void putBoolean(boolean value) {
+            putByte((byte) (value ? 1 : 0));
+        }
+
+        @Override
+        public void putString(CharSequence value) {
+            putBytes(value.toString().getBytes(Charsets.UTF_8));
+        }
+
+        @Override
+        public void putHash(HashCode hashCode) {
+            hashCode.appendToHasher(this);
+        }
+
+        @Override
+        public HashCode hash() {
+            checkNotDone();
+            done = true;
+            castBuffer(chunk).flip();
+            if (chunk.hasRemaining()) {
+                long k1 = 0;
+                long k2 = 0;
+                int remaining = chunk.remaining();
+                for (int i = remaining - 1; i >= 8; i--) {
+                    k2 = (k2 << 8) | (chunk.get(i) & 0xffL);
+                }
+                for (int i = Math.min(remaining, 8) - 1; i >= 0; i--) {
+                    k1 = (k1 << 8) | (chunk.get(i) & 0xffL);
+                }
+                h1 ^= mixK1(k1);
+                h2 ^= mixK2(k2);
+            }
+
+            h1 ^= length;
+            h2 ^= length;
+            h1 += h2;
+            h2 += h1;
+            h1 = fmix64(h1);
+            h2 = fmix64(h2);
+            h1 += h2;
+            h2 += h1;
+
+            byte[] bytes = new byte[CHUNK_SIZE];
+            ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN).putLong(h1).putLong(h2);
+            return HashCode.fromBytesNoCopy(bytes);
+        }
+
+        private void checkNotDone() {
+            if (done) {
+                throw new IllegalStateException("Cannot reuse hasher!");
+            }
+        }
+
+        private void mix(long k1, long k2) {
+            h1 ^= mixK1(k1);
+            h1 = Long.rotateLeft(h1, 27);
+            h1 += h2;
+            h1 = h1 * 5 + 0x52dce729;
+
+            h2 ^= mixK2(k2);
+            h2 = Long.rotateLeft(h2, 31);
+            h2 += h1;
+            h2 = h2 * 5 + 0x38495ab5;
+        }
+
+        private static long mixK1(long k1) {
+            k1 *= C1;
+            k1 = Long.rotateLeft(k1, 31);
+            k1 *= C2;
+            return k1;
+        }
+
+        private static long mixK2(long k2) {
+            k2 *= C2;
+            k2 = Long.rotateLeft(k2, 33);
+            k2 *= C1;
+            return k2;
+        }
+
+        /**
+         * Without this cast, when the code compiled by Java 9+ is executed on Java 8, it will throw
+         * java.lang.NoSuchMethodError: Method flip()Ljava/nio/ByteBuffer; does not exist in class java.nio.ByteBuffer
+         */
+        @SuppressWarnings("RedundantCast")
+        private static <T extends Buffer> Buffer castBuffer(T byteBuffer) {
+            return (Buffer) byteBuffer;
+        }
+
+        private static long fmix64(long k) {
+            k ^= k >>> 33;
+            k *= 0xff51afd7ed558ccdL;
+            k ^= k >>> 33;
+            k *= 0xc4ceb9fe1a85ec53L;
+            k ^= k >>> 33;
+            return k;
+        }
+    }
+}
@@ -18,8 +18,14 @@
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.channels.FileChannel;
 
 public interface StreamHasher {
+    /**
+     * Returns the hash function used to hash content.
+     */
+    HashFunction getHashFunction();
+
     /**
      * Returns the hash of the given input stream. The stream will not be closed by the method.
      */
@@ -30,4 +36,10 @@ public interface StreamHasher {
      * The method will not close either stream.
      */
     HashCode hashCopy(InputStream inputStream, OutputStream outputStream) throws IOException;
+
+    /**
+     * Returns the hash of the content of the given file channel, from its current position to its end.
+     * The result is the same as when hashing the same content using {@link #hash(InputStream)}. The channel will not be closed by the method.
+     */
+    HashCode hash(FileChannel channel) throws IOException;
 }
@@ -16,9 +16,15 @@
 
 package org.gradle.internal.hash
 
+import org.junit.Rule
+import org.junit.rules.TemporaryFolder
 import spock.lang.Specification
+import spock.lang.Unroll
 
 class DefaultStreamHasherTest extends Specification {
+    @Rule
+    TemporaryFolder tmpDir = new TemporaryFolder()
+
     def "can hash input"() {
         def input = new ByteArrayInputStream("hello".bytes)
         when:
@@ -36,4 +42,34 @@ class DefaultStreamHasherTest extends Specification {
         hash.toString() == "af67a92e9f73b51572e9b94e343d2840"
         output.toByteArray() == "hello".bytes
     }
+
+    def "can hash input using another hash function"() {
+        def hasher = new DefaultStreamHasher(Hashing.murmur3())
+
+        when:
+        def hash = hasher.hash(new ByteArrayInputStream("hello".bytes))
+
+        then:
+        hasher.hashFunction == Hashing.murmur3()
+        hash != new DefaultStreamHasher().hash(new ByteArrayInputStream("hello".bytes))
+        hash == hasher.hash(new ByteArrayInputStream("hello".bytes))
+    }
+
+    @Unroll
+    def "hashes file channel with #size bytes the same as input stream"() {
+        def content = new byte[size]
+        new Random(size).nextBytes(content)
+        def file = tmpDir.newFile()
+        file.bytes = content
+        def hasher = new DefaultStreamHasher()
+
+        when:
+        def hash = new FileInputStream(file).withCloseable { hasher.hash(it.channel) }
+
+        then:
+        hash == hasher.hash(new ByteArrayInputStream(content))
+
+        where:
+        size << [0, 5, 8192, 100_000, 1024 * 1024, 3 * 1024 * 1024 + 17]
+    }
 }
@@ -36,6 +36,7 @@ class HashCodeTest extends Specification {
         "CAFEBABE"     | 4      | "cafebabe"     | 0xBEBAFECA | toBytes(0xCA, 0xFE, 0xBA, 0xBE)
         "abbaabba"     | 4      | "abbaabba"     | 0xBAABBAAB | toBytes([0xAB, 0xBA] * 2)
         "abbaabbaabba" | 6      | "abbaabbaabba" | 0xBAABBAAB | toBytes([0xAB, 0xBA] * 3)
+        "0123456789ABCDEF" * 2 | 16 | "0123456789abcdef" * 2 | 0x67452301 | toBytes([0x01, 0x23, 0x45, 0x67, 0x89, 0xAB, 0xCD, 0xEF] * 2)
         "aB" * 255     | 255    | "ab" * 255     | 0xABABABAB | toBytes([0xAB] * 255)
     }
 
@@ -69,6 +70,7 @@ class HashCodeTest extends Specification {
         toBytes(0x12, 0x34, 0x56, 0x78) | 4      | "12345678"     | 0x78563412 | toBytes(0x12, 0x34, 0x56, 0x78)
         toBytes(0xCA, 0xFE, 0xBA, 0xBE) | 4      | "cafebabe"     | 0xBEBAFECA | toBytes(0xCA, 0xFE, 0xBA, 0xBE)
         toBytes([0xAB, 0xBA] * 3)       | 6      | "abbaabbaabba" | 0xBAABBAAB | toBytes([0xAB, 0xBA] * 3)
+        toBytes([0xFE, 0xDC] * 8)       | 16     | "fedc" * 8     | 0xDCFEDCFE | toBytes([0xFE, 0xDC] * 8)
         toBytes([0xAB] * 255)           | 255    | "ab" * 255     | 0xABABABAB | toBytes([0xAB] * 255)
     }
 
@@ -85,6 +87,10 @@ class HashCodeTest extends Specification {
         "abcdef12"   | "abcdef12"   | true
         "abcdef12"   | "abcdef1234" | false
         "abcdef1234" | "abcdef12"   | false
+        "ab" * 16    | "ab" * 16    | true
+        "ab" * 16    | "ab" * 15 + "ac" | false
+        "ab" * 16    | "ab" * 17    | false
+        "ab" * 16    | "ab" * 8     | false
     }
 
     def "#a <=> #b: #expected"() {
@@ -104,6 +110,54 @@ class HashCodeTest extends Specification {
         "abcdef1234" | "abcdef12"   | 1
         "abcdef1234" | "bcdef123"   | -1
         "bcdef123"   | "abcdef12"   | 1
+        "ab" * 16    | "ab" * 16    | 0
+        "ab" * 16    | "ab" * 15 + "ac" | -1
+        "ff" * 16    | "00" * 16    | -1
+        "7f" + "ff" * 15 | "80" + "00" * 15 | 1
+        "ab" * 16    | "ab" * 17    | -1
+        "ab" * 16    | "ab" * 15    | 1
+        "ab" * 16    | "ac" * 15    | -1
+    }
+
+    def "16 byte hashes behave the same as other hashes"() {
+        def bytes = toBytes((0..<16).collect { it * 17 })
+        def hash = HashCode.fromBytes(bytes)
+
+        expect:
+        hash == HashCode.fromString(hash.toString())
+        hash.hashCode() == HashCode.fromString(hash.toString()).hashCode()
+        hash.toByteArray() == bytes
+        !hash.toByteArray().is(hash.toByteArray())
+        HashCode.fromBytes(toBytes((0..<16).collect { it * 17 } + [0])) != hash
+    }
+
+    def "can be serialized: #input"() {
+        def hash = HashCode.fromString(input)
+        def bytes = new ByteArrayOutputStream()
+
+        when:
+        new ObjectOutputStream(bytes).withCloseable { it.writeObject(hash) }
+        def deserialized = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray())).withCloseable { it.readObject() }
+
+        then:
+        deserialized == hash
+        deserialized.class == hash.class
+
+        where:
+        input << ["12345678", "ab" * 16, "ab" * 20]
+    }
+
+    def "can read hash codes serialized when they were stored as byte arrays: #expected"() {
+        when:
+        def deserialized = new ObjectInputStream(new ByteArrayInputStream(serialized.decodeBase64())).withCloseable { it.readObject() }
+
+        then:
+        deserialized == HashCode.fromString(expected)
+
+        where:
+        expected                           | serialized
+        "12345678"                         | "rO0ABXNyACFvcmcuZ3JhZGxlLmludGVybmFsLmhhc2guSGFzaENvZGXqtiYT7TepHAIAAkoACGhhc2hDb2RlWwAFYnl0ZXN0AAJbQnhwAAAAAAAAAAB1cgACW0Ks8xf4BghU4AIAAHhwAAAABBI0Vng="
+        "0123456789abcdef0123456789abcdef" | "rO0ABXNyACFvcmcuZ3JhZGxlLmludGVybmFsLmhhc2guSGFzaENvZGXqtiYT7TepHAIAAkoACGhhc2hDb2RlWwAFYnl0ZXN0AAJbQnhwAAAAAAAAAAB1cgACW0Ks8xf4BghU4AIAAHhwAAAAEAEjRWeJq83vASNFZ4mrze8="
     }
 
     def "not equals with null"() {
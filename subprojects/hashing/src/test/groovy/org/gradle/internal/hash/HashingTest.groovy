@@ -17,6 +17,7 @@
 package org.gradle.internal.hash
 
 import spock.lang.Specification
+import spock.lang.Unroll
 
 import static java.lang.Thread.currentThread
 import static java.util.concurrent.CompletableFuture.supplyAsync
@@ -76,6 +77,23 @@ class HashingTest extends Specification {
         hash == hash3
     }
 
+    @Unroll
+    def 'putting a hash feeds its bytes to #function.algorithm'() {
+        def hash = HashCode.fromString(input)
+
+        when:
+        def fromHash = function.newPrimitiveHasher()
+        fromHash.putHash(hash)
+        def fromBytes = function.newPrimitiveHasher()
+        fromBytes.putBytes(hash.toByteArray())
+
+        then:
+        fromHash.hash() == fromBytes.hash()
+
+        where:
+        [function, input] << [[Hashing.md5(), Hashing.sha1(), Hashing.murmur3()], ["0123456789abcdef" * 2, "0123456789abcdef" * 3]].combinations()
+    }
+
     def 'hasher can be used from multiple threads'() {
         given:
         def threadRange = 1..100
@@ -109,6 +127,53 @@ class HashingTest extends Specification {
         hashStrings(["abc", "de"]) != hashStrings(["ab", "cde"])
     }
 
+    def 'murmur3 produces the same hashes as the reference implementation'() {
+        def random = new Random(1234)
+
+        expect:
+        [0, 1, 7, 8, 15, 16, 17, 31, 32, 100, 1000].every { length ->
+            def bytes = new byte[length]
+            random.nextBytes(bytes)
+            Hashing.murmur3().hashBytes(bytes).toString() == com.google.common.hash.Hashing.murmur3_128().hashBytes(bytes).toString()
+        }
+    }
+
+    def 'murmur3 hash does not depend on how the input is split'() {
+        def bytes = (0..<100).collect { it as byte } as byte[]
+
+        when:
+        def hasher = Hashing.murmur3().newPrimitiveHasher()
+        hasher.putBytes(bytes, 0, 3)
+        hasher.putBytes(bytes, 3, 20)
+        hasher.putBytes(java.nio.ByteBuffer.wrap(bytes, 23, 77))
+
+        then:
+        hasher.hash() == Hashing.murmur3().hashBytes(bytes)
+    }
+
+    def 'can look up hash function by algorithm'() {
+        expect:
+        Hashing.forAlgorithm(algorithm) == function
+        function.getAlgorithm().equalsIgnoreCase(algorithm)
+
+        where:
+        algorithm     | function
+        "MD5"         | Hashing.md5()
+        "sha-1"       | Hashing.sha1()
+        "SHA-256"     | Hashing.sha256()
+        "SHA-512"     | Hashing.sha512()
+        "murmur3-128" | Hashing.murmur3()
+    }
+
+    def 'reports unsupported hash algorithm'() {
+        when:
+        Hashing.forAlgorithm("CRC32")
+
+        then:
+        def e = thrown(IllegalArgumentException)
+        e.message == "Unsupported hash algorithm 'CRC32'. Supported algorithms are: MD5, SHA-1, SHA-256, SHA-512 and MURMUR3-128."
+    }
+
     def hashStrings(List<String> strings) {
         def hasher = Hashing.newHasher()
         strings.each { hasher.putString(it) }
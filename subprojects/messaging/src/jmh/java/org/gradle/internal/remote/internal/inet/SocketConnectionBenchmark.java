@@ -0,0 +1,104 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.gradle.internal.remote.internal.inet;
+
+import org.gradle.internal.remote.internal.KryoBackedMessageSerializer;
+import org.gradle.internal.serialize.BaseSerializerFactory;
+import org.gradle.internal.serialize.Serializers;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Measures the throughput of sending messages over a loopback {@link SocketConnection}, including serialization with Kryo,
+ * for small messages like log events and larger ones like test results.
+ */
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@State(Scope.Benchmark)
+@OperationsPerInvocation(SocketConnectionBenchmark.BATCH_SIZE)
+public class SocketConnectionBenchmark {
+    static final int BATCH_SIZE = 1000;
+
+    @Param({"64", "4096"})
+    int messageSize;
+
+    private ServerSocketChannel serverChannel;
+    private SocketConnection<byte[]> sender;
+    private SocketConnection<byte[]> receiver;
+    private Thread receiverThread;
+    private final AtomicLong received = new AtomicLong();
+    private long sent;
+    private byte[] message;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.socket().bind(new InetSocketAddress(InetAddress.getByName(null), 0));
+        SocketChannel clientChannel = SocketChannel.open(serverChannel.socket().getLocalSocketAddress());
+        SocketChannel acceptedChannel = serverChannel.accept();
+        sender = new SocketConnection<byte[]>(clientChannel, new KryoBackedMessageSerializer(), Serializers.stateful(BaseSerializerFactory.BYTE_ARRAY_SERIALIZER));
+        receiver = new SocketConnection<byte[]>(acceptedChannel, new KryoBackedMessageSerializer(), Serializers.stateful(BaseSerializerFactory.BYTE_ARRAY_SERIALIZER));
+        message = new byte[messageSize];
+        receiverThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                while (receiver.receive() != null) {
+                    received.incrementAndGet();
+                }
+            }
+        }, "receiver");
+        receiverThread.start();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        sender.stop();
+        receiverThread.join();
+        receiver.stop();
+        serverChannel.close();
+    }
+
+    @Benchmark
+    public void sendMessages() {
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            sender.dispatch(message);
+        }
+        sender.flush();
+        sent += BATCH_SIZE;
+        while (received.get() < sent) {
+            Thread.yield();
+        }
+    }
+}
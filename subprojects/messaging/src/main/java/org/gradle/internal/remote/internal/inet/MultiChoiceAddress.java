@@ -18,6 +18,8 @@
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
 
+import javax.annotation.Nullable;
+import java.io.File;
 import java.net.InetAddress;
 import java.util.ArrayList;
 import java.util.List;
@@ -27,15 +29,24 @@ public class MultiChoiceAddress implements InetEndpoint {
     private final UUID canonicalAddress;
     private final int port;
     private final List<InetAddress> candidates;
+    private final File unixSocketFile;
 
     public MultiChoiceAddress(UUID canonicalAddress, int port, List<InetAddress> candidates) {
+        this(canonicalAddress, port, candidates, null);
+    }
+
+    public MultiChoiceAddress(UUID canonicalAddress, int port, List<InetAddress> candidates, @Nullable File unixSocketFile) {
         this.canonicalAddress = canonicalAddress;
         this.port = port;
         this.candidates = new ArrayList<InetAddress>(candidates);
+        this.unixSocketFile = unixSocketFile;
     }
 
     @Override
     public String getDisplayName() {
+        if (unixSocketFile != null) {
+            return "[" + canonicalAddress + " port:" + port + ", addresses:" + candidates + ", unix socket:" + unixSocketFile + "]";
+        }
         return "[" + canonicalAddress + " port:" + port + ", addresses:" + candidates + "]";
     }
 
@@ -53,6 +64,14 @@ public int getPort() {
         return port;
     }
 
+    /**
+     * Returns the Unix domain socket the server also accepts connections on, if any. Connectors which cannot use Unix domain sockets fall back to the candidate addresses.
+     */
+    @Nullable
+    public File getUnixSocketFile() {
+        return unixSocketFile;
+    }
+
     @Override
     public String toString() {
         return getDisplayName();
@@ -67,7 +86,8 @@ public boolean equals(Object o) {
             return false;
         }
         MultiChoiceAddress other = (MultiChoiceAddress) o;
-        return other.canonicalAddress.equals(canonicalAddress) && port == other.port && candidates.equals(other.candidates);
+        return other.canonicalAddress.equals(canonicalAddress) && port == other.port && candidates.equals(other.candidates)
+            && (unixSocketFile == null ? other.unixSocketFile == null : unixSocketFile.equals(other.unixSocketFile));
     }
 
     @Override
@@ -76,6 +96,6 @@ public int hashCode() {
     }
 
     public MultiChoiceAddress addAddresses(Iterable<InetAddress> candidates) {
-        return new MultiChoiceAddress(canonicalAddress, port, Lists.newArrayList(Iterables.concat(candidates, this.candidates)));
+        return new MultiChoiceAddress(canonicalAddress, port, Lists.newArrayList(Iterables.concat(candidates, this.candidates)), unixSocketFile);
     }
 }
@@ -33,7 +33,9 @@
 
 import java.io.*;
 import java.net.InetSocketAddress;
+import java.net.SocketAddress;
 import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
 import java.nio.channels.ClosedSelectorException;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.Selector;
@@ -42,8 +44,8 @@
 public class SocketConnection<T> implements RemoteConnection<T> {
     private static final Logger LOGGER = LoggerFactory.getLogger(SocketConnection.class);
     private final SocketChannel socket;
-    private final SocketInetAddress localAddress;
-    private final SocketInetAddress remoteAddress;
+    private final Object localAddress;
+    private final Object remoteAddress;
     private final ObjectWriter<T> objectWriter;
     private final ObjectReader<T> objectReader;
     private final InputStream instr;
@@ -58,18 +60,35 @@ public SocketConnection(SocketChannel socket, MessageSerializer streamSerializer
             socket.configureBlocking(false);
             outstr = new SocketOutputStream(socket);
             instr = new SocketInputStream(socket);
+            localAddress = localAddressOf(socket);
+            remoteAddress = remoteAddressOf(socket);
         } catch (IOException e) {
             throw UncheckedException.throwAsUncheckedException(e);
         }
-        InetSocketAddress localSocketAddress = (InetSocketAddress) socket.socket().getLocalSocketAddress();
-        localAddress = new SocketInetAddress(localSocketAddress.getAddress(), localSocketAddress.getPort());
-        InetSocketAddress remoteSocketAddress = (InetSocketAddress) socket.socket().getRemoteSocketAddress();
-        remoteAddress = new SocketInetAddress(remoteSocketAddress.getAddress(), remoteSocketAddress.getPort());
         objectReader = messageSerializer.newReader(streamSerializer.newDecoder(instr));
         encoder = streamSerializer.newEncoder(outstr);
         objectWriter = messageSerializer.newWriter(encoder);
     }
 
+    static Object localAddressOf(SocketChannel socket) throws IOException {
+        if (UnixDomainSockets.isUnixDomainSocket(socket)) {
+            return UnixDomainSockets.getLocalAddress(socket);
+        }
+        return inetAddressOf(socket.socket().getLocalSocketAddress());
+    }
+
+    static Object remoteAddressOf(SocketChannel socket) throws IOException {
+        if (UnixDomainSockets.isUnixDomainSocket(socket)) {
+            return UnixDomainSockets.getRemoteAddress(socket);
+        }
+        return inetAddressOf(socket.socket().getRemoteSocketAddress());
+    }
+
+    private static SocketInetAddress inetAddressOf(SocketAddress address) {
+        InetSocketAddress inetAddress = (InetSocketAddress) address;
+        return new SocketInetAddress(inetAddress.getAddress(), inetAddress.getPort());
+    }
+
     @Override
     public String toString() {
         return "socket connection from " + localAddress + " to " + remoteAddress;
@@ -161,7 +180,7 @@ public SocketInputStream(SocketChannel socket) throws IOException {
             this.socket = socket;
             selector = Selector.open();
             socket.register(selector, SelectionKey.OP_READ);
-            buffer = ByteBuffer.allocateDirect(4096);
+            buffer = ByteBuffer.allocateDirect(32 * 1024);
             BufferCaster.cast(buffer).limit(0);
         }
 
@@ -181,26 +200,22 @@ public int read(byte[] dest, int offset, int max) throws IOException {
             }
 
             if (buffer.remaining() == 0) {
-                try {
-                    selector.select();
-                } catch (ClosedSelectorException e) {
-                    return -1;
-                }
-                if (!selector.isOpen()) {
-                    return -1;
-                }
-
                 BufferCaster.cast(buffer).clear();
-                int nread;
-                try {
-                    nread = socket.read(buffer);
-                } catch (IOException e) {
-                    if (isEndOfStream(e)) {
-                        BufferCaster.cast(buffer).position(0);
-                        BufferCaster.cast(buffer).limit(0);
-                        return -1;
+                // When messages arrive in quick succession, data is usually available already, so only wait when there is none
+                int nread = readFromSocket();
+                while (nread == 0) {
+                    try {
+                        selector.select();
+                    } catch (ClosedSelectorException e) {
+                        nread = -1;
+                        break;
                     }
-                    throw e;
+                    if (!selector.isOpen()) {
+                        nread = -1;
+                        break;
+                    }
+                    selector.selectedKeys().clear();
+                    nread = readFromSocket();
                 }
                 BufferCaster.cast(buffer).flip();
 
@@ -214,6 +229,23 @@ public int read(byte[] dest, int offset, int max) throws IOException {
             return count;
         }
 
+        private int readFromSocket() throws IOException {
+            try {
+                return socket.read(buffer);
+            } catch (ClosedChannelException e) {
+                if (!selector.isOpen()) {
+                    // The connection has been stopped
+                    return -1;
+                }
+                throw e;
+            } catch (IOException e) {
+                if (isEndOfStream(e)) {
+                    return -1;
+                }
+                throw e;
+            }
+        }
+
         @Override
         public void close() throws IOException {
             selector.close();
@@ -29,6 +29,10 @@
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.annotation.Nullable;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.nio.channels.ClosedChannelException;
@@ -43,11 +47,20 @@ public class TcpIncomingConnector implements IncomingConnector {
     private final ExecutorFactory executorFactory;
     private final InetAddressFactory addressFactory;
     private final IdGenerator<UUID> idGenerator;
+    private final boolean useUnixDomainSockets;
 
     public TcpIncomingConnector(ExecutorFactory executorFactory, InetAddressFactory addressFactory, IdGenerator<UUID> idGenerator) {
+        this(executorFactory, addressFactory, idGenerator, false);
+    }
+
+    /**
+     * @param useUnixDomainSockets whether to also accept local connections on a Unix domain socket, when supported by the JVM.
+     */
+    public TcpIncomingConnector(ExecutorFactory executorFactory, InetAddressFactory addressFactory, IdGenerator<UUID> idGenerator, boolean useUnixDomainSockets) {
         this.executorFactory = executorFactory;
         this.addressFactory = addressFactory;
         this.idGenerator = idGenerator;
+        this.useUnixDomainSockets = useUnixDomainSockets && UnixDomainSockets.isSupported();
     }
 
     @Override
@@ -63,12 +76,17 @@ public ConnectionAcceptor accept(Action<ConnectCompletion> action, boolean allow
         }
 
         UUID id = idGenerator.generateId();
+        final UnixSocket unixSocket = useUnixDomainSockets ? bindUnixSocket(id, serverSocket) : null;
         List<InetAddress> addresses = Collections.singletonList(addressFactory.getLocalBindingAddress());
-        final Address address = new MultiChoiceAddress(id, localPort, addresses);
+        final Address address = new MultiChoiceAddress(id, localPort, addresses, unixSocket == null ? null : unixSocket.file);
         LOGGER.debug("Listening on {}.", address);
 
         final ManagedExecutor executor = executorFactory.create("Incoming " + (allowRemote ? "remote" : "local")+ " TCP Connector on port " + localPort);
         executor.execute(new Receiver(serverSocket, action, allowRemote));
+        if (unixSocket != null) {
+            // Only processes which can access the socket file can connect, so there is no remote address to check
+            executor.execute(new Receiver(unixSocket.channel, action, true));
+        }
 
         return new ConnectionAcceptor() {
             @Override
@@ -78,7 +96,7 @@ public Address getAddress() {
 
             @Override
             public void requestStop() {
-                CompositeStoppable.stoppable(serverSocket).stop();
+                CompositeStoppable.stoppable(serverSocket, unixSocket).stop();
             }
 
             @Override
@@ -89,6 +107,57 @@ public void stop() {
         };
     }
 
+    @Nullable
+    private static UnixSocket bindUnixSocket(UUID id, ServerSocketChannel serverSocket) {
+        File dir = null;
+        try {
+            dir = createPrivateTempDir();
+            File file = new File(dir, id.toString().substring(0, 8) + ".sock");
+            return new UnixSocket(UnixDomainSockets.bind(file), file);
+        } catch (Exception e) {
+            LOGGER.debug("Could not listen on a Unix domain socket, using TCP only.", e);
+            if (dir != null) {
+                dir.delete();
+            }
+            return null;
+        }
+    }
+
+    private static File createPrivateTempDir() throws IOException {
+        File dir = File.createTempFile("gradle-ipc", "");
+        if (!dir.delete() || !dir.mkdir()) {
+            throw new IOException("Could not create directory " + dir + ".");
+        }
+        // Only the current user may access the socket
+        if (!(dir.setReadable(false, false) && dir.setReadable(true, true)
+            && dir.setWritable(false, false) && dir.setWritable(true, true)
+            && dir.setExecutable(false, false) && dir.setExecutable(true, true))) {
+            dir.delete();
+            throw new IOException("Could not restrict access to directory " + dir + ".");
+        }
+        return dir;
+    }
+
+    private static class UnixSocket implements Closeable {
+        private final ServerSocketChannel channel;
+        private final File file;
+
+        UnixSocket(ServerSocketChannel channel, File file) {
+            this.channel = channel;
+            this.file = file;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                channel.close();
+            } finally {
+                file.delete();
+                file.getParentFile().delete();
+            }
+        }
+    }
+
     private class Receiver implements Runnable {
         private final ServerSocketChannel serverSocket;
         private final Action<ConnectCompletion> action;
@@ -106,14 +175,17 @@ public void run() {
                 try {
                     while (true) {
                         final SocketChannel socket = serverSocket.accept();
-                        InetSocketAddress remoteSocketAddress = (InetSocketAddress) socket.socket().getRemoteSocketAddress();
-                        InetAddress remoteInetAddress = remoteSocketAddress.getAddress();
-                        if (!allowRemote && !addressFactory.isCommunicationAddress(remoteInetAddress)) {
-                            LOGGER.error("Cannot accept connection from remote address {}.", remoteInetAddress);
-                            socket.close();
-                            continue;
+                        if (!allowRemote) {
+                            InetAddress remoteInetAddress = ((InetSocketAddress) socket.socket().getRemoteSocketAddress()).getAddress();
+                            if (!addressFactory.isCommunicationAddress(remoteInetAddress)) {
+                                LOGGER.error("Cannot accept connection from remote address {}.", remoteInetAddress);
+                                socket.close();
+                                continue;
+                            }
+                        }
+                        if (LOGGER.isDebugEnabled()) {
+                            LOGGER.debug("Accepted connection from {} to {}.", SocketConnection.remoteAddressOf(socket), SocketConnection.localAddressOf(socket));
                         }
-                        LOGGER.debug("Accepted connection from {} to {}.", socket.socket().getRemoteSocketAddress(), socket.socket().getLocalSocketAddress());
                         try {
                             action.execute(new SocketConnectCompletion(socket));
                         } catch (Throwable t) {
@@ -23,6 +23,7 @@
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.File;
 import java.io.IOException;
 import java.net.*;
 import java.nio.channels.SocketChannel;
@@ -40,6 +41,19 @@ public ConnectCompletion connect(Address destinationAddress) throws org.gradle.i
         InetEndpoint address = (InetEndpoint) destinationAddress;
         LOGGER.debug("Attempting to connect to {}.", address);
 
+        if (address instanceof MultiChoiceAddress) {
+            File unixSocketFile = ((MultiChoiceAddress) address).getUnixSocketFile();
+            if (unixSocketFile != null && UnixDomainSockets.isSupported()) {
+                try {
+                    SocketChannel socketChannel = UnixDomainSockets.connect(unixSocketFile);
+                    LOGGER.debug("Connected to Unix domain socket {}.", unixSocketFile);
+                    return new SocketConnectCompletion(socketChannel);
+                } catch (IOException e) {
+                    LOGGER.debug("Cannot connect to Unix domain socket {}, falling back to TCP.", unixSocketFile, e);
+                }
+            }
+        }
+
         // Try each address in turn. Not all of them are necessarily reachable (eg when socket option IPV6_V6ONLY
         // is on - the default for debian and others), so we will try each of them until we can connect
         List<InetAddress> candidateAddresses = address.getCandidates();
@@ -0,0 +1,149 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.gradle.internal.remote.internal.inet;
+
+import org.gradle.api.JavaVersion;
+import org.gradle.internal.UncheckedException;
+
+import javax.annotation.Nullable;
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.SocketAddress;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+
+/**
+ * Opens Unix domain socket channels. These are available from Java 16 on, and are only ever looked up reflectively
+ * on Java 16 or later, as Gradle itself and its worker processes run on older Java versions.
+ */
+abstract class UnixDomainSockets {
+    @Nullable
+    private static final Support SUPPORT = JavaVersion.current().isCompatibleWith(JavaVersion.VERSION_16) ? Support.find() : null;
+
+    private UnixDomainSockets() {
+    }
+
+    /**
+     * Returns whether the current JVM supports Unix domain sockets.
+     */
+    static boolean isSupported() {
+        return SUPPORT != null;
+    }
+
+    static ServerSocketChannel bind(File socketFile) throws IOException {
+        Support support = supported();
+        ServerSocketChannel serverSocket = invoke(support.openServerSocket, null, support.unixProtocolFamily);
+        try {
+            invoke(support.bind, serverSocket, address(socketFile));
+        } catch (IOException e) {
+            serverSocket.close();
+            throw e;
+        }
+        return serverSocket;
+    }
+
+    static SocketChannel connect(File socketFile) throws IOException {
+        supported();
+        return SocketChannel.open(address(socketFile));
+    }
+
+    /**
+     * Returns whether the given channel is connected to a Unix domain socket, rather than a TCP socket.
+     */
+    static boolean isUnixDomainSocket(SocketChannel socket) {
+        if (SUPPORT == null) {
+            return false;
+        }
+        try {
+            return SUPPORT.addressType.isInstance(getLocalAddress(socket));
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    static SocketAddress getLocalAddress(SocketChannel socket) throws IOException {
+        return invoke(supported().getLocalAddress, socket);
+    }
+
+    static SocketAddress getRemoteAddress(SocketChannel socket) throws IOException {
+        return invoke(supported().getRemoteAddress, socket);
+    }
+
+    private static SocketAddress address(File socketFile) throws IOException {
+        return invoke(supported().addressOf, null, socketFile.getPath());
+    }
+
+    private static Support supported() {
+        if (SUPPORT == null) {
+            throw new IllegalStateException("Unix domain sockets are not supported by Java " + System.getProperty("java.version") + " on this platform.");
+        }
+        return SUPPORT;
+    }
+
+    private static <T> T invoke(Method method, @Nullable Object target, Object... args) throws IOException {
+        try {
+            @SuppressWarnings("unchecked")
+            T result = (T) method.invoke(target, args);
+            return result;
+        } catch (InvocationTargetException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw UncheckedException.throwAsUncheckedException(e.getCause());
+        } catch (IllegalAccessException e) {
+            throw UncheckedException.throwAsUncheckedException(e);
+        }
+    }
+
+    private static class Support {
+        private final Class<?> addressType;
+        private final Method addressOf;
+        private final Object unixProtocolFamily;
+        private final Method openServerSocket;
+        private final Method bind;
+        private final Method getLocalAddress;
+        private final Method getRemoteAddress;
+
+        private Support(Class<?> addressType, Object unixProtocolFamily) throws Exception {
+            Class<?> protocolFamilyType = Class.forName("java.net.ProtocolFamily");
+            this.addressType = addressType;
+            this.addressOf = addressType.getMethod("of", String.class);
+            this.unixProtocolFamily = unixProtocolFamily;
+            this.openServerSocket = ServerSocketChannel.class.getMethod("open", protocolFamilyType);
+            this.bind = ServerSocketChannel.class.getMethod("bind", SocketAddress.class);
+            this.getLocalAddress = SocketChannel.class.getMethod("getLocalAddress");
+            this.getRemoteAddress = SocketChannel.class.getMethod("getRemoteAddress");
+            // Not every platform supports Unix domain sockets, even when the JVM knows about them
+            SocketChannel probe = invoke(SocketChannel.class.getMethod("open", protocolFamilyType), null, unixProtocolFamily);
+            probe.close();
+        }
+
+        @Nullable
+        static Support find() {
+            try {
+                Class<?> addressType = Class.forName("java.net.UnixDomainSocketAddress");
+                Object unixProtocolFamily = Class.forName("java.net.StandardProtocolFamily").getField("UNIX").get(null);
+                return new Support(addressType, unixProtocolFamily);
+            } catch (Exception e) {
+                return null;
+            }
+        }
+    }
+}
@@ -43,6 +43,11 @@
  * </ul>
  */
 public class MessagingServices {
+    /**
+     * When set to true, servers also accept connections from local processes, such as worker processes, on a Unix domain socket. Requires Java 16 or later.
+     */
+    public static final String UNIX_DOMAIN_SOCKETS_SYSPROP = "org.gradle.internal.remote.unix-domain-sockets";
+
     private final IdGenerator<UUID> idGenerator = new UUIDGenerator();
 
     protected InetAddressFactory createInetAddressFactory() {
@@ -57,7 +62,8 @@ protected IncomingConnector createIncomingConnector(ExecutorFactory executorFact
         return new TcpIncomingConnector(
                 executorFactory,
                 inetAddressFactory,
-                idGenerator
+                idGenerator,
+                Boolean.getBoolean(UNIX_DOMAIN_SOCKETS_SYSPROP)
         );
     }
 
@@ -19,6 +19,7 @@ import org.gradle.api.Action
 import org.gradle.internal.id.UUIDGenerator
 import org.gradle.internal.remote.internal.ConnectCompletion
 import org.gradle.internal.remote.internal.ConnectException
+import org.gradle.internal.remote.internal.KryoBackedMessageSerializer
 import org.gradle.internal.remote.internal.MessageIOException
 import org.gradle.internal.serialize.BaseSerializerFactory
 import org.gradle.internal.serialize.Decoder
@@ -30,11 +31,14 @@ import org.gradle.util.Requires
 import org.gradle.util.TestPrecondition
 import org.gradle.util.ports.ReleasingPortAllocator
 import org.junit.Rule
+import spock.lang.IgnoreIf
 import spock.lang.Issue
 import spock.lang.Shared
 import spock.lang.Timeout
 import spock.lang.Unroll
 
+import java.nio.ByteBuffer
+import java.nio.channels.ServerSocketChannel
 import java.nio.channels.SocketChannel
 
 @Timeout(60)
@@ -225,6 +229,77 @@ class TcpConnectorTest extends ConcurrentSpec {
         acceptor?.stop()
     }
 
+    def "receives message which arrives in several parts"() {
+        given:
+        def serverChannel = ServerSocketChannel.open()
+        serverChannel.socket().bind(new InetSocketAddress(addressFactory.localBindingAddress, 0))
+        def senderChannel = SocketChannel.open(serverChannel.socket().localSocketAddress)
+        def connection = new SocketConnection<String>(serverChannel.accept(), new KryoBackedMessageSerializer(), serializer)
+        def message = "message" * 10000
+        def bytes = new ByteArrayOutputStream()
+        def encoder = new KryoBackedMessageSerializer().newEncoder(bytes)
+        serializer.newWriter(encoder).write(message)
+        encoder.flush()
+        def content = bytes.toByteArray()
+        def received = null
+
+        when:
+        async {
+            start {
+                received = connection.receive()
+                instant.received
+            }
+            senderChannel.write(ByteBuffer.wrap(content, 0, 10))
+            thread.block()
+            instant.restSent
+            senderChannel.write(ByteBuffer.wrap(content, 10, content.length - 10))
+        }
+
+        then:
+        received == message
+        instant.received > instant.restSent
+
+        cleanup:
+        connection?.stop()
+        senderChannel?.close()
+        serverChannel?.close()
+    }
+
+    @IgnoreIf({ !UnixDomainSockets.supported })
+    def "client connects to server using Unix domain socket when enabled"() {
+        def incomingConnector = new TcpIncomingConnector(executorFactory, addressFactory, idGenerator, true)
+
+        when:
+        def acceptor = incomingConnector.accept({ ConnectCompletion event ->
+            def connection = event.create(serializer)
+            connection.dispatch(connection.toString())
+            connection.stop()
+            instant.closed
+        } as Action, false)
+        def socketFile = acceptor.address.unixSocketFile
+
+        then:
+        socketFile.exists()
+
+        when:
+        def connection = outgoingConnector.connect(acceptor.address).create(serializer)
+        thread.blockUntil.closed
+
+        then:
+        connection.receive().contains(socketFile.name)
+        connection.receive() == null
+
+        when:
+        acceptor.stop()
+
+        then:
+        !socketFile.exists()
+
+        cleanup:
+        connection?.stop()
+        acceptor?.stop()
+    }
+
     def "returns null on failure to receive due to truncated input"() {
         given:
         def incomingSerializer = { Encoder encoder, String value ->
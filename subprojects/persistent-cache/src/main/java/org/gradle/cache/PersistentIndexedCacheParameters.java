@@ -15,6 +15,8 @@
  */
 package org.gradle.cache;
 
+import org.gradle.internal.hash.HashFunction;
+import org.gradle.internal.hash.Hashing;
 import org.gradle.internal.serialize.BaseSerializerFactory;
 import org.gradle.internal.serialize.Serializer;
 
@@ -27,24 +29,28 @@
     private final Serializer<K> keySerializer;
     private final Serializer<V> valueSerializer;
     private final CacheDecorator cacheDecorator;
+    private final Storage storage;
+    private final HashFunction keyHashFunction;
 
     public static <K, V> PersistentIndexedCacheParameters<K, V> of(String cacheName, Serializer<K> keySerializer, Serializer<V> valueSerializer) {
-        return new PersistentIndexedCacheParameters<K, V>(cacheName, keySerializer, valueSerializer, null);
+        return new PersistentIndexedCacheParameters<K, V>(cacheName, keySerializer, valueSerializer, null, Storage.FILE, Hashing.md5());
     }
 
     public static <K, V> PersistentIndexedCacheParameters<K, V> of(String cacheName, Class<K> keyType, Serializer<V> valueSerializer) {
-        return new PersistentIndexedCacheParameters<K, V>(cacheName, SERIALIZER_FACTORY.getSerializerFor(keyType), valueSerializer, null);
+        return new PersistentIndexedCacheParameters<K, V>(cacheName, SERIALIZER_FACTORY.getSerializerFor(keyType), valueSerializer, null, Storage.FILE, Hashing.md5());
     }
 
     public static <K, V> PersistentIndexedCacheParameters<K, V> of(String cacheName, Class<K> keyType, Class<V> valueType) {
-        return new PersistentIndexedCacheParameters<K, V>(cacheName, SERIALIZER_FACTORY.getSerializerFor(keyType), SERIALIZER_FACTORY.getSerializerFor(valueType), null);
+        return new PersistentIndexedCacheParameters<K, V>(cacheName, SERIALIZER_FACTORY.getSerializerFor(keyType), SERIALIZER_FACTORY.getSerializerFor(valueType), null, Storage.FILE, Hashing.md5());
     }
 
-    private PersistentIndexedCacheParameters(String cacheName, Serializer<K> keySerializer, Serializer<V> valueSerializer, @Nullable CacheDecorator cacheDecorator) {
+    private PersistentIndexedCacheParameters(String cacheName, Serializer<K> keySerializer, Serializer<V> valueSerializer, @Nullable CacheDecorator cacheDecorator, Storage storage, HashFunction keyHashFunction) {
         this.cacheName = cacheName;
         this.keySerializer = keySerializer;
         this.valueSerializer = valueSerializer;
         this.cacheDecorator = cacheDecorator;
+        this.storage = storage;
+        this.keyHashFunction = keyHashFunction;
     }
 
     public String getCacheName() {
@@ -64,7 +70,45 @@ public CacheDecorator getCacheDecorator() {
         return cacheDecorator;
     }
 
+    public Storage getStorage() {
+        return storage;
+    }
+
+    /**
+     * The function used to hash keys when looking them up in storage which indexes entries by the hash of their key.
+     */
+    public HashFunction getKeyHashFunction() {
+        return keyHashFunction;
+    }
+
     public PersistentIndexedCacheParameters<K, V> withCacheDecorator(CacheDecorator cacheDecorator) {
-        return new PersistentIndexedCacheParameters<K, V>(cacheName, keySerializer, valueSerializer, cacheDecorator);
+        return new PersistentIndexedCacheParameters<K, V>(cacheName, keySerializer, valueSerializer, cacheDecorator, storage, keyHashFunction);
+    }
+
+    public PersistentIndexedCacheParameters<K, V> withStorage(Storage storage) {
+        return new PersistentIndexedCacheParameters<K, V>(cacheName, keySerializer, valueSerializer, cacheDecorator, storage, keyHashFunction);
+    }
+
+    public PersistentIndexedCacheParameters<K, V> withKeyHashFunction(HashFunction keyHashFunction) {
+        return new PersistentIndexedCacheParameters<K, V>(cacheName, keySerializer, valueSerializer, cacheDecorator, storage, keyHashFunction);
+    }
+
+    /**
+     * The way the entries of an indexed cache are stored on disk.
+     */
+    public enum Storage {
+        /**
+         * A B-tree in a file, accessed using reads and writes on the file.
+         */
+        FILE,
+        /**
+         * A B-tree in a file, with reads served from memory-mapped regions of the file. Uses the same file format as {@link #FILE},
+         * and falls back to it on Windows, where a file with mapped regions cannot be truncated, replaced or deleted.
+         */
+        MEMORY_MAPPED_FILE,
+        /**
+         * An append-only log file with an in-memory index, compacted in the background. Suited to caches that receive many writes.
+         */
+        LOG_STRUCTURED
     }
 }
@@ -16,6 +16,8 @@
 package org.gradle.cache.internal;
 
 import com.google.common.collect.Lists;
+import org.gradle.internal.metrics.MetricsRegistry;
+import org.gradle.internal.serialize.Serializer;
 
 import java.lang.ref.WeakReference;
 import java.util.Iterator;
@@ -25,8 +27,8 @@
 public class CleaningInMemoryCacheDecoratorFactory extends DefaultInMemoryCacheDecoratorFactory {
     private final List<WeakReference<InMemoryCacheController>> inMemoryCaches = Lists.newArrayList();
 
-    public CleaningInMemoryCacheDecoratorFactory(boolean longLivingProcess, CrossBuildInMemoryCacheFactory cacheFactory) {
-        super(longLivingProcess, cacheFactory);
+    public CleaningInMemoryCacheDecoratorFactory(boolean longLivingProcess, CrossBuildInMemoryCacheFactory cacheFactory, MetricsRegistry metricsRegistry) {
+        super(longLivingProcess, cacheFactory, metricsRegistry);
     }
 
     public void clearCaches(Predicate<InMemoryCacheController> predicate) {
@@ -45,7 +47,15 @@ public void clearCaches(Predicate<InMemoryCacheController> predicate) {
 
     @Override
     protected <K, V> MultiProcessSafeAsyncPersistentIndexedCache<K, V> applyInMemoryCaching(String cacheId, MultiProcessSafeAsyncPersistentIndexedCache<K, V> backingCache, int maxEntriesToKeepInMemory, boolean cacheInMemoryForShortLivedProcesses) {
-        MultiProcessSafeAsyncPersistentIndexedCache<K, V> delegate = super.applyInMemoryCaching(cacheId, backingCache, maxEntriesToKeepInMemory, cacheInMemoryForShortLivedProcesses);
+        return register(super.applyInMemoryCaching(cacheId, backingCache, maxEntriesToKeepInMemory, cacheInMemoryForShortLivedProcesses));
+    }
+
+    @Override
+    protected <K, V> MultiProcessSafeAsyncPersistentIndexedCache<K, V> applyOffHeapCaching(String cacheId, MultiProcessSafeAsyncPersistentIndexedCache<K, V> backingCache, Serializer<?> keySerializer, Serializer<?> valueSerializer, long maxBytesToKeepInMemory, boolean cacheInMemoryForShortLivedProcesses) {
+        return register(super.applyOffHeapCaching(cacheId, backingCache, keySerializer, valueSerializer, maxBytesToKeepInMemory, cacheInMemoryForShortLivedProcesses));
+    }
+
+    private <K, V> MultiProcessSafeAsyncPersistentIndexedCache<K, V> register(MultiProcessSafeAsyncPersistentIndexedCache<K, V> delegate) {
         if (delegate instanceof InMemoryCacheController) {
             InMemoryCacheController cimc = (InMemoryCacheController) delegate;
             WeakReference<InMemoryCacheController> ref = new WeakReference<>(cimc);
@@ -31,7 +31,10 @@
 import org.gradle.cache.MultiProcessSafePersistentIndexedCache;
 import org.gradle.cache.PersistentIndexedCacheParameters;
 import org.gradle.cache.internal.btree.BTreePersistentIndexedCache;
+import org.gradle.cache.internal.btree.FileBackedBlockStore;
+import org.gradle.cache.internal.btree.MappedFileBlockStore;
 import org.gradle.cache.internal.cacheops.CacheAccessOperationsStack;
+import org.gradle.cache.internal.logstructured.LogStructuredPersistentIndexedCache;
 import org.gradle.internal.Cast;
 import org.gradle.internal.Factories;
 import org.gradle.internal.Factory;
@@ -39,6 +42,7 @@
 import org.gradle.internal.UncheckedException;
 import org.gradle.internal.concurrent.ExecutorFactory;
 import org.gradle.internal.concurrent.ManagedExecutor;
+import org.gradle.internal.os.OperatingSystem;
 import org.gradle.internal.serialize.Serializer;
 import org.gradle.util.CollectionUtils;
 import org.slf4j.Logger;
@@ -52,6 +56,7 @@
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
@@ -75,6 +80,7 @@ public class DefaultCacheAccess implements CacheCoordinator {
     private final CacheAccessOperationsStack operations;
 
     private ManagedExecutor cacheUpdateExecutor;
+    private ManagedExecutor compactionExecutor;
     private CacheAccessWorker cacheAccessWorker;
     private final Lock stateLock = new ReentrantLock(); // protects the following state
     private final Condition condition = stateLock.newCondition();
@@ -127,6 +133,13 @@ private synchronized AsyncCacheAccess getCacheAccessWorker() {
         return cacheAccessWorker;
     }
 
+    private synchronized Executor getCompactionExecutor() {
+        if (compactionExecutor == null) {
+            compactionExecutor = executorFactory.create("Cache compaction for " + cacheDisplayName);
+        }
+        return compactionExecutor;
+    }
+
     @Override
     public void open() {
         stateLock.lock();
@@ -184,6 +197,10 @@ public synchronized void close() {
             fileLockHeldByOwner = null;
             stateLock.unlock();
         }
+        if (compactionExecutor != null) {
+            compactionExecutor.stop();
+            compactionExecutor = null;
+        }
     }
 
     @Override
@@ -282,7 +299,7 @@ public <K, V> MultiProcessSafePersistentIndexedCache<K, V> newCache(final Persis
             if (entry == null) {
                 File cacheFile = findCacheFile(parameters);
                 LOG.debug("Creating new cache for {}, path {}, access {}", parameters.getCacheName(), cacheFile, this);
-                Factory<BTreePersistentIndexedCache<K, V>> indexedCacheFactory = () -> doCreateCache(cacheFile, parameters.getKeySerializer(), parameters.getValueSerializer());
+                Factory<FileBackedIndexedCache<K, V>> indexedCacheFactory = () -> doCreateCache(cacheFile, parameters);
 
                 MultiProcessSafePersistentIndexedCache<K, V> indexedCache = new DefaultMultiProcessSafePersistentIndexedCache<K, V>(indexedCacheFactory, fileAccess);
                 CacheDecorator decorator = parameters.getCacheDecorator();
@@ -307,7 +324,8 @@ public <K, V> MultiProcessSafePersistentIndexedCache<K, V> newCache(final Persis
     }
 
     private <K, V> File findCacheFile(PersistentIndexedCacheParameters<K, V> parameters) {
-        return new File(baseDir, parameters.getCacheName() + ".bin");
+        String extension = parameters.getStorage() == PersistentIndexedCacheParameters.Storage.LOG_STRUCTURED ? ".log" : ".bin";
+        return new File(baseDir, parameters.getCacheName() + extension);
     }
 
     @Override
@@ -315,8 +333,21 @@ public <K, V> boolean cacheExists(PersistentIndexedCacheParameters<K, V> paramet
         return findCacheFile(parameters).exists();
     }
 
-    <K, V> BTreePersistentIndexedCache<K, V> doCreateCache(File cacheFile, Serializer<K> keySerializer, Serializer<V> valueSerializer) {
-        return new BTreePersistentIndexedCache<>(cacheFile, keySerializer, valueSerializer);
+    <K, V> FileBackedIndexedCache<K, V> doCreateCache(File cacheFile, PersistentIndexedCacheParameters<K, V> parameters) {
+        switch (parameters.getStorage()) {
+            case LOG_STRUCTURED:
+                return new LogStructuredPersistentIndexedCache<>(cacheFile, parameters.getKeySerializer(), parameters.getValueSerializer(), getCompactionExecutor());
+            case MEMORY_MAPPED_FILE:
+                if (OperatingSystem.current().isWindows()) {
+                    // Windows does not allow a file with mapped regions to be truncated, replaced or deleted
+                    return new BTreePersistentIndexedCache<>(cacheFile, parameters.getKeySerializer(), parameters.getValueSerializer(), new FileBackedBlockStore(cacheFile), parameters.getKeyHashFunction());
+                }
+                return new BTreePersistentIndexedCache<>(cacheFile, parameters.getKeySerializer(), parameters.getValueSerializer(), new MappedFileBlockStore(cacheFile), parameters.getKeyHashFunction());
+            case FILE:
+                return new BTreePersistentIndexedCache<>(cacheFile, parameters.getKeySerializer(), parameters.getValueSerializer(), new FileBackedBlockStore(cacheFile), parameters.getKeyHashFunction());
+            default:
+                throw new IllegalArgumentException("Unknown storage for cache '" + parameters.getCacheName() + "': " + parameters.getStorage());
+        }
     }
 
     /**
@@ -482,6 +513,7 @@ void assertCompatibleCacheParameters(PersistentIndexedCacheParameters<K, V> para
             checkCompatibleKeySerializer(faultMessages, parameters.getKeySerializer());
             checkCompatibleValueSerializer(faultMessages, parameters.getValueSerializer());
             checkCompatibleCacheDecorator(faultMessages, parameters.getCacheDecorator());
+            checkCompatibleStorage(faultMessages, parameters.getStorage());
 
             if (!faultMessages.isEmpty()) {
                 String lineSeparator = SystemProperties.getInstance().getLineSeparator();
@@ -524,6 +556,14 @@ private void checkCompatibleCacheDecorator(Collection<String> faultMessages, Cac
                         cacheDecorator, parameters.getCacheDecorator()));
             }
         }
+
+        private void checkCompatibleStorage(Collection<String> faultMessages, PersistentIndexedCacheParameters.Storage storage) {
+            if (storage != parameters.getStorage()) {
+                faultMessages.add(
+                    String.format(" * Requested cache storage (%s) doesn't match current cache storage (%s)",
+                        storage, parameters.getStorage()));
+            }
+        }
     }
 
     @VisibleForTesting
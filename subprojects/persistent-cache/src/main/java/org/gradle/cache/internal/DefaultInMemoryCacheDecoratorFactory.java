@@ -24,6 +24,9 @@
 import org.gradle.cache.CrossProcessCacheAccess;
 import org.gradle.cache.FileLock;
 import org.gradle.cache.MultiProcessSafePersistentIndexedCache;
+import org.gradle.internal.Factory;
+import org.gradle.internal.metrics.MetricsRegistry;
+import org.gradle.internal.serialize.Serializer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -34,16 +37,20 @@
  * The in-memory cache is invalidated when the backing cache is changed by another process.
  *
  * Also decorates each cache so that updates to the backing cache are made asynchronously.
+ *
+ * The in-memory cache is either kept on the heap, bounded by a number of entries, or kept outside the heap as serialized entries, bounded by a number of bytes.
  */
 public class DefaultInMemoryCacheDecoratorFactory implements InMemoryCacheDecoratorFactory {
     private final static Logger LOG = LoggerFactory.getLogger(DefaultInMemoryCacheDecoratorFactory.class);
     private final boolean longLivingProcess;
     private final HeapProportionalCacheSizer cacheSizer = new HeapProportionalCacheSizer();
     private final CrossBuildInMemoryCache<String, CacheDetails> caches;
+    private final MetricsRegistry metricsRegistry;
 
-    public DefaultInMemoryCacheDecoratorFactory(boolean longLivingProcess, CrossBuildInMemoryCacheFactory cacheFactory) {
+    public DefaultInMemoryCacheDecoratorFactory(boolean longLivingProcess, CrossBuildInMemoryCacheFactory cacheFactory, MetricsRegistry metricsRegistry) {
         this.longLivingProcess = longLivingProcess;
-        caches = cacheFactory.newCache();
+        this.caches = cacheFactory.newCache();
+        this.metricsRegistry = metricsRegistry;
     }
 
     @Override
@@ -51,6 +58,11 @@ public CacheDecorator decorator(final int maxEntriesToKeepInMemory, final boolea
         return new InMemoryCacheDecorator(maxEntriesToKeepInMemory, cacheInMemoryForShortLivedProcesses);
     }
 
+    @Override
+    public CacheDecorator offHeapDecorator(Serializer<?> keySerializer, Serializer<?> valueSerializer, long maxBytesToKeepInMemory, boolean cacheInMemoryForShortLivedProcesses) {
+        return new OffHeapCacheDecorator(keySerializer, valueSerializer, maxBytesToKeepInMemory, cacheInMemoryForShortLivedProcesses);
+    }
+
     protected <K, V> MultiProcessSafeAsyncPersistentIndexedCache<K, V> applyInMemoryCaching(String cacheId, MultiProcessSafeAsyncPersistentIndexedCache<K, V> backingCache, int maxEntriesToKeepInMemory, boolean cacheInMemoryForShortLivedProcesses) {
         if (!longLivingProcess && !cacheInMemoryForShortLivedProcesses) {
             // Short lived process, don't cache in memory
@@ -58,22 +70,32 @@ protected <K, V> MultiProcessSafeAsyncPersistentIndexedCache<K, V> applyInMemory
             return backingCache;
         }
         int targetSize = cacheSizer.scaleCacheSize(maxEntriesToKeepInMemory);
-        CacheDetails cacheDetails = getCache(cacheId, targetSize);
+        CacheDetails cacheDetails = getCache(cacheId, targetSize, () -> createInMemoryCache(cacheId, targetSize));
+        return new InMemoryDecoratedCache<K, V>(backingCache, cacheDetails.entries, cacheId, cacheDetails.lockState);
+    }
+
+    protected <K, V> MultiProcessSafeAsyncPersistentIndexedCache<K, V> applyOffHeapCaching(String cacheId, MultiProcessSafeAsyncPersistentIndexedCache<K, V> backingCache, Serializer<?> keySerializer, Serializer<?> valueSerializer, long maxBytesToKeepInMemory, boolean cacheInMemoryForShortLivedProcesses) {
+        if (!longLivingProcess && !cacheInMemoryForShortLivedProcesses) {
+            // Short lived process, don't cache in memory
+            LOG.debug("Creating cache {} without in-memory store.", cacheId);
+            return backingCache;
+        }
+        CacheDetails cacheDetails = getCache(cacheId, maxBytesToKeepInMemory, () -> createOffHeapCache(cacheId, keySerializer, valueSerializer, maxBytesToKeepInMemory));
         return new InMemoryDecoratedCache<K, V>(backingCache, cacheDetails.entries, cacheId, cacheDetails.lockState);
     }
 
-    private CacheDetails getCache(final String cacheId, final int maxSize) {
+    private CacheDetails getCache(final String cacheId, final long maxSize, final Factory<Cache<Object, Object>> entriesFactory) {
         CacheDetails cacheDetails = caches.get(cacheId, new Transformer<CacheDetails, String>() {
             @Override
             public CacheDetails transform(String cacheId) {
-                Cache<Object, Object> entries = createInMemoryCache(cacheId, maxSize);
+                Cache<Object, Object> entries = entriesFactory.create();
                 CacheDetails cacheDetails = new CacheDetails(cacheId, maxSize, entries, new AtomicReference<FileLock.State>(null));
                 LOG.debug("Creating in-memory store for cache {} (max size: {})", cacheId, maxSize);
                 return cacheDetails;
             }
         });
-        if (cacheDetails.maxEntries != maxSize) {
-            throw new IllegalStateException("Mismatched in-memory store size for cache " + cacheId + ", expected: " + maxSize + ", found: " + cacheDetails.maxEntries);
+        if (cacheDetails.maxSize != maxSize) {
+            throw new IllegalStateException("Mismatched in-memory store size for cache " + cacheId + ", expected: " + maxSize + ", found: " + cacheDetails.maxSize);
         }
         return cacheDetails;
     }
@@ -86,6 +108,16 @@ private Cache<Object, Object> createInMemoryCache(String cacheId, int maxSize) {
         return inMemoryCache;
     }
 
+    private Cache<Object, Object> createOffHeapCache(String cacheId, Serializer<?> keySerializer, Serializer<?> valueSerializer, long maxBytes) {
+        OffHeapInMemoryCache cache = new OffHeapInMemoryCache(keySerializer, valueSerializer, maxBytes);
+        // Replaces the metrics of a previous off-heap store for the same cache, so the discarded store can be collected
+        metricsRegistry.counter("gradle_off_heap_cache_lookups", "Lookups in off-heap in-memory caches, by cache and result.", () -> cache.getStatistics().getHitCount(), "cache", cacheId, "result", "hit");
+        metricsRegistry.counter("gradle_off_heap_cache_lookups", "Lookups in off-heap in-memory caches, by cache and result.", () -> cache.getStatistics().getMissCount(), "cache", cacheId, "result", "miss");
+        metricsRegistry.gauge("gradle_off_heap_cache_entries", "Entries held by off-heap in-memory caches, by cache.", () -> cache.getStatistics().getEntryCount(), "cache", cacheId);
+        metricsRegistry.gauge("gradle_off_heap_cache_bytes", "Direct memory allocated by off-heap in-memory caches, by cache.", () -> cache.getStatistics().getAllocatedBytes(), "cache", cacheId);
+        return cache;
+    }
+
     private class InMemoryCacheDecorator implements CacheDecorator {
         private final int maxEntriesToKeepInMemory;
         private final boolean cacheInMemoryForShortLivedProcesses;
@@ -120,15 +152,56 @@ public <K, V> MultiProcessSafePersistentIndexedCache<K, V> decorate(String cache
         }
     }
 
+    private class OffHeapCacheDecorator implements CacheDecorator {
+        private final Serializer<?> keySerializer;
+        private final Serializer<?> valueSerializer;
+        private final long maxBytesToKeepInMemory;
+        private final boolean cacheInMemoryForShortLivedProcesses;
+
+        OffHeapCacheDecorator(Serializer<?> keySerializer, Serializer<?> valueSerializer, long maxBytesToKeepInMemory, boolean cacheInMemoryForShortLivedProcesses) {
+            this.keySerializer = keySerializer;
+            this.valueSerializer = valueSerializer;
+            this.maxBytesToKeepInMemory = maxBytesToKeepInMemory;
+            this.cacheInMemoryForShortLivedProcesses = cacheInMemoryForShortLivedProcesses;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (obj == this) {
+                return true;
+            }
+            if (obj == null || obj.getClass() != getClass()) {
+                return false;
+            }
+            OffHeapCacheDecorator other = (OffHeapCacheDecorator) obj;
+            return maxBytesToKeepInMemory == other.maxBytesToKeepInMemory
+                && cacheInMemoryForShortLivedProcesses == other.cacheInMemoryForShortLivedProcesses
+                && keySerializer.equals(other.keySerializer)
+                && valueSerializer.equals(other.valueSerializer);
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(maxBytesToKeepInMemory) ^ (cacheInMemoryForShortLivedProcesses ? 1 : 0);
+        }
+
+        @Override
+        public <K, V> MultiProcessSafePersistentIndexedCache<K, V> decorate(String cacheId, String cacheName, MultiProcessSafePersistentIndexedCache<K, V> persistentCache, CrossProcessCacheAccess crossProcessCacheAccess, AsyncCacheAccess asyncCacheAccess) {
+            MultiProcessSafeAsyncPersistentIndexedCache<K, V> asyncCache = new AsyncCacheAccessDecoratedCache<K, V>(asyncCacheAccess, persistentCache);
+            MultiProcessSafeAsyncPersistentIndexedCache<K, V> memCache = applyOffHeapCaching(cacheId, asyncCache, keySerializer, valueSerializer, maxBytesToKeepInMemory, cacheInMemoryForShortLivedProcesses);
+            return new CrossProcessSynchronizingCache<K, V>(memCache, crossProcessCacheAccess);
+        }
+    }
+
     private static class CacheDetails {
         private final String cacheId;
-        private final int maxEntries;
+        private final long maxSize;
         private final Cache<Object, Object> entries;
         private final AtomicReference<FileLock.State> lockState;
 
-        CacheDetails(String cacheId, int maxEntries, Cache<Object, Object> entries, AtomicReference<FileLock.State> lockState) {
+        CacheDetails(String cacheId, long maxSize, Cache<Object, Object> entries, AtomicReference<FileLock.State> lockState) {
             this.cacheId = cacheId;
-            this.maxEntries = maxEntries;
+            this.maxSize = maxSize;
             this.entries = entries;
             this.lockState = lockState;
         }
@@ -16,7 +16,14 @@
 package org.gradle.cache.internal;
 
 import org.gradle.cache.CacheDecorator;
+import org.gradle.internal.serialize.Serializer;
 
 public interface InMemoryCacheDecoratorFactory {
     CacheDecorator decorator(int maxEntriesToKeepInMemory, boolean cacheInMemoryForShortLivedProcesses);
+
+    /**
+     * Creates a decorator that keeps the entries of a cache in memory outside of the Java heap, serialized using the given serializers.
+     * The serializers should be the ones used by the decorated cache.
+     */
+    CacheDecorator offHeapDecorator(Serializer<?> keySerializer, Serializer<?> valueSerializer, long maxBytesToKeepInMemory, boolean cacheInMemoryForShortLivedProcesses);
 }
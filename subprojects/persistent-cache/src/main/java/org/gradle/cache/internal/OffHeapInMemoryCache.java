@@ -0,0 +1,156 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.cache.internal;
+
+import com.google.common.cache.AbstractCache;
+import com.google.common.cache.CacheStats;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import org.gradle.cache.internal.offheap.OffHeapStore;
+import org.gradle.cache.internal.offheap.OffHeapStoreStatistics;
+import org.gradle.internal.Cast;
+import org.gradle.internal.UncheckedException;
+import org.gradle.internal.serialize.Serializer;
+import org.gradle.internal.serialize.kryo.KryoBackedDecoder;
+import org.gradle.internal.serialize.kryo.KryoBackedEncoder;
+
+import javax.annotation.Nullable;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Adapts an {@link OffHeapStore} to the Guava cache used by {@link InMemoryDecoratedCache}, serializing keys and values with the serializers of the backing cache.
+ */
+class OffHeapInMemoryCache extends AbstractCache<Object, Object> {
+    private static final byte NULL_VALUE = 0;
+    private static final byte NON_NULL_VALUE = 1;
+
+    private final Serializer<Object> keySerializer;
+    private final Serializer<Object> valueSerializer;
+    private final OffHeapStore store;
+    private final ProducerGuard<Object> producerGuard = ProducerGuard.striped();
+
+    OffHeapInMemoryCache(Serializer<?> keySerializer, Serializer<?> valueSerializer, long maxBytes) {
+        this.keySerializer = Cast.uncheckedCast(keySerializer);
+        this.valueSerializer = Cast.uncheckedCast(valueSerializer);
+        this.store = new OffHeapStore(maxBytes);
+    }
+
+    @Nullable
+    @Override
+    public Object getIfPresent(Object key) {
+        byte[] serializedValue = store.get(serialize(keySerializer, key));
+        if (serializedValue == null) {
+            return null;
+        }
+        if (serializedValue[0] == NULL_VALUE) {
+            return InMemoryDecoratedCache.NULL;
+        }
+        byte[] value = new byte[serializedValue.length - 1];
+        System.arraycopy(serializedValue, 1, value, 0, value.length);
+        return deserialize(valueSerializer, value);
+    }
+
+    @Override
+    public Object get(Object key, Callable<?> loader) throws ExecutionException {
+        try {
+            return producerGuard.guardByKey(key, () -> {
+                Object value = getIfPresent(key);
+                if (value == null) {
+                    try {
+                        value = loader.call();
+                    } catch (RuntimeException e) {
+                        throw new UncheckedExecutionException(e);
+                    } catch (Exception e) {
+                        throw new UncheckedExecutionException(new ExecutionException(e));
+                    }
+                    put(key, value);
+                }
+                return value;
+            });
+        } catch (UncheckedExecutionException e) {
+            if (e.getCause() instanceof ExecutionException) {
+                throw (ExecutionException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    @Override
+    public void put(Object key, Object value) {
+        byte[] serializedValue;
+        if (value == InMemoryDecoratedCache.NULL) {
+            serializedValue = new byte[]{NULL_VALUE};
+        } else {
+            byte[] bytes = serialize(valueSerializer, value);
+            serializedValue = new byte[bytes.length + 1];
+            serializedValue[0] = NON_NULL_VALUE;
+            System.arraycopy(bytes, 0, serializedValue, 1, bytes.length);
+        }
+        store.put(serialize(keySerializer, key), serializedValue);
+    }
+
+    @Override
+    public void invalidate(Object key) {
+        store.remove(serialize(keySerializer, key));
+    }
+
+    @Override
+    public void invalidateAll() {
+        store.clear();
+    }
+
+    @Override
+    public long size() {
+        return store.getStatistics().getEntryCount();
+    }
+
+    @Override
+    public CacheStats stats() {
+        OffHeapStoreStatistics statistics = store.getStatistics();
+        return new CacheStats(statistics.getHitCount(), statistics.getMissCount(), 0, 0, 0, 0);
+    }
+
+    public OffHeapStoreStatistics getStatistics() {
+        return store.getStatistics();
+    }
+
+    @Override
+    public String toString() {
+        return "off-heap cache " + store.getStatistics();
+    }
+
+    private static <T> byte[] serialize(Serializer<T> serializer, T value) {
+        try {
+            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+            KryoBackedEncoder encoder = new KryoBackedEncoder(outputStream);
+            serializer.write(encoder, value);
+            encoder.flush();
+            return outputStream.toByteArray();
+        } catch (Exception e) {
+            throw UncheckedException.throwAsUncheckedException(e);
+        }
+    }
+
+    private static <T> T deserialize(Serializer<T> serializer, byte[] bytes) {
+        try {
+            return serializer.read(new KryoBackedDecoder(new ByteArrayInputStream(bytes)));
+        } catch (Exception e) {
+            throw UncheckedException.throwAsUncheckedException(e);
+        }
+    }
+}
@@ -16,60 +16,59 @@
 
 package org.gradle.cache.internal.btree;
 
-import org.gradle.internal.UncheckedException;
+import org.gradle.internal.hash.HashFunction;
+import org.gradle.internal.hash.PrimitiveHasher;
 import org.gradle.internal.serialize.Serializer;
 import org.gradle.internal.serialize.kryo.KryoBackedEncoder;
 
 import java.io.IOException;
 import java.io.OutputStream;
 import java.math.BigInteger;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
 
 class KeyHasher<K> {
     private final Serializer<K> serializer;
-    private final MessageDigestStream digestStream = new MessageDigestStream();
-    private final KryoBackedEncoder encoder = new KryoBackedEncoder(digestStream);
+    private final HasherStream hasherStream;
+    private final KryoBackedEncoder encoder;
 
-    public KeyHasher(Serializer<K> serializer) {
+    public KeyHasher(Serializer<K> serializer, HashFunction hashFunction) {
         this.serializer = serializer;
+        this.hasherStream = new HasherStream(hashFunction);
+        this.encoder = new KryoBackedEncoder(hasherStream);
     }
 
     long getHashCode(K key) throws Exception {
         serializer.write(encoder, key);
         encoder.flush();
-        return digestStream.getChecksum();
+        return hasherStream.getChecksum();
     }
 
-    private static class MessageDigestStream extends OutputStream {
-        MessageDigest messageDigest;
+    private static class HasherStream extends OutputStream {
+        private final HashFunction hashFunction;
+        private PrimitiveHasher hasher;
 
-        private MessageDigestStream() {
-            try {
-                messageDigest = MessageDigest.getInstance("MD5");
-            } catch (NoSuchAlgorithmException e) {
-                throw UncheckedException.throwAsUncheckedException(e);
-            }
+        private HasherStream(HashFunction hashFunction) {
+            this.hashFunction = hashFunction;
+            this.hasher = hashFunction.newPrimitiveHasher();
         }
 
         @Override
         public void write(int b) throws IOException {
-            messageDigest.update((byte) b);
+            hasher.putByte((byte) b);
         }
 
         @Override
         public void write(byte[] b) throws IOException {
-            messageDigest.update(b);
+            hasher.putBytes(b);
         }
 
         @Override
         public void write(byte[] b, int off, int len) throws IOException {
-            messageDigest.update(b, off, len);
+            hasher.putBytes(b, off, len);
         }
 
         long getChecksum() {
-            byte[] digest = messageDigest.digest();
-            assert digest.length == 16;
+            byte[] digest = hasher.hash().toByteArray();
+            hasher = hashFunction.newPrimitiveHasher();
             return new BigInteger(digest).longValue();
         }
     }
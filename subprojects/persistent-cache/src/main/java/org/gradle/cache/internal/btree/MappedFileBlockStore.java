@@ -0,0 +1,467 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.cache.internal.btree;
+
+import org.gradle.api.UncheckedIOException;
+import org.gradle.internal.UncheckedException;
+import org.gradle.internal.io.BufferCaster;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+/**
+ * A {@link BlockStore} that reads blocks through memory-mapped regions of the backing file, using the same file format as {@link FileBackedBlockStore}.
+ *
+ * <p>Blocks that fit in a page are allocated so that they do not straddle a page boundary, and larger blocks start on a page boundary.</p>
+ *
+ * <p>Writes use positional writes on the file channel. Reads use absolute gets on the mapped regions and do not share a file pointer,
+ * so multiple threads can read blocks from this store at the same time. A region is (re-)mapped lazily when a read reaches past its mapped length,
+ * holding one of a set of striped locks so that threads reading different regions do not contend with each other.
+ * Only the store itself is safe for concurrent reads: a {@link BTreePersistentIndexedCache} on top of it still has to be used from one thread at a time.</p>
+ *
+ * <p>All mapped regions are unmapped when the store is closed or cleared, so no reads may be in progress at that point.
+ * A region which is re-mapped because the file has grown may still be in use by another thread, so its old mapping is not unmapped explicitly.
+ * It is dropped straight away and released by the garbage collector once no reader refers to it any more.</p>
+ */
+public class MappedFileBlockStore implements BlockStore {
+    static final int PAGE_SIZE = 4096;
+    private static final int DEFAULT_REGION_SIZE = 4096 * PAGE_SIZE;
+    private static final int LOCK_STRIPES = 16;
+    private static final Consumer<MappedByteBuffer> UNMAPPER = createUnmapper();
+
+    private final File cacheFile;
+    private final int regionSize;
+    private final Object[] regionLocks;
+    private volatile AtomicReferenceArray<MappedByteBuffer> regions = new AtomicReferenceArray<MappedByteBuffer>(0);
+    private volatile long currentFileSize;
+    private RandomAccessFile file;
+    private FileChannel channel;
+    private ByteArrayOutputStream output;
+    private long nextBlock;
+    private Factory factory;
+
+    public MappedFileBlockStore(File cacheFile) {
+        this(cacheFile, DEFAULT_REGION_SIZE);
+    }
+
+    MappedFileBlockStore(File cacheFile, int regionSize) {
+        if (regionSize <= 0 || regionSize % PAGE_SIZE != 0) {
+            throw new IllegalArgumentException("Region size must be a positive multiple of the page size.");
+        }
+        this.cacheFile = cacheFile;
+        this.regionSize = regionSize;
+        this.regionLocks = new Object[LOCK_STRIPES];
+        for (int i = 0; i < regionLocks.length; i++) {
+            regionLocks[i] = new Object();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "cache '" + cacheFile + "'";
+    }
+
+    @Override
+    public synchronized void open(Runnable runnable, Factory factory) {
+        this.factory = factory;
+        try {
+            cacheFile.getParentFile().mkdirs();
+            file = openRandomAccessFile();
+            channel = file.getChannel();
+            output = new ByteArrayOutputStream();
+            regions = new AtomicReferenceArray<MappedByteBuffer>(0);
+            currentFileSize = file.length();
+            nextBlock = currentFileSize;
+            if (currentFileSize == 0) {
+                runnable.run();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private RandomAccessFile openRandomAccessFile() throws FileNotFoundException {
+        try {
+            return new RandomAccessFile(cacheFile, "rw");
+        } catch (FileNotFoundException e) {
+            return new RandomAccessFile(cacheFile, "r");
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        unmapRegions();
+        try {
+            file.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public synchronized void clear() {
+        unmapRegions();
+        try {
+            file.setLength(0);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        currentFileSize = 0;
+        nextBlock = 0;
+    }
+
+    @Override
+    public void attach(BlockPayload block) {
+        if (block.getBlock() == null) {
+            block.setBlock(new BlockImpl(block));
+        }
+    }
+
+    @Override
+    public void remove(BlockPayload block) {
+        BlockImpl blockImpl = (BlockImpl) block.getBlock();
+        blockImpl.detach();
+    }
+
+    @Override
+    public void flush() {
+    }
+
+    @Override
+    public <T extends BlockPayload> T readFirst(Class<T> payloadType) {
+        return read(BlockPointer.pos(0), payloadType);
+    }
+
+    @Override
+    public <T extends BlockPayload> T read(BlockPointer pos, Class<T> payloadType) {
+        assert !pos.isNull();
+        try {
+            T payload = payloadType.cast(factory.create(payloadType));
+            BlockImpl block = new BlockImpl(payload, pos);
+            block.read();
+            return payload;
+        } catch (CorruptedCacheException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public synchronized void write(BlockPayload block) {
+        BlockImpl blockImpl = (BlockImpl) block.getBlock();
+        try {
+            blockImpl.write();
+        } catch (CorruptedCacheException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private synchronized long alloc(long length) {
+        long pos = nextBlock;
+        long offsetInPage = pos % PAGE_SIZE;
+        if (offsetInPage != 0 && length > PAGE_SIZE - offsetInPage) {
+            pos += PAGE_SIZE - offsetInPage;
+        }
+        nextBlock = pos + length;
+        return pos;
+    }
+
+    /**
+     * Returns the region with the given index, mapped at least up to the given offset within the region.
+     */
+    private MappedByteBuffer region(int index, int requiredLength) throws IOException {
+        AtomicReferenceArray<MappedByteBuffer> regions = regionsWithCapacity(index + 1);
+        MappedByteBuffer region = regions.get(index);
+        if (region != null && region.limit() >= requiredLength) {
+            return region;
+        }
+        synchronized (regionLocks[index % regionLocks.length]) {
+            region = regions.get(index);
+            if (region == null || region.limit() < requiredLength) {
+                // Another thread may still be reading from the old mapping, so it is left to the garbage collector
+                long regionStart = (long) index * regionSize;
+                long length = Math.min(regionSize, currentFileSize - regionStart);
+                region = channel.map(FileChannel.MapMode.READ_ONLY, regionStart, length);
+                regions.set(index, region);
+            }
+            return region;
+        }
+    }
+
+    private void unmapRegions() {
+        AtomicReferenceArray<MappedByteBuffer> current = regions;
+        regions = new AtomicReferenceArray<MappedByteBuffer>(0);
+        for (int i = 0; i < current.length(); i++) {
+            MappedByteBuffer region = current.get(i);
+            if (region != null) {
+                UNMAPPER.accept(region);
+            }
+        }
+    }
+
+    /**
+     * Returns a function which releases a mapping straight away, rather than when the buffer is garbage collected.
+     * Open mappings prevent the file from being truncated, replaced or deleted on some platforms.
+     */
+    private static Consumer<MappedByteBuffer> createUnmapper() {
+        try {
+            // Java 9 and later
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+            Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+            Object unsafe = theUnsafe.get(null);
+            return buffer -> invoke(invokeCleaner, unsafe, buffer);
+        } catch (Exception e) {
+            // Fall through
+        }
+        try {
+            // Java 8
+            Method cleaner = Class.forName("sun.nio.ch.DirectBuffer").getMethod("cleaner");
+            Method clean = Class.forName("sun.misc.Cleaner").getMethod("clean");
+            cleaner.setAccessible(true);
+            clean.setAccessible(true);
+            return buffer -> {
+                Object bufferCleaner = invoke(cleaner, buffer);
+                if (bufferCleaner != null) {
+                    invoke(clean, bufferCleaner);
+                }
+            };
+        } catch (Exception e) {
+            // Leave the mapping to the garbage collector
+            return buffer -> {
+            };
+        }
+    }
+
+    private static Object invoke(Method method, Object target, Object... args) {
+        try {
+            return method.invoke(target, args);
+        } catch (Exception e) {
+            throw UncheckedException.throwAsUncheckedException(e);
+        }
+    }
+
+    private AtomicReferenceArray<MappedByteBuffer> regionsWithCapacity(int capacity) {
+        AtomicReferenceArray<MappedByteBuffer> current = regions;
+        if (current.length() >= capacity) {
+            return current;
+        }
+        synchronized (regionLocks) {
+            current = regions;
+            if (current.length() < capacity) {
+                AtomicReferenceArray<MappedByteBuffer> grown = new AtomicReferenceArray<MappedByteBuffer>(Math.max(capacity, current.length() * 2));
+                for (int i = 0; i < current.length(); i++) {
+                    grown.set(i, current.get(i));
+                }
+                regions = grown;
+                current = grown;
+            }
+            return current;
+        }
+    }
+
+    /**
+     * Reads bytes from the mapped regions of the file, starting at a given position and stopping at the end of the file.
+     */
+    private class RegionInputStream extends InputStream {
+        private final long start;
+        private final long end;
+        private long pos;
+
+        RegionInputStream(long start, long end) {
+            this.start = start;
+            this.end = end;
+            this.pos = start;
+        }
+
+        long getBytesRead() {
+            return pos - start;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (pos >= end) {
+                return -1;
+            }
+            int offset = (int) (pos % regionSize);
+            MappedByteBuffer region = region((int) (pos / regionSize), offset + 1);
+            pos++;
+            return region.get(offset) & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (pos >= end) {
+                return -1;
+            }
+            int offset = (int) (pos % regionSize);
+            int count = (int) Math.min(Math.min(len, end - pos), regionSize - offset);
+            ByteBuffer region = region((int) (pos / regionSize), offset + count).duplicate();
+            BufferCaster.cast(region).position(offset);
+            region.get(b, off, count);
+            pos += count;
+            return count;
+        }
+    }
+
+    private final class BlockImpl extends Block {
+        private static final int HEADER_SIZE = 1 + INT_SIZE; // type, payload size
+        private static final int TAIL_SIZE = INT_SIZE;
+
+        private BlockPointer pos;
+        private int payloadSize;
+
+        private BlockImpl(BlockPayload payload, BlockPointer pos) {
+            this(payload);
+            setPos(pos);
+        }
+
+        public BlockImpl(BlockPayload payload) {
+            super(payload);
+            pos = null;
+            payloadSize = -1;
+        }
+
+        @Override
+        public boolean hasPos() {
+            return pos != null;
+        }
+
+        @Override
+        public BlockPointer getPos() {
+            if (pos == null) {
+                pos = BlockPointer.pos(alloc(getSize()));
+            }
+            return pos;
+        }
+
+        @Override
+        public void setPos(BlockPointer pos) {
+            assert this.pos == null && !pos.isNull();
+            this.pos = pos;
+        }
+
+        @Override
+        public int getSize() {
+            if (payloadSize < 0) {
+                payloadSize = getPayload().getSize();
+            }
+            return payloadSize + HEADER_SIZE + TAIL_SIZE;
+        }
+
+        @Override
+        public void setSize(int size) {
+            int newPayloadSize = size - HEADER_SIZE - TAIL_SIZE;
+            assert newPayloadSize >= payloadSize;
+            payloadSize = newPayloadSize;
+        }
+
+        public void write() throws Exception {
+            long pos = getPos().getPos();
+
+            output.reset();
+            DataOutputStream outputStream = new DataOutputStream(output);
+
+            BlockPayload payload = getPayload();
+
+            // Write header
+            outputStream.writeByte(payload.getType());
+            outputStream.writeInt(payloadSize);
+            long finalSize = pos + HEADER_SIZE + TAIL_SIZE + payloadSize;
+
+            // Write body
+            payload.write(outputStream);
+
+            // Write count
+            outputStream.writeInt(output.size());
+            outputStream.flush();
+
+            ByteBuffer buffer = ByteBuffer.wrap(output.toByteArray());
+            long writePos = pos;
+            while (buffer.hasRemaining()) {
+                writePos += channel.write(buffer, writePos);
+            }
+
+            // Pad
+            if (currentFileSize < finalSize) {
+                if (channel.size() < finalSize) {
+                    file.setLength(finalSize);
+                }
+                currentFileSize = finalSize;
+            }
+        }
+
+        public void read() throws Exception {
+            long pos = getPos().getPos();
+            assert pos >= 0;
+            long fileSize = currentFileSize;
+            if (pos + HEADER_SIZE >= fileSize) {
+                throw blockCorruptedException();
+            }
+
+            RegionInputStream input = new RegionInputStream(pos, fileSize);
+            DataInputStream inputStream = new DataInputStream(input);
+
+            BlockPayload payload = getPayload();
+
+            // Read header
+            byte type = inputStream.readByte();
+            if (type != payload.getType()) {
+                throw blockCorruptedException();
+            }
+
+            // Read body
+            payloadSize = inputStream.readInt();
+            if (pos + HEADER_SIZE + TAIL_SIZE + payloadSize > fileSize) {
+                throw blockCorruptedException();
+            }
+            payload.read(inputStream);
+
+            // Read and verify count
+            long actualCount = input.getBytesRead();
+            long count = inputStream.readInt();
+            if (actualCount != count) {
+                throw blockCorruptedException();
+            }
+        }
+
+        @Override
+        public RuntimeException blockCorruptedException() {
+            return new CorruptedCacheException(String.format("Corrupted %s found in %s.", this,
+                    MappedFileBlockStore.this));
+        }
+    }
+}
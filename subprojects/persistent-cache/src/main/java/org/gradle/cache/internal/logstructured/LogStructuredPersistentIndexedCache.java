@@ -0,0 +1,563 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.cache.internal.logstructured;
+
+import org.gradle.api.UncheckedIOException;
+import org.gradle.cache.internal.FileBackedIndexedCache;
+import org.gradle.internal.UncheckedException;
+import org.gradle.internal.io.BufferCaster;
+import org.gradle.internal.serialize.Serializer;
+import org.gradle.internal.serialize.kryo.KryoBackedDecoder;
+import org.gradle.internal.serialize.kryo.KryoBackedEncoder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * An indexed cache that stores its entries in an append-only log file, and keeps an in-memory index from each key to the latest record for that key.
+ *
+ * <p>Each put or remove appends a record to the end of the log, so writes are sequential. Every record carries a checksum.
+ * When the cache is closed, the index is written to a separate index file, which is loaded and deleted when the cache is opened again,
+ * so reopening the cache does not read the log. Without a usable index file the log is scanned to rebuild the index. The scan stops at the
+ * first incomplete or corrupt record and the log is truncated there, so a crash loses only the records that were not completely written,
+ * rather than the whole cache.</p>
+ *
+ * <p>When the log holds more overwritten or removed records than live ones, it is compacted in the background: the live records are copied
+ * to a new log file, which then replaces the current one. Updates made while the compaction runs are carried over to the new file.</p>
+ */
+public class LogStructuredPersistentIndexedCache<K, V> implements FileBackedIndexedCache<K, V> {
+    private static final Logger LOGGER = LoggerFactory.getLogger(LogStructuredPersistentIndexedCache.class);
+
+    private static final int MAGIC = 0x474c4f47;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 8; // magic, version
+    private static final byte PUT = 1;
+    private static final byte REMOVE = 2;
+    private static final int RECORD_HEADER_SIZE = 1 + 4 + 4; // type, key size, value size
+    private static final int RECORD_OVERHEAD = RECORD_HEADER_SIZE + 4; // header, checksum
+    private static final int WRITE_BUFFER_SIZE = 64 * 1024;
+    private static final long DEFAULT_MIN_COMPACTION_SIZE = 4 * 1024 * 1024;
+    private static final int INDEX_MAGIC = 0x47494458;
+
+    private final File cacheFile;
+    private final File compactedFile;
+    private final File indexFile;
+    private final Serializer<K> keySerializer;
+    private final Serializer<V> valueSerializer;
+    private final Executor compactionExecutor;
+    private final long minCompactionSize;
+    private final ByteBuffer writeBuffer = ByteBuffer.allocate(WRITE_BUFFER_SIZE);
+
+    // All of the following state is guarded by this object
+    private Map<K, Location> index = new HashMap<K, Location>();
+    private RandomAccessFile file;
+    private FileChannel channel;
+    private long flushedSize;
+    private long liveBytes;
+    private FutureTask<Void> compaction;
+    private boolean closing;
+
+    public LogStructuredPersistentIndexedCache(File cacheFile, Serializer<K> keySerializer, Serializer<V> valueSerializer, Executor compactionExecutor) {
+        this(cacheFile, keySerializer, valueSerializer, compactionExecutor, DEFAULT_MIN_COMPACTION_SIZE);
+    }
+
+    public LogStructuredPersistentIndexedCache(File cacheFile, Serializer<K> keySerializer, Serializer<V> valueSerializer, Executor compactionExecutor, long minCompactionSize) {
+        this.cacheFile = cacheFile;
+        this.compactedFile = new File(cacheFile.getParentFile(), cacheFile.getName() + ".compact");
+        this.indexFile = new File(cacheFile.getParentFile(), cacheFile.getName() + ".index");
+        this.keySerializer = keySerializer;
+        this.valueSerializer = valueSerializer;
+        this.compactionExecutor = compactionExecutor;
+        this.minCompactionSize = minCompactionSize;
+        try {
+            open();
+        } catch (Exception e) {
+            throw new UncheckedIOException(String.format("Could not open %s.", this), e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "cache " + cacheFile.getName() + " (" + cacheFile + ")";
+    }
+
+    private synchronized void open() throws Exception {
+        LOGGER.debug("Opening {}", this);
+        cacheFile.getParentFile().mkdirs();
+        openFile();
+        boolean indexLoaded = loadIndex();
+        if (indexLoaded) {
+            return;
+        }
+        if (!hasValidHeader()) {
+            if (channel.size() > 0) {
+                LOGGER.warn("{} is corrupt. Discarding.", this);
+            }
+            channel.truncate(0);
+            writeFully(channel, header(), 0);
+            flushedSize = HEADER_SIZE;
+            return;
+        }
+        scan();
+    }
+
+    private void openFile() throws IOException {
+        file = new RandomAccessFile(cacheFile, "rw");
+        channel = file.getChannel();
+    }
+
+    private boolean hasValidHeader() throws IOException {
+        if (channel.size() < HEADER_SIZE) {
+            return false;
+        }
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        readFully(channel, header, 0);
+        BufferCaster.cast(header).flip();
+        return header.getInt() == MAGIC && header.getInt() == VERSION;
+    }
+
+    private static ByteBuffer header() {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC);
+        header.putInt(VERSION);
+        BufferCaster.cast(header).flip();
+        return header;
+    }
+
+    /**
+     * Loads the index written when the cache was last closed, provided nothing was appended to the log since. The index file is deleted,
+     * so that it cannot be used after the log is modified by a process which does not close the cache cleanly.
+     */
+    private boolean loadIndex() throws IOException {
+        if (!indexFile.isFile()) {
+            return false;
+        }
+        try {
+            Map<K, Location> loadedIndex = new HashMap<K, Location>();
+            CRC32 crc = new CRC32();
+            try (DataInputStream input = new DataInputStream(new CheckedInputStream(new BufferedInputStream(new FileInputStream(indexFile)), crc))) {
+                if (input.readInt() != INDEX_MAGIC || input.readInt() != VERSION) {
+                    return false;
+                }
+                long logSize = input.readLong();
+                if (logSize != channel.size() || !hasValidHeader()) {
+                    return false;
+                }
+                int count = input.readInt();
+                for (int i = 0; i < count; i++) {
+                    byte[] key = new byte[input.readInt()];
+                    input.readFully(key);
+                    loadedIndex.put(keySerializer.read(new KryoBackedDecoder(new ByteArrayInputStream(key))), new Location(input.readLong(), input.readInt()));
+                }
+                int expectedChecksum = (int) crc.getValue();
+                if (input.readInt() != expectedChecksum) {
+                    return false;
+                }
+                index = loadedIndex;
+                flushedSize = logSize;
+                updateLiveBytes();
+                return true;
+            }
+        } catch (Exception e) {
+            LOGGER.debug("Could not load the index of {}. Scanning the log instead.", this, e);
+            return false;
+        } finally {
+            Files.deleteIfExists(indexFile.toPath());
+        }
+    }
+
+    private void writeIndex() throws Exception {
+        CRC32 crc = new CRC32();
+        try (DataOutputStream output = new DataOutputStream(new CheckedOutputStream(new BufferedOutputStream(new FileOutputStream(indexFile)), crc))) {
+            output.writeInt(INDEX_MAGIC);
+            output.writeInt(VERSION);
+            output.writeLong(flushedSize);
+            output.writeInt(index.size());
+            for (Map.Entry<K, Location> entry : index.entrySet()) {
+                byte[] key = encode(keySerializer, entry.getKey());
+                output.writeInt(key.length);
+                output.write(key);
+                output.writeLong(entry.getValue().offset);
+                output.writeInt(entry.getValue().length);
+            }
+            output.flush();
+            output.writeInt((int) crc.getValue());
+        }
+    }
+
+    /**
+     * Rebuilds the index from the records in the log, and discards any incomplete or corrupt records at the end of the log.
+     * A complete record whose key cannot be deserialized is skipped, as the records after it are still valid.
+     */
+    private void scan() throws IOException {
+        long size = channel.size();
+        long pos = HEADER_SIZE;
+        while (pos < size) {
+            byte[] record = readRecord(channel, pos, size);
+            if (record == null) {
+                break;
+            }
+            try {
+                apply(index, decodeKey(record), record[0], new Location(pos, record.length));
+            } catch (Exception e) {
+                LOGGER.debug("Could not read the key of the record at offset {} of {}. Skipping.", pos, this, e);
+            }
+            pos += record.length;
+        }
+        if (pos < size) {
+            LOGGER.warn("{} contains an incomplete or corrupt record at offset {}. Discarding the remaining {} bytes.", this, pos, size - pos);
+            channel.truncate(pos);
+        }
+        flushedSize = pos;
+        updateLiveBytes();
+    }
+
+    private void updateLiveBytes() {
+        liveBytes = 0;
+        for (Location location : index.values()) {
+            liveBytes += location.length;
+        }
+    }
+
+    private static <K> void apply(Map<K, Location> index, K key, byte type, Location location) {
+        if (type == PUT) {
+            index.put(key, location);
+        } else {
+            index.remove(key);
+        }
+    }
+
+    @Override
+    public synchronized V get(K key) {
+        Location location = index.get(key);
+        if (location == null) {
+            return null;
+        }
+        try {
+            if (location.offset + location.length > flushedSize) {
+                flushWrites();
+            }
+            byte[] record = readRecord(channel, location.offset, flushedSize);
+            if (record == null || record.length != location.length) {
+                LOGGER.warn("{} contains a corrupt entry for '{}'. Discarding.", this, key);
+                index.remove(key);
+                liveBytes -= location.length;
+                return null;
+            }
+            int keySize = ByteBuffer.wrap(record, 1, 4).getInt();
+            int valueSize = ByteBuffer.wrap(record, 5, 4).getInt();
+            KryoBackedDecoder decoder = new KryoBackedDecoder(new ByteArrayInputStream(record, RECORD_HEADER_SIZE + keySize, valueSize));
+            return valueSerializer.read(decoder);
+        } catch (Exception e) {
+            throw new UncheckedIOException(String.format("Could not read entry '%s' from %s.", key, this), e);
+        }
+    }
+
+    @Override
+    public synchronized void put(K key, V value) {
+        try {
+            byte[] record = record(PUT, encode(keySerializer, key), encode(valueSerializer, value));
+            Location location = new Location(append(record), record.length);
+            Location previous = index.put(key, location);
+            liveBytes += location.length;
+            if (previous != null) {
+                liveBytes -= previous.length;
+            }
+            maybeCompact();
+        } catch (Exception e) {
+            throw new UncheckedIOException(String.format("Could not add entry '%s' to %s.", key, this), e);
+        }
+    }
+
+    @Override
+    public synchronized void remove(K key) {
+        Location previous = index.get(key);
+        if (previous == null) {
+            return;
+        }
+        try {
+            append(record(REMOVE, encode(keySerializer, key), new byte[0]));
+            index.remove(key);
+            liveBytes -= previous.length;
+            maybeCompact();
+        } catch (Exception e) {
+            throw new UncheckedIOException(String.format("Could not remove entry '%s' from %s.", key, this), e);
+        }
+    }
+
+    @Override
+    public void close() {
+        LOGGER.debug("Closing {}", this);
+        FutureTask<Void> pendingCompaction;
+        synchronized (this) {
+            closing = true;
+            pendingCompaction = compaction;
+        }
+        if (pendingCompaction != null) {
+            try {
+                pendingCompaction.get();
+            } catch (ExecutionException e) {
+                LOGGER.warn("Could not compact {}.", this, e.getCause());
+            } catch (InterruptedException e) {
+                throw UncheckedException.throwAsUncheckedException(e);
+            }
+        }
+        synchronized (this) {
+            try {
+                try {
+                    flushWrites();
+                    writeIndex();
+                } finally {
+                    file.close();
+                }
+            } catch (Exception e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    private long append(byte[] record) throws IOException {
+        if (record.length > writeBuffer.remaining()) {
+            flushWrites();
+        }
+        long offset = flushedSize + writeBuffer.position();
+        if (record.length > writeBuffer.capacity()) {
+            writeFully(channel, ByteBuffer.wrap(record), flushedSize);
+            flushedSize += record.length;
+        } else {
+            writeBuffer.put(record);
+        }
+        return offset;
+    }
+
+    private void flushWrites() throws IOException {
+        if (writeBuffer.position() == 0) {
+            return;
+        }
+        BufferCaster.cast(writeBuffer).flip();
+        int count = writeBuffer.remaining();
+        writeFully(channel, writeBuffer, flushedSize);
+        flushedSize += count;
+        BufferCaster.cast(writeBuffer).clear();
+    }
+
+    private void maybeCompact() throws IOException {
+        long logSize = flushedSize + writeBuffer.position();
+        long garbageBytes = logSize - HEADER_SIZE - liveBytes;
+        if (compaction != null || closing || logSize < minCompactionSize || garbageBytes <= liveBytes) {
+            return;
+        }
+        flushWrites();
+        final Map<K, Location> snapshot = new HashMap<K, Location>(index);
+        final long snapshotEnd = flushedSize;
+        final FileChannel source = channel;
+        compaction = new FutureTask<Void>(() -> {
+            compact(source, snapshot, snapshotEnd);
+            return null;
+        });
+        compactionExecutor.execute(compaction);
+    }
+
+    /**
+     * Copies the given live records to a new log, then takes the lock to copy the records appended since the snapshot was taken and replace the current log.
+     */
+    private void compact(FileChannel source, Map<K, Location> snapshot, long snapshotEnd) throws Exception {
+        LOGGER.debug("Compacting {}", this);
+        try {
+            RandomAccessFile target = new RandomAccessFile(compactedFile, "rw");
+            try {
+                FileChannel targetChannel = target.getChannel();
+                targetChannel.truncate(0);
+                writeFully(targetChannel, header(), 0);
+                long pos = HEADER_SIZE;
+
+                List<Map.Entry<K, Location>> entries = new ArrayList<Map.Entry<K, Location>>(snapshot.entrySet());
+                entries.sort(Comparator.comparingLong(entry -> entry.getValue().offset));
+                Map<K, Location> compactedIndex = new HashMap<K, Location>(snapshot.size());
+                for (Map.Entry<K, Location> entry : entries) {
+                    byte[] record = readRecord(source, entry.getValue().offset, snapshotEnd);
+                    if (record == null) {
+                        continue;
+                    }
+                    writeFully(targetChannel, ByteBuffer.wrap(record), pos);
+                    compactedIndex.put(entry.getKey(), new Location(pos, record.length));
+                    pos += record.length;
+                }
+
+                synchronized (this) {
+                    flushWrites();
+                    long tail = snapshotEnd;
+                    while (tail < flushedSize) {
+                        byte[] record = readRecord(channel, tail, flushedSize);
+                        if (record == null) {
+                            throw new IOException(String.format("Could not read record at offset %s.", tail));
+                        }
+                        writeFully(targetChannel, ByteBuffer.wrap(record), pos);
+                        apply(compactedIndex, decodeKey(record), record[0], new Location(pos, record.length));
+                        tail += record.length;
+                        pos += record.length;
+                    }
+                    // Closed before it replaces the current log, as an open file cannot be replaced on some platforms
+                    target.close();
+                    target = null;
+                    replaceWith(compactedIndex, pos);
+                }
+            } finally {
+                if (target != null) {
+                    target.close();
+                }
+            }
+        } finally {
+            // The cache is closed only once the compaction has completed, so the file is deleted while the cache lock is still held
+            synchronized (this) {
+                compaction = null;
+                Files.deleteIfExists(compactedFile.toPath());
+            }
+        }
+    }
+
+    private void replaceWith(Map<K, Location> compactedIndex, long compactedSize) throws IOException {
+        file.close();
+        boolean replaced = false;
+        try {
+            try {
+                Files.move(compactedFile.toPath(), cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(compactedFile.toPath(), cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+            replaced = true;
+        } catch (IOException e) {
+            LOGGER.warn("Could not replace {} with its compacted log.", this, e);
+        } finally {
+            openFile();
+        }
+        if (replaced) {
+            LOGGER.debug("Compacted {} from {} to {} bytes", this, flushedSize, compactedSize);
+            index = compactedIndex;
+            flushedSize = compactedSize;
+            updateLiveBytes();
+        }
+    }
+
+    private K decodeKey(byte[] record) throws Exception {
+        int keySize = ByteBuffer.wrap(record, 1, 4).getInt();
+        return keySerializer.read(new KryoBackedDecoder(new ByteArrayInputStream(record, RECORD_HEADER_SIZE, keySize)));
+    }
+
+    private static <T> byte[] encode(Serializer<T> serializer, T value) throws Exception {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        KryoBackedEncoder encoder = new KryoBackedEncoder(outputStream);
+        serializer.write(encoder, value);
+        encoder.flush();
+        return outputStream.toByteArray();
+    }
+
+    private static byte[] record(byte type, byte[] key, byte[] value) {
+        ByteBuffer record = ByteBuffer.allocate(RECORD_OVERHEAD + key.length + value.length);
+        record.put(type);
+        record.putInt(key.length);
+        record.putInt(value.length);
+        record.put(key);
+        record.put(value);
+        record.putInt(checksum(record.array(), record.position()));
+        return record.array();
+    }
+
+    private static int checksum(byte[] bytes, int length) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes, 0, length);
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Reads the record at the given offset, returning null when the record is incomplete or corrupt.
+     */
+    private static byte[] readRecord(FileChannel channel, long offset, long end) throws IOException {
+        if (offset + RECORD_OVERHEAD > end) {
+            return null;
+        }
+        ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_SIZE);
+        readFully(channel, header, offset);
+        BufferCaster.cast(header).flip();
+        byte type = header.get();
+        int keySize = header.getInt();
+        int valueSize = header.getInt();
+        long length = (long) RECORD_OVERHEAD + keySize + valueSize;
+        if ((type != PUT && type != REMOVE) || keySize < 0 || valueSize < 0 || offset + length > end) {
+            return null;
+        }
+        ByteBuffer record = ByteBuffer.allocate((int) length);
+        readFully(channel, record, offset);
+        if (record.getInt((int) length - 4) != checksum(record.array(), (int) length - 4)) {
+            return null;
+        }
+        return record.array();
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long offset) throws IOException {
+        while (buffer.hasRemaining()) {
+            int count = channel.read(buffer, offset + buffer.position());
+            if (count < 0) {
+                throw new EOFException();
+            }
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long offset) throws IOException {
+        long pos = offset;
+        while (buffer.hasRemaining()) {
+            pos += channel.write(buffer, pos);
+        }
+    }
+
+    private static class Location {
+        final long offset;
+        final int length;
+
+        Location(long offset, int length) {
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+}
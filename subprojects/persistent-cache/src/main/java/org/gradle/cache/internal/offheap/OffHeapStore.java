@@ -0,0 +1,350 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.cache.internal.offheap;
+
+import org.gradle.internal.io.BufferCaster;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * A size-bounded map from byte array keys to byte array values, held in direct memory outside of the Java heap.
+ *
+ * <p>The store is split into segments, selected by the hash of the key, each guarded by its own lock. A segment keeps its entries in a ring buffer
+ * of direct memory, and indexes them using an open addressing hash table made of primitive arrays, so no objects are retained on the heap per entry.
+ * When a segment is full, new entries overwrite the oldest entries in the segment.</p>
+ *
+ * <p>Each segment counts its entries as they are added, replaced, removed and overwritten, so the statistics of the store are available without scanning the segments.</p>
+ */
+@ThreadSafe
+public class OffHeapStore {
+    private static final int SEGMENT_COUNT = 16;
+    private static final int MIN_SEGMENT_SIZE = 4096;
+
+    private final Segment[] segments;
+    private final long maxBytes;
+
+    public OffHeapStore(long maxBytes) {
+        this.maxBytes = maxBytes;
+        int segmentSize = (int) Math.max(MIN_SEGMENT_SIZE, Math.min(Integer.MAX_VALUE, maxBytes / SEGMENT_COUNT));
+        segments = new Segment[SEGMENT_COUNT];
+        for (int i = 0; i < segments.length; i++) {
+            segments[i] = new Segment(segmentSize);
+        }
+    }
+
+    @Nullable
+    public byte[] get(byte[] key) {
+        long hash = hash(key);
+        return segmentFor(hash).get(key, hash);
+    }
+
+    public void put(byte[] key, byte[] value) {
+        long hash = hash(key);
+        segmentFor(hash).put(key, value, hash);
+    }
+
+    public void remove(byte[] key) {
+        long hash = hash(key);
+        segmentFor(hash).remove(key, hash);
+    }
+
+    /**
+     * Discards all entries. The direct memory held by the store is not freed right away, but once the garbage collector reclaims the buffers of the segments.
+     */
+    public void clear() {
+        for (Segment segment : segments) {
+            segment.clear();
+        }
+    }
+
+    public OffHeapStoreStatistics getStatistics() {
+        long hits = 0;
+        long misses = 0;
+        long entries = 0;
+        long allocatedBytes = 0;
+        long writtenBytes = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                hits += segment.hits;
+                misses += segment.misses;
+                entries += segment.liveEntries;
+                allocatedBytes += segment.buffer == null ? 0 : segment.capacity;
+                writtenBytes += segment.writtenBytes;
+            }
+        }
+        return new OffHeapStoreStatistics(hits, misses, entries, maxBytes, allocatedBytes, writtenBytes);
+    }
+
+    private Segment segmentFor(long hash) {
+        return segments[(int) (hash >>> 60) & (SEGMENT_COUNT - 1)];
+    }
+
+    private static long hash(byte[] key) {
+        // FNV-1a, followed by a finalizer to spread the bits used to select the segment and the slot
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : key) {
+            hash ^= b;
+            hash *= 0x100000001b3L;
+        }
+        return finish(hash);
+    }
+
+    /**
+     * Calculates the same hash as {@link #hash(byte[])} for a key held in the given buffer.
+     */
+    private static long hash(ByteBuffer buffer, int offset, int length) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = offset; i < offset + length; i++) {
+            hash ^= buffer.get(i);
+            hash *= 0x100000001b3L;
+        }
+        return finish(hash);
+    }
+
+    private static long finish(long hash) {
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    private static final class Segment {
+        private static final int ENTRY_HEADER_SIZE = 8; // key size, value size
+        private static final int GAP = -1; // Written instead of the key size where the end of the buffer was skipped
+        private static final int INITIAL_TABLE_SIZE = 256;
+        private static final long EMPTY = -1;
+        private static final long REMOVED = -2;
+
+        private final int capacity;
+        private ByteBuffer buffer;
+        // The position in the ring buffer at which the next entry is written, counting from when the segment was created. Only increases.
+        private long writePosition;
+        // The position of the oldest entry which has not been overwritten yet
+        private long oldestPosition;
+        // The hash table. A slot holds the position of an entry, or EMPTY or REMOVED. The slot of an entry is marked REMOVED when the entry is overwritten.
+        private long[] hashes;
+        private long[] positions;
+        private int usedSlots;
+        private int liveEntries;
+        private long hits;
+        private long misses;
+        private long writtenBytes;
+
+        Segment(int capacity) {
+            this.capacity = capacity;
+            resetTable(INITIAL_TABLE_SIZE);
+        }
+
+        synchronized byte[] get(byte[] key, long hash) {
+            int slot = find(key, hash);
+            if (slot < 0) {
+                misses++;
+                return null;
+            }
+            hits++;
+            int offset = offsetOf(positions[slot]);
+            int keySize = buffer.getInt(offset);
+            byte[] value = new byte[buffer.getInt(offset + 4)];
+            ByteBuffer view = buffer.duplicate();
+            BufferCaster.cast(view).position(offset + ENTRY_HEADER_SIZE + keySize);
+            view.get(value);
+            return value;
+        }
+
+        synchronized void put(byte[] key, byte[] value, long hash) {
+            int size = ENTRY_HEADER_SIZE + key.length + value.length;
+            if (size > capacity) {
+                // Too large to keep. Make sure a previous value is not returned
+                remove(key, hash);
+                return;
+            }
+            if (buffer == null) {
+                buffer = ByteBuffer.allocateDirect(capacity);
+            }
+            long pos = writePosition;
+            int offset = offsetOf(pos);
+            int gapOffset = -1;
+            if (offset + size > capacity) {
+                // Entries never wrap around the end of the buffer, so skip to the start of the buffer
+                gapOffset = offset;
+                pos += capacity - offset;
+                offset = 0;
+            }
+            evictEntriesBefore(pos + size - capacity);
+            if (gapOffset >= 0 && capacity - gapOffset >= ENTRY_HEADER_SIZE) {
+                buffer.putInt(gapOffset, GAP);
+            }
+            if (oldestPosition >= writePosition) {
+                oldestPosition = pos;
+            }
+            writePosition = pos + size;
+            writtenBytes += size;
+
+            ByteBuffer view = buffer.duplicate();
+            BufferCaster.cast(view).position(offset);
+            view.putInt(key.length);
+            view.putInt(value.length);
+            view.put(key);
+            view.put(value);
+
+            int slot = find(key, hash);
+            if (slot < 0) {
+                slot = freeSlot(hash);
+                if (positions[slot] == EMPTY) {
+                    usedSlots++;
+                }
+                hashes[slot] = hash;
+                liveEntries++;
+            }
+            positions[slot] = pos;
+            if (usedSlots > positions.length / 4 * 3) {
+                rehash();
+            }
+        }
+
+        synchronized void remove(byte[] key, long hash) {
+            int slot = find(key, hash);
+            if (slot >= 0) {
+                positions[slot] = REMOVED;
+                liveEntries--;
+            }
+        }
+
+        synchronized void clear() {
+            buffer = null;
+            writePosition = 0;
+            oldestPosition = 0;
+            liveEntries = 0;
+            resetTable(INITIAL_TABLE_SIZE);
+        }
+
+        /**
+         * Removes the entries written before the given position from the hash table, as they are about to be overwritten.
+         * Walks the entries from the oldest one, so each entry is visited once over the lifetime of the segment.
+         */
+        private void evictEntriesBefore(long limit) {
+            while (oldestPosition < limit && oldestPosition < writePosition) {
+                int offset = offsetOf(oldestPosition);
+                int remaining = capacity - offset;
+                if (remaining < ENTRY_HEADER_SIZE) {
+                    oldestPosition += remaining;
+                    continue;
+                }
+                int keySize = buffer.getInt(offset);
+                if (keySize == GAP) {
+                    oldestPosition += remaining;
+                    continue;
+                }
+                int valueSize = buffer.getInt(offset + 4);
+                evict(oldestPosition, hash(buffer, offset + ENTRY_HEADER_SIZE, keySize));
+                oldestPosition += ENTRY_HEADER_SIZE + keySize + valueSize;
+            }
+        }
+
+        private void evict(long position, long hash) {
+            int mask = positions.length - 1;
+            for (int slot = (int) hash & mask, probes = 0; probes < positions.length; slot = (slot + 1) & mask, probes++) {
+                long slotPosition = positions[slot];
+                if (slotPosition == EMPTY) {
+                    // Replaced or removed since it was written
+                    return;
+                }
+                if (slotPosition == position) {
+                    positions[slot] = REMOVED;
+                    liveEntries--;
+                    return;
+                }
+            }
+        }
+
+        private int find(byte[] key, long hash) {
+            int mask = positions.length - 1;
+            for (int slot = (int) hash & mask, probes = 0; probes < positions.length; slot = (slot + 1) & mask, probes++) {
+                long position = positions[slot];
+                if (position == EMPTY) {
+                    return -1;
+                }
+                if (hashes[slot] == hash && isLive(position) && keyMatches(position, key)) {
+                    return slot;
+                }
+            }
+            return -1;
+        }
+
+        private int freeSlot(long hash) {
+            int mask = positions.length - 1;
+            int slot = (int) hash & mask;
+            while (isLive(positions[slot])) {
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
+
+        private boolean isLive(long position) {
+            return position >= 0;
+        }
+
+        private boolean keyMatches(long position, byte[] key) {
+            int offset = offsetOf(position);
+            if (buffer.getInt(offset) != key.length) {
+                return false;
+            }
+            int keyOffset = offset + ENTRY_HEADER_SIZE;
+            for (int i = 0; i < key.length; i++) {
+                if (buffer.get(keyOffset + i) != key[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private int offsetOf(long position) {
+            return (int) (position % capacity);
+        }
+
+        private void rehash() {
+            long[] oldHashes = hashes;
+            long[] oldPositions = positions;
+            int tableSize = INITIAL_TABLE_SIZE;
+            while (tableSize < liveEntries * 2) {
+                tableSize *= 2;
+            }
+            resetTable(tableSize);
+            int mask = tableSize - 1;
+            for (int i = 0; i < oldPositions.length; i++) {
+                if (isLive(oldPositions[i])) {
+                    int slot = (int) oldHashes[i] & mask;
+                    while (positions[slot] != EMPTY) {
+                        slot = (slot + 1) & mask;
+                    }
+                    hashes[slot] = oldHashes[i];
+                    positions[slot] = oldPositions[i];
+                    usedSlots++;
+                }
+            }
+        }
+
+        private void resetTable(int tableSize) {
+            hashes = new long[tableSize];
+            positions = new long[tableSize];
+            Arrays.fill(positions, EMPTY);
+            usedSlots = 0;
+        }
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.cache.internal.offheap;
+
+/**
+ * A snapshot of the usage of an {@link OffHeapStore}.
+ */
+public class OffHeapStoreStatistics {
+    private final long hitCount;
+    private final long missCount;
+    private final long entryCount;
+    private final long maxBytes;
+    private final long allocatedBytes;
+    private final long writtenBytes;
+
+    public OffHeapStoreStatistics(long hitCount, long missCount, long entryCount, long maxBytes, long allocatedBytes, long writtenBytes) {
+        this.hitCount = hitCount;
+        this.missCount = missCount;
+        this.entryCount = entryCount;
+        this.maxBytes = maxBytes;
+        this.allocatedBytes = allocatedBytes;
+        this.writtenBytes = writtenBytes;
+    }
+
+    public long getHitCount() {
+        return hitCount;
+    }
+
+    public long getMissCount() {
+        return missCount;
+    }
+
+    public long getEntryCount() {
+        return entryCount;
+    }
+
+    /**
+     * The maximum number of bytes of direct memory that the store may allocate.
+     */
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     * The number of bytes of direct memory currently allocated by the store.
+     */
+    public long getAllocatedBytes() {
+        return allocatedBytes;
+    }
+
+    /**
+     * The total number of bytes written to the store, including entries that have since been evicted.
+     */
+    public long getWrittenBytes() {
+        return writtenBytes;
+    }
+
+    @Override
+    public String toString() {
+        return "OffHeapStoreStatistics{hits=" + hitCount
+            + ", misses=" + missCount
+            + ", entries=" + entryCount
+            + ", maxBytes=" + maxBytes
+            + ", allocatedBytes=" + allocatedBytes
+            + ", writtenBytes=" + writtenBytes
+            + "}";
+    }
+}
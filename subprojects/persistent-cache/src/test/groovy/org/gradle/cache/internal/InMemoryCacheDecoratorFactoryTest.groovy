@@ -20,10 +20,13 @@ import org.gradle.cache.AsyncCacheAccess
 import org.gradle.cache.CrossProcessCacheAccess
 import org.gradle.cache.MultiProcessSafePersistentIndexedCache
 import org.gradle.internal.Factory
+import org.gradle.internal.metrics.MetricsRegistry
+import org.gradle.internal.serialize.DefaultSerializer
 import spock.lang.Specification
 
 class InMemoryCacheDecoratorFactoryTest extends Specification {
-    def cacheFactory = new DefaultInMemoryCacheDecoratorFactory(false, new TestCrossBuildInMemoryCacheFactory())
+    def metricsRegistry = new MetricsRegistry()
+    def cacheFactory = new DefaultInMemoryCacheDecoratorFactory(false, new TestCrossBuildInMemoryCacheFactory(), metricsRegistry)
     def target = Mock(MultiProcessSafePersistentIndexedCache)
     def asyncCacheAccess = Mock(AsyncCacheAccess)
     def crossProcessCacheAccess = Mock(CrossProcessCacheAccess)
@@ -200,4 +203,59 @@ class InMemoryCacheDecoratorFactoryTest extends Specification {
         0 * target._
     }
 
+    def "caches serialized result from backing cache outside of the heap and reuses for other instances with the same cache id"() {
+        given:
+        def serializer = new DefaultSerializer<String>()
+        def cache = cacheFactory.offHeapDecorator(serializer, serializer, 1024 * 1024, true).decorate("path/fileSnapshots.bin", "fileSnapshots", target, crossProcessCacheAccess, asyncCacheAccess)
+
+        when:
+        def result = cache.get("key")
+        def missing = cache.get("missing")
+
+        then:
+        result == "result"
+        missing == null
+
+        and:
+        2 * crossProcessCacheAccess.withFileLock(_) >> { Factory task -> task.create() }
+        2 * asyncCacheAccess.read(_) >> { Factory task -> task.create() }
+        1 * target.get("key") >> "result"
+        1 * target.get("missing") >> null
+        0 * target._
+
+        when:
+        def cache2 = cacheFactory.offHeapDecorator(serializer, serializer, 1024 * 1024, true).decorate("path/fileSnapshots.bin", "fileSnapshots", target, crossProcessCacheAccess, asyncCacheAccess)
+        result = cache2.get("key")
+        missing = cache2.get("missing")
+
+        then:
+        result == "result"
+        missing == null
+
+        and:
+        2 * crossProcessCacheAccess.withFileLock(_) >> { Factory task -> task.create() }
+        0 * target._
+    }
+
+    def "publishes statistics of off-heap cache"() {
+        given:
+        def serializer = new DefaultSerializer<String>()
+        def cache = cacheFactory.offHeapDecorator(serializer, serializer, 1024 * 1024, true).decorate("path/fileSnapshots.bin", "fileSnapshots", target, crossProcessCacheAccess, asyncCacheAccess)
+        crossProcessCacheAccess.withFileLock(_) >> { Factory task -> task.create() }
+        asyncCacheAccess.read(_) >> { Factory task -> task.create() }
+        target.get("key") >> "result"
+
+        when:
+        cache.get("key")
+        cache.get("key")
+        def writer = new StringWriter()
+        metricsRegistry.writeOpenMetrics(writer)
+
+        then:
+        def metrics = writer.toString()
+        metrics.contains('gradle_off_heap_cache_entries{cache="path/fileSnapshots.bin"} 1\n')
+        metrics.contains('gradle_off_heap_cache_lookups_total{cache="path/fileSnapshots.bin",result="hit"} 1\n')
+        metrics.contains('gradle_off_heap_cache_lookups_total{cache="path/fileSnapshots.bin",result="miss"} 1\n')
+        metrics.contains('gradle_off_heap_cache_bytes{cache="path/fileSnapshots.bin"} 1048576\n')
+    }
 }
@@ -16,6 +16,7 @@
 
 package org.gradle.cache.internal.btree
 
+import org.gradle.internal.hash.Hashing
 import org.gradle.internal.serialize.BaseSerializerFactory
 import org.gradle.internal.serialize.Decoder
 import org.gradle.internal.serialize.Encoder
@@ -24,21 +25,21 @@ import spock.lang.Specification
 
 class KeyHasherTest extends Specification {
     def "can reuse to hash more than one key"() {
-        def hasher = new KeyHasher(BaseSerializerFactory.LONG_SERIALIZER)
+        def hasher = new KeyHasher(BaseSerializerFactory.LONG_SERIALIZER, Hashing.md5())
 
         expect:
         hasher.getHashCode(12L) != hasher.getHashCode(11L)
         hasher.getHashCode(12L) == hasher.getHashCode(12L)
-        hasher.getHashCode(12L) == new KeyHasher(BaseSerializerFactory.LONG_SERIALIZER).getHashCode(12L)
+        hasher.getHashCode(12L) == new KeyHasher(BaseSerializerFactory.LONG_SERIALIZER, Hashing.md5()).getHashCode(12L)
     }
 
     def "can reuse to hash large key"() {
-        def hasher = new KeyHasher(new InefficientSerializer())
+        def hasher = new KeyHasher(new InefficientSerializer(), Hashing.md5())
 
         expect:
         hasher.getHashCode(12000L) != hasher.getHashCode(12001L)
         hasher.getHashCode(12000L) == hasher.getHashCode(12000L)
-        hasher.getHashCode(12000L) == new KeyHasher(new InefficientSerializer()).getHashCode(12000L)
+        hasher.getHashCode(12000L) == new KeyHasher(new InefficientSerializer(), Hashing.md5()).getHashCode(12000L)
     }
 
     static class InefficientSerializer implements Serializer<Long> {
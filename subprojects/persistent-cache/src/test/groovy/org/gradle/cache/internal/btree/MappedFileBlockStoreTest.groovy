@@ -0,0 +1,197 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.cache.internal.btree
+
+import org.gradle.internal.serialize.DefaultSerializer
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.junit.Rule
+import spock.lang.Specification
+
+import java.io.DataInputStream
+import java.io.DataOutputStream
+import java.util.concurrent.CopyOnWriteArrayList
+
+class MappedFileBlockStoreTest extends Specification {
+    @Rule
+    TestNameTestDirectoryProvider tmpDir = new TestNameTestDirectoryProvider(getClass())
+    def keySerializer = new DefaultSerializer<String>()
+    def valueSerializer = new DefaultSerializer<String>()
+    def cacheFile = tmpDir.file("cache.bin")
+
+    def "persists entries across regions"() {
+        given:
+        def cache = mappedCache()
+        100.times { cache.put("key_$it", "value_$it" * it) }
+
+        expect:
+        100.times { assert cache.get("key_$it") == "value_$it" * it }
+        cache.verify()
+
+        when:
+        cache.close()
+        cache = mappedCache()
+
+        then:
+        100.times { assert cache.get("key_$it") == "value_$it" * it }
+        cache.get("unknown") == null
+
+        cleanup:
+        cache?.close()
+    }
+
+    def "can read and update values larger than a region"() {
+        given:
+        def cache = mappedCache()
+        def large = "0123456789" * (MappedFileBlockStore.PAGE_SIZE)
+
+        when:
+        cache.put("large", large)
+        cache.put("small", "small")
+
+        then:
+        cache.get("large") == large
+        cache.get("small") == "small"
+
+        when:
+        cache.put("large", large.reverse())
+
+        then:
+        cache.get("large") == large.reverse()
+        cache.verify()
+
+        cleanup:
+        cache.close()
+    }
+
+    def "uses the same file format as the file backed store"() {
+        given:
+        def mapped = mappedCache()
+        10.times { mapped.put("mapped_$it", "value_$it") }
+        mapped.close()
+
+        when:
+        def fileBacked = new BTreePersistentIndexedCache<String, String>(cacheFile, keySerializer, valueSerializer, new FileBackedBlockStore(cacheFile), (short) 4, 100)
+        10.times { fileBacked.put("file_$it", "value_$it") }
+
+        then:
+        10.times { assert fileBacked.get("mapped_$it") == "value_$it" }
+        fileBacked.verify()
+
+        when:
+        fileBacked.close()
+        mapped = mappedCache()
+
+        then:
+        10.times { assert mapped.get("mapped_$it") == "value_$it" }
+        10.times { assert mapped.get("file_$it") == "value_$it" }
+
+        cleanup:
+        mapped.close()
+    }
+
+    def "multiple threads can read blocks from the store at the same time"() {
+        given:
+        def store = new MappedFileBlockStore(cacheFile, MappedFileBlockStore.PAGE_SIZE)
+        store.open({}, { type -> new TestPayload() })
+        def positions = (0..<200).collect { index ->
+            def payload = new TestPayload(value: "value_$index" * (index % 50 + 1))
+            store.attach(payload)
+            store.write(payload)
+            payload.pos
+        }
+        def failures = new CopyOnWriteArrayList<Throwable>()
+
+        when:
+        def threads = (0..<8).collect { thread ->
+            Thread.start {
+                try {
+                    positions.eachWithIndex { pos, index ->
+                        assert store.read(pos, TestPayload).value == "value_$index" * (index % 50 + 1)
+                    }
+                } catch (Throwable t) {
+                    failures << t
+                }
+            }
+        }
+        threads*.join()
+
+        then:
+        failures.empty
+
+        cleanup:
+        store.close()
+    }
+
+    def "clear truncates the file"() {
+        given:
+        def cache = mappedCache()
+        100.times { cache.put("key_$it", "value_$it") }
+        assert cacheFile.length() > 0
+
+        when:
+        cache.clear()
+
+        then:
+        cache.get("key_1") == null
+        cacheFile.length() < MappedFileBlockStore.PAGE_SIZE
+
+        cleanup:
+        cache.close()
+    }
+
+    def "file can be replaced after the store is closed"() {
+        given:
+        def cache = mappedCache()
+        100.times { cache.put("key_$it", "value_$it") }
+        cache.get("key_1")
+
+        when:
+        cache.close()
+
+        then:
+        cacheFile.delete()
+        !cacheFile.exists()
+    }
+
+    private static class TestPayload extends BlockPayload {
+        String value = ""
+
+        @Override
+        protected int getSize() {
+            return 2 + value.length() * 3
+        }
+
+        @Override
+        protected byte getType() {
+            return (byte) 0x77
+        }
+
+        @Override
+        protected void read(DataInputStream inputStream) throws Exception {
+            value = inputStream.readUTF()
+        }
+
+        @Override
+        protected void write(DataOutputStream outputStream) throws Exception {
+            outputStream.writeUTF(value)
+        }
+    }
+
+    private BTreePersistentIndexedCache<String, String> mappedCache() {
+        new BTreePersistentIndexedCache<String, String>(cacheFile, keySerializer, valueSerializer, new MappedFileBlockStore(cacheFile, MappedFileBlockStore.PAGE_SIZE), (short) 4, 100)
+    }
+}
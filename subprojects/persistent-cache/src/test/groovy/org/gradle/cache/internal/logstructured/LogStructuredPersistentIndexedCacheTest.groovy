@@ -0,0 +1,212 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.cache.internal.logstructured
+
+import org.gradle.internal.serialize.DefaultSerializer
+import org.gradle.test.fixtures.concurrent.ConcurrentSpec
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.junit.Rule
+
+class LogStructuredPersistentIndexedCacheTest extends ConcurrentSpec {
+    @Rule
+    TestNameTestDirectoryProvider tmpDir = new TestNameTestDirectoryProvider(getClass())
+    def serializer = new DefaultSerializer<String>()
+    def cacheFile = tmpDir.file("cache.log")
+
+    def "persists added, updated and removed entries"() {
+        given:
+        def cache = createCache()
+
+        when:
+        cache.put("a", "1")
+        cache.put("b", "2")
+        cache.put("a", "3")
+        cache.remove("b")
+
+        then:
+        cache.get("a") == "3"
+        cache.get("b") == null
+        cache.get("unknown") == null
+
+        when:
+        cache.close()
+        cache = createCache()
+
+        then:
+        cache.get("a") == "3"
+        cache.get("b") == null
+
+        cleanup:
+        cache?.close()
+    }
+
+    def "discards incomplete record at end of log and keeps earlier entries"() {
+        given:
+        def cache = createCache()
+        cache.put("a", "1")
+        cache.put("b", "2")
+        cache.close()
+        new RandomAccessFile(cacheFile, "rw").withCloseable { it.setLength(it.length() - 2) }
+
+        when:
+        cache = createCache()
+
+        then:
+        cache.get("a") == "1"
+        cache.get("b") == null
+
+        when:
+        cache.put("c", "3")
+        cache.close()
+        cache = createCache()
+
+        then:
+        cache.get("a") == "1"
+        cache.get("c") == "3"
+
+        cleanup:
+        cache?.close()
+    }
+
+    def "discards log with unknown format"() {
+        given:
+        cacheFile.text = "not a log"
+
+        when:
+        def cache = createCache()
+
+        then:
+        cache.get("a") == null
+
+        when:
+        cache.put("a", "1")
+
+        then:
+        cache.get("a") == "1"
+
+        cleanup:
+        cache?.close()
+    }
+
+    def "compacts log in the background while entries are updated"() {
+        given:
+        def cache = createCache(executor)
+
+        when:
+        20.times { round ->
+            100.times { cache.put("key_$it", "value_${it}_$round") }
+            cache.remove("key_0")
+        }
+        cache.close()
+
+        then:
+        // Around 2000 records were written, of which fewer than 100 are live
+        cacheFile.length() < 16 * 1024
+        !tmpDir.file("cache.log.compact").exists()
+
+        when:
+        cache = createCache(executor)
+
+        then:
+        cache.get("key_0") == null
+        (1..<100).each { assert cache.get("key_$it") == "value_${it}_19" }
+
+        cleanup:
+        cache?.close()
+    }
+
+    def "reopens cache from the index written on close"() {
+        given:
+        def cache = createCache()
+        cache.put("a", "1")
+        cache.put("b", "2")
+        cache.close()
+
+        expect:
+        tmpDir.file("cache.log.index").exists()
+
+        when:
+        cache = createCache()
+
+        then:
+        !tmpDir.file("cache.log.index").exists()
+        cache.get("a") == "1"
+        cache.get("b") == "2"
+
+        cleanup:
+        cache?.close()
+    }
+
+    def "scans log when it was modified after the index was written"() {
+        given:
+        def cache = createCache()
+        cache.put("a", "1")
+        cache.close()
+        def index = tmpDir.file("cache.log.index")
+        def savedIndex = index.bytes
+        cache = createCache()
+        cache.put("b", "2")
+        cache.close()
+        index.bytes = savedIndex
+
+        when:
+        cache = createCache()
+
+        then:
+        cache.get("a") == "1"
+        cache.get("b") == "2"
+
+        cleanup:
+        cache?.close()
+    }
+
+    def "skips record with unreadable key and keeps later records"() {
+        given:
+        def failingSerializer = new DefaultSerializer<String>() {
+            @Override
+            String read(org.gradle.internal.serialize.Decoder decoder) {
+                def value = super.read(decoder)
+                if (value == "broken") {
+                    throw new IllegalStateException("cannot read key")
+                }
+                return value
+            }
+        }
+        def cache = createCache()
+        cache.put("a", "1")
+        cache.put("broken", "2")
+        cache.put("c", "3")
+        cache.close()
+        tmpDir.file("cache.log.index").delete()
+        def length = cacheFile.length()
+
+        when:
+        cache = new LogStructuredPersistentIndexedCache<String, String>(cacheFile, failingSerializer, serializer, { it.run() }, 1024)
+
+        then:
+        cacheFile.length() == length
+        cache.get("a") == "1"
+        cache.get("c") == "3"
+
+        cleanup:
+        cache?.close()
+    }
+
+    private LogStructuredPersistentIndexedCache<String, String> createCache(executor = { it.run() }) {
+        new LogStructuredPersistentIndexedCache<String, String>(cacheFile, serializer, serializer, executor, 1024)
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.cache.internal.offheap
+
+import spock.lang.Specification
+
+class OffHeapStoreTest extends Specification {
+    def store = new OffHeapStore(1024 * 1024)
+
+    def "can add, update and remove entries"() {
+        when:
+        store.put(bytes("a"), bytes("1"))
+        store.put(bytes("b"), bytes("2"))
+        store.put(bytes("a"), bytes("3"))
+        store.remove(bytes("b"))
+
+        then:
+        string(store.get(bytes("a"))) == "3"
+        store.get(bytes("b")) == null
+        store.get(bytes("unknown")) == null
+    }
+
+    def "keeps many entries"() {
+        when:
+        10000.times { store.put(bytes("key_$it"), bytes("value_$it")) }
+
+        then:
+        (0..<10000).every { string(store.get(bytes("key_$it"))) == "value_$it" }
+        store.statistics.entryCount == 10000
+    }
+
+    def "discards oldest entries when full"() {
+        given:
+        def store = new OffHeapStore(16 * 4096)
+
+        when:
+        10000.times { store.put(bytes("key_$it"), new byte[100]) }
+
+        then:
+        store.get(bytes("key_0")) == null
+        store.get(bytes("key_9999")) != null
+        store.statistics.entryCount < 1000
+        store.statistics.allocatedBytes <= 16 * 4096
+    }
+
+    def "does not keep entries that are larger than a segment"() {
+        given:
+        def store = new OffHeapStore(16 * 4096)
+        store.put(bytes("key"), bytes("small"))
+
+        when:
+        store.put(bytes("key"), new byte[8192])
+
+        then:
+        store.get(bytes("key")) == null
+    }
+
+    def "counts entries as they are replaced, removed and overwritten"() {
+        given:
+        def store = new OffHeapStore(16 * 4096)
+
+        when:
+        store.put(bytes("a"), bytes("1"))
+        store.put(bytes("b"), bytes("2"))
+        store.put(bytes("a"), bytes("3"))
+        store.remove(bytes("b"))
+        store.remove(bytes("unknown"))
+
+        then:
+        store.statistics.entryCount == 1
+
+        when:
+        10000.times { store.put(bytes("key_$it"), new byte[100 + it % 50]) }
+
+        then:
+        store.statistics.entryCount == (0..<10000).count { store.get(bytes("key_$it")) != null } + (store.get(bytes("a")) == null ? 0 : 1)
+    }
+
+    def "discards all entries when cleared"() {
+        given:
+        store.put(bytes("a"), bytes("1"))
+
+        when:
+        store.clear()
+
+        then:
+        store.get(bytes("a")) == null
+        store.statistics.entryCount == 0
+        store.statistics.allocatedBytes == 0
+    }
+
+    def "tracks hits and misses"() {
+        given:
+        store.put(bytes("a"), bytes("1"))
+
+        when:
+        store.get(bytes("a"))
+        store.get(bytes("a"))
+        store.get(bytes("b"))
+
+        then:
+        store.statistics.hitCount == 2
+        store.statistics.missCount == 1
+        store.statistics.writtenBytes == 8 + 2
+    }
+
+    private static byte[] bytes(String value) {
+        value.getBytes("utf-8")
+    }
+
+    private static String string(byte[] bytes) {
+        new String(bytes, "utf-8")
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.hash;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Compares the throughput of hashing a batch of files by streaming each file through {@link DefaultStreamHasher} on a single thread,
+ * with reading each file through its channel, and with hashing the batch using a {@link ParallelFileHasher}.
+ */
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@State(Scope.Benchmark)
+public class FileHashingBenchmark {
+    private static final int TOTAL_BYTES = 64 * 1024 * 1024;
+
+    @Param({"1024", "65536", "4194304"})
+    int fileSize;
+
+    @Param({"4"})
+    int workers;
+
+    File directory;
+    List<File> files;
+    DefaultStreamHasher streamHasher;
+    FileHasher fileHasher;
+    ExecutorService executor;
+    BatchFileHasher parallelFileHasher;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        directory = Files.createTempDirectory("file-hashing").toFile();
+        files = new ArrayList<>();
+        Random random = new Random(1234);
+        byte[] content = new byte[fileSize];
+        for (int i = 0; i < TOTAL_BYTES / fileSize; i++) {
+            random.nextBytes(content);
+            File file = new File(directory, "file" + i);
+            Files.write(file.toPath(), content);
+            files.add(file);
+        }
+        streamHasher = new DefaultStreamHasher();
+        fileHasher = new DefaultFileHasher(streamHasher);
+        executor = Executors.newFixedThreadPool(workers - 1);
+        parallelFileHasher = new ParallelFileHasher(fileHasher, executor, workers);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        executor.shutdownNow();
+        for (File file : files) {
+            file.delete();
+        }
+        directory.delete();
+    }
+
+    @Benchmark
+    public void streamHasher(Blackhole blackhole) throws IOException {
+        for (File file : files) {
+            try (InputStream inputStream = new FileInputStream(file)) {
+                blackhole.consume(streamHasher.hash(inputStream));
+            }
+        }
+    }
+
+    @Benchmark
+    public void fileHasher(Blackhole blackhole) {
+        for (File file : files) {
+            blackhole.consume(fileHasher.hash(file));
+        }
+    }
+
+    @Benchmark
+    public void parallelFileHasher(Blackhole blackhole) {
+        List<FileHashRequest> requests = new ArrayList<>(files.size());
+        for (File file : files) {
+            requests.add(new FileHashRequest(file, fileSize, 0));
+        }
+        parallelFileHasher.hashAll(requests);
+        for (FileHashRequest request : requests) {
+            blackhole.consume(request.getHash());
+        }
+    }
+}
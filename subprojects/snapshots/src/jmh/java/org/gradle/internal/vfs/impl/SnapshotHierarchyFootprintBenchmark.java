@@ -0,0 +1,107 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.vfs.impl;
+
+import org.gradle.internal.file.FileMetadata.AccessType;
+import org.gradle.internal.file.impl.DefaultFileMetadata;
+import org.gradle.internal.hash.HashCode;
+import org.gradle.internal.hash.Hashing;
+import org.gradle.internal.snapshot.CaseSensitivity;
+import org.gradle.internal.snapshot.CompleteDirectorySnapshot;
+import org.gradle.internal.snapshot.CompleteFileSystemLocationSnapshot;
+import org.gradle.internal.snapshot.RegularFileSnapshot;
+import org.gradle.internal.snapshot.SnapshotHierarchy;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Measures the heap retained by a {@link SnapshotHierarchy} holding the snapshots of a synthetic source tree.
+ *
+ * The retained heap is reported as the {@code retainedBytesPerFile} counter, next to the time it takes to build the hierarchy.
+ */
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@BenchmarkMode(Mode.SingleShotTime)
+@State(Scope.Benchmark)
+public class SnapshotHierarchyFootprintBenchmark {
+    private static final String ROOT = File.separator + "workspace" + File.separator + "project";
+
+    @Param({"100"})
+    int directories;
+
+    @Param({"1000"})
+    int filesPerDirectory;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Footprint {
+        public long retainedBytesPerFile;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            retainedBytesPerFile = 0;
+        }
+    }
+
+    @Benchmark
+    public SnapshotHierarchy buildHierarchy(Footprint footprint) {
+        long usedBefore = usedHeap();
+        SnapshotHierarchy hierarchy = DefaultSnapshotHierarchy.empty(CaseSensitivity.CASE_SENSITIVE);
+        for (int directory = 0; directory < directories; directory++) {
+            CompleteDirectorySnapshot snapshot = directorySnapshot(directory);
+            hierarchy = hierarchy.store(snapshot.getAbsolutePath(), snapshot, SnapshotHierarchy.NodeDiffListener.NOOP);
+        }
+        long usedAfter = usedHeap();
+        footprint.retainedBytesPerFile = (usedAfter - usedBefore) / ((long) directories * filesPerDirectory);
+        return hierarchy;
+    }
+
+    private CompleteDirectorySnapshot directorySnapshot(int directory) {
+        String name = "dir" + directory;
+        String absolutePath = ROOT + File.separator + name;
+        List<CompleteFileSystemLocationSnapshot> children = new ArrayList<>(filesPerDirectory);
+        for (int file = 0; file < filesPerDirectory; file++) {
+            String childName = String.format("File%06d.java", file);
+            HashCode contentHash = Hashing.hashString(absolutePath + childName);
+            children.add(new RegularFileSnapshot(absolutePath + File.separator + childName, childName, contentHash, DefaultFileMetadata.file(file, file, AccessType.DIRECT)));
+        }
+        return new CompleteDirectorySnapshot(absolutePath, name, children, Hashing.hashString(absolutePath), AccessType.DIRECT);
+    }
+
+    private static long usedHeap() {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.internal.hash;
+
+import com.google.common.util.concurrent.Uninterruptibles;
+
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A {@link FileHasher} that hashes batches of files using a bounded number of workers.
+ *
+ * <p>Single files are hashed on the calling thread. For a batch, up to {@code maxWorkers - 1} helper tasks are submitted to the given executor and
+ * the calling thread hashes files alongside them, taking the next file from the batch until there are none left. The calling thread waits only for the
+ * files that have been started by a helper, so a busy executor does not hold up the caller.</p>
+ *
+ * <p>When called from a worker of a {@link java.util.concurrent.ForkJoinPool}, the batch is instead split into tasks of that pool,
+ * so that the worker runs other tasks of the pool while it waits for the files to be hashed, rather than blocking.</p>
+ *
+ * <p>Each file is hashed by the delegate, so that a caching delegate records the results as usual.</p>
+ */
+public class ParallelFileHasher implements BatchFileHasher {
+    private final FileHasher delegate;
+    private final Executor executor;
+    private final int maxWorkers;
+
+    public ParallelFileHasher(FileHasher delegate, Executor executor, int maxWorkers) {
+        this.delegate = delegate;
+        this.executor = executor;
+        this.maxWorkers = maxWorkers;
+    }
+
+    @Override
+    public HashCode hash(File file) {
+        return delegate.hash(file);
+    }
+
+    @Override
+    public HashCode hash(File file, long length, long lastModified) {
+        return delegate.hash(file, length, lastModified);
+    }
+
+    @Override
+    public void hashAll(List<FileHashRequest> requests) {
+        int helpers = Math.min(maxWorkers, requests.size()) - 1;
+        if (helpers <= 0) {
+            for (FileHashRequest request : requests) {
+                request.complete(delegate);
+            }
+            return;
+        }
+        if (ForkJoinTask.inForkJoinPool()) {
+            new HashRange(requests, 0, requests.size()).invoke();
+            return;
+        }
+        Batch batch = new Batch(requests);
+        for (int i = 0; i < helpers; i++) {
+            try {
+                executor.execute(batch);
+            } catch (RejectedExecutionException e) {
+                // Hash the remaining files on the calling thread
+                break;
+            }
+        }
+        batch.run();
+        batch.await();
+    }
+
+    @Override
+    public String toString() {
+        return "{parallel hasher: " + delegate + "}";
+    }
+
+    private class Batch implements Runnable {
+        private final List<FileHashRequest> requests;
+        private final AtomicInteger next = new AtomicInteger();
+        private final CountDownLatch completed;
+
+        Batch(List<FileHashRequest> requests) {
+            this.requests = requests;
+            this.completed = new CountDownLatch(requests.size());
+        }
+
+        @Override
+        public void run() {
+            int index;
+            while ((index = next.getAndIncrement()) < requests.size()) {
+                try {
+                    requests.get(index).complete(delegate);
+                } finally {
+                    completed.countDown();
+                }
+            }
+        }
+
+        void await() {
+            // Also makes the results recorded by the helpers visible to the calling thread
+            Uninterruptibles.awaitUninterruptibly(completed);
+        }
+    }
+
+    private class HashRange extends RecursiveAction {
+        private final List<FileHashRequest> requests;
+        private final int start;
+        private final int end;
+
+        HashRange(List<FileHashRequest> requests, int start, int end) {
+            this.requests = requests;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected void compute() {
+            if (end - start == 1) {
+                requests.get(start).complete(delegate);
+                return;
+            }
+            int middle = (start + end) >>> 1;
+            invokeAll(new HashRange(requests, start, middle), new HashRange(requests, middle, end));
+        }
+    }
+}
@@ -16,16 +16,47 @@
 
 package org.gradle.internal.snapshot;
 
-import java.util.ArrayList;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.function.BiConsumer;
-import java.util.stream.Collectors;
 
+/**
+ * A child map with multiple children, sorted by path.
+ *
+ * The paths and the children are kept in two arrays instead of a list of {@link Entry} instances, so the map only retains two objects besides its children.
+ */
 public abstract class AbstractListChildMap<T> implements ChildMap<T> {
-    protected final List<Entry<T>> entries;
+    protected final String[] paths;
+    protected final Object[] values;
 
     protected AbstractListChildMap(List<Entry<T>> entries) {
-        this.entries = entries;
+        int size = entries.size();
+        this.paths = new String[size];
+        this.values = new Object[size];
+        for (int i = 0; i < size; i++) {
+            Entry<T> entry = entries.get(i);
+            paths[i] = entry.getPath();
+            values[i] = entry.getValue();
+        }
+    }
+
+    /**
+     * Creates a child map from the given sorted paths and children, taking ownership of the arrays.
+     */
+    protected AbstractListChildMap(String[] paths, Object[] values) {
+        this.paths = paths;
+        this.values = values;
+    }
+
+    protected int size() {
+        return paths.length;
+    }
+
+    @SuppressWarnings("unchecked")
+    protected T valueAt(int index) {
+        return (T) values[index];
     }
 
     @Override
@@ -34,28 +65,41 @@ public boolean isEmpty() {
     }
 
     @Override
+    @SuppressWarnings("unchecked")
     public List<T> values() {
-        return entries.stream()
-            .map(Entry::getValue)
-            .collect(Collectors.toList());
+        return (List<T>) Collections.unmodifiableList(Arrays.asList(values));
     }
 
+    /**
+     * Returns a view of the children. The view does not copy the children, and only creates an entry when it is accessed.
+     * Prefer {@link #visitChildren(BiConsumer)} to iterate over all children.
+     */
     @Override
     public List<Entry<T>> entries() {
-        return entries;
+        return new AbstractList<Entry<T>>() {
+            @Override
+            public Entry<T> get(int index) {
+                return new Entry<>(paths[index], valueAt(index));
+            }
+
+            @Override
+            public int size() {
+                return paths.length;
+            }
+        };
     }
 
     @Override
     public void visitChildren(BiConsumer<String, ? super T> visitor) {
-        for (Entry<T> child : entries) {
-            visitor.accept(child.getPath(), child.getValue());
+        for (int i = 0; i < size(); i++) {
+            visitor.accept(paths[i], valueAt(i));
         }
     }
 
     protected int findChildIndexWithCommonPrefix(VfsRelativePath targetPath, CaseSensitivity caseSensitivity) {
         return SearchUtil.binarySearch(
-            entries,
-            candidate -> targetPath.compareToFirstSegment(candidate.getPath(), caseSensitivity)
+            Arrays.asList(paths),
+            candidate -> targetPath.compareToFirstSegment(candidate, caseSensitivity)
         );
     }
 
@@ -63,9 +107,8 @@ protected int findChildIndexWithCommonPrefix(VfsRelativePath targetPath, CaseSen
     public <RESULT> ChildMap<RESULT> invalidate(VfsRelativePath targetPath, CaseSensitivity caseSensitivity, InvalidationHandler<T, RESULT> handler) {
         int childIndex = findChildIndexWithCommonPrefix(targetPath, caseSensitivity);
         if (childIndex >= 0) {
-            Entry<T> entry = entries.get(childIndex);
-            String childPath = entry.getPath();
-            return entry.withNode(targetPath, caseSensitivity, new AbstractInvalidateChildHandler<T, RESULT>(handler) {
+            String childPath = paths[childIndex];
+            AbstractInvalidateChildHandler<T, RESULT> childHandler = new AbstractInvalidateChildHandler<T, RESULT>(handler) {
 
                 @SuppressWarnings("unchecked")
                 @Override
@@ -87,7 +130,9 @@ public ChildMap<RESULT> withReplacedChild(String newChildPath, RESULT newChild)
                 public ChildMap<RESULT> withRemovedChild() {
                     return getChildMap().withRemovedChild(childIndex);
                 }
-            });
+            };
+            return Entry.handleAncestorDescendantOrExactMatch(childPath, valueAt(childIndex), targetPath, caseSensitivity, childHandler)
+                .orElseGet(childHandler::handleUnrelatedToAnyChild);
         } else {
             handler.handleUnrelatedToAnyChild();
             @SuppressWarnings("unchecked") AbstractListChildMap<RESULT> castedThis = (AbstractListChildMap<RESULT>) this;
@@ -99,10 +144,10 @@ public ChildMap<RESULT> withRemovedChild() {
     public ChildMap<T> store(VfsRelativePath targetPath, CaseSensitivity caseSensitivity, StoreHandler<T> storeHandler) {
         int childIndex = findChildIndexWithCommonPrefix(targetPath, caseSensitivity);
         if (childIndex >= 0) {
-            return entries.get(childIndex).handlePath(targetPath, caseSensitivity, new AbstractStorePathRelationshipHandler<T>(caseSensitivity, storeHandler) {
+            return Entry.handlePath(paths[childIndex], valueAt(childIndex), targetPath, caseSensitivity, new AbstractStorePathRelationshipHandler<T>(caseSensitivity, storeHandler) {
                 @Override
                 public ChildMap<T> withReplacedChild(T newChild) {
-                    return withReplacedChild(entries.get(childIndex).getPath(), newChild);
+                    return withReplacedChild(paths[childIndex], newChild);
                 }
 
                 @Override
@@ -122,25 +167,38 @@ public ChildMap<T> withNewChild(String newChildPath, T newChild) {
     }
 
     protected ChildMap<T> withNewChild(int insertBefore, String path, T newChild) {
-        List<Entry<T>> newChildren = new ArrayList<>(entries);
-        newChildren.add(insertBefore, new Entry<>(path, newChild));
-        return ChildMapFactory.childMapFromSorted(newChildren);
+        int size = size();
+        String[] newPaths = new String[size + 1];
+        Object[] newValues = new Object[size + 1];
+        System.arraycopy(paths, 0, newPaths, 0, insertBefore);
+        System.arraycopy(values, 0, newValues, 0, insertBefore);
+        newPaths[insertBefore] = path;
+        newValues[insertBefore] = newChild;
+        System.arraycopy(paths, insertBefore, newPaths, insertBefore + 1, size - insertBefore);
+        System.arraycopy(values, insertBefore, newValues, insertBefore + 1, size - insertBefore);
+        return ChildMapFactory.childMapFromSorted(newPaths, newValues);
     }
 
     protected ChildMap<T> withReplacedChild(int childIndex, String newPath, T newChild) {
-        Entry<T> oldEntry = entries.get(childIndex);
-        if (oldEntry.getPath().equals(newPath) && oldEntry.getValue().equals(newChild)) {
+        if (paths[childIndex].equals(newPath) && values[childIndex].equals(newChild)) {
             return this;
         }
-        List<Entry<T>> newChildren = new ArrayList<>(entries);
-        newChildren.set(childIndex, new Entry<>(newPath, newChild));
-        return ChildMapFactory.childMapFromSorted(newChildren);
+        String[] newPaths = paths.clone();
+        Object[] newValues = values.clone();
+        newPaths[childIndex] = newPath;
+        newValues[childIndex] = newChild;
+        return ChildMapFactory.childMapFromSorted(newPaths, newValues);
     }
 
     protected ChildMap<T> withRemovedChild(int childIndex) {
-        List<Entry<T>> newChildren = new ArrayList<>(entries);
-        newChildren.remove(childIndex);
-        return ChildMapFactory.childMapFromSorted(newChildren);
+        int size = size();
+        String[] newPaths = new String[size - 1];
+        Object[] newValues = new Object[size - 1];
+        System.arraycopy(paths, 0, newPaths, 0, childIndex);
+        System.arraycopy(values, 0, newValues, 0, childIndex);
+        System.arraycopy(paths, childIndex + 1, newPaths, childIndex, size - childIndex - 1);
+        System.arraycopy(values, childIndex + 1, newValues, childIndex, size - childIndex - 1);
+        return ChildMapFactory.childMapFromSorted(newPaths, newValues);
     }
 
     @Override
@@ -154,11 +212,15 @@ public boolean equals(Object o) {
 
         AbstractListChildMap<?> that = (AbstractListChildMap<?>) o;
 
-        return entries.equals(that.entries);
+        return Arrays.equals(paths, that.paths) && Arrays.equals(values, that.values);
     }
 
     @Override
     public int hashCode() {
-        return entries.hashCode();
+        int result = 1;
+        for (int i = 0; i < size(); i++) {
+            result = 31 * result + 31 * paths[i].hashCode() + values[i].hashCode();
+        }
+        return result;
     }
 }
@@ -31,10 +31,20 @@
  * Includes complete snapshots of every child and the Merkle tree hash.
  */
 public class CompleteDirectorySnapshot extends AbstractCompleteFileSystemLocationSnapshot {
+    /**
+     * The modification time of a directory whose modification time was not recorded when it was listed.
+     */
+    public static final long UNKNOWN_LAST_MODIFIED = -1;
+
     private final ChildMap<CompleteFileSystemLocationSnapshot> children;
     private final HashCode contentHash;
+    private final long lastModified;
 
     public CompleteDirectorySnapshot(String absolutePath, String name, List<CompleteFileSystemLocationSnapshot> children, HashCode contentHash, AccessType accessType) {
+        this(absolutePath, name, children, contentHash, accessType, UNKNOWN_LAST_MODIFIED);
+    }
+
+    public CompleteDirectorySnapshot(String absolutePath, String name, List<CompleteFileSystemLocationSnapshot> children, HashCode contentHash, AccessType accessType, long lastModified) {
         this(
             absolutePath,
             name,
@@ -42,14 +52,20 @@ public CompleteDirectorySnapshot(String absolutePath, String name, List<Complete
                 .map(it -> new ChildMap.Entry<>(it.getName(), it))
                 .collect(Collectors.toList())),
             contentHash,
-            accessType
+            accessType,
+            lastModified
         );
     }
 
     public CompleteDirectorySnapshot(String absolutePath, String name, ChildMap<CompleteFileSystemLocationSnapshot> children, HashCode contentHash, AccessType accessType) {
+        this(absolutePath, name, children, contentHash, accessType, UNKNOWN_LAST_MODIFIED);
+    }
+
+    public CompleteDirectorySnapshot(String absolutePath, String name, ChildMap<CompleteFileSystemLocationSnapshot> children, HashCode contentHash, AccessType accessType, long lastModified) {
         super(absolutePath, name, accessType);
         this.children = children;
         this.contentHash = contentHash;
+        this.lastModified = lastModified;
     }
 
     @Override
@@ -62,6 +78,14 @@ public FileType getType() {
         return FileType.Directory;
     }
 
+    /**
+     * The modification time of the directory before it was listed, or {@link #UNKNOWN_LAST_MODIFIED}.
+     * The modification time is not part of the hash of the directory.
+     */
+    public long getLastModified() {
+        return lastModified;
+    }
+
     @Override
     public boolean isContentAndMetadataUpToDate(CompleteFileSystemLocationSnapshot other) {
         return other instanceof CompleteDirectorySnapshot;
@@ -33,6 +33,7 @@ public class MerkleDirectorySnapshotBuilder implements FileSystemSnapshotVisitor
     private final RelativePathSegmentsTracker relativePathSegmentsTracker = new RelativePathSegmentsTracker();
     private final Deque<List<CompleteFileSystemLocationSnapshot>> levelHolder = new ArrayDeque<>();
     private final Deque<String> directoryAbsolutePaths = new ArrayDeque<>();
+    private final Deque<Long> directoryLastModifiedTimes = new ArrayDeque<>();
     private final boolean sortingRequired;
     private CompleteFileSystemLocationSnapshot result;
 
@@ -49,14 +50,19 @@ private MerkleDirectorySnapshotBuilder(boolean sortingRequired) {
     }
 
     public void preVisitDirectory(String absolutePath, String name) {
+        preVisitDirectory(absolutePath, name, CompleteDirectorySnapshot.UNKNOWN_LAST_MODIFIED);
+    }
+
+    public void preVisitDirectory(String absolutePath, String name, long lastModified) {
         relativePathSegmentsTracker.enter(name);
         levelHolder.addLast(new ArrayList<>());
         directoryAbsolutePaths.addLast(absolutePath);
+        directoryLastModifiedTimes.addLast(lastModified);
     }
 
     @Override
     public boolean preVisitDirectory(CompleteDirectorySnapshot directorySnapshot) {
-        preVisitDirectory(directorySnapshot.getAbsolutePath(), directorySnapshot.getName());
+        preVisitDirectory(directorySnapshot.getAbsolutePath(), directorySnapshot.getName(), directorySnapshot.getLastModified());
         return true;
     }
 
@@ -82,6 +88,7 @@ public boolean postVisitDirectory(boolean includeEmpty, AccessType accessType) {
         String name = relativePathSegmentsTracker.leave();
         List<CompleteFileSystemLocationSnapshot> children = levelHolder.removeLast();
         String absolutePath = directoryAbsolutePaths.removeLast();
+        long lastModified = directoryLastModifiedTimes.removeLast();
         if (children.isEmpty() && !includeEmpty) {
             return false;
         }
@@ -94,7 +101,7 @@ public boolean postVisitDirectory(boolean includeEmpty, AccessType accessType) {
             hasher.putString(child.getName());
             hasher.putHash(child.getHash());
         }
-        CompleteDirectorySnapshot directorySnapshot = new CompleteDirectorySnapshot(absolutePath, name, children, hasher.hash(), accessType);
+        CompleteDirectorySnapshot directorySnapshot = new CompleteDirectorySnapshot(absolutePath, name, children, hasher.hash(), accessType, lastModified);
         List<CompleteFileSystemLocationSnapshot> siblings = levelHolder.peekLast();
         if (siblings != null) {
             siblings.add(directorySnapshot);
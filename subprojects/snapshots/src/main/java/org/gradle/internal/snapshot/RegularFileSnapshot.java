@@ -18,6 +18,7 @@
 
 import org.gradle.internal.file.FileMetadata;
 import org.gradle.internal.file.FileType;
+import org.gradle.internal.file.impl.DefaultFileMetadata;
 import org.gradle.internal.hash.HashCode;
 
 import java.util.Optional;
@@ -26,15 +27,18 @@
  * A complete snapshot of a regular file.
  *
  * The snapshot includes the content hash of the file.
+ * The length and the modification time of the file are kept as primitive fields, the {@link FileMetadata} is only created on request.
  */
 public class RegularFileSnapshot extends AbstractCompleteFileSystemLocationSnapshot {
     private final HashCode contentHash;
-    private final FileMetadata metadata;
+    private final long length;
+    private final long lastModified;
 
     public RegularFileSnapshot(String absolutePath, String name, HashCode contentHash, FileMetadata metadata) {
         super(absolutePath, name, metadata.getAccessType());
         this.contentHash = contentHash;
-        this.metadata = metadata;
+        this.length = metadata.getLength();
+        this.lastModified = metadata.getLastModified();
     }
 
     @Override
@@ -49,7 +53,7 @@ public HashCode getHash() {
 
     // Used by the Maven caching client. Do not remove
     public FileMetadata getMetadata() {
-        return metadata;
+        return DefaultFileMetadata.file(lastModified, length, getAccessType());
     }
 
     @Override
@@ -58,7 +62,10 @@ public boolean isContentAndMetadataUpToDate(CompleteFileSystemLocationSnapshot o
             return false;
         }
         RegularFileSnapshot otherSnapshot = (RegularFileSnapshot) other;
-        return metadata.equals(otherSnapshot.metadata) && contentHash.equals(otherSnapshot.contentHash);
+        return length == otherSnapshot.length
+            && lastModified == otherSnapshot.lastModified
+            && getAccessType() == otherSnapshot.getAccessType()
+            && contentHash.equals(otherSnapshot.contentHash);
     }
 
     @Override
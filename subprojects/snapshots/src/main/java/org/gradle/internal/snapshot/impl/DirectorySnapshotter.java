@@ -17,12 +17,16 @@
 package org.gradle.internal.snapshot.impl;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Interner;
+import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
 import org.gradle.internal.file.FileMetadata;
 import org.gradle.internal.file.FileMetadata.AccessType;
 import org.gradle.internal.file.impl.DefaultFileMetadata;
+import org.gradle.internal.hash.BatchFileHasher;
+import org.gradle.internal.hash.FileHashRequest;
 import org.gradle.internal.hash.FileHasher;
 import org.gradle.internal.hash.HashCode;
 import org.gradle.internal.snapshot.CompleteFileSystemLocationSnapshot;
@@ -45,38 +49,89 @@
 import java.nio.file.Paths;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Deque;
 import java.util.EnumSet;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Predicate;
 
+/**
+ * Snapshots a directory tree by walking it and hashing the regular files it contains.
+ *
+ * <p>When a {@link ForkJoinPool} is provided, the subdirectories found during the walk are snapshotted as separate tasks in the pool,
+ * as long as the pool has idle workers to pick them up. The snapshot of each forked subdirectory is added to its parent directory
+ * once the parent has been listed, so the result is the same as the result of a sequential walk.
+ * Walks with a filtering predicate are always sequential, as the predicate, for example a pattern set spec, may not be safe to use from several threads.</p>
+ */
 public class DirectorySnapshotter {
     private static final Logger LOGGER = LoggerFactory.getLogger(DirectorySnapshotter.class);
     private static final EnumSet<FileVisitOption> DONT_FOLLOW_SYMLINKS = EnumSet.noneOf(FileVisitOption.class);
+    // The number of forked subdirectory walks a worker may have queued up before it walks subdirectories itself
+    private static final int MAX_SURPLUS_QUEUED_WALKS = 2;
 
     private final FileHasher hasher;
     private final Interner<String> stringInterner;
     private final DefaultExcludes defaultExcludes;
     private final DirectorySnapshotterStatistics.Collector collector;
+    private final ForkJoinPool walkerPool;
 
     public DirectorySnapshotter(FileHasher hasher, Interner<String> stringInterner, Collection<String> defaultExcludes, DirectorySnapshotterStatistics.Collector collector) {
+        this(hasher, stringInterner, defaultExcludes, collector, null);
+    }
+
+    public DirectorySnapshotter(FileHasher hasher, Interner<String> stringInterner, Collection<String> defaultExcludes, DirectorySnapshotterStatistics.Collector collector, @Nullable ForkJoinPool walkerPool) {
         this.hasher = hasher;
         this.stringInterner = stringInterner;
         this.defaultExcludes = new DefaultExcludes(defaultExcludes);
         this.collector = collector;
+        this.walkerPool = walkerPool;
     }
 
     public CompleteFileSystemLocationSnapshot snapshot(String absolutePath, @Nullable SnapshottingFilter.DirectoryWalkerPredicate predicate, final AtomicBoolean hasBeenFiltered) {
+        Path rootPath = Paths.get(absolutePath);
+        if (walkerPool == null || predicate != null) {
+            PathVisitor visitor = new PathVisitor(predicate, hasBeenFiltered, hasher, stringInterner, defaultExcludes, collector, false);
+            walk(rootPath, visitor);
+            return visitor.getResult();
+        }
+        return walkerPool.invoke(new SubtreeWalk(rootPath, new PathVisitor(predicate, hasBeenFiltered, hasher, stringInterner, defaultExcludes, collector, true)));
+    }
+
+    private static void walk(Path rootPath, PathVisitor visitor) {
         try {
-            Path rootPath = Paths.get(absolutePath);
-            PathVisitor visitor = new PathVisitor(predicate, hasBeenFiltered, hasher, stringInterner, defaultExcludes, collector);
             Files.walkFileTree(rootPath, DONT_FOLLOW_SYMLINKS, Integer.MAX_VALUE, visitor);
-            return visitor.getResult();
         } catch (IOException e) {
-            throw new UncheckedIOException(String.format("Could not list contents of directory '%s'.", absolutePath), e);
+            throw new UncheckedIOException(String.format("Could not list contents of directory '%s'.", rootPath), e);
+        }
+    }
+
+    /**
+     * Walks a directory tree in a worker of the walker pool, recording the time the worker spent walking it.
+     */
+    private static class SubtreeWalk extends RecursiveTask<CompleteFileSystemLocationSnapshot> {
+        private final Path rootPath;
+        private final PathVisitor visitor;
+
+        SubtreeWalk(Path rootPath, PathVisitor visitor) {
+            this.rootPath = rootPath;
+            this.visitor = visitor;
+        }
+
+        @Override
+        protected CompleteFileSystemLocationSnapshot compute() {
+            long start = System.nanoTime();
+            try {
+                walk(rootPath, visitor);
+                return visitor.getResult();
+            } finally {
+                visitor.statisticsCollector.recordWalkTime(System.nanoTime() - start - visitor.joinTime);
+            }
         }
     }
 
@@ -180,8 +235,18 @@ private static class PathVisitor extends DirectorySnapshotterStatistics.Collecti
         private final FileHasher hasher;
         private final Interner<String> stringInterner;
         private final DefaultExcludes defaultExcludes;
-        private final Deque<SymbolicLinkMapping> symbolicLinkMappings = new ArrayDeque<>();
-        private final Deque<String> parentDirectories = new ArrayDeque<>();
+        private final DirectorySnapshotterStatistics.Collector statisticsCollector;
+        private final boolean parallel;
+        // The relative path of the root of this walk, when walking a subdirectory of the snapshotted directory
+        private final ImmutableList<String> relativePathPrefix;
+        private final Deque<SymbolicLinkMapping> symbolicLinkMappings;
+        private final Deque<String> parentDirectories;
+        // The regular files found in each directory being visited, hashed as a batch once the directory has been listed
+        private final Deque<List<PendingFileSnapshot>> pendingFiles = new ArrayDeque<>();
+        // The subdirectories of each directory being visited which are walked by other workers
+        private final Deque<List<SubtreeWalk>> forkedWalks = new ArrayDeque<>();
+        // The time spent waiting for forked walks to finish
+        private long joinTime;
 
         public PathVisitor(
             @Nullable SnapshottingFilter.DirectoryWalkerPredicate predicate,
@@ -189,7 +254,8 @@ public PathVisitor(
             FileHasher hasher,
             Interner<String> stringInterner,
             DefaultExcludes defaultExcludes,
-            DirectorySnapshotterStatistics.Collector statisticsCollector
+            DirectorySnapshotterStatistics.Collector statisticsCollector,
+            boolean parallel
         ) {
             super(statisticsCollector);
             this.builder = MerkleDirectorySnapshotBuilder.sortingRequired();
@@ -198,21 +264,68 @@ public PathVisitor(
             this.hasher = hasher;
             this.stringInterner = stringInterner;
             this.defaultExcludes = defaultExcludes;
+            this.statisticsCollector = statisticsCollector;
+            this.parallel = parallel;
+            this.relativePathPrefix = ImmutableList.of();
+            this.symbolicLinkMappings = new ArrayDeque<>();
+            this.parentDirectories = new ArrayDeque<>();
+        }
+
+        /**
+         * Creates a visitor for walking the subdirectory with the given name of the directory currently visited by {@code parent}.
+         */
+        private PathVisitor(PathVisitor parent, String subdirectoryName) {
+            super(parent.statisticsCollector, true);
+            this.builder = MerkleDirectorySnapshotBuilder.sortingRequired();
+            this.predicate = parent.predicate;
+            this.hasBeenFiltered = parent.hasBeenFiltered;
+            this.hasher = parent.hasher;
+            this.stringInterner = parent.stringInterner;
+            this.defaultExcludes = parent.defaultExcludes;
+            this.statisticsCollector = parent.statisticsCollector;
+            this.parallel = true;
+            this.relativePathPrefix = ImmutableList.<String>builder()
+                .addAll(parent.getRelativePath())
+                .add(subdirectoryName)
+                .build();
+            this.symbolicLinkMappings = new ArrayDeque<>(parent.symbolicLinkMappings);
+            this.parentDirectories = new ArrayDeque<>(parent.parentDirectories);
         }
 
         @Override
         protected FileVisitResult doPreVisitDirectory(Path dir, BasicFileAttributes attrs) {
             String fileName = getFilename(dir);
             String internedName = intern(fileName);
-            if (builder.isRoot() || shouldVisit(dir, internedName, true, builder.getRelativePath())) {
-                builder.preVisitDirectory(intern(remapAbsolutePath(dir)), internedName);
+            if (builder.isRoot() || shouldVisit(dir, internedName, true, getRelativePath())) {
+                if (!builder.isRoot() && shouldFork()) {
+                    SubtreeWalk walk = new SubtreeWalk(dir, new PathVisitor(this, internedName));
+                    walk.fork();
+                    forkedWalks.getFirst().add(walk);
+                    return FileVisitResult.SKIP_SUBTREE;
+                }
+                // Record the modification time from before the directory is listed, so a later change to its entries changes it
+                builder.preVisitDirectory(intern(remapAbsolutePath(dir)), internedName, attrs.lastModifiedTime().toMillis());
                 parentDirectories.addFirst(dir.toString());
+                pendingFiles.addFirst(new ArrayList<>());
+                forkedWalks.addFirst(new ArrayList<>());
                 return FileVisitResult.CONTINUE;
             } else {
                 return FileVisitResult.SKIP_SUBTREE;
             }
         }
 
+        private boolean shouldFork() {
+            return parallel
+                && ForkJoinTask.inForkJoinPool()
+                && ForkJoinTask.getSurplusQueuedTaskCount() < MAX_SURPLUS_QUEUED_WALKS;
+        }
+
+        private Iterable<String> getRelativePath() {
+            return relativePathPrefix.isEmpty()
+                ? builder.getRelativePath()
+                : Iterables.concat(relativePathPrefix, builder.getRelativePath());
+        }
+
         private String getFilename(Path dir) {
             return Optional.ofNullable(dir.getFileName())
                 .map(Object::toString)
@@ -261,8 +374,12 @@ private String remapAbsolutePath(Path dir) {
 
         private void visitResolvedFile(Path file, BasicFileAttributes targetAttributes, AccessType accessType) {
             String internedName = intern(file.getFileName().toString());
-            if (shouldVisit(file, internedName, false, builder.getRelativePath())) {
-                builder.visitFile(snapshotFile(file, internedName, targetAttributes, accessType));
+            if (shouldVisit(file, internedName, false, getRelativePath())) {
+                if (targetAttributes.isRegularFile() && !pendingFiles.isEmpty()) {
+                    pendingFiles.getFirst().add(new PendingFileSnapshot(file, intern(remapAbsolutePath(file)), internedName, targetAttributes, accessType));
+                } else {
+                    builder.visitFile(snapshotFile(file, internedName, targetAttributes, accessType));
+                }
             }
         }
 
@@ -301,7 +418,7 @@ protected FileVisitResult doVisitFileFailed(Path file, IOException exc) {
             if (isNotFileSystemLoopException(exc)) {
                 String internedName = intern(file.getFileName().toString());
                 boolean isDirectory = Files.isDirectory(file);
-                if (shouldVisit(file, internedName, isDirectory, builder.getRelativePath())) {
+                if (shouldVisit(file, internedName, isDirectory, getRelativePath())) {
                     LOGGER.info("Could not read file path '{}'.", file);
                     String internedAbsolutePath = intern(file.toString());
                     builder.visitFile(new MissingFileSnapshot(internedAbsolutePath, internedName, AccessType.DIRECT));
@@ -318,6 +435,8 @@ protected FileVisitResult doPostVisitDirectory(Path dir, IOException exc) {
             if (isNotFileSystemLoopException(exc)) {
                 throw new UncheckedIOException(String.format("Could not read directory path '%s'.", dir), exc);
             }
+            snapshotPendingFiles(pendingFiles.removeFirst());
+            joinForkedWalks(forkedWalks.removeFirst());
             AccessType accessType = AccessType.viaSymlink(
                 !symbolicLinkMappings.isEmpty() && symbolicLinkMappings.getFirst().target.equals(dir.toString())
             );
@@ -326,6 +445,41 @@ protected FileVisitResult doPostVisitDirectory(Path dir, IOException exc) {
             return FileVisitResult.CONTINUE;
         }
 
+        private void snapshotPendingFiles(List<PendingFileSnapshot> files) {
+            if (files.isEmpty()) {
+                return;
+            }
+            List<FileHashRequest> requests = new ArrayList<>(files.size());
+            for (PendingFileSnapshot file : files) {
+                requests.add(file.hashRequest);
+            }
+            if (hasher instanceof BatchFileHasher) {
+                ((BatchFileHasher) hasher).hashAll(requests);
+            } else {
+                for (FileHashRequest request : requests) {
+                    request.complete(hasher);
+                }
+            }
+            for (PendingFileSnapshot file : files) {
+                builder.visitFile(file.toSnapshot());
+            }
+        }
+
+        private void joinForkedWalks(List<SubtreeWalk> walks) {
+            if (walks.isEmpty()) {
+                return;
+            }
+            long start = System.nanoTime();
+            for (SubtreeWalk walk : walks) {
+                CompleteFileSystemLocationSnapshot subdirectorySnapshot = walk.join();
+                // The subdirectory may have been removed after it has been listed
+                if (subdirectorySnapshot != null) {
+                    builder.visitFile(subdirectorySnapshot);
+                }
+            }
+            joinTime += System.nanoTime() - start;
+        }
+
         private boolean isNotFileSystemLoopException(@Nullable IOException e) {
             return e != null && !(e instanceof FileSystemLoopException);
         }
@@ -362,4 +516,31 @@ public CompleteFileSystemLocationSnapshot getResult() {
             return builder.getResult();
         }
     }
+
+    private static class PendingFileSnapshot {
+        private final Path absoluteFilePath;
+        private final String internedAbsoluteFilePath;
+        private final String internedName;
+        private final FileMetadata metadata;
+        private final FileHashRequest hashRequest;
+
+        PendingFileSnapshot(Path absoluteFilePath, String internedAbsoluteFilePath, String internedName, BasicFileAttributes attrs, AccessType accessType) {
+            this.absoluteFilePath = absoluteFilePath;
+            this.internedAbsoluteFilePath = internedAbsoluteFilePath;
+            this.internedName = internedName;
+            long lastModified = attrs.lastModifiedTime().toMillis();
+            long fileLength = attrs.size();
+            this.metadata = DefaultFileMetadata.file(lastModified, fileLength, accessType);
+            this.hashRequest = new FileHashRequest(absoluteFilePath.toFile(), fileLength, lastModified);
+        }
+
+        CompleteFileSystemLocationSnapshot toSnapshot() {
+            try {
+                return new RegularFileSnapshot(internedAbsoluteFilePath, internedName, hashRequest.getHash(), metadata);
+            } catch (UncheckedIOException e) {
+                LOGGER.info("Could not read file path '{}'.", absoluteFilePath, e);
+                return new MissingFileSnapshot(internedAbsoluteFilePath, internedName, metadata.getAccessType());
+            }
+        }
+    }
 }
@@ -16,12 +16,18 @@
 
 package org.gradle.internal.snapshot.impl;
 
+import com.google.common.collect.ImmutableSortedMap;
+
 import java.io.IOException;
 import java.nio.file.FileVisitResult;
 import java.nio.file.FileVisitor;
 import java.nio.file.Path;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.text.MessageFormat;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 
 public interface DirectorySnapshotterStatistics {
@@ -45,11 +51,17 @@ public interface DirectorySnapshotterStatistics {
      */
     long getFailedFiles();
 
+    /**
+     * The time in milliseconds each thread spent walking directory trees in parallel, by thread name.
+     */
+    Map<String, Long> getWalkTimeByThread();
+
     class Collector {
         private final AtomicLong hierarchyCount = new AtomicLong();
         private final AtomicLong directoryCount = new AtomicLong();
         private final AtomicLong fileCount = new AtomicLong();
         private final AtomicLong failedFileCount = new AtomicLong();
+        private final ConcurrentMap<String, AtomicLong> walkTimeByThread = new ConcurrentHashMap<>();
 
         public void recordVisitHierarchy() {
             hierarchyCount.incrementAndGet();
@@ -67,11 +79,23 @@ public void recordVisitFileFailed() {
             failedFileCount.incrementAndGet();
         }
 
+        public void recordWalkTime(long nanos) {
+            walkTimeByThread.computeIfAbsent(Thread.currentThread().getName(), name -> new AtomicLong()).addAndGet(nanos);
+        }
+
         public DirectorySnapshotterStatistics collect() {
             long hierarchyCount = this.hierarchyCount.getAndSet(0);
             long directoryCount = this.directoryCount.getAndSet(0);
             long fileCount = this.fileCount.getAndSet(0);
             long failedFileCount = this.failedFileCount.getAndSet(0);
+            ImmutableSortedMap.Builder<String, Long> walkTimeBuilder = ImmutableSortedMap.naturalOrder();
+            for (String threadName : walkTimeByThread.keySet()) {
+                AtomicLong walkTime = walkTimeByThread.remove(threadName);
+                if (walkTime != null) {
+                    walkTimeBuilder.put(threadName, TimeUnit.NANOSECONDS.toMillis(walkTime.get()));
+                }
+            }
+            Map<String, Long> walkTimeByThread = walkTimeBuilder.build();
 
             return new DirectorySnapshotterStatistics() {
                 @Override
@@ -94,10 +118,19 @@ public long getFailedFiles() {
                     return failedFileCount;
                 }
 
+                @Override
+                public Map<String, Long> getWalkTimeByThread() {
+                    return walkTimeByThread;
+                }
+
                 @Override
                 public String toString() {
-                    return MessageFormat.format("Snapshot {0,number,integer} directory hierarchies (visited {1,number,integer} directories, {2,number,integer} files and {3,number,integer} failed files)",
+                    String summary = MessageFormat.format("Snapshot {0,number,integer} directory hierarchies (visited {1,number,integer} directories, {2,number,integer} files and {3,number,integer} failed files)",
                         hierarchyCount, directoryCount, fileCount, failedFileCount);
+                    if (walkTimeByThread.isEmpty()) {
+                        return summary;
+                    }
+                    return summary + ", walked in parallel by " + walkTimeByThread.size() + " threads (time in ms: " + walkTimeByThread + ")";
                 }
             };
         }
@@ -105,15 +138,30 @@ public String toString() {
 
     abstract class CollectingFileVisitor implements FileVisitor<Path> {
         private final Collector collector;
+        private boolean skipRootDirectory;
 
         public CollectingFileVisitor(Collector collector) {
+            this(collector, false);
+        }
+
+        /**
+         * @param subtree whether the visitor walks a subdirectory of a hierarchy, whose root directory has already been recorded by the visitor of the hierarchy.
+         */
+        protected CollectingFileVisitor(Collector collector, boolean subtree) {
             this.collector = collector;
-            collector.recordVisitHierarchy();
+            this.skipRootDirectory = subtree;
+            if (!subtree) {
+                collector.recordVisitHierarchy();
+            }
         }
 
         @Override
         public final FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
-            collector.recordVisitDirectory();
+            if (skipRootDirectory) {
+                skipRootDirectory = false;
+            } else {
+                collector.recordVisitDirectory();
+            }
             return doPreVisitDirectory(dir, attrs);
         }
 
@@ -0,0 +1,121 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.hash
+
+import spock.lang.Specification
+
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.Executors
+import java.util.concurrent.ForkJoinPool
+import java.util.concurrent.RejectedExecutionException
+
+class ParallelFileHasherTest extends Specification {
+    def executor = Executors.newFixedThreadPool(3)
+    def delegate = Mock(FileHasher)
+    def hasher = new ParallelFileHasher(delegate, executor, 4)
+
+    def cleanup() {
+        executor.shutdownNow()
+    }
+
+    def "hashes single file using delegate"() {
+        def file = new File("file")
+        def hash = HashCode.fromInt(1)
+
+        when:
+        def result = hasher.hash(file, 12, 34)
+
+        then:
+        result == hash
+        1 * delegate.hash(file, 12, 34) >> hash
+        0 * _
+    }
+
+    def "hashes batch of files using delegate and keeps results in order"() {
+        def requests = (0..<100).collect { new FileHashRequest(new File("file$it"), it, 0) }
+
+        when:
+        hasher.hashAll(requests)
+
+        then:
+        100 * delegate.hash(_ as File, _ as Long, 0) >> { File file, long length, long lastModified -> HashCode.fromInt(length as int) }
+        requests.every { it.hash == HashCode.fromInt(it.length as int) }
+    }
+
+    def "failure to hash a file does not prevent other files from being hashed"() {
+        def failure = new UncheckedIOException(new IOException("broken"))
+        def requests = (0..<10).collect { new FileHashRequest(new File("file$it"), it, 0) }
+
+        when:
+        hasher.hashAll(requests)
+
+        then:
+        10 * delegate.hash(_ as File, _ as Long, 0) >> { File file, long length, long lastModified ->
+            if (length == 5) {
+                throw failure
+            }
+            HashCode.fromInt(length as int)
+        }
+        requests[4].hash == HashCode.fromInt(4)
+        requests[5].failure == failure
+        requests[6].hash == HashCode.fromInt(6)
+
+        when:
+        requests[5].hash
+
+        then:
+        def e = thrown(UncheckedIOException)
+        e == failure
+    }
+
+    def "hashes batch of files in the fork join pool of the calling worker"() {
+        def forkJoinPool = new ForkJoinPool(4)
+        def requests = (0..<20).collect { new FileHashRequest(new File("file$it"), it, 0) }
+        def threads = ConcurrentHashMap.newKeySet()
+
+        when:
+        forkJoinPool.submit({ hasher.hashAll(requests) } as Runnable).get()
+
+        then:
+        20 * delegate.hash(_ as File, _ as Long, 0) >> { File file, long length, long lastModified ->
+            threads << Thread.currentThread()
+            HashCode.fromInt(length as int)
+        }
+        threads.every { it.name.startsWith("ForkJoinPool") }
+        requests.every { it.hash == HashCode.fromInt(it.length as int) }
+
+        cleanup:
+        forkJoinPool.shutdownNow()
+    }
+
+    def "hashes files on calling thread when executor rejects work"() {
+        def rejectingHasher = new ParallelFileHasher(delegate, { throw new RejectedExecutionException() }, 4)
+        def requests = (0..<10).collect { new FileHashRequest(new File("file$it"), it, 0) }
+        def threads = [] as Set
+
+        when:
+        rejectingHasher.hashAll(requests)
+
+        then:
+        10 * delegate.hash(_ as File, _ as Long, 0) >> { File file, long length, long lastModified ->
+            threads << Thread.currentThread()
+            HashCode.fromInt(length as int)
+        }
+        threads == [Thread.currentThread()] as Set
+        requests.every { it.hash == HashCode.fromInt(it.length as int) }
+    }
+}
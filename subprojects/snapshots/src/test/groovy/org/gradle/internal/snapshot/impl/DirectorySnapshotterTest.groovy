@@ -312,7 +312,7 @@ class DirectorySnapshotterTest extends Specification {
         "${Paths.get("").toAbsolutePath().root}"
     }
 
-    private static SnapshottingFilter.DirectoryWalkerPredicate directoryWalkerPredicate(PatternSet patternSet) {
+    protected static SnapshottingFilter.DirectoryWalkerPredicate directoryWalkerPredicate(PatternSet patternSet) {
         return new PatternSetSnapshottingFilter(patternSet, TestFiles.fileSystem()).asDirectoryWalkerPredicate
     }
 
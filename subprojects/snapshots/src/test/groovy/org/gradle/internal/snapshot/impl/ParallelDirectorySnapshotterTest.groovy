@@ -0,0 +1,91 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.snapshot.impl
+
+import org.gradle.api.internal.cache.StringInterner
+import org.gradle.api.tasks.util.PatternSet
+import org.gradle.internal.hash.TestFileHasher
+import org.gradle.internal.snapshot.SnapshottingFilter
+
+import java.util.concurrent.ForkJoinPool
+import java.util.concurrent.atomic.AtomicBoolean
+
+class ParallelDirectorySnapshotterTest extends DirectorySnapshotterTest {
+    def walkerPool = new ForkJoinPool(4)
+
+    def setup() {
+        directorySnapshotter = new DirectorySnapshotter(fileHasher, new StringInterner(), [], statisticsCollector, walkerPool)
+    }
+
+    def cleanup() {
+        walkerPool.shutdownNow()
+    }
+
+    def "produces the same snapshot as a sequential walk"() {
+        given:
+        def rootDir = tmpDir.createDir("root")
+        10.times { i ->
+            5.times { j ->
+                rootDir.file("dir$i/sub$j/file.txt").text = "$i/$j"
+                rootDir.file("dir$i/sub$j/file.html").text = "$i/$j"
+            }
+        }
+        def collector = new DirectorySnapshotterStatistics.Collector()
+        def sequentialSnapshotter = new DirectorySnapshotter(fileHasher, new StringInterner(), [], collector)
+        def parallelSnapshotter = new DirectorySnapshotter(fileHasher, new StringInterner(), [], collector, walkerPool)
+
+        when:
+        def sequentialFiltered = new AtomicBoolean()
+        def sequentialSnapshot = sequentialSnapshotter.snapshot(rootDir.absolutePath, predicate, sequentialFiltered)
+        def sequentialStatistics = collector.collect()
+        def parallelFiltered = new AtomicBoolean()
+        def parallelSnapshot = parallelSnapshotter.snapshot(rootDir.absolutePath, predicate, parallelFiltered)
+        def parallelStatistics = collector.collect()
+
+        then:
+        parallelSnapshot.hash == sequentialSnapshot.hash
+        parallelFiltered.get() == sequentialFiltered.get()
+        parallelFiltered.get() == (predicate != null)
+        parallelStatistics.visitedHierarchyCount == 1
+        parallelStatistics.visitedDirectoryCount == sequentialStatistics.visitedDirectoryCount
+        parallelStatistics.visitedFiles == sequentialStatistics.visitedFiles
+        sequentialStatistics.walkTimeByThread.isEmpty()
+        parallelStatistics.walkTimeByThread.isEmpty() == (predicate != null)
+
+        where:
+        predicate << [null, directoryWalkerPredicate(new PatternSet().include("**/*.txt").exclude("dir3/**"))]
+    }
+
+    def "walks filtered trees on the calling thread"() {
+        given:
+        def rootDir = tmpDir.createDir("root")
+        5.times { i ->
+            rootDir.file("dir$i/file.txt").text = "$i"
+        }
+        def threads = [] as Set
+        SnapshottingFilter.DirectoryWalkerPredicate predicate = { path, name, isDirectory, relativePath ->
+            threads << Thread.currentThread()
+            true
+        }
+
+        when:
+        directorySnapshotter.snapshot(rootDir.absolutePath, predicate, new AtomicBoolean())
+
+        then:
+        threads == [Thread.currentThread()] as Set
+    }
+}
@@ -99,6 +99,10 @@ public Void call() throws Exception {
 
         // Read server address and start connecting
         MultiChoiceAddress serverAddress = new MultiChoiceAddressSerializer().read(decoder);
+        String unixSocketPath = decoder.readNullableString();
+        if (unixSocketPath != null) {
+            serverAddress = new MultiChoiceAddress(serverAddress.getCanonicalAddress(), serverAddress.getPort(), serverAddress.getCandidates(), new File(unixSocketPath));
+        }
         NativeServices.initialize(gradleUserHomeDir, false);
         DefaultServiceRegistry basicWorkerServices = new DefaultServiceRegistry(NativeServices.getInstance(), loggingServiceRegistry);
         basicWorkerServices.add(ExecutorFactory.class, new DefaultExecutorFactory());
@@ -0,0 +1,41 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.gradle.workers.internal;
+
+import org.gradle.internal.operations.BuildOperationType;
+
+/**
+ * Starting a worker daemon, because no idle compatible worker daemon was available to execute a work item.
+ *
+ * The number of these operations is the number of worker daemons spawned.
+ */
+public final class StartWorkerDaemonBuildOperationType implements BuildOperationType<StartWorkerDaemonBuildOperationType.Details, StartWorkerDaemonBuildOperationType.Result> {
+
+    public interface Details {
+        /**
+         * Returns the fully-qualified class name of the action of the work item the worker daemon is started for.
+         */
+        String getClassName();
+    }
+
+    public interface Result {
+    }
+
+    private StartWorkerDaemonBuildOperationType() {
+    }
+}
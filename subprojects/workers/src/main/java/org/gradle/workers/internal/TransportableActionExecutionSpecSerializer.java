@@ -21,22 +21,49 @@
 import org.gradle.internal.serialize.Serializer;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
+/**
+ * Serializes the specs of work items sent to a worker daemon.
+ *
+ * <p>Work items of the same kind share their classloader structure, which can list many classpath entries.
+ * A structure is written in full the first time only, and referred to by its index after that.
+ * So an instance has to be used for a single connection, on which every spec written is read in the same order.</p>
+ */
 public class TransportableActionExecutionSpecSerializer implements Serializer<TransportableActionExecutionSpec> {
     private static final byte FLAT = (byte) 0;
     private static final byte HIERARCHICAL = (byte) 1;
+    private static final byte HIERARCHICAL_REFERENCE = (byte) 2;
+
+    // Bounds the memory used on both sides of the connection
+    private static final int MAX_REMEMBERED_STRUCTURES = 1024;
 
     private final Serializer<HierarchicalClassLoaderStructure> hierarchicalClassLoaderStructureSerializer = new HierarchicalClassLoaderStructureSerializer();
+    private final Map<HierarchicalClassLoaderStructure, Integer> writtenStructures = new HashMap<>();
+    private final List<HierarchicalClassLoaderStructure> readStructures = new ArrayList<>();
 
     @Override
-    public void write(Encoder encoder, TransportableActionExecutionSpec spec) throws Exception {
+    public synchronized void write(Encoder encoder, TransportableActionExecutionSpec spec) throws Exception {
         encoder.writeString(spec.getImplementationClassName());
         encoder.writeBoolean(spec.isInternalServicesRequired());
         encoder.writeString(spec.getBaseDir().getAbsolutePath());
         encoder.writeBinary(spec.getSerializedParameters());
         if (spec.getClassLoaderStructure() instanceof HierarchicalClassLoaderStructure) {
-            encoder.writeByte(HIERARCHICAL);
-            hierarchicalClassLoaderStructureSerializer.write(encoder, (HierarchicalClassLoaderStructure) spec.getClassLoaderStructure());
+            HierarchicalClassLoaderStructure structure = (HierarchicalClassLoaderStructure) spec.getClassLoaderStructure();
+            Integer index = writtenStructures.get(structure);
+            if (index != null) {
+                encoder.writeByte(HIERARCHICAL_REFERENCE);
+                encoder.writeSmallInt(index);
+            } else {
+                encoder.writeByte(HIERARCHICAL);
+                hierarchicalClassLoaderStructureSerializer.write(encoder, structure);
+                if (writtenStructures.size() < MAX_REMEMBERED_STRUCTURES) {
+                    writtenStructures.put(structure, writtenStructures.size());
+                }
+            }
         } else if (spec.getClassLoaderStructure() instanceof FlatClassLoaderStructure) {
             encoder.writeByte(FLAT);
             // If the classloader structure is flat, there's no need to send the classpath
@@ -46,7 +73,7 @@ public void write(Encoder encoder, TransportableActionExecutionSpec spec) throws
     }
 
     @Override
-    public TransportableActionExecutionSpec read(Decoder decoder) throws Exception {
+    public synchronized TransportableActionExecutionSpec read(Decoder decoder) throws Exception {
         String implementationClassName = decoder.readString();
         boolean usesInternalServices = decoder.readBoolean();
         String baseDirPath = decoder.readString();
@@ -58,7 +85,14 @@ public TransportableActionExecutionSpec read(Decoder decoder) throws Exception {
                 classLoaderStructure = new FlatClassLoaderStructure(null);
                 break;
             case HIERARCHICAL:
-                classLoaderStructure = hierarchicalClassLoaderStructureSerializer.read(decoder);
+                HierarchicalClassLoaderStructure structure = hierarchicalClassLoaderStructureSerializer.read(decoder);
+                if (readStructures.size() < MAX_REMEMBERED_STRUCTURES) {
+                    readStructures.add(structure);
+                }
+                classLoaderStructure = structure;
+                break;
+            case HIERARCHICAL_REFERENCE:
+                classLoaderStructure = readStructures.get(decoder.readSmallInt());
                 break;
             default:
                 throw new IllegalArgumentException("Unexpected payload type.");
@@ -22,6 +22,10 @@
 import org.gradle.process.internal.worker.MultiRequestClient;
 import org.gradle.process.internal.worker.WorkerProcess;
 
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
 class WorkerDaemonClient implements Stoppable {
     public static final String DISABLE_EXPIRATION_PROPERTY_KEY = "org.gradle.workers.internal.disable-daemons-expiration";
     private final DaemonForkOptions forkOptions;
@@ -29,7 +33,9 @@ class WorkerDaemonClient implements Stoppable {
     private final WorkerProcess workerProcess;
     private final LogLevel logLevel;
     private final ActionExecutionSpecFactory actionExecutionSpecFactory;
-    private int uses;
+    // Several requests can be in flight when pipelining is enabled
+    private final Set<String> executedActionClassNames = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger uses = new AtomicInteger();
     private boolean failed;
     private boolean cannotBeExpired = Boolean.getBoolean(DISABLE_EXPIRATION_PROPERTY_KEY);
 
@@ -42,10 +48,18 @@ public WorkerDaemonClient(DaemonForkOptions forkOptions, MultiRequestClient<Tran
     }
 
     public DefaultWorkResult execute(IsolatedParametersActionExecutionSpec<?> spec) {
-        uses++;
+        uses.incrementAndGet();
+        executedActionClassNames.add(spec.getActionImplementationClassName());
         return workerClient.run(actionExecutionSpecFactory.newTransportableSpec(spec));
     }
 
+    /**
+     * Whether this daemon has executed the given action before, so that the classes of the action are loaded and likely compiled by the JIT already.
+     */
+    public boolean hasExecuted(String actionClassName) {
+        return executedActionClassNames.contains(actionClassName);
+    }
+
     public boolean isCompatibleWith(DaemonForkOptions required) {
         return forkOptions.isCompatibleWith(required);
     }
@@ -64,7 +78,7 @@ DaemonForkOptions getForkOptions() {
     }
 
     public int getUses() {
-        return uses;
+        return uses.get();
     }
 
     public KeepAliveMode getKeepAliveMode() {
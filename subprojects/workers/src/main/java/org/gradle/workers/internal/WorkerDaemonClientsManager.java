@@ -31,14 +31,19 @@
 import org.gradle.internal.logging.events.LogLevelChangeEvent;
 import org.gradle.internal.logging.events.OutputEvent;
 import org.gradle.internal.logging.events.OutputEventListener;
+import org.gradle.internal.metrics.Counter;
+import org.gradle.internal.metrics.MetricsRegistry;
 import org.gradle.process.internal.health.memory.MemoryManager;
 import org.gradle.process.internal.health.memory.OsMemoryInfo;
 import org.gradle.process.internal.worker.WorkerProcess;
 import org.gradle.util.CollectionUtils;
 
+import javax.annotation.Nullable;
 import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import static java.util.Comparator.*;
 
@@ -49,6 +54,8 @@ public class WorkerDaemonClientsManager implements Stoppable {
     private final Object lock = new Object();
     private final List<WorkerDaemonClient> allClients = new ArrayList<WorkerDaemonClient>();
     private final List<WorkerDaemonClient> idleClients = new ArrayList<WorkerDaemonClient>();
+    // The number of reservations of each client which is in use, more than one when requests are pipelined
+    private final Map<WorkerDaemonClient, Integer> reservedClients = new LinkedHashMap<WorkerDaemonClient, Integer>();
     private final Action<WorkerProcess> workerProcessCleanupAction = new WorkerProcessCleanupAction();
 
     private final WorkerDaemonStarter workerDaemonStarter;
@@ -59,9 +66,13 @@ public class WorkerDaemonClientsManager implements Stoppable {
     private final OutputEventListener logLevelChangeEventListener;
     private final WorkerDaemonExpiration workerDaemonExpiration;
     private final MemoryManager memoryManager;
+    private final Counter affineReservations;
+    private final Counter idleReservations;
+    private final Counter newReservations;
+    private final Counter pipelinedReservations;
     private volatile LogLevel currentLogLevel;
 
-    public WorkerDaemonClientsManager(WorkerDaemonStarter workerDaemonStarter, ListenerManager listenerManager, LoggingManagerInternal loggingManager, MemoryManager memoryManager, OsMemoryInfo memoryInfo) {
+    public WorkerDaemonClientsManager(WorkerDaemonStarter workerDaemonStarter, ListenerManager listenerManager, LoggingManagerInternal loggingManager, MemoryManager memoryManager, OsMemoryInfo memoryInfo, MetricsRegistry metricsRegistry) {
         this.workerDaemonStarter = workerDaemonStarter;
         this.listenerManager = listenerManager;
         this.loggingManager = loggingManager;
@@ -74,45 +85,125 @@ public WorkerDaemonClientsManager(WorkerDaemonStarter workerDaemonStarter, Liste
         this.memoryManager = memoryManager;
         this.workerDaemonExpiration = new WorkerDaemonExpiration(this, getTotalPhysicalMemory());
         memoryManager.addMemoryHolder(workerDaemonExpiration);
+        this.affineReservations = reservationCounter(metricsRegistry, "affine");
+        this.idleReservations = reservationCounter(metricsRegistry, "idle");
+        this.newReservations = reservationCounter(metricsRegistry, "new");
+        this.pipelinedReservations = reservationCounter(metricsRegistry, "pipelined");
+    }
+
+    private static Counter reservationCounter(MetricsRegistry metricsRegistry, String result) {
+        return metricsRegistry.counter("gradle_worker_daemon_reservations", "Worker daemons reserved to execute work, by whether an idle daemon which executed the same action before, another idle daemon, a busy daemon or a new daemon was used.", "result", result);
     }
 
     // TODO - should supply and check for the same parameters as passed to reserveNewClient()
     public WorkerDaemonClient reserveIdleClient(DaemonForkOptions forkOptions) {
-        return reserveIdleClient(forkOptions, idleClients);
+        return reserveIdleClient(forkOptions, null, idleClients);
+    }
+
+    /**
+     * Reserves an idle client compatible with the given options, preferring a client which has executed the given action before.
+     */
+    public WorkerDaemonClient reserveIdleClient(DaemonForkOptions forkOptions, String actionClassName) {
+        return reserveIdleClient(forkOptions, actionClassName, idleClients);
     }
 
     WorkerDaemonClient reserveIdleClient(DaemonForkOptions forkOptions, List<WorkerDaemonClient> clients) {
+        return reserveIdleClient(forkOptions, null, clients);
+    }
+
+    WorkerDaemonClient reserveIdleClient(DaemonForkOptions forkOptions, @Nullable String actionClassName, List<WorkerDaemonClient> clients) {
         synchronized (lock) {
-            Iterator<WorkerDaemonClient> it = clients.iterator();
-            while (it.hasNext()) {
-                WorkerDaemonClient candidate = it.next();
-                if (candidate.isCompatibleWith(forkOptions)) {
-                    it.remove();
-                    if (candidate.getLogLevel() != currentLogLevel) {
-                        // TODO: Send a message to workers to change their log level rather than stopping
-                        LOGGER.info("Log level has changed, stopping idle worker daemon with out-of-date log level.");
-                        candidate.stop();
+            WorkerDaemonClient candidate;
+            while ((candidate = selectIdleClient(forkOptions, actionClassName, clients)) != null) {
+                clients.remove(candidate);
+                if (candidate.getLogLevel() != currentLogLevel) {
+                    // TODO: Send a message to workers to change their log level rather than stopping
+                    LOGGER.info("Log level has changed, stopping idle worker daemon with out-of-date log level.");
+                    candidate.stop();
+                } else {
+                    if (actionClassName != null && candidate.hasExecuted(actionClassName)) {
+                        affineReservations.increment();
                     } else {
-                        return candidate;
+                        idleReservations.increment();
                     }
+                    reservedClients.put(candidate, 1);
+                    return candidate;
                 }
             }
             return null;
         }
     }
 
+    /**
+     * Selects the compatible client which has been idle the longest, unless a compatible client has executed the given action before.
+     * Routing the same action to the same daemon avoids loading and JIT compiling its classes in several daemons.
+     */
+    @Nullable
+    private static WorkerDaemonClient selectIdleClient(DaemonForkOptions forkOptions, @Nullable String actionClassName, List<WorkerDaemonClient> clients) {
+        WorkerDaemonClient selected = null;
+        for (WorkerDaemonClient candidate : clients) {
+            if (candidate.isCompatibleWith(forkOptions)) {
+                if (actionClassName != null && candidate.hasExecuted(actionClassName)) {
+                    return candidate;
+                }
+                if (selected == null) {
+                    selected = candidate;
+                }
+            }
+        }
+        return selected;
+    }
+
+    /**
+     * Reserves a client which is in use already, but has fewer than the given number of requests in flight, so that the request is pipelined.
+     * Prefers a client which has executed the given action before, and otherwise the client with the fewest requests in flight.
+     */
+    @Nullable
+    public WorkerDaemonClient reserveBusyClient(DaemonForkOptions forkOptions, String actionClassName, int maxRequestsInFlight) {
+        synchronized (lock) {
+            WorkerDaemonClient selected = null;
+            int selectedRequests = maxRequestsInFlight;
+            for (Map.Entry<WorkerDaemonClient, Integer> entry : reservedClients.entrySet()) {
+                WorkerDaemonClient candidate = entry.getKey();
+                int requests = entry.getValue();
+                if (requests >= maxRequestsInFlight || candidate.isFailed() || candidate.getLogLevel() != currentLogLevel || !candidate.isCompatibleWith(forkOptions)) {
+                    continue;
+                }
+                if (candidate.hasExecuted(actionClassName)) {
+                    selected = candidate;
+                    break;
+                }
+                if (requests < selectedRequests) {
+                    selected = candidate;
+                    selectedRequests = requests;
+                }
+            }
+            if (selected != null) {
+                reservedClients.put(selected, reservedClients.get(selected) + 1);
+                pipelinedReservations.increment();
+            }
+            return selected;
+        }
+    }
+
     public WorkerDaemonClient reserveNewClient(DaemonForkOptions forkOptions) {
         //allow the daemon to be started concurrently
         WorkerDaemonClient client = workerDaemonStarter.startDaemon(forkOptions, workerProcessCleanupAction);
         synchronized (lock) {
             allClients.add(client);
+            reservedClients.put(client, 1);
         }
+        newReservations.increment();
         return client;
     }
 
     public void release(WorkerDaemonClient client) {
         synchronized (lock) {
-            if (!client.isFailed()) {
+            Integer reservations = reservedClients.remove(client);
+            if (reservations != null && reservations > 1) {
+                // Other requests are still in flight
+                reservedClients.put(client, reservations - 1);
+            } else if (!client.isFailed()) {
                 idleClients.add(client);
             }
         }
@@ -124,6 +215,7 @@ public void stop() {
             stopWorkers(allClients);
             allClients.clear();
             idleClients.clear();
+            reservedClients.clear();
             listenerManager.removeListener(stopSessionScopeWorkers);
             memoryManager.removeMemoryHolder(workerDaemonExpiration);
         }
@@ -168,6 +260,7 @@ private void stopWorkers(List<WorkerDaemonClient> clientsToStop) {
             }
             idleClients.removeAll(clientsToStop);
             allClients.removeAll(clientsToStop);
+            reservedClients.keySet().removeAll(clientsToStop);
             if (!failures.isEmpty()) {
                 if (failures.size() == 1) {
                     throw UncheckedException.throwAsUncheckedException(failures.get(0));
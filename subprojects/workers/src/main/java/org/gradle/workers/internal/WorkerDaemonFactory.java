@@ -16,8 +16,11 @@
 
 package org.gradle.workers.internal;
 
+import org.gradle.internal.operations.BuildOperationContext;
+import org.gradle.internal.operations.BuildOperationDescriptor;
 import org.gradle.internal.operations.BuildOperationExecutor;
 import org.gradle.internal.operations.BuildOperationRef;
+import org.gradle.internal.operations.CallableBuildOperation;
 import org.gradle.workers.IsolationMode;
 
 import javax.annotation.concurrent.ThreadSafe;
@@ -27,12 +30,26 @@
  */
 @ThreadSafe
 public class WorkerDaemonFactory implements WorkerFactory {
+    /**
+     * The number of work items which can be in flight on a worker daemon at once, 1 (the default) disables pipelining.
+     *
+     * <p>With pipelining, work which finds no idle daemon is sent to a busy compatible daemon instead of starting a new one.
+     * The daemon executes the items one after another, without waiting for a round trip between them, and items sent at the
+     * same time are written to the connection together. This suits many small work items, where starting daemons and the
+     * round trips dominate. Work queued on a busy daemon does not run in parallel though, so fewer daemons are used.</p>
+     */
+    public static final String MAX_REQUESTS_IN_FLIGHT_PROPERTY = "org.gradle.internal.workers.daemon.max-requests-in-flight";
+
+    private static final StartResult START_RESULT = new StartResult();
+
     private final WorkerDaemonClientsManager clientsManager;
     private final BuildOperationExecutor buildOperationExecutor;
+    private final int maxRequestsInFlight;
 
-    public WorkerDaemonFactory(WorkerDaemonClientsManager clientsManager, BuildOperationExecutor buildOperationExecutor) {
+    public WorkerDaemonFactory(WorkerDaemonClientsManager clientsManager, BuildOperationExecutor buildOperationExecutor, int maxRequestsInFlight) {
         this.clientsManager = clientsManager;
         this.buildOperationExecutor = buildOperationExecutor;
+        this.maxRequestsInFlight = maxRequestsInFlight;
     }
 
     @Override
@@ -40,7 +57,7 @@ public BuildOperationAwareWorker getWorker(WorkerRequirement workerRequirement)
         return new AbstractWorker(buildOperationExecutor) {
             @Override
             public DefaultWorkResult execute(IsolatedParametersActionExecutionSpec<?> spec, BuildOperationRef parentBuildOperation) {
-                final WorkerDaemonClient client = reserveClient();
+                final WorkerDaemonClient client = reserveClient(spec.getActionImplementationClassName());
                 try {
                     return executeWrappedInBuildOperation(spec, parentBuildOperation, client::execute);
                 } finally {
@@ -48,19 +65,55 @@ public DefaultWorkResult execute(IsolatedParametersActionExecutionSpec<?> spec,
                 }
             }
 
-            private WorkerDaemonClient reserveClient() {
+            private WorkerDaemonClient reserveClient(String actionClassName) {
                 DaemonForkOptions forkOptions = ((ForkedWorkerRequirement) workerRequirement).getForkOptions();
-                WorkerDaemonClient client = clientsManager.reserveIdleClient(forkOptions);
+                WorkerDaemonClient client = clientsManager.reserveIdleClient(forkOptions, actionClassName);
+                if (client == null && maxRequestsInFlight > 1) {
+                    client = clientsManager.reserveBusyClient(forkOptions, actionClassName, maxRequestsInFlight);
+                }
                 if (client == null) {
-                    client = clientsManager.reserveNewClient(forkOptions);
+                    client = startClient(forkOptions, actionClassName);
                 }
                 return client;
             }
         };
     }
 
+    private WorkerDaemonClient startClient(DaemonForkOptions forkOptions, String actionClassName) {
+        return buildOperationExecutor.call(new CallableBuildOperation<WorkerDaemonClient>() {
+            @Override
+            public WorkerDaemonClient call(BuildOperationContext context) {
+                WorkerDaemonClient client = clientsManager.reserveNewClient(forkOptions);
+                context.setResult(START_RESULT);
+                return client;
+            }
+
+            @Override
+            public BuildOperationDescriptor.Builder description() {
+                return BuildOperationDescriptor.displayName("Start worker daemon")
+                    .details(new StartDetails(actionClassName));
+            }
+        });
+    }
+
     @Override
     public IsolationMode getIsolationMode() {
         return IsolationMode.PROCESS;
     }
+
+    private static class StartDetails implements StartWorkerDaemonBuildOperationType.Details {
+        private final String className;
+
+        StartDetails(String className) {
+            this.className = className;
+        }
+
+        @Override
+        public String getClassName() {
+            return className;
+        }
+    }
+
+    private static class StartResult implements StartWorkerDaemonBuildOperationType.Result {
+    }
 }
@@ -27,6 +27,7 @@
 import org.gradle.internal.instantiation.InstantiatorFactory;
 import org.gradle.internal.isolation.IsolatableFactory;
 import org.gradle.internal.logging.LoggingManagerInternal;
+import org.gradle.internal.metrics.MetricsRegistry;
 import org.gradle.internal.operations.BuildOperationExecutor;
 import org.gradle.internal.resources.ResourceLockCoordinationService;
 import org.gradle.internal.service.ServiceRegistration;
@@ -83,8 +84,9 @@ WorkerDaemonClientsManager createWorkerDaemonClientsManager(WorkerProcessFactory
                                                                     MemoryManager memoryManager,
                                                                     OsMemoryInfo memoryInfo,
                                                                     ClassPathRegistry classPathRegistry,
-                                                                    ActionExecutionSpecFactory actionExecutionSpecFactory) {
-            return new WorkerDaemonClientsManager(new WorkerDaemonStarter(workerFactory, loggingManager, classPathRegistry, actionExecutionSpecFactory), listenerManager, loggingManager, memoryManager, memoryInfo);
+                                                                    ActionExecutionSpecFactory actionExecutionSpecFactory,
+                                                                    MetricsRegistry metricsRegistry) {
+            return new WorkerDaemonClientsManager(new WorkerDaemonStarter(workerFactory, loggingManager, classPathRegistry, actionExecutionSpecFactory), listenerManager, loggingManager, memoryManager, memoryInfo, metricsRegistry);
         }
 
         ClassLoaderStructureProvider createClassLoaderStructureProvider(ClassLoaderRegistry classLoaderRegistry) {
@@ -136,7 +138,11 @@ WorkerExecutor createWorkerExecutor(InstantiatorFactory instantiatorFactory,
         }
 
         WorkerDaemonFactory createWorkerDaemonFactory(WorkerDaemonClientsManager workerDaemonClientsManager, BuildOperationExecutor buildOperationExecutor) {
-            return new WorkerDaemonFactory(workerDaemonClientsManager, buildOperationExecutor);
+            int maxRequestsInFlight = Integer.getInteger(WorkerDaemonFactory.MAX_REQUESTS_IN_FLIGHT_PROPERTY, 1);
+            if (maxRequestsInFlight < 1) {
+                throw new IllegalArgumentException(String.format("Invalid number of requests in flight %d set by %s, use a number of at least 1.", maxRequestsInFlight, WorkerDaemonFactory.MAX_REQUESTS_IN_FLIGHT_PROPERTY));
+            }
+            return new WorkerDaemonFactory(workerDaemonClientsManager, buildOperationExecutor, maxRequestsInFlight);
         }
     }
 }
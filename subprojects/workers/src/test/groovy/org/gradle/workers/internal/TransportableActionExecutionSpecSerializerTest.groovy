@@ -68,6 +68,29 @@ class TransportableActionExecutionSpecSerializerTest extends Specification {
         decodedSpec.internalServicesRequired
     }
 
+    def "writes a hierarchical classloader structure only once"() {
+        def spec1 = new TransportableActionExecutionSpec(Runnable.class.name, bytes, classLoaderStructure(), new File("/foo"), usesInternalServices)
+        def spec2 = new TransportableActionExecutionSpec(Runnable.class.name, bytes, classLoaderStructure(), new File("/bar"), usesInternalServices)
+
+        when:
+        serializer.write(encoder, spec1)
+        encoder.flush()
+        def firstSize = outputStream.size()
+        serializer.write(encoder, spec2)
+        encoder.flush()
+
+        and:
+        def decoder = new KryoBackedDecoder(new ByteArrayInputStream(outputStream.toByteArray()))
+        def decodedSpec1 = serializer.read(decoder)
+        def decodedSpec2 = serializer.read(decoder)
+
+        then:
+        outputStream.size() - firstSize < firstSize / 2
+        decodedSpec1.classLoaderStructure == spec1.classLoaderStructure
+        decodedSpec2.classLoaderStructure.is(decodedSpec1.classLoaderStructure)
+        decodedSpec2.baseDir.canonicalPath == spec2.baseDir.canonicalPath
+    }
+
     def filteringClassloaderSpec() {
         def classNames = [ 'allowed.Class1', 'allowed.Class2' ]
         def disallowedClassNames = [ 'disallowed.Class1', 'disallowed.Class2' ]
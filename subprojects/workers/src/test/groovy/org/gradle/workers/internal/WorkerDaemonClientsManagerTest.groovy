@@ -25,6 +25,7 @@ import org.gradle.internal.exceptions.DefaultMultiCauseException
 import org.gradle.internal.logging.LoggingManagerInternal
 import org.gradle.internal.logging.events.LogLevelChangeEvent
 import org.gradle.internal.logging.events.OutputEventListener
+import org.gradle.internal.metrics.MetricsRegistry
 import org.gradle.internal.service.scopes.Scopes
 import org.gradle.process.internal.ExecException
 import org.gradle.process.internal.health.memory.MBeanOsMemoryInfo
@@ -40,7 +41,7 @@ class WorkerDaemonClientsManagerTest extends ConcurrentSpecification {
     def memoryManager = Mock(MemoryManager)
 
     @Subject
-        manager = new WorkerDaemonClientsManager(starter, listenerManager, loggingManager, memoryManager, new MBeanOsMemoryInfo())
+        manager = new WorkerDaemonClientsManager(starter, listenerManager, loggingManager, memoryManager, new MBeanOsMemoryInfo(), new MetricsRegistry())
 
     def "does not reserve idle client when no clients"() {
         expect:
@@ -66,6 +67,20 @@ class WorkerDaemonClientsManagerTest extends ConcurrentSpecification {
         input == [noMatch] //match removed from input
     }
 
+    def "prefers idle client which executed the same action before"() {
+        def other = Stub(WorkerDaemonClient) { isCompatibleWith(_) >> true }
+        def affine = Stub(WorkerDaemonClient) {
+            isCompatibleWith(_) >> true
+            hasExecuted("org.gradle.SomeAction") >> true
+        }
+        def input = [other, affine]
+
+        expect:
+        manager.reserveIdleClient(options, "org.gradle.SomeAction", input) == affine
+        manager.reserveIdleClient(options, "org.gradle.OtherAction", input) == other
+        input.empty
+    }
+
     def "reserves new client"() {
         def newClient = Stub(WorkerDaemonClient)
         starter.startDaemon(options, _) >> newClient
@@ -149,7 +164,7 @@ class WorkerDaemonClientsManagerTest extends ConcurrentSpecification {
 
     def "can stop session-scoped clients"() {
         listenerManager = new DefaultListenerManager(Scopes.BuildSession)
-        manager = new WorkerDaemonClientsManager(starter, listenerManager, loggingManager, memoryManager, new MBeanOsMemoryInfo())
+        manager = new WorkerDaemonClientsManager(starter, listenerManager, loggingManager, memoryManager, new MBeanOsMemoryInfo(), new MetricsRegistry())
         def client1 = Mock(WorkerDaemonClient)
         def client2 = Mock(WorkerDaemonClient)
         starter.startDaemon(options, _) >>> [client1, client2]
@@ -168,7 +183,7 @@ class WorkerDaemonClientsManagerTest extends ConcurrentSpecification {
 
     def "Stopping session-scoped clients does not stop other clients"() {
         listenerManager = new DefaultListenerManager(Scopes.BuildSession)
-        manager = new WorkerDaemonClientsManager(starter, listenerManager, loggingManager, memoryManager, new MBeanOsMemoryInfo())
+        manager = new WorkerDaemonClientsManager(starter, listenerManager, loggingManager, memoryManager, new MBeanOsMemoryInfo(), new MetricsRegistry())
         def client1 = Mock(WorkerDaemonClient)
         def client2 = Mock(WorkerDaemonClient)
         starter.startDaemon(options, _) >>> [client1, client2]
@@ -205,6 +220,91 @@ class WorkerDaemonClientsManagerTest extends ConcurrentSpecification {
         manager.reserveIdleClient(options) == client
     }
 
+    def "pipelines requests to busy client with fewest requests in flight"() {
+        def client1 = Mock(WorkerDaemonClient) {
+            isCompatibleWith(_) >> true
+            getLogLevel() >> LogLevel.DEBUG
+        }
+        def client2 = Mock(WorkerDaemonClient) {
+            isCompatibleWith(_) >> true
+            getLogLevel() >> LogLevel.DEBUG
+        }
+        starter.startDaemon(options, _) >>> [client1, client2]
+
+        when:
+        manager.reserveNewClient(options)
+        manager.reserveNewClient(options)
+
+        then:
+        manager.reserveBusyClient(options, "org.gradle.SomeAction", 2) == client1
+        manager.reserveBusyClient(options, "org.gradle.SomeAction", 2) == client2
+        manager.reserveBusyClient(options, "org.gradle.SomeAction", 2) == null
+    }
+
+    def "prefers busy client which executed the same action before"() {
+        def other = Mock(WorkerDaemonClient) {
+            isCompatibleWith(_) >> true
+            getLogLevel() >> LogLevel.DEBUG
+        }
+        def affine = Mock(WorkerDaemonClient) {
+            isCompatibleWith(_) >> true
+            getLogLevel() >> LogLevel.DEBUG
+            hasExecuted("org.gradle.SomeAction") >> true
+        }
+        starter.startDaemon(options, _) >>> [other, affine]
+
+        when:
+        manager.reserveNewClient(options)
+        manager.reserveNewClient(options)
+
+        then:
+        manager.reserveBusyClient(options, "org.gradle.SomeAction", 3) == affine
+        manager.reserveBusyClient(options, "org.gradle.SomeAction", 3) == affine
+        manager.reserveBusyClient(options, "org.gradle.SomeAction", 3) == other
+    }
+
+    def "does not pipeline requests to failed or incompatible clients"() {
+        def failed = Mock(WorkerDaemonClient) {
+            isCompatibleWith(_) >> true
+            getLogLevel() >> LogLevel.DEBUG
+            isFailed() >> true
+        }
+        def incompatible = Mock(WorkerDaemonClient) {
+            isCompatibleWith(_) >> false
+            getLogLevel() >> LogLevel.DEBUG
+        }
+        starter.startDaemon(options, _) >>> [failed, incompatible]
+
+        when:
+        manager.reserveNewClient(options)
+        manager.reserveNewClient(options)
+
+        then:
+        manager.reserveBusyClient(options, "org.gradle.SomeAction", 2) == null
+    }
+
+    def "client with pipelined requests becomes idle when all requests are released"() {
+        def client = Mock(WorkerDaemonClient) {
+            isCompatibleWith(_) >> true
+            getLogLevel() >> LogLevel.DEBUG
+        }
+        starter.startDaemon(options, _) >> client
+
+        when:
+        manager.reserveNewClient(options)
+        manager.reserveBusyClient(options, "org.gradle.SomeAction", 2)
+        manager.release(client)
+
+        then:
+        manager.reserveIdleClient(options) == null
+
+        when:
+        manager.release(client)
+
+        then:
+        manager.reserveIdleClient(options) == client
+    }
+
     def "clients are discarded when log level changes"() {
         OutputEventListener listener
         def client = Mock(WorkerDaemonClient) {
@@ -216,7 +316,7 @@ class WorkerDaemonClientsManagerTest extends ConcurrentSpecification {
         loggingManager.getLevel() >> LogLevel.INFO
 
         when:
-        manager = new WorkerDaemonClientsManager(starter, listenerManager, loggingManager, memoryManager, new MBeanOsMemoryInfo())
+        manager = new WorkerDaemonClientsManager(starter, listenerManager, loggingManager, memoryManager, new MBeanOsMemoryInfo(), new MetricsRegistry())
 
         then:
         listener != null
@@ -293,7 +393,7 @@ class WorkerDaemonClientsManagerTest extends ConcurrentSpecification {
         WorkerDaemonExpiration workerDaemonExpiration
 
         when:
-        def manager = new WorkerDaemonClientsManager(starter, listenerManager, loggingManager, memoryManager, new MBeanOsMemoryInfo())
+        def manager = new WorkerDaemonClientsManager(starter, listenerManager, loggingManager, memoryManager, new MBeanOsMemoryInfo(), new MetricsRegistry())
 
         then:
         1 * memoryManager.addMemoryHolder(_) >> { args -> workerDaemonExpiration = args[0] }
@@ -29,7 +29,7 @@ class WorkerDaemonFactoryTest extends Specification {
     def buildOperationExecutor = Mock(BuildOperationExecutor)
     def buildOperation = Mock(BuildOperationRef)
 
-    @Subject factory = new WorkerDaemonFactory(clientsManager, buildOperationExecutor)
+    @Subject factory = new WorkerDaemonFactory(clientsManager, buildOperationExecutor, 1)
 
     def workingDir = new File("some-dir")
     def options = Stub(DaemonForkOptions)
@@ -48,14 +48,57 @@ class WorkerDaemonFactoryTest extends Specification {
         0 * clientsManager._
     }
 
-    def "new client is created when daemon is executed and no idle clients found"() {
+    def "new client is started in a build operation when daemon is executed and no idle clients found"() {
         when:
         factory.getWorker(requirement).execute(spec)
 
         then:
-        1 * clientsManager.reserveIdleClient(options) >> null
+        1 * clientsManager.reserveIdleClient(options, _) >> null
+        0 * clientsManager.reserveBusyClient(*_)
 
         then:
+        1 * buildOperationExecutor.call(_) >> { args -> args[0].call(Stub(BuildOperationContext)) }
+        1 * clientsManager.reserveNewClient(options) >> client
+
+        then:
+        1 * buildOperationExecutor.call(_) >> { args -> args[0].call(Stub(BuildOperationContext)) }
+        1 * client.execute(spec) >> new DefaultWorkResult(true, null)
+
+        then:
+        1 * clientsManager.release(client)
+    }
+
+    def "busy client is reused when no idle clients found and pipelining is enabled"() {
+        def factory = new WorkerDaemonFactory(clientsManager, buildOperationExecutor, 4)
+
+        when:
+        factory.getWorker(requirement).execute(spec)
+
+        then:
+        1 * clientsManager.reserveIdleClient(options, _) >> null
+        1 * clientsManager.reserveBusyClient(options, _, 4) >> client
+        0 * clientsManager.reserveNewClient(_)
+
+        then:
+        1 * buildOperationExecutor.call(_) >> { args -> args[0].call(Stub(BuildOperationContext)) }
+        1 * client.execute(spec) >> new DefaultWorkResult(true, null)
+
+        then:
+        1 * clientsManager.release(client)
+    }
+
+    def "new client is started when no busy client can take more requests"() {
+        def factory = new WorkerDaemonFactory(clientsManager, buildOperationExecutor, 4)
+
+        when:
+        factory.getWorker(requirement).execute(spec)
+
+        then:
+        1 * clientsManager.reserveIdleClient(options, _) >> null
+        1 * clientsManager.reserveBusyClient(options, _, 4) >> null
+
+        then:
+        1 * buildOperationExecutor.call(_) >> { args -> args[0].call(Stub(BuildOperationContext)) }
         1 * clientsManager.reserveNewClient(options) >> client
 
         then:
@@ -71,7 +114,7 @@ class WorkerDaemonFactoryTest extends Specification {
         factory.getWorker(requirement).execute(spec)
 
         then:
-        1 * clientsManager.reserveIdleClient(options) >> client
+        1 * clientsManager.reserveIdleClient(options, _) >> client
 
         then:
         1 * buildOperationExecutor.call(_) >> { args -> args[0].call(Stub(BuildOperationContext)) }
@@ -86,7 +129,7 @@ class WorkerDaemonFactoryTest extends Specification {
         factory.getWorker(requirement).execute(spec)
 
         then:
-        1 * clientsManager.reserveIdleClient(options) >> client
+        1 * clientsManager.reserveIdleClient(options, _) >> client
 
         then:
         1 * buildOperationExecutor.call(_) >> { args -> args[0].call() }
@@ -102,7 +145,7 @@ class WorkerDaemonFactoryTest extends Specification {
         factory.getWorker(requirement).execute(spec)
 
         then:
-        1 * clientsManager.reserveIdleClient(options) >> client
+        1 * clientsManager.reserveIdleClient(options, _) >> client
         1 * buildOperationExecutor.call(_)
     }
 
@@ -111,7 +154,7 @@ class WorkerDaemonFactoryTest extends Specification {
         factory.getWorker(requirement).execute(spec)
 
         then:
-        1 * clientsManager.reserveIdleClient(options) >> client
+        1 * clientsManager.reserveIdleClient(options, _) >> client
         1 * buildOperationExecutor.call(_) >> { args -> args[0].call() }
         1 * client.execute(spec) >> { throw new RuntimeException("Boo!") }
 